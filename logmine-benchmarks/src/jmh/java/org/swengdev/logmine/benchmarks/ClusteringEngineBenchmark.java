@@ -0,0 +1,93 @@
+package org.swengdev.logmine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.swengdev.logmine.LogMine;
+import org.swengdev.logmine.LogMineConfig;
+import org.swengdev.logmine.LogMineProcessor;
+import org.swengdev.logmine.ProcessingMode;
+
+/**
+ * Compares the streaming clustering engines.
+ *
+ * <p>Streams the same logs through the default LogMine engine, which compares each message with
+ * candidate clusters in creation order, and through the Drain parse tree, which routes each message
+ * to a small leaf group. The template count is a parameter because the gap between the engines
+ * grows with the number of clusters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(2)
+public class ClusteringEngineBenchmark {
+
+  private static final String[] ACTIONS = {"started", "stopped", "failed", "retried", "skipped"};
+  private static final String[] COMPONENTS = {"scheduler", "cache", "gateway", "indexer", "mailer"};
+
+  @Param({"LOGMINE", "DRAIN"})
+  private LogMineConfig.ClusteringEngine engine;
+
+  @Param({"20", "200"})
+  private int templateCount;
+
+  @Param({"10000"})
+  private int logCount;
+
+  private List<String> logs;
+  private LogMine logMine;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    LogMineConfig config =
+        LogMineConfig.builder()
+            .withSimilarityThreshold(0.5)
+            .withMinClusterSize(1)
+            .clusteringEngine(engine)
+            .build();
+    logMine = new LogMine(ProcessingMode.STREAMING, new LogMineProcessor(config), 100000);
+    logs = generateLogs(logCount, templateCount);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    logMine.clear(); // Reset state between iterations
+  }
+
+  /** Benchmark: stream every log through the engine, then read the patterns. */
+  @Benchmark
+  public void streamLogs(Blackhole blackhole) {
+    for (String log : logs) {
+      logMine.addLog(log);
+    }
+    blackhole.consume(logMine.getCurrentPatterns());
+  }
+
+  /**
+   * Generates logs from distinct templates. Each template has its own component, action and
+   * operation name, followed by two numeric parameters.
+   */
+  private static List<String> generateLogs(int count, int templates) {
+    List<String> result = new ArrayList<>(count);
+    Random random = new Random(42); // Fixed seed for reproducibility
+
+    for (int i = 0; i < count; i++) {
+      int template = random.nextInt(templates);
+      result.add(
+          String.format(
+              "INFO %s op%c%c %s after %d ms on node %d",
+              COMPONENTS[template % COMPONENTS.length],
+              (char) ('a' + template % 26),
+              (char) ('a' + template / 26),
+              ACTIONS[(template / COMPONENTS.length) % ACTIONS.length],
+              random.nextInt(1000),
+              random.nextInt(64)));
+    }
+    return result;
+  }
+}
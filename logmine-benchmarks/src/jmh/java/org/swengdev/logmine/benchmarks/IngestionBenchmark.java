@@ -0,0 +1,87 @@
+package org.swengdev.logmine.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.swengdev.logmine.LogMineConfig;
+import org.swengdev.logmine.LogMineProcessor;
+
+/**
+ * Compares batch processing of a log file read as strings with processing its bytes.
+ *
+ * <p>{@code strings} decodes the file and hands its lines to {@link
+ * LogMineProcessor#process(List)}; {@code bytes} memory-maps it with {@link
+ * LogMineProcessor#process(Path)}, which preprocesses and tokenizes ASCII lines without decoding
+ * them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(2)
+public class IngestionBenchmark {
+
+  private static final String[] LOG_TEMPLATES = {
+    "2024-11-24 12:34:%02d INFO User user%d logged in from 10.0.%d.%d",
+    "2024-11-24 12:34:%02d DEBUG Database query executed in %dms for id=%d shard %d",
+    "2024-11-24 12:34:%02d ERROR Error processing order %d: timeout after %d.%d s",
+    "2024-11-24 12:34:%02d INFO Background job %d started on worker %d.%d",
+  };
+
+  @Param({"100000"})
+  private int logCount;
+
+  private Path file;
+  private LogMineConfig config;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Random random = new Random(42); // Fixed seed for reproducibility
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < logCount; i++) {
+      String template = LOG_TEMPLATES[random.nextInt(LOG_TEMPLATES.length)];
+      text.append(
+              String.format(
+                  template,
+                  random.nextInt(60),
+                  random.nextInt(100_000),
+                  random.nextInt(256),
+                  random.nextInt(256)))
+          .append('\n');
+    }
+    file = Files.createTempFile("logmine-ingestion", ".log");
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+    config =
+        LogMineConfig.builder()
+            .normalizeTimestamps(true)
+            .normalizeIPs(true)
+            .normalizeNumbers(true)
+            .caseSensitive(false)
+            .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /** Benchmark: decode the file into lines and process them. */
+  @Benchmark
+  public void strings(Blackhole blackhole) throws IOException {
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    blackhole.consume(new LogMineProcessor(config).process(lines));
+  }
+
+  /** Benchmark: process the memory-mapped file. */
+  @Benchmark
+  public void bytes(Blackhole blackhole) throws IOException {
+    blackhole.consume(new LogMineProcessor(config).process(file));
+  }
+}
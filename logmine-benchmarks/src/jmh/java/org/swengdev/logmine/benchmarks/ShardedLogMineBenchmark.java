@@ -0,0 +1,82 @@
+package org.swengdev.logmine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.swengdev.logmine.LogMineConfig;
+import org.swengdev.logmine.ProcessingMode;
+import org.swengdev.logmine.ShardedLogMine;
+
+/**
+ * Measures concurrent streaming ingestion through the sharded facade.
+ *
+ * <p>Every available core adds logs at the same time. With one shard all producers share a single
+ * write lock, as with a plain LogMine; with more shards producers mostly work on different locks,
+ * so throughput should grow with the shard count up to the number of cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(2)
+public class ShardedLogMineBenchmark {
+
+  private static final String[] COMPONENTS = {"scheduler", "cache", "gateway", "indexer", "mailer"};
+
+  @Param({"1", "4", "16"})
+  private int shards;
+
+  private List<String> logs;
+  private ShardedLogMine logMine;
+
+  /** Per-thread position in the shared log list. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    LogMineConfig config =
+        LogMineConfig.builder().withSimilarityThreshold(0.5).withMinClusterSize(1).build();
+    logMine = new ShardedLogMine(ProcessingMode.STREAMING, config, shards, 100000);
+    logs = generateLogs(10000, 200);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    logMine.clear(); // Reset state between iterations
+  }
+
+  /** Benchmark: add one log per operation from every thread. */
+  @Benchmark
+  public void addLog(Cursor cursor) {
+    logMine.addLog(logs.get(cursor.next));
+    cursor.next = (cursor.next + 1) % logs.size();
+  }
+
+  /** Generates logs from distinct templates with different leading words and lengths. */
+  private static List<String> generateLogs(int count, int templates) {
+    List<String> result = new ArrayList<>(count);
+    Random random = new Random(42); // Fixed seed for reproducibility
+
+    for (int i = 0; i < count; i++) {
+      int template = random.nextInt(templates);
+      StringBuilder log = new StringBuilder();
+      log.append(COMPONENTS[template % COMPONENTS.length])
+          .append(" op")
+          .append((char) ('a' + template % 26))
+          .append((char) ('a' + template / 26));
+      for (int word = 0; word < template % 4; word++) {
+        log.append(" step");
+      }
+      log.append(" took ").append(random.nextInt(1000)).append(" ms");
+      result.add(log.toString());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,137 @@
+package org.swengdev.logmine.benchmarks;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.VariableDetector;
+
+/**
+ * Compares token classification by the standard variable detector with the regular expressions it
+ * used before.
+ *
+ * <p>The tokens mix constant words with the variable types found in application logs. {@code
+ * isVariable} classifies each token once; {@code tokensMatch} compares neighboring tokens as
+ * the edit distance does for every cell of its table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(2)
+public class VariableDetectorBenchmark {
+
+  private static final String[] CONSTANTS = {
+    "INFO", "ERROR", "User", "logged", "in", "Request", "served", "from", "cache", "timeout"
+  };
+
+  @Param({"SCANNER", "REGEX"})
+  private String detectorType;
+
+  @Param({"10000"})
+  private int tokenCount;
+
+  private String[] tokens;
+  private VariableDetector detector;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    detector =
+        detectorType.equals("REGEX") ? new RegexVariableDetector() : new StandardVariableDetector();
+    tokens = generateTokens(tokenCount);
+  }
+
+  /** Benchmark: decide for every token whether it is variable. */
+  @Benchmark
+  public void isVariable(Blackhole blackhole) {
+    for (String token : tokens) {
+      blackhole.consume(detector.isVariable(token));
+    }
+  }
+
+  /** Benchmark: compare every token with its neighbor. */
+  @Benchmark
+  public void tokensMatch(Blackhole blackhole) {
+    for (int i = 1; i < tokens.length; i++) {
+      blackhole.consume(detector.tokensMatch(tokens[i - 1], tokens[i]));
+    }
+  }
+
+  /**
+   * Generates tokens: five in twelve are constant words, the others numbers, timestamps, IPs,
+   * UUIDs, hex values and identifiers with digits.
+   */
+  private static String[] generateTokens(int count) {
+    String[] result = new String[count];
+    Random random = new Random(42); // Fixed seed for reproducibility
+
+    for (int i = 0; i < count; i++) {
+      result[i] =
+          switch (random.nextInt(12)) {
+            case 0 -> String.valueOf(random.nextInt(100000));
+            case 1 -> random.nextInt(1000) + "." + random.nextInt(100);
+            case 2 -> String.format("%02d:%02d:%02d", random.nextInt(24), random.nextInt(60), 7);
+            case 3 -> "10.0." + random.nextInt(256) + "." + random.nextInt(256);
+            case 4 -> new UUID(random.nextLong(), random.nextLong()).toString();
+            case 5 -> "0x" + Integer.toHexString(random.nextInt());
+            case 6 -> "user" + random.nextInt(1000);
+            default -> CONSTANTS[random.nextInt(CONSTANTS.length)];
+          };
+    }
+    return result;
+  }
+
+  /** The standard detector as it was before the scanner: one regular expression per type. */
+  private static final class RegexVariableDetector implements VariableDetector {
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+    private static final Pattern TIMESTAMP_PATTERN =
+        Pattern.compile("^\\d{4}-\\d{2}-\\d{2}|\\d{2}:\\d{2}:\\d{2}|\\d+,\\d+$");
+    private static final Pattern IP_PATTERN =
+        Pattern.compile("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$");
+    private static final Pattern UUID_PATTERN =
+        Pattern.compile(
+            "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+    private static final Pattern HEX_PATTERN = Pattern.compile("^0x[0-9a-fA-F]+$");
+    private static final Pattern HASH_PATTERN = Pattern.compile("^[0-9a-fA-F]{32,}$");
+
+    @Override
+    public boolean isVariable(String token) {
+      if (token == null || token.isEmpty()) {
+        return false;
+      }
+      return NUMBER_PATTERN.matcher(token).matches()
+          || TIMESTAMP_PATTERN.matcher(token).matches()
+          || IP_PATTERN.matcher(token).matches()
+          || UUID_PATTERN.matcher(token).matches()
+          || HEX_PATTERN.matcher(token).matches()
+          || HASH_PATTERN.matcher(token).matches();
+    }
+
+    @Override
+    public boolean tokensMatch(String token1, String token2) {
+      if (token1.equals(token2)) {
+        return true;
+      }
+      if (isVariable(token1) && isVariable(token2)) {
+        return bothMatch(NUMBER_PATTERN, token1, token2)
+            || bothMatch(TIMESTAMP_PATTERN, token1, token2)
+            || bothMatch(IP_PATTERN, token1, token2)
+            || bothMatch(UUID_PATTERN, token1, token2);
+      }
+      return false;
+    }
+
+    private static boolean bothMatch(Pattern pattern, String token1, String token2) {
+      return pattern.matcher(token1).matches() && pattern.matcher(token2).matches();
+    }
+
+    @Override
+    public String getDescription() {
+      return "Regex baseline";
+    }
+  }
+}
@@ -27,6 +27,9 @@ dependencies {
     // ANSI colors for terminal output
     implementation("org.fusesource.jansi:jansi:2.4.1")
 
+    // Zstandard decompression for .zst input (pure Java; gzip uses java.util.zip)
+    implementation("io.airlift:aircompressor:0.27")
+
     // Testing
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
 }
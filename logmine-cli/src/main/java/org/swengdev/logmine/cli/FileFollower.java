@@ -0,0 +1,269 @@
+package org.swengdev.logmine.cli;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows log files as they grow, like {@code tail -F}.
+ *
+ * <p>Files are read from the beginning, then only the bytes appended since the last read. The
+ * directories of the files are registered with a {@link WatchService}, so a file is read as soon
+ * as it changes and quiet files cost nothing; all files are also checked once per {@link
+ * #FULL_CHECK_NANOS} in case an event was lost.
+ *
+ * <p>A file is tracked by its file key (device and inode on Unix). When the path refers to a new
+ * file, the rest of the old one is read and the new one is followed from its start, so logrotate's
+ * rename-and-create as well as copy-and-truncate rotation lose no lines. A file that shrinks is
+ * read again from the start. Paths that do not exist yet are followed once they appear.
+ *
+ * <p>Input is decoded as UTF-8; malformed bytes are replaced. Blank lines are skipped, and lines
+ * longer than {@link #MAX_LINE_LENGTH} bytes are cut off.
+ */
+public final class FileFollower implements AutoCloseable {
+
+  /** Interval of the check of all files that catches changes the watch service missed. */
+  private static final long FULL_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** Size of the reads from a file. */
+  private static final int READ_SIZE = 1 << 16;
+
+  /** Bytes kept of a single line. */
+  private static final int MAX_LINE_LENGTH = 1 << 20;
+
+  private final WatchService watcher;
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+  private final Map<Path, TrackedFile> files = new LinkedHashMap<>();
+  private final ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+  private long lastFullCheck;
+  private boolean checkedOnce;
+
+  /**
+   * Starts watching the given files.
+   *
+   * @param paths Files to follow; their directories must exist
+   * @throws IOException If a directory cannot be watched
+   */
+  public FileFollower(List<Path> paths) throws IOException {
+    watcher = FileSystems.getDefault().newWatchService();
+    try {
+      Set<Path> registered = new HashSet<>();
+      for (Path path : paths) {
+        Path file = path.toAbsolutePath().normalize();
+        files.putIfAbsent(file, new TrackedFile(file));
+        Path directory = file.getParent();
+        if (registered.add(directory)) {
+          WatchKey key =
+              directory.register(
+                  watcher,
+                  StandardWatchEventKinds.ENTRY_CREATE,
+                  StandardWatchEventKinds.ENTRY_MODIFY,
+                  StandardWatchEventKinds.ENTRY_DELETE);
+          directories.put(key, directory);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      watcher.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Waits until a file changes or the timeout passes, then hands over the lines appended since
+   * the last call.
+   *
+   * @param timeoutMillis Maximum time to wait for a change
+   * @param sink Receives the new lines in batches, each file's lines in order
+   * @return Number of lines handed over
+   * @throws IOException If reading a file fails
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public long poll(long timeoutMillis, Consumer<List<String>> sink)
+      throws IOException, InterruptedException {
+    WatchKey key;
+    if (checkedOnce) {
+      long untilFullCheck = FULL_CHECK_NANOS - (System.nanoTime() - lastFullCheck);
+      long wait = Math.min(TimeUnit.MILLISECONDS.toNanos(timeoutMillis), untilFullCheck);
+      key = wait > 0 ? watcher.poll(wait, TimeUnit.NANOSECONDS) : watcher.poll();
+    } else {
+      key = watcher.poll();
+    }
+
+    boolean checkAll = !checkedOnce || System.nanoTime() - lastFullCheck >= FULL_CHECK_NANOS;
+    while (key != null) {
+      Path directory = directories.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          checkAll = true;
+        } else if (directory != null) {
+          TrackedFile file = files.get(directory.resolve((Path) event.context()));
+          if (file != null) {
+            file.changed = true;
+          }
+        }
+      }
+      key.reset();
+      key = watcher.poll();
+    }
+    if (checkAll) {
+      checkedOnce = true;
+      lastFullCheck = System.nanoTime();
+    }
+
+    long lines = 0;
+    for (TrackedFile file : files.values()) {
+      if (checkAll || file.changed) {
+        file.changed = false;
+        lines += file.update(sink);
+      }
+    }
+    return lines;
+  }
+
+  /** Stops watching and closes all files. */
+  @Override
+  public void close() throws IOException {
+    for (TrackedFile file : files.values()) {
+      file.closeChannel();
+    }
+    watcher.close();
+  }
+
+  /** Read state of one followed path. */
+  private final class TrackedFile {
+
+    private final Path path;
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private byte[] partial = new byte[256]; // Start of a line whose end has not been written yet
+    private int partialLength;
+    private boolean changed;
+
+    TrackedFile(Path path) {
+      this.path = path;
+    }
+
+    /** Reads what was appended, following rotation and truncation. */
+    long update(Consumer<List<String>> sink) throws IOException {
+      long lines = 0;
+      if (channel != null) {
+        if (channel.size() < position) {
+          // Truncated in place: start over
+          position = 0;
+          partialLength = 0;
+        }
+        lines += readAppended(sink);
+      }
+
+      BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      } catch (NoSuchFileException e) {
+        return lines; // Moved away; keep the old file until a new one appears
+      }
+      if (channel != null && !Objects.equals(attributes.fileKey(), fileKey)) {
+        // Rotated: the rest of the old file has been read, continue with the new one
+        lines += flushPartial(sink);
+        closeChannel();
+      }
+      if (channel == null && attributes.isRegularFile()) {
+        try {
+          channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+          return lines;
+        }
+        fileKey = attributes.fileKey();
+        position = 0;
+        partialLength = 0;
+        lines += readAppended(sink);
+      }
+      return lines;
+    }
+
+    void closeChannel() throws IOException {
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    }
+
+    private long readAppended(Consumer<List<String>> sink) throws IOException {
+      long lines = 0;
+      int read;
+      while ((read = channel.read(buffer.clear(), position)) > 0) {
+        position += read;
+        List<String> batch = new ArrayList<>();
+        byte[] bytes = buffer.array();
+        int start = 0;
+        for (int i = 0; i < read; i++) {
+          if (bytes[i] == '\n') {
+            addLine(batch, bytes, start, i);
+            start = i + 1;
+          }
+        }
+        appendPartial(bytes, start, read);
+        if (!batch.isEmpty()) {
+          sink.accept(batch);
+          lines += batch.size();
+        }
+      }
+      return lines;
+    }
+
+    /** Adds the pending partial line followed by the bytes from start to end. */
+    private void addLine(List<String> batch, byte[] bytes, int start, int end) {
+      String line;
+      if (partialLength == 0) {
+        line = decode(bytes, start, end);
+      } else {
+        appendPartial(bytes, start, end);
+        line = decode(partial, 0, partialLength);
+        partialLength = 0;
+      }
+      if (!line.isBlank()) {
+        batch.add(line);
+      }
+    }
+
+    /** Hands over a last line that was never terminated, before the file is left. */
+    private long flushPartial(Consumer<List<String>> sink) {
+      if (partialLength == 0) {
+        return 0;
+      }
+      String line = decode(partial, 0, partialLength);
+      partialLength = 0;
+      if (line.isBlank()) {
+        return 0;
+      }
+      sink.accept(List.of(line));
+      return 1;
+    }
+
+    private void appendPartial(byte[] bytes, int start, int end) {
+      int length = Math.min(end - start, MAX_LINE_LENGTH - partialLength);
+      if (length <= 0) {
+        return;
+      }
+      if (partialLength + length > partial.length) {
+        partial = Arrays.copyOf(partial, Math.max(2 * partial.length, partialLength + length));
+      }
+      System.arraycopy(bytes, start, partial, partialLength, length);
+      partialLength += length;
+    }
+  }
+
+  private static String decode(byte[] bytes, int start, int end) {
+    int length = Math.min(end - start, MAX_LINE_LENGTH);
+    if (length > 0 && bytes[start + length - 1] == '\r') {
+      length--;
+    }
+    return new String(bytes, start, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,218 @@
+package org.swengdev.logmine.cli;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads log lines from files or stdin on a background thread.
+ *
+ * <p>Non-blank lines are handed over in batches through a bounded queue, so the reader stays at
+ * most a few batches ahead of the consumer and memory does not grow with the input size. Input is
+ * decoded as UTF-8; malformed bytes are replaced.
+ *
+ * <p>Gzip and zstd input is recognized by its magic bytes and decompressed in-process. The members
+ * of a gzip file are decompressed in parallel (see {@link ParallelGzipInputStream}); gzip on stdin
+ * and zstd are decompressed on the reader thread.
+ */
+public final class InputReader implements AutoCloseable {
+
+  /** Lines handed over at once, so the queue is not touched for every line. */
+  static final int BATCH_SIZE = 1024;
+
+  /** Batches the reader may run ahead of the consumer. */
+  private static final int QUEUE_CAPACITY = 64;
+
+  /** Buffer size for reading, large enough to keep system calls rare. */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /** Gzip members each decompression thread may decode ahead of the reader. */
+  private static final int MEMBERS_PER_THREAD = 2;
+
+  private static final List<String> END = new ArrayList<>(0);
+
+  private final List<Path> files;
+  private final InputStream stdin;
+  private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread thread;
+  private final ExecutorService decompressors;
+  private volatile Throwable failure;
+  private boolean finished;
+
+  /**
+   * Creates a reader for the given files, or for stdin if there are none.
+   *
+   * @param files Files to read in order
+   * @param stdin Stream to read if no files are given
+   */
+  public InputReader(List<Path> files, InputStream stdin) {
+    this.files = List.copyOf(files);
+    this.stdin = stdin;
+    this.thread = new Thread(this::run, "logmine-reader");
+    this.thread.setDaemon(true);
+    // Threads are only started once a gzip file is read
+    this.decompressors =
+        Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("logmine-gunzip-", 0).daemon().factory());
+  }
+
+  /** Starts reading in the background. */
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Waits for the next batch of lines.
+   *
+   * @return The next non-empty batch in input order, or null once all input has been read
+   * @throws IOException If reading failed
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public List<String> nextBatch() throws IOException, InterruptedException {
+    if (finished) {
+      return null;
+    }
+    List<String> batch = queue.take();
+    if (batch == END) {
+      finished = true;
+      if (failure instanceof IOException e) {
+        throw e;
+      }
+      if (failure instanceof Error e) {
+        throw e;
+      }
+      if (failure != null) {
+        // Decompressors report corrupt input as runtime exceptions
+        throw new IOException(failure.getMessage(), failure);
+      }
+      return null;
+    }
+    return batch;
+  }
+
+  /** Stops the background threads if they are still reading. */
+  @Override
+  public void close() {
+    thread.interrupt();
+    decompressors.shutdownNow();
+  }
+
+  private void run() {
+    try {
+      if (files.isEmpty()) {
+        read(decompress(stdin));
+      } else {
+        for (Path file : files) {
+          try (InputStream in = open(file)) {
+            read(in);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // Closed by the consumer, nobody waits for the end
+    } catch (Throwable e) {
+      failure = e;
+    } finally {
+      try {
+        queue.put(END);
+      } catch (InterruptedException e) {
+        // Closed by the consumer
+      }
+    }
+  }
+
+  /**
+   * Opens a file for reading, decompressing it if it is compressed.
+   *
+   * @param file File to open
+   * @return Stream of the file's (decompressed) bytes
+   * @throws IOException If the file cannot be opened
+   */
+  private InputStream open(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return decompress(Files.newInputStream(file)); // Pipes cannot be read twice
+    }
+
+    FileChannel channel = FileChannel.open(file);
+    try {
+      ByteBuffer magic = ByteBuffer.allocate(4);
+      while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+        // Read until the buffer is full or the file ends
+      }
+      if (isGzip(magic.array(), magic.position())) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new ParallelGzipInputStream(channel, decompressors, MEMBERS_PER_THREAD * threads);
+      }
+      InputStream in = Channels.newInputStream(channel);
+      return isZstd(magic.array(), magic.position())
+          ? new ZstdInputStream(new BufferedInputStream(in, BUFFER_SIZE))
+          : in;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Wraps a stream in a decompressor if it starts with the magic bytes of one. */
+  private static InputStream decompress(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+    buffered.mark(4);
+    byte[] magic = buffered.readNBytes(4);
+    buffered.reset();
+    if (isGzip(magic, magic.length)) {
+      return new GZIPInputStream(buffered, BUFFER_SIZE);
+    }
+    if (isZstd(magic, magic.length)) {
+      return new ZstdInputStream(buffered);
+    }
+    return buffered;
+  }
+
+  private static boolean isGzip(byte[] magic, int length) {
+    return length >= 2 && magic[0] == (byte) 0x1f && magic[1] == (byte) 0x8b;
+  }
+
+  private static boolean isZstd(byte[] magic, int length) {
+    return length >= 4
+        && magic[0] == (byte) 0x28
+        && magic[1] == (byte) 0xb5
+        && magic[2] == (byte) 0x2f
+        && magic[3] == (byte) 0xfd;
+  }
+
+  private void read(InputStream in) throws IOException, InterruptedException {
+    BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new BufferedInputStream(in, BUFFER_SIZE), StandardCharsets.UTF_8),
+            BUFFER_SIZE);
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      batch.add(line);
+      if (batch.size() == BATCH_SIZE) {
+        queue.put(batch);
+        batch = new ArrayList<>(BATCH_SIZE);
+      }
+    }
+    if (!batch.isEmpty()) {
+      queue.put(batch);
+    }
+  }
+}
@@ -1,9 +1,12 @@
 package org.swengdev.logmine.cli;
 
 import org.fusesource.jansi.AnsiConsole;
+import org.swengdev.logmine.LogMine;
 import org.swengdev.logmine.LogMineConfig;
 import org.swengdev.logmine.LogMineProcessor;
 import org.swengdev.logmine.LogPattern;
+import org.swengdev.logmine.PatternSnapshot;
+import org.swengdev.logmine.ProcessingMode;
 import org.swengdev.logmine.strategy.CustomVariableDetector;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -11,13 +14,11 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * LogMine CLI - A log pattern analyzer command-line tool.
@@ -38,6 +39,12 @@ import java.util.stream.Stream;
  *
  * # Define custom variables
  * logmine -v "<time>:/\\d{2}:\\d{2}:\\d{2}/" application.log
+ *
+ * # Analyze on 8 worker threads
+ * logmine -t 8 application.log
+ *
+ * # Follow growing log files and update the patterns every 2 seconds
+ * logmine -f /var/log/app/*.log
  * </pre>
  */
 @Command(
@@ -48,6 +55,9 @@ import java.util.stream.Stream;
     sortOptions = false)
 public class LogMineCLI implements Callable<Integer> {
 
+  /** Lines between progress messages in verbose mode. */
+  private static final long PROGRESS_INTERVAL = 1_000_000;
+
   @Parameters(
       index = "0..*",
       paramLabel = "FILE",
@@ -105,6 +115,25 @@ public class LogMineCLI implements Callable<Integer> {
       description = "Maximum number of patterns to display. Default: unlimited")
   private int maxPatterns = Integer.MAX_VALUE;
 
+  @Option(
+      names = {"-t", "--threads"},
+      paramLabel = "N",
+      description = "Worker threads that preprocess, tokenize and cluster the input; not"
+          + " available with --follow. Default: ${DEFAULT-VALUE}")
+  private int threads = 1;
+
+  @Option(
+      names = {"-f", "--follow"},
+      description = "Keep following the files as they grow and are rotated, updating the patterns"
+          + " periodically (like tail -F)")
+  private boolean follow = false;
+
+  @Option(
+      names = {"--interval"},
+      paramLabel = "SECONDS",
+      description = "Seconds between pattern updates in follow mode. Default: ${DEFAULT-VALUE}")
+  private double interval = 2.0;
+
   @Option(
       names = {"--verbose"},
       description = "Show detailed processing information")
@@ -136,56 +165,55 @@ public class LogMineCLI implements Callable<Integer> {
         formatter.printInfo("LogMine CLI starting...");
         formatter.printInfo("Similarity threshold: " + maxDist);
         formatter.printInfo("Min members: " + minMembers);
+        formatter.printInfo("Threads: " + threads);
       }
 
-      // Read log messages
-      List<String> logMessages = readInput();
-
-      if (logMessages.isEmpty()) {
-        formatter.printError("No log messages to analyze");
+      if (threads < 1) {
+        formatter.printError("Thread count must be at least 1");
         return 1;
       }
 
-      if (verbose) {
-        formatter.printInfo("Read " + logMessages.size() + " log messages");
-      }
-
       // Build configuration
       LogMineConfig config = buildConfig();
 
-      // Create processor with config
-      LogMineProcessor processor = new LogMineProcessor(config);
+      if (follow) {
+        return follow(config);
+      }
 
       if (verbose) {
         formatter.printInfo("Processing logs...");
       }
 
-      // Process logs
-      List<LogPattern> patterns = processor.process(logMessages);
-
-      // Filter by min members
-      patterns =
-          patterns.stream()
-              .filter(p -> p.getSupportCount() >= minMembers)
-              .collect(Collectors.toList());
-
-      // Sort patterns
-      if ("asc".equalsIgnoreCase(sorted)) {
-        patterns.sort(Comparator.comparingInt(LogPattern::getSupportCount));
+      // Cluster lines as they are read, so memory depends on the clusters and not the input
+      long messageCount;
+      List<LogPattern> patterns;
+      if (threads == 1) {
+        LogMineProcessor processor = new LogMineProcessor(config);
+        messageCount = processInput(batch -> batch.forEach(processor::processLogIncremental));
+        patterns = processor.getPatterns();
       } else {
-        patterns.sort(Comparator.comparingInt(LogPattern::getSupportCount).reversed());
+        try (ParallelAnalyzer analyzer = new ParallelAnalyzer(config, threads)) {
+          messageCount = processInput(analyzer::add);
+          patterns = analyzer.finish();
+        }
+      }
+
+      if (messageCount == 0) {
+        formatter.printError("No log messages to analyze");
+        return 1;
       }
 
-      // Limit patterns
-      if (patterns.size() > maxPatterns) {
-        patterns = patterns.subList(0, maxPatterns);
+      if (verbose) {
+        formatter.printInfo("Read " + messageCount + " log messages");
       }
 
+      patterns = selectPatterns(patterns);
+
       // Output results
       if (jsonOutput) {
-        outputJson(patterns, logMessages.size());
+        outputJson(patterns, messageCount);
       } else {
-        outputText(patterns, logMessages.size());
+        outputText(patterns, messageCount);
       }
 
       return 0;
@@ -205,37 +233,160 @@ public class LogMineCLI implements Callable<Integer> {
     }
   }
 
-  private List<String> readInput() throws IOException {
-    List<String> messages = new ArrayList<>();
+  /** Consumer of the batches of lines read from the input. */
+  @FunctionalInterface
+  private interface BatchHandler {
+    void accept(List<String> batch) throws InterruptedException;
+  }
 
-    if (files.isEmpty()) {
-      // Read from stdin
-      if (verbose && formatter != null) {
-        formatter.printInfo("Reading from stdin...");
-      }
+  /**
+   * Reads the input on a background thread and hands each batch of lines over as it arrives.
+   *
+   * @return Number of non-blank lines processed
+   */
+  private long processInput(BatchHandler handler) throws IOException, InterruptedException {
+    if (verbose) {
+      formatter.printInfo(files.isEmpty() ? "Reading from stdin..." : "Reading " + files);
+    }
 
-      try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-        String line;
-        while ((line = reader.readLine()) != null) {
-          if (!line.isBlank()) {
-            messages.add(line);
-          }
+    long count = 0;
+    try (InputReader reader = new InputReader(files, System.in)) {
+      reader.start();
+      List<String> batch;
+      while ((batch = reader.nextBatch()) != null) {
+        handler.accept(batch);
+        count += batch.size();
+        if (verbose && count / PROGRESS_INTERVAL > (count - batch.size()) / PROGRESS_INTERVAL) {
+          formatter.printInfo("Processed " + count + " log messages...");
         }
       }
-    } else {
-      // Read from files
-      for (Path file : files) {
-        if (verbose && formatter != null) {
-          formatter.printInfo("Reading file: " + file);
+    }
+    return count;
+  }
+
+  /**
+   * Follows the files and prints the patterns every interval in which they changed, until the
+   * process is stopped.
+   *
+   * <p>With colors the results are redrawn in place; otherwise only the patterns that are new,
+   * changed or are no longer listed since the last update are printed, which suits redirecting the
+   * output to a file.
+   */
+  private int follow(LogMineConfig config) throws IOException, InterruptedException {
+    if (files.isEmpty()) {
+      formatter.printError("--follow needs at least one file");
+      return 1;
+    }
+    if (jsonOutput) {
+      formatter.printError("--json cannot be combined with --follow");
+      return 1;
+    }
+    if (threads > 1) {
+      // Followed files grow slowly enough for one thread, and one LogMine keeps the snapshots
+      formatter.printError("--threads cannot be combined with --follow");
+      return 1;
+    }
+    if (!(interval > 0)) {
+      formatter.printError("Interval must be positive");
+      return 1;
+    }
+
+    LogMine logMine =
+        new LogMine(ProcessingMode.STREAMING, new LogMineProcessor(config), 100000);
+    long intervalNanos = (long) (interval * 1_000_000_000L);
+    Map<String, LogPattern> shownPatterns = Map.of();
+    long shownVersion = -1;
+    long messageCount = 0;
+
+    try (FileFollower follower = new FileFollower(files)) {
+      if (verbose) {
+        formatter.printInfo("Following " + files.size() + " file(s), Ctrl+C to stop");
+      }
+      long nextUpdate = System.nanoTime();
+      while (true) {
+        long waitMillis = Math.max(0, (nextUpdate - System.nanoTime()) / 1_000_000);
+        messageCount += follower.poll(waitMillis, logMine::addLogs);
+        if (System.nanoTime() - nextUpdate < 0) {
+          continue;
         }
+        nextUpdate = Math.max(nextUpdate + intervalNanos, System.nanoTime());
 
-        try (Stream<String> lines = Files.lines(file)) {
-          lines.filter(line -> !line.isBlank()).forEach(messages::add);
+        // Quiet files leave the snapshot unchanged, so nothing is printed or computed
+        PatternSnapshot snapshot = logMine.getSnapshot();
+        if (snapshot.getVersion() == shownVersion || messageCount == 0) {
+          continue;
+        }
+        shownVersion = snapshot.getVersion();
+        List<LogPattern> patterns = selectPatterns(snapshot.getPatterns());
+        if (noColor) {
+          shownPatterns = printChanges(patterns, shownPatterns, messageCount);
+        } else {
+          formatter.clearScreen();
+          outputText(patterns, messageCount);
         }
       }
     }
+  }
+
+  /**
+   * Prints the patterns that are new or whose count changed since the last update, then the
+   * patterns of the last update that are no longer listed, such as those generalized into a new
+   * pattern or pushed out by {@code --max-patterns}.
+   *
+   * @param shownPatterns Patterns by pattern ID as of the last update
+   * @return Patterns by pattern ID as of this update
+   */
+  private Map<String, LogPattern> printChanges(
+      List<LogPattern> patterns, Map<String, LogPattern> shownPatterns, long totalMessages) {
+    Map<String, LogPattern> current = new LinkedHashMap<>();
+    boolean headerPrinted = false;
+    for (LogPattern pattern : patterns) {
+      current.put(pattern.getPatternId(), pattern);
+      LogPattern shown = shownPatterns.get(pattern.getPatternId());
+      if (shown != null && shown.getSupportCount() == pattern.getSupportCount()) {
+        continue;
+      }
+      if (!headerPrinted) {
+        formatter.printInfo("Total messages: " + totalMessages);
+        headerPrinted = true;
+      }
+      int change = pattern.getSupportCount() - (shown != null ? shown.getSupportCount() : 0);
+      formatter.printPatternChange(pattern, change, shown == null);
+    }
 
-    return messages;
+    for (LogPattern shown : shownPatterns.values()) {
+      if (current.containsKey(shown.getPatternId())) {
+        continue;
+      }
+      if (!headerPrinted) {
+        formatter.printInfo("Total messages: " + totalMessages);
+        headerPrinted = true;
+      }
+      formatter.printPatternRemoved(shown);
+    }
+    return current;
+  }
+
+  /** Applies the minimum size, sort order and maximum count requested on the command line. */
+  private List<LogPattern> selectPatterns(List<LogPattern> patterns) {
+    // Filter by min members
+    patterns =
+        patterns.stream()
+            .filter(p -> p.getSupportCount() >= minMembers)
+            .collect(Collectors.toList());
+
+    // Sort patterns
+    if ("asc".equalsIgnoreCase(sorted)) {
+      patterns.sort(Comparator.comparingInt(LogPattern::getSupportCount));
+    } else {
+      patterns.sort(Comparator.comparingInt(LogPattern::getSupportCount).reversed());
+    }
+
+    // Limit patterns
+    if (patterns.size() > maxPatterns) {
+      patterns = patterns.subList(0, maxPatterns);
+    }
+    return patterns;
   }
 
   private LogMineConfig buildConfig() {
@@ -266,7 +417,7 @@ public class LogMineCLI implements Callable<Integer> {
     return builder.build();
   }
 
-  private void outputText(List<LogPattern> patterns, int totalMessages) {
+  private void outputText(List<LogPattern> patterns, long totalMessages) {
     formatter.printHeader("LogMine Analysis Results");
     formatter.printInfo("Total messages: " + totalMessages);
     formatter.printInfo("Clusters found: " + patterns.size());
@@ -280,12 +431,12 @@ public class LogMineCLI implements Callable<Integer> {
 
     // Summary
     int clusteredCount = patterns.stream().mapToInt(LogPattern::getSupportCount).sum();
-    int unclustered = totalMessages - clusteredCount;
+    long unclustered = totalMessages - clusteredCount;
 
     formatter.printSummary(clusteredCount, unclustered, totalMessages);
   }
 
-  private void outputJson(List<LogPattern> patterns, int totalMessages) {
+  private void outputJson(List<LogPattern> patterns, long totalMessages) {
     // Simple JSON output without external dependencies
     StringBuilder json = new StringBuilder();
     json.append("{\n");
@@ -85,6 +85,43 @@ public class OutputFormatter {
     }
   }
 
+  /**
+   * Prints a pattern that is new or whose count changed since the last update in follow mode, on
+   * one line. Change lines are plain text, since coloured follow mode redraws the whole screen
+   * instead.
+   *
+   * @param pattern The pattern
+   * @param change Messages added since the last update; negative if the count shrank
+   * @param isNew Whether the pattern was not printed before
+   */
+  public void printPatternChange(LogPattern pattern, int change, boolean isNew) {
+    printChangeLine(isNew ? "NEW" : String.format("%+d", change), pattern);
+  }
+
+  /**
+   * Prints a pattern of the last update that is no longer listed in follow mode, for example
+   * because it was generalized into a new pattern, on one line.
+   *
+   * @param pattern The pattern as last printed
+   */
+  public void printPatternRemoved(LogPattern pattern) {
+    printChangeLine("REMOVED", pattern);
+  }
+
+  private void printChangeLine(String label, LogPattern pattern) {
+    System.out.printf("%-8s%8d | ", label, pattern.getSupportCount());
+    printPattern(pattern.getTokens());
+    System.out.println();
+  }
+
+  /** Clears the terminal so that follow mode can redraw the results in place. */
+  public void clearScreen() {
+    if (colorEnabled) {
+      System.out.print(ansi().eraseScreen().cursor(1, 1));
+      System.out.flush();
+    }
+  }
+
   private void printPattern(List<String> tokens) {
     for (int i = 0; i < tokens.size(); i++) {
       String token = tokens.get(i);
@@ -127,7 +164,7 @@ public class OutputFormatter {
     return token.startsWith("<") && token.endsWith(">");
   }
 
-  public void printSummary(int clusteredCount, int unclustered, int total) {
+  public void printSummary(int clusteredCount, long unclustered, long total) {
     if (colorEnabled) {
       System.out.println(ansi().bold().fg(CYAN).a("─".repeat(60)).reset());
       System.out.println(ansi().bold().fg(CYAN).a("  Summary").reset());
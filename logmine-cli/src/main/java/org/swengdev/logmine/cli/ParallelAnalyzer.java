@@ -0,0 +1,161 @@
+package org.swengdev.logmine.cli;
+
+import org.swengdev.logmine.LogMineConfig;
+import org.swengdev.logmine.LogMineProcessor;
+import org.swengdev.logmine.LogPattern;
+import org.swengdev.logmine.ShardedLogMine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyzes log lines on several worker threads.
+ *
+ * <p>The caller hands over batches of lines in input order. Each line is routed to a worker by its
+ * structural key ({@link ShardedLogMine#routingKey(String)}), so the lines of most templates go
+ * to a single worker and arrive there in input order. Every worker owns a {@link
+ * LogMineProcessor} and preprocesses, tokenizes and clusters its lines incrementally. {@link
+ * #finish()} waits for the workers and reconciles their patterns by similarity with {@link
+ * ShardedLogMine#mergePatterns(List, double)}, so a template spread over several workers, such as
+ * one starting with a user name, still comes out as one pattern.
+ *
+ * <p>Routing depends only on the line, so the same input and worker count always give the same
+ * patterns in the same order. Patterns with equal support are listed worker by worker, which can
+ * differ from their order on a single thread.
+ */
+public final class ParallelAnalyzer implements AutoCloseable {
+
+  /** Batches a worker may fall behind before the caller waits for it. */
+  private static final int QUEUE_CAPACITY = 16;
+
+  /** How often a waiting caller checks whether the worker it waits for has failed. */
+  private static final long FAILURE_CHECK_MILLIS = 100;
+
+  private static final List<String> END = new ArrayList<>(0);
+
+  private final double threshold;
+  private final Worker[] workers;
+
+  /**
+   * Creates and starts the workers.
+   *
+   * @param config Configuration of each worker's processor
+   * @param threads Number of worker threads
+   */
+  public ParallelAnalyzer(LogMineConfig config, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be at least 1, got: " + threads);
+    }
+    threshold = config.similarityThreshold();
+    workers = new Worker[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Worker(new LogMineProcessor(config), "logmine-worker-" + i);
+    }
+    for (Worker worker : workers) {
+      worker.thread.start();
+    }
+  }
+
+  /**
+   * Routes a batch of lines to the workers, waiting while a worker is too far behind.
+   *
+   * @param batch Lines in input order
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public void add(List<String> batch) throws InterruptedException {
+    if (workers.length == 1) {
+      hand(workers[0], batch);
+      return;
+    }
+
+    List<List<String>> routed = new ArrayList<>(workers.length);
+    for (int i = 0; i < workers.length; i++) {
+      routed.add(new ArrayList<>(2 * batch.size() / workers.length));
+    }
+    for (String line : batch) {
+      routed.get(Math.floorMod(ShardedLogMine.routingKey(line), workers.length)).add(line);
+    }
+    for (int i = 0; i < workers.length; i++) {
+      if (!routed.get(i).isEmpty()) {
+        hand(workers[i], routed.get(i));
+      }
+    }
+  }
+
+  /**
+   * Waits for the workers to cluster all lines and merges their patterns.
+   *
+   * @return Patterns of all workers, similar patterns combined, sorted by support
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public List<LogPattern> finish() throws InterruptedException {
+    for (Worker worker : workers) {
+      hand(worker, END);
+    }
+    List<List<LogPattern>> perWorker = new ArrayList<>(workers.length);
+    for (Worker worker : workers) {
+      worker.thread.join();
+      worker.checkFailure();
+      perWorker.add(worker.processor.getPatterns());
+    }
+    return ShardedLogMine.mergePatterns(perWorker, threshold);
+  }
+
+  /** Stops the workers if they are still running. */
+  @Override
+  public void close() {
+    for (Worker worker : workers) {
+      worker.thread.interrupt();
+    }
+  }
+
+  private static void hand(Worker worker, List<String> batch) throws InterruptedException {
+    while (!worker.queue.offer(batch, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+      worker.checkFailure();
+    }
+  }
+
+  /** A thread clustering the lines routed to it with its own processor. */
+  private static final class Worker {
+
+    private final LogMineProcessor processor;
+    private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile Throwable failure; // A RuntimeException or an Error
+
+    Worker(LogMineProcessor processor, String name) {
+      this.processor = processor;
+      this.thread = new Thread(this::run, name);
+      this.thread.setDaemon(true);
+    }
+
+    private void run() {
+      try {
+        List<String> batch;
+        while ((batch = queue.take()) != END) {
+          for (String line : batch) {
+            processor.processLogIncremental(line);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Closed by the caller
+      } catch (Throwable e) {
+        // Errors too, or the caller would wait forever for a queue nobody takes from
+        failure = e;
+      }
+    }
+
+    /** Rethrows the failure that stopped this worker, if any. */
+    void checkFailure() {
+      if (failure instanceof RuntimeException e) {
+        throw e;
+      }
+      if (failure instanceof Error e) {
+        throw e;
+      }
+    }
+  }
+}
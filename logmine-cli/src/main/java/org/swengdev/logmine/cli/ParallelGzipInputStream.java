@@ -0,0 +1,385 @@
+package org.swengdev.logmine.cli;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip file, decoding its members in parallel.
+ *
+ * <p>logrotate, bgzip and plain concatenation write gzip files as a sequence of members, each a
+ * complete gzip stream. Their offsets are not recorded anywhere, so the file is scanned ahead for
+ * gzip headers and each candidate offset is decoded speculatively by a worker. The stream then
+ * walks the members in order: starting at offset 0, it takes the member decoded at the current
+ * offset and continues where that member's trailer ends. Candidates that lie inside another
+ * member are skipped, so a header-like byte sequence in compressed data never corrupts the output.
+ * Every member is checked against the CRC and size in its trailer.
+ *
+ * <p>Workers buffer at most {@link #MAX_BUFFERED} decoded bytes per member; the rest of a larger
+ * member is inflated on the reading thread as it is read, so memory stays bounded. As with {@link
+ * java.util.zip.GZIPInputStream}, bytes after the last member that do not start with a valid gzip
+ * header are ignored, even if they begin with the gzip magic bytes.
+ */
+final class ParallelGzipInputStream extends InputStream {
+
+  /** Decoded bytes a worker buffers per member before leaving the rest to the reader. */
+  private static final int MAX_BUFFERED = 1 << 23;
+
+  /** Size of the reads from the file. */
+  private static final int READ_SIZE = 1 << 16;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final FileChannel channel;
+  private final long size;
+  private final ExecutorService workers;
+  private final int window;
+  private final Deque<Candidate> pending = new ArrayDeque<>();
+  private final ByteBuffer scanBuffer = ByteBuffer.allocate(READ_SIZE).limit(0);
+  private long scanBase; // File offset of the scan buffer's first byte
+  private long scanPosition; // Next offset to check for a header
+  private long position; // Offset of the next member
+  private ByteBuffer buffered = ByteBuffer.allocate(0);
+  private MemberStream current;
+
+  /** A header found by the scan and the speculative decode of the member it may start. */
+  private record Candidate(long offset, Future<Member> member) {}
+
+  /** The first decoded bytes of a member and the stream that inflates the rest. */
+  private record Member(byte[] data, MemberStream rest) {}
+
+  /** Thrown by a speculative decode whose candidate offset does not start a valid header. */
+  private static final class InvalidHeaderException extends IOException {
+    InvalidHeaderException(IOException cause) {
+      super(cause);
+    }
+  }
+
+  /**
+   * Creates a stream over a gzip file.
+   *
+   * @param channel The file, read with positional reads and closed with this stream
+   * @param workers Threads that decode members
+   * @param window Members decoded ahead of the reader
+   * @throws IOException If the file size cannot be read
+   */
+  ParallelGzipInputStream(FileChannel channel, ExecutorService workers, int window)
+      throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.workers = workers;
+    this.window = window;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] one = new byte[1];
+    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    while (true) {
+      if (buffered.hasRemaining()) {
+        int n = Math.min(len, buffered.remaining());
+        buffered.get(b, off, n);
+        return n;
+      }
+      if (current != null) {
+        int n = current.read(b, off, len);
+        if (n > 0) {
+          return n;
+        }
+        position = current.end();
+        current.close();
+        current = null;
+      }
+      if (!nextMember()) {
+        return -1;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Candidate candidate : pending) {
+      discard(candidate.member);
+    }
+    pending.clear();
+    if (current != null) {
+      current.close();
+    }
+    channel.close();
+  }
+
+  /** Moves to the member at the current position, returning false if there is none. */
+  private boolean nextMember() throws IOException {
+    while (true) {
+      while (pending.size() < window) {
+        long offset = nextHeader();
+        if (offset < 0) {
+          break;
+        }
+        pending.addLast(new Candidate(offset, workers.submit(() -> decode(offset))));
+      }
+
+      Candidate candidate = pending.peekFirst();
+      if (candidate == null || candidate.offset > position) {
+        if (position == 0) {
+          throw new ZipException("Not in GZIP format");
+        }
+        return false; // End of file, or trailing bytes that are not a member
+      }
+      pending.removeFirst();
+      if (candidate.offset < position) {
+        discard(candidate.member);
+        continue;
+      }
+
+      Member member;
+      try {
+        member = await(candidate.member);
+      } catch (InvalidHeaderException e) {
+        if (position == 0) {
+          throw (IOException) e.getCause();
+        }
+        return false; // Trailing bytes that only look like a header, such as a truncated one
+      }
+      buffered = ByteBuffer.wrap(member.data);
+      current = member.rest;
+      return true;
+    }
+  }
+
+  /** Finds the next offset after the last one returned that looks like a gzip header. */
+  private long nextHeader() throws IOException {
+    while (true) {
+      int i = (int) (scanPosition - scanBase);
+      byte[] bytes = scanBuffer.array();
+      for (; i + 2 < scanBuffer.limit(); i++) {
+        if (bytes[i] == (byte) 0x1f && bytes[i + 1] == (byte) 0x8b && bytes[i + 2] == 8) {
+          scanPosition = scanBase + i + 1;
+          return scanBase + i;
+        }
+      }
+
+      // Refill from the first offset not checked yet
+      scanBase += i;
+      scanPosition = scanBase;
+      scanBuffer.clear();
+      while (scanBuffer.hasRemaining()) {
+        if (channel.read(scanBuffer, scanBase + scanBuffer.position()) < 0) {
+          break;
+        }
+      }
+      scanBuffer.flip();
+      if (scanBuffer.limit() < 3) {
+        return -1;
+      }
+    }
+  }
+
+  /** Decodes the start of the member at an offset; runs on a worker. */
+  private Member decode(long offset) throws IOException {
+    MemberStream stream;
+    try {
+      stream = new MemberStream(offset);
+    } catch (IOException e) {
+      throw new InvalidHeaderException(e);
+    }
+    try {
+      return new Member(stream.readNBytes(MAX_BUFFERED), stream);
+    } catch (IOException | RuntimeException e) {
+      stream.close();
+      throw e;
+    }
+  }
+
+  /** Drops a speculative decode that is not needed. */
+  private static void discard(Future<Member> member) {
+    // Not interrupted: that would close the shared channel
+    if (!member.cancel(false) && member.state() == Future.State.SUCCESS) {
+      member.resultNow().rest.close();
+    }
+  }
+
+  private static Member await(Future<Member> member) throws IOException {
+    try {
+      return member.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while decompressing");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Inflates a single member, reading the file as needed, and verifies its trailer. */
+  private final class MemberStream extends InputStream {
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[READ_SIZE];
+    private int inputStart; // Unread bytes of the input are inputStart to inputEnd
+    private int inputEnd;
+    private long inputPosition; // File offset after the input
+    private long inflated;
+    private long end = -1;
+
+    MemberStream(long offset) throws IOException {
+      inputPosition = offset;
+      try {
+        readHeader();
+      } catch (IOException e) {
+        inflater.end();
+        throw e;
+      }
+      inflater.setInput(input, inputStart, inputEnd - inputStart);
+    }
+
+    /** Gets the file offset after this member's trailer, once it has been read to the end. */
+    long end() {
+      return end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (end >= 0) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      try {
+        int n;
+        while ((n = inflater.inflate(b, off, len)) == 0) {
+          if (inflater.finished()) {
+            readTrailer();
+            return -1;
+          }
+          if (inflater.needsDictionary()) {
+            throw new ZipException("Gzip member needs a preset dictionary");
+          }
+          if (inflater.needsInput()) {
+            fill();
+            inflater.setInput(input, inputStart, inputEnd - inputStart);
+          }
+        }
+        crc.update(b, off, n);
+        inflated += n;
+        return n;
+      } catch (DataFormatException e) {
+        throw new ZipException("Invalid gzip data: " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void close() {
+      inflater.end();
+    }
+
+    private void readHeader() throws IOException {
+      CRC32 headerCrc = new CRC32();
+      if (readByte(headerCrc) != 0x1f || readByte(headerCrc) != 0x8b) {
+        throw new ZipException("Not in GZIP format");
+      }
+      if (readByte(headerCrc) != 8) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readByte(headerCrc);
+      for (int i = 0; i < 6; i++) {
+        readByte(headerCrc); // Modification time, extra flags, operating system
+      }
+      if ((flags & FEXTRA) != 0) {
+        int length = readByte(headerCrc) | readByte(headerCrc) << 8;
+        for (int i = 0; i < length; i++) {
+          readByte(headerCrc);
+        }
+      }
+      if ((flags & FNAME) != 0) {
+        while (readByte(headerCrc) != 0) {
+          // Skip the file name
+        }
+      }
+      if ((flags & FCOMMENT) != 0) {
+        while (readByte(headerCrc) != 0) {
+          // Skip the comment
+        }
+      }
+      if ((flags & FHCRC) != 0) {
+        int expected = (int) headerCrc.getValue() & 0xffff;
+        if ((readByte() | readByte() << 8) != expected) {
+          throw new ZipException("Corrupt GZIP header");
+        }
+      }
+    }
+
+    private void readTrailer() throws IOException {
+      inputStart = inputEnd - inflater.getRemaining();
+      long expectedCrc = readInt();
+      long expectedSize = readInt();
+      if (expectedCrc != crc.getValue()) {
+        throw new ZipException("Corrupt gzip member (CRC mismatch)");
+      }
+      if (expectedSize != (inflated & 0xffffffffL)) {
+        throw new ZipException("Corrupt gzip member (size mismatch)");
+      }
+      end = inputPosition - (inputEnd - inputStart);
+    }
+
+    private long readInt() throws IOException {
+      return readByte() | readByte() << 8 | readByte() << 16 | (long) readByte() << 24;
+    }
+
+    private int readByte(CRC32 headerCrc) throws IOException {
+      int b = readByte();
+      headerCrc.update(b);
+      return b;
+    }
+
+    private int readByte() throws IOException {
+      if (inputStart == inputEnd) {
+        fill();
+      }
+      return input[inputStart++] & 0xff;
+    }
+
+    /** Reads the next part of the file once all input has been consumed. */
+    private void fill() throws IOException {
+      int n = channel.read(ByteBuffer.wrap(input), inputPosition);
+      if (n <= 0) {
+        throw new EOFException("Unexpected end of gzip member");
+      }
+      inputStart = 0;
+      inputEnd = n;
+      inputPosition += n;
+    }
+  }
+}
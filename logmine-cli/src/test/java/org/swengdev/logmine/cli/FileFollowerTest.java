@@ -0,0 +1,124 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for FileFollower. */
+public class FileFollowerTest {
+
+  /** Longest time to wait for lines that should arrive. */
+  private static final long DEADLINE_MILLIS = 10_000;
+
+  private static void append(Path file, String text) throws IOException {
+    Files.writeString(
+        file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /** Polls until the expected number of lines has arrived, or the deadline passes. */
+  private static List<String> poll(FileFollower follower, int expected)
+      throws IOException, InterruptedException {
+    List<String> lines = new ArrayList<>();
+    long deadline = System.nanoTime() + DEADLINE_MILLIS * 1_000_000;
+    while (lines.size() < expected && System.nanoTime() < deadline) {
+      follower.poll(100, lines::addAll);
+    }
+    return lines;
+  }
+
+  /** Polls long enough for the full check to run, returning whatever arrived. */
+  private static List<String> pollQuietly(FileFollower follower)
+      throws IOException, InterruptedException {
+    List<String> lines = new ArrayList<>();
+    long deadline = System.nanoTime() + 1_500_000_000L;
+    while (System.nanoTime() < deadline) {
+      follower.poll(100, lines::addAll);
+    }
+    return lines;
+  }
+
+  @Test
+  @Timeout(60)
+  public void testAppendedLines(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("app.log");
+    append(file, "first line\n\nsecond line\r\n");
+
+    try (FileFollower follower = new FileFollower(List.of(file))) {
+      assertEquals(List.of("first line", "second line"), poll(follower, 2));
+
+      // A line is only handed over once it is complete
+      append(file, "third ");
+      assertEquals(List.of(), pollQuietly(follower));
+      append(file, "line\nfourth line\n");
+      assertEquals(List.of("third line", "fourth line"), poll(follower, 2));
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  public void testRenameAndCreateRotation(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("app.log");
+    append(file, "line 1\n");
+
+    try (FileFollower follower = new FileFollower(List.of(file))) {
+      assertEquals(List.of("line 1"), poll(follower, 1));
+
+      // Written before the rotation and not read yet, the last line unterminated
+      append(file, "line 2\nline 3");
+      Files.move(file, directory.resolve("app.log.1"));
+      append(file, "line 4\n");
+
+      assertEquals(List.of("line 2", "line 3", "line 4"), poll(follower, 3));
+      append(file, "line 5\n");
+      assertEquals(List.of("line 5"), poll(follower, 1));
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  public void testCopyTruncateRotation(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("app.log");
+    append(file, "line 1\nline 2\n");
+
+    try (FileFollower follower = new FileFollower(List.of(file))) {
+      assertEquals(List.of("line 1", "line 2"), poll(follower, 2));
+
+      Files.copy(file, directory.resolve("app.log.1"), StandardCopyOption.REPLACE_EXISTING);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(0);
+      }
+      append(file, "line 3\n");
+
+      assertEquals(List.of("line 3"), poll(follower, 1));
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  public void testFileCreatedLater(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("late.log");
+    Path other = directory.resolve("other.log");
+    append(other, "other 1\n");
+
+    try (FileFollower follower = new FileFollower(List.of(file, other))) {
+      assertEquals(List.of("other 1"), poll(follower, 1));
+
+      append(file, "late 1\nlate 2\n");
+      assertEquals(List.of("late 1", "late 2"), poll(follower, 2));
+      append(other, "other 2\n");
+      assertEquals(List.of("other 2"), poll(follower, 1));
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/** Tests for InputReader. */
+public class InputReaderTest {
+
+  private static List<String> lines(int count, String prefix) {
+    List<String> lines = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      lines.add(prefix + " request " + i + " served");
+    }
+    return lines;
+  }
+
+  private static byte[] text(List<String> lines) {
+    return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  /** Writes a zstd frame holding the data in one raw block; the data must be under 256 bytes. */
+  private static byte[] zstd(byte[] data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd});
+    out.write(0x20); // Single segment, one byte of content size, no checksum
+    out.write(data.length);
+    int blockHeader = data.length << 3 | 1; // Last block, raw
+    out.writeBytes(new byte[] {(byte) blockHeader, (byte) (blockHeader >> 8), 0});
+    out.writeBytes(data);
+    return out.toByteArray();
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.writeBytes(part);
+    }
+    return out.toByteArray();
+  }
+
+  /** Reads all batches until the end of the input. */
+  private static List<String> readAll(InputReader reader) throws Exception {
+    List<String> lines = new ArrayList<>();
+    reader.start();
+    List<String> batch;
+    while ((batch = reader.nextBatch()) != null) {
+      assertTrue(batch.size() <= InputReader.BATCH_SIZE);
+      lines.addAll(batch);
+    }
+    return lines;
+  }
+
+  private static List<String> readFiles(List<Path> files) throws Exception {
+    try (InputReader reader = new InputReader(files, InputStream.nullInputStream())) {
+      return readAll(reader);
+    }
+  }
+
+  private static List<String> readStdin(byte[] stdin) throws Exception {
+    try (InputReader reader = new InputReader(List.of(), new ByteArrayInputStream(stdin))) {
+      return readAll(reader);
+    }
+  }
+
+  @Test
+  public void testBatchesSkipBlankLines() throws Exception {
+    List<String> lines = lines(2 * InputReader.BATCH_SIZE + 10, "INFO");
+    byte[] input = (String.join("\n\n  \n", lines) + "\r\n").getBytes(StandardCharsets.UTF_8);
+
+    try (InputReader reader = new InputReader(List.of(), new ByteArrayInputStream(input))) {
+      reader.start();
+      assertEquals(lines.subList(0, InputReader.BATCH_SIZE), reader.nextBatch());
+      assertEquals(
+          lines.subList(InputReader.BATCH_SIZE, 2 * InputReader.BATCH_SIZE), reader.nextBatch());
+      assertEquals(lines.subList(2 * InputReader.BATCH_SIZE, lines.size()), reader.nextBatch());
+      assertNull(reader.nextBatch());
+      assertNull(reader.nextBatch());
+    }
+  }
+
+  @Test
+  public void testFilesAreReadInOrder(@TempDir Path directory) throws Exception {
+    List<String> first = lines(1500, "INFO");
+    List<String> second = lines(10, "WARN");
+    Path a = Files.write(directory.resolve("a.log"), first);
+    Path b = Files.write(directory.resolve("b.log"), second);
+    Path empty = Files.createFile(directory.resolve("empty.log"));
+
+    List<String> expected = new ArrayList<>(first);
+    expected.addAll(second);
+    assertEquals(expected, readFiles(List.of(a, empty, b)));
+    assertEquals(List.of(), readStdin(new byte[0]));
+  }
+
+  @Test
+  @Timeout(30)
+  public void testReadFailureReachesConsumer() throws Exception {
+    IOException failure = new IOException("disk gone");
+    byte[] data = text(lines(3000, "INFO"));
+    InputStream failing =
+        new InputStream() {
+          private int position;
+
+          @Override
+          public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            if (position == data.length) {
+              throw failure;
+            }
+            int n = Math.min(len, data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+          }
+        };
+
+    try (InputReader reader = new InputReader(List.of(), failing)) {
+      reader.start();
+      // Full batches read before the failure are handed over, then the failure
+      assertEquals(InputReader.BATCH_SIZE, reader.nextBatch().size());
+      assertEquals(InputReader.BATCH_SIZE, reader.nextBatch().size());
+      assertSame(failure, assertThrows(IOException.class, reader::nextBatch));
+      assertNull(reader.nextBatch());
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  public void testRuntimeFailureIsReportedAsIOException() throws Exception {
+    IllegalStateException failure = new IllegalStateException("corrupt frame");
+    InputStream failing =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw failure;
+          }
+        };
+
+    try (InputReader reader = new InputReader(List.of(), failing)) {
+      reader.start();
+      IOException e = assertThrows(IOException.class, reader::nextBatch);
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  public void testMissingFileFails(@TempDir Path directory) throws Exception {
+    Path present = Files.write(directory.resolve("a.log"), lines(10, "INFO"));
+    try (InputReader reader =
+        new InputReader(
+            List.of(present, directory.resolve("missing.log")), InputStream.nullInputStream())) {
+      reader.start();
+      assertEquals(10, reader.nextBatch().size());
+      assertThrows(NoSuchFileException.class, reader::nextBatch);
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  public void testReaderErrorReachesConsumer() throws Exception {
+    // An Error used to end the reader without handing over the end of the input
+    Error failure = new OutOfMemoryError("read");
+    InputStream failing =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw failure;
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) {
+            throw failure;
+          }
+        };
+
+    try (InputReader reader = new InputReader(List.of(), failing)) {
+      reader.start();
+      assertSame(failure, assertThrows(OutOfMemoryError.class, reader::nextBatch));
+      assertNull(reader.nextBatch());
+    }
+  }
+
+  @Test
+  public void testGzipIsDetectedByContent(@TempDir Path directory) throws Exception {
+    List<String> first = lines(3000, "INFO");
+    List<String> second = lines(700, "WARN");
+    List<String> expected = new ArrayList<>(first);
+    expected.addAll(second);
+    byte[] members = concat(gzip(text(first)), gzip(new byte[0]), gzip(text(second)));
+
+    // Named without .gz: the magic bytes decide, not the name
+    Path file = Files.write(directory.resolve("app.log"), members);
+    Path plain = Files.write(directory.resolve("plain.log"), text(expected));
+    assertEquals(expected, readFiles(List.of(file)));
+    assertEquals(readFiles(List.of(plain)), readFiles(List.of(file)));
+    assertEquals(expected, readStdin(members));
+  }
+
+  @Test
+  public void testZstdIsDetectedByContent(@TempDir Path directory) throws Exception {
+    List<String> lines = List.of("INFO service started", "WARN cache cold", "INFO ready");
+    byte[] frame = zstd(text(lines));
+
+    Path file = Files.write(directory.resolve("app.log"), frame);
+    assertEquals(lines, readFiles(List.of(file)));
+    assertEquals(lines, readStdin(frame));
+  }
+
+  @Test
+  public void testCompressedAndPlainFilesMix(@TempDir Path directory) throws Exception {
+    List<String> first = lines(100, "INFO");
+    List<String> second = lines(5, "WARN");
+    Path gz = Files.write(directory.resolve("a.log.gz"), gzip(text(first)));
+    Path zst = Files.write(directory.resolve("b.log.zst"), zstd(text(second)));
+    Path plain = Files.write(directory.resolve("c.log"), text(second));
+
+    List<String> expected = new ArrayList<>(first);
+    expected.addAll(second);
+    expected.addAll(second);
+    assertEquals(expected, readFiles(List.of(gz, zst, plain)));
+  }
+}
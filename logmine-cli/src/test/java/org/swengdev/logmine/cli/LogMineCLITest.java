@@ -0,0 +1,80 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for LogMineCLI. */
+public class LogMineCLITest {
+
+  private static final String[] USERS = {
+    "alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi", "ivan", "judy"
+  };
+
+  /** Runs the CLI and returns what it printed to stdout. */
+  private static String run(String... args) {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+      assertEquals(0, execute(args));
+    } finally {
+      System.setOut(stdout);
+    }
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  private static int execute(String... args) {
+    return new CommandLine(new LogMineCLI()).execute(args);
+  }
+
+  @Test
+  public void testThreadsGiveSameOutputWithVariableLeadingToken(@TempDir Path directory)
+      throws IOException {
+    // The user name is the first digit-free token, so the lines are spread over the workers
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      lines.add(USERS[i % USERS.length] + " logged in from host [web]");
+    }
+    Path file = Files.write(directory.resolve("app.log"), lines, StandardCharsets.UTF_8);
+
+    String single = run("--json", "--threads", "1", file.toString());
+    assertTrue(single.contains("\"clusters_found\": 1"), single);
+    assertEquals(single, run("--json", "--threads", "4", file.toString()));
+    assertEquals(single, run("--json", "--threads", "8", file.toString()));
+  }
+
+  @Test
+  public void testThreadsGiveSameOutputForMixedTemplates(@TempDir Path directory)
+      throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      // Distinct counts, since patterns with equal support may be listed in another order
+      switch (i % 6) {
+        case 0, 1, 2 -> lines.add("2024-01-01 INFO Request " + i + " served in " + i % 97 + " ms");
+        case 3, 4 -> lines.add("2024-01-01 WARN Cache miss for key item-" + i);
+        default -> lines.add("2024-01-01 ERROR Connection to db-" + i % 5 + " refused");
+      }
+    }
+    Path file = Files.write(directory.resolve("app.log"), lines, StandardCharsets.UTF_8);
+
+    String single = run("--json", "--threads", "1", file.toString());
+    assertEquals(single, run("--json", "--threads", "4", file.toString()));
+  }
+
+  @Test
+  public void testFollowRejectsThreads(@TempDir Path directory) throws IOException {
+    Path file = Files.write(directory.resolve("app.log"), List.of("INFO started"));
+    assertEquals(1, execute("--follow", "--threads", "2", file.toString()));
+  }
+}
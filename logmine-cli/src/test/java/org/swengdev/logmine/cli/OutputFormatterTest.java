@@ -0,0 +1,50 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.LogPattern;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Tests for OutputFormatter. */
+public class OutputFormatterTest {
+
+  private static final LogPattern PATTERN =
+      new LogPattern(List.of("user", "***", "logged", "in"), 12, new StandardVariableDetector());
+
+  /** Runs an action and returns what it printed to stdout. */
+  private static String capture(Runnable action) {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+      action.run();
+    } finally {
+      System.setOut(stdout);
+    }
+    return output.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+  }
+
+  @Test
+  public void testPatternChanges() {
+    OutputFormatter formatter = new OutputFormatter(false, null);
+
+    assertEquals(
+        "NEW           12 | user *** logged in\n",
+        capture(() -> formatter.printPatternChange(PATTERN, 12, true)));
+    assertEquals(
+        "+5            12 | user *** logged in\n",
+        capture(() -> formatter.printPatternChange(PATTERN, 5, false)));
+    // A shrinking count used to be printed as +-3
+    assertEquals(
+        "-3            12 | user *** logged in\n",
+        capture(() -> formatter.printPatternChange(PATTERN, -3, false)));
+    assertEquals(
+        "REMOVED       12 | user *** logged in\n",
+        capture(() -> formatter.printPatternRemoved(PATTERN)));
+  }
+}
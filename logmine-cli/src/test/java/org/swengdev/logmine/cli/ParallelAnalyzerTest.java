@@ -0,0 +1,109 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.swengdev.logmine.LogMineConfig;
+import org.swengdev.logmine.LogPattern;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for ParallelAnalyzer. */
+public class ParallelAnalyzerTest {
+
+  private static List<String> lines(int count) {
+    List<String> lines = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      lines.add("INFO Request " + i + " served by worker " + i % 7);
+    }
+    return lines;
+  }
+
+  @Test
+  public void testFinishCountsEveryLine() throws InterruptedException {
+    try (ParallelAnalyzer analyzer = new ParallelAnalyzer(LogMineConfig.builder().build(), 3)) {
+      for (int i = 0; i < 10; i++) {
+        analyzer.add(lines(500));
+      }
+      List<LogPattern> patterns = analyzer.finish();
+      assertEquals(1, patterns.size());
+      assertEquals(5000, patterns.get(0).getSupportCount());
+    }
+  }
+
+  @Test
+  public void testSameInputGivesSamePatterns() throws InterruptedException {
+    String[] users = {"alice", "bob", "carol", "dave", "erin"};
+    List<String> batch = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      switch (i % 4) {
+        case 0 -> batch.add(users[i % users.length] + " logged in from host web-" + i % 3);
+        case 1 -> batch.add("WARN Cache miss for key item-" + i);
+        case 2 -> batch.add("ERROR Connection to db-" + i % 5 + " refused after " + i + " ms");
+        default -> batch.add("INFO Request " + i + " served by worker " + i % 7);
+      }
+    }
+
+    List<String> first = describe(analyze(batch, 4));
+    for (int run = 0; run < 3; run++) {
+      assertEquals(first, describe(analyze(batch, 4)));
+    }
+    assertEquals(describe(analyze(batch, 1)).size(), first.size());
+  }
+
+  private static List<LogPattern> analyze(List<String> lines, int threads)
+      throws InterruptedException {
+    LogMineConfig config = LogMineConfig.builder().build();
+    try (ParallelAnalyzer analyzer = new ParallelAnalyzer(config, threads)) {
+      for (int start = 0; start < lines.size(); start += 256) {
+        analyzer.add(lines.subList(start, Math.min(lines.size(), start + 256)));
+      }
+      return analyzer.finish();
+    }
+  }
+
+  private static List<String> describe(List<LogPattern> patterns) {
+    List<String> described = new ArrayList<>(patterns.size());
+    for (LogPattern pattern : patterns) {
+      described.add(pattern.getSupportCount() + " " + pattern.getPatternString());
+    }
+    return described;
+  }
+
+  @Test
+  @Timeout(30)
+  public void testWorkerErrorReachesCaller() {
+    // An Error used to end the worker silently, leaving the caller waiting on its full queue
+    LogMineConfig config =
+        LogMineConfig.builder()
+            .withVariableDetector(
+                new StandardVariableDetector() {
+                  @Override
+                  public boolean isVariable(String token) {
+                    if (token.equals("boom")) {
+                      throw new StackOverflowError("boom");
+                    }
+                    return super.isVariable(token);
+                  }
+                })
+            .build();
+
+    try (ParallelAnalyzer analyzer = new ParallelAnalyzer(config, 2)) {
+      StackOverflowError error =
+          assertThrows(
+              StackOverflowError.class,
+              () -> {
+                analyzer.add(List.of("boom boom boom"));
+                for (int i = 0; i < 1000; i++) {
+                  analyzer.add(lines(100));
+                }
+                analyzer.finish();
+              });
+      assertEquals("boom", error.getMessage());
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package org.swengdev.logmine.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** Tests for ParallelGzipInputStream, checked against {@link GZIPInputStream}. */
+public class ParallelGzipInputStreamTest {
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+  @AfterEach
+  public void shutDown() {
+    workers.shutdownNow();
+  }
+
+  private static byte[] text(int lines, int seed) {
+    Random random = new Random(seed);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      text.append("INFO Request ").append(random.nextInt(100000)).append(" served\n");
+    }
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  /** Writes a member with the given header flags, deflating at the given level. */
+  private static byte[] member(byte[] data, int flags, boolean validHeaderCrc, int level) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(new byte[] {0x1f, (byte) 0x8b, 8, (byte) flags, 0, 0, 0, 0, 0, 3});
+    if ((flags & FEXTRA) != 0) {
+      out.writeBytes(new byte[] {4, 0, 'a', 'b', 2, 0});
+    }
+    if ((flags & FNAME) != 0) {
+      out.writeBytes("app.log\0".getBytes(StandardCharsets.ISO_8859_1));
+    }
+    if ((flags & FCOMMENT) != 0) {
+      out.writeBytes("rotated\0".getBytes(StandardCharsets.ISO_8859_1));
+    }
+    if ((flags & FHCRC) != 0) {
+      CRC32 headerCrc = new CRC32();
+      headerCrc.update(out.toByteArray());
+      int value = (int) headerCrc.getValue() + (validHeaderCrc ? 0 : 1);
+      out.writeBytes(new byte[] {(byte) value, (byte) (value >> 8)});
+    }
+
+    Deflater deflater = new Deflater(level, true);
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buffer = new byte[1 << 16];
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    writeInt(out, (int) crc.getValue());
+    writeInt(out, data.length);
+    return out.toByteArray();
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int value) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      out.write(value >>> shift);
+    }
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.writeBytes(part);
+    }
+    return out.toByteArray();
+  }
+
+  /** Reads a file with GZIPInputStream, returning null if that fails. */
+  private static byte[] readWithJdk(Path file) {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      return in.readAllBytes();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private byte[] readParallel(Path file, int window) throws IOException {
+    try (InputStream in = new ParallelGzipInputStream(FileChannel.open(file), workers, window)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[7919];
+      int n;
+      while ((n = in.read(buffer, 0, buffer.length)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  /** Checks that both streams give the same bytes, or both fail. */
+  private void assertSameAsJdk(Path directory, byte[] content) throws IOException {
+    Path file = Files.write(directory.resolve("input.gz"), content);
+    byte[] expected = readWithJdk(file);
+    for (int window : new int[] {1, 8}) {
+      if (expected == null) {
+        assertThrows(IOException.class, () -> readParallel(file, window));
+      } else {
+        assertArrayEquals(expected, readParallel(file, window));
+      }
+    }
+  }
+
+  @Test
+  public void testMembers(@TempDir Path directory) throws IOException {
+    byte[] first = text(2000, 1);
+    byte[] second = text(10, 2);
+    Path file = Files.write(directory.resolve("input.gz"), concat(gzip(first), gzip(second)));
+    assertArrayEquals(concat(first, second), readParallel(file, 4));
+
+    assertSameAsJdk(directory, gzip(first));
+    assertSameAsJdk(directory, concat(gzip(first), gzip(new byte[0]), gzip(second)));
+    assertSameAsJdk(directory, concat(gzip(second), gzip(second), gzip(second), gzip(second)));
+  }
+
+  @Test
+  public void testMemberLargerThanWorkerBuffer(@TempDir Path directory) throws IOException {
+    assertSameAsJdk(directory, concat(gzip(text(400_000, 3)), gzip(text(100, 4))));
+  }
+
+  @Test
+  public void testHeaderFields(@TempDir Path directory) throws IOException {
+    byte[] data = text(100, 5);
+    int all = FHCRC | FEXTRA | FNAME | FCOMMENT;
+    assertSameAsJdk(directory, member(data, all, true, 6));
+    assertSameAsJdk(directory, concat(gzip(data), member(data, FNAME | FCOMMENT, true, 6)));
+    assertSameAsJdk(directory, member(data, all, false, 6));
+  }
+
+  @Test
+  public void testHeaderBytesInsideMember(@TempDir Path directory) throws IOException {
+    // Stored blocks keep the data as is, so the scan finds headers inside the member
+    byte[] fake = concat(gzip(text(50, 6)), "garbage".getBytes(StandardCharsets.UTF_8));
+    byte[] data = concat(text(100, 7), fake, fake, text(100, 8));
+    assertSameAsJdk(directory, concat(member(data, 0, true, 0), gzip(text(10, 9))));
+  }
+
+  @Test
+  public void testTrailingBytes(@TempDir Path directory) throws IOException {
+    byte[] data = gzip(text(500, 10));
+    byte[] magic = {0x1f, (byte) 0x8b, 8};
+    assertSameAsJdk(directory, concat(data, "trailing garbage\n".getBytes(StandardCharsets.UTF_8)));
+    assertSameAsJdk(directory, concat(data, new byte[4096]));
+    assertSameAsJdk(directory, concat(data, magic));
+    assertSameAsJdk(directory, concat(data, magic, new byte[] {0, 0, 0}));
+    assertSameAsJdk(directory, concat(data, magic, new byte[] {FNAME, 0, 0, 0, 0, 0, 3, 'a'}));
+    assertSameAsJdk(directory, concat(data, member(text(5, 11), FHCRC, false, 6)));
+    assertSameAsJdk(directory, concat(data, new byte[] {0x1f, (byte) 0x8b, 7, 0}));
+
+    // Trailing bytes that are read as a member must still be one
+    byte[] corrupt = gzip(text(500, 12));
+    corrupt[corrupt.length / 2] ^= 0x55;
+    assertSameAsJdk(directory, concat(data, corrupt));
+  }
+
+  @Test
+  public void testInvalidInput(@TempDir Path directory) throws IOException {
+    byte[] data = gzip(text(500, 13));
+    byte[] truncated = new byte[data.length - 5];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    assertSameAsJdk(directory, truncated);
+
+    byte[] badCrc = data.clone();
+    badCrc[badCrc.length - 6] ^= 1;
+    assertSameAsJdk(directory, badCrc);
+
+    assertSameAsJdk(directory, new byte[] {0x1f, (byte) 0x8b, 8, 0});
+    assertSameAsJdk(directory, concat(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0}, data));
+
+    // A truncated first header is reported rather than read as empty input
+    Path file = Files.write(directory.resolve("header.gz"), new byte[] {0x1f, (byte) 0x8b, 8});
+    IOException e = assertThrows(IOException.class, () -> readParallel(file, 2));
+    assertNotNull(e.getMessage());
+    assertEquals(EOFException.class, e.getClass());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Character view of an ASCII region of a byte buffer, so a line read from bytes can be
+ * preprocessed and tokenized without decoding it into a string first.
+ *
+ * <p>The view can be pointed at another region with {@link #set(ByteBuffer, int, int)}, so one
+ * instance serves every line of a buffer. Only {@link #toString()} copies characters.
+ *
+ * <p>Not thread-safe.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link LogMineProcessor}.
+ */
+final class AsciiText implements CharSequence {
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int length;
+
+  /**
+   * Points the view at a region of a buffer.
+   *
+   * @param buffer Buffer holding only ASCII bytes in the region
+   * @param start Index of the region's first byte
+   * @param end Index after the region's last byte
+   * @return This view
+   */
+  AsciiText set(ByteBuffer buffer, int start, int end) {
+    this.buffer = buffer;
+    this.offset = start;
+    this.length = end - start;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) buffer.get(offset + Objects.checkIndex(index, length));
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    Objects.checkFromToIndex(start, end, length);
+    return new AsciiText().set(buffer, offset + start, offset + end);
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
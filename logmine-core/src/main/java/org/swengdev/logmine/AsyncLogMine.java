@@ -0,0 +1,420 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous front end for a {@link LogMine}: producers only enqueue, and a dedicated worker
+ * thread does the preprocessing and clustering.
+ *
+ * <p>{@link #addLog(String)} puts the log on a bounded queue and returns. The worker drains the
+ * queue in micro-batches of up to {@code batchSize} logs, waiting at most {@code linger} for a
+ * batch to fill, and hands each batch to {@link LogMine#addLogs(List)}, so the LogMine lock is
+ * taken once per batch instead of once per log. When the queue is full, the configured {@link
+ * BackpressurePolicy} decides whether the producer waits or the log is dropped.
+ *
+ * <p>Reads ({@link #getSnapshot()}, {@link #getCurrentPatterns()}, {@link #matchPattern(String)},
+ * {@link #isAnomaly(String)}, {@link #getStats()}) go to the underlying LogMine and see the logs
+ * the worker has processed so far. Call {@link #flush()} to wait for everything added before it.
+ *
+ * <h2>Usage Example</h2>
+ *
+ * <pre>{@code
+ * try (AsyncLogMine logMine =
+ *     AsyncLogMine.builder(new LogMine(ProcessingMode.STREAMING))
+ *         .queueCapacity(65536)
+ *         .batchSize(512)
+ *         .linger(Duration.ofMillis(5))
+ *         .backpressurePolicy(BackpressurePolicy.DROP_NEWEST)
+ *         .build()) {
+ *
+ *   // Called from application logging threads: one enqueue
+ *   logMine.addLog(line);
+ *
+ *   List<LogPattern> patterns = logMine.getCurrentPatterns();
+ * }
+ * }</pre>
+ *
+ * <p>This class is thread-safe. Close it to stop the worker; logs still queued are processed
+ * first.
+ *
+ * @see LogMine
+ * @see BackpressurePolicy
+ */
+public class AsyncLogMine implements AutoCloseable {
+
+  private final LogMine logMine;
+  private final BlockingQueue<String> queue;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final BackpressurePolicy policy;
+  private final int sampleRate;
+  private final Thread worker;
+  private final AtomicLong accepted; // Logs put on the queue
+  private final AtomicLong dropped; // Logs rejected because the queue was full
+  private final AtomicLong overflows; // Arrivals at a full queue, for sampling
+  private final Object progress; // Notified after every batch
+  private volatile long processed; // Logs handed to the LogMine, written by the worker only
+  private volatile boolean closed;
+
+  private AsyncLogMine(Builder builder) {
+    this.logMine = builder.logMine;
+    this.queue = new LinkedBlockingQueue<>(builder.queueCapacity);
+    this.batchSize = builder.batchSize;
+    this.lingerNanos = builder.linger.toNanos();
+    this.policy = builder.policy;
+    this.sampleRate = builder.sampleRate;
+    this.accepted = new AtomicLong();
+    this.dropped = new AtomicLong();
+    this.overflows = new AtomicLong();
+    this.progress = new Object();
+    this.worker = new Thread(this::drainLoop, "logmine-ingest");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Creates a builder for an asynchronous front end of a LogMine.
+   *
+   * @param logMine The LogMine that the worker feeds
+   * @return A new Builder
+   */
+  public static Builder builder(LogMine logMine) {
+    return new Builder(logMine);
+  }
+
+  /**
+   * Queues a log message for processing. When the queue is full the {@link BackpressurePolicy}
+   * applies.
+   *
+   * @param logMessage The log message; null messages are ignored, and empty ones are skipped by the
+   *     worker
+   * @return true if the log was queued, false if it was dropped
+   * @throws IllegalStateException if this instance is closed
+   */
+  public boolean addLog(String logMessage) {
+    if (logMessage == null) {
+      return false;
+    }
+    if (closed) {
+      throw new IllegalStateException("AsyncLogMine is closed");
+    }
+    if (queue.offer(logMessage)) {
+      accepted.incrementAndGet();
+      return true;
+    }
+
+    boolean wait =
+        policy == BackpressurePolicy.BLOCK
+            || (policy == BackpressurePolicy.SAMPLE
+                && overflows.getAndIncrement() % sampleRate == 0);
+    if (wait) {
+      try {
+        queue.put(logMessage);
+        accepted.incrementAndGet();
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    dropped.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Queues multiple log messages, one {@link #addLog(String)} each.
+   *
+   * @param logMessages List of log messages to add
+   */
+  public void addLogs(List<String> logMessages) {
+    if (logMessages == null) {
+      return;
+    }
+    for (String logMessage : logMessages) {
+      addLog(logMessage);
+    }
+  }
+
+  /**
+   * Waits until every log queued before this call has been processed.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void flush() throws InterruptedException {
+    long target = accepted.get();
+    synchronized (progress) {
+      while (processed < target && worker.isAlive()) {
+        progress.wait(100);
+      }
+    }
+  }
+
+  /**
+   * Stops accepting logs, processes the logs still queued and stops the worker. Calling it again
+   * has no effect.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    boolean interrupted = false;
+    while (worker.isAlive()) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Gets the latest pattern snapshot. See {@link LogMine#getSnapshot()}.
+   *
+   * @return Immutable snapshot of the processed logs' patterns
+   */
+  public PatternSnapshot getSnapshot() {
+    return logMine.getSnapshot();
+  }
+
+  /**
+   * Gets the current patterns. See {@link LogMine#getCurrentPatterns()}.
+   *
+   * @return List of current patterns
+   */
+  public List<LogPattern> getCurrentPatterns() {
+    return logMine.getCurrentPatterns();
+  }
+
+  /**
+   * Finds the pattern that matches a log message. See {@link LogMine#matchPattern(String)}.
+   *
+   * @param logMessage The log message to match
+   * @return The matching pattern, or null if no match
+   */
+  public LogPattern matchPattern(String logMessage) {
+    return logMine.matchPattern(logMessage);
+  }
+
+  /**
+   * Checks if a log message is anomalous. See {@link LogMine#isAnomaly(String)}.
+   *
+   * @param logMessage The log message to check
+   * @return true if the log is anomalous (no pattern match)
+   */
+  public boolean isAnomaly(String logMessage) {
+    return logMine.isAnomaly(logMessage);
+  }
+
+  /**
+   * Gets statistics of the underlying LogMine. Queued logs are not counted yet.
+   *
+   * @return Statistics object with metrics
+   */
+  public LogMine.Stats getStats() {
+    return logMine.getStats();
+  }
+
+  /**
+   * Gets the LogMine the worker feeds.
+   *
+   * @return The underlying LogMine
+   */
+  public LogMine getLogMine() {
+    return logMine;
+  }
+
+  /**
+   * Gets the number of logs dropped because the queue was full.
+   *
+   * @return Dropped log count
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Gets the number of logs waiting in the queue.
+   *
+   * @return Queue size
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  /** Worker loop: collect a micro-batch, hand it over, repeat until closed and drained. */
+  private void drainLoop() {
+    List<String> batch = new ArrayList<>(batchSize);
+    while (!closed || !queue.isEmpty()) {
+      try {
+        collectBatch(batch);
+      } catch (InterruptedException e) {
+        // Only close() ends the worker; anything already collected is still processed
+      }
+      if (batch.isEmpty()) {
+        continue;
+      }
+
+      int size = batch.size();
+      try {
+        batch.removeIf(String::isBlank);
+        logMine.addLogs(batch);
+      } catch (RuntimeException e) {
+        // Don't stop the worker on errors
+        System.err.println("Error processing log batch: " + e.getMessage());
+      }
+      batch.clear();
+
+      synchronized (progress) {
+        processed += size;
+        progress.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits for the first log, then keeps collecting until the batch is full or the linger time has
+   * passed. Returns with an empty batch from time to time so the loop can notice {@link #close()}.
+   */
+  private void collectBatch(List<String> batch) throws InterruptedException {
+    String first = queue.poll(100, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    queue.drainTo(batch, batchSize - batch.size());
+
+    long deadline = System.nanoTime() + lingerNanos;
+    while (batch.size() < batchSize) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        break;
+      }
+      String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+      queue.drainTo(batch, batchSize - batch.size());
+    }
+  }
+
+  /** Builder for {@link AsyncLogMine}. */
+  public static class Builder {
+    private final LogMine logMine;
+    private int queueCapacity = 65536;
+    private int batchSize = 512;
+    private Duration linger = Duration.ofMillis(5);
+    private BackpressurePolicy policy = BackpressurePolicy.BLOCK;
+    private int sampleRate = 10;
+
+    private Builder(LogMine logMine) {
+      if (logMine == null) {
+        throw new IllegalArgumentException("LogMine cannot be null");
+      }
+      this.logMine = logMine;
+    }
+
+    /**
+     * Sets the maximum number of queued logs.
+     *
+     * @param capacity Queue capacity (default 65536)
+     * @return this Builder instance
+     */
+    public Builder queueCapacity(int capacity) {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("Queue capacity must be at least 1");
+      }
+      this.queueCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of logs the worker hands to the LogMine at once.
+     *
+     * @param size Micro-batch size (default 512)
+     * @return this Builder instance
+     */
+    public Builder batchSize(int size) {
+      if (size < 1) {
+        throw new IllegalArgumentException("Batch size must be at least 1");
+      }
+      this.batchSize = size;
+      return this;
+    }
+
+    /**
+     * Sets how long the worker waits for a micro-batch to fill before processing it anyway.
+     *
+     * @param linger Maximum wait after the first log of a batch (default 5 ms)
+     * @return this Builder instance
+     */
+    public Builder linger(Duration linger) {
+      if (linger == null || linger.isNegative()) {
+        throw new IllegalArgumentException("Linger must be zero or positive");
+      }
+      this.linger = linger;
+      return this;
+    }
+
+    /**
+     * Sets what happens when the queue is full.
+     *
+     * @param policy Backpressure policy (default {@link BackpressurePolicy#BLOCK})
+     * @return this Builder instance
+     */
+    public Builder backpressurePolicy(BackpressurePolicy policy) {
+      if (policy == null) {
+        throw new IllegalArgumentException("Backpressure policy cannot be null");
+      }
+      this.policy = policy;
+      return this;
+    }
+
+    /**
+     * Sets which share of the logs arriving at a full queue is kept under {@link
+     * BackpressurePolicy#SAMPLE}: one in {@code rate}.
+     *
+     * @param rate Sampling rate (default 10)
+     * @return this Builder instance
+     */
+    public Builder sampleRate(int rate) {
+      if (rate < 1) {
+        throw new IllegalArgumentException("Sample rate must be at least 1");
+      }
+      this.sampleRate = rate;
+      return this;
+    }
+
+    /**
+     * Builds the front end and starts its worker thread.
+     *
+     * @return A new AsyncLogMine
+     */
+    public AsyncLogMine build() {
+      return new AsyncLogMine(this);
+    }
+  }
+}
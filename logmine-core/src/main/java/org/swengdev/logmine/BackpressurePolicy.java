@@ -0,0 +1,37 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+/**
+ * What {@link AsyncLogMine#addLog(String)} does when the ingestion queue is full.
+ *
+ * @see AsyncLogMine.Builder#backpressurePolicy(BackpressurePolicy)
+ */
+public enum BackpressurePolicy {
+  /** Wait until the worker frees space. No log is lost, but producers slow down to its pace. */
+  BLOCK,
+
+  /** Drop the new log and count it. Producers never wait. */
+  DROP_NEWEST,
+
+  /**
+   * Keep every n-th log that arrives while the queue is full, waiting for space for it, and drop
+   * and count the others. Patterns keep seeing all message kinds under overload while producers
+   * wait only for a fraction of their logs.
+   */
+  SAMPLE
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterates over the lines of UTF-8 text in a byte buffer without decoding them.
+ *
+ * <p>Lines end at {@code \n}, optionally preceded by {@code \r}, which belongs to neither line. A
+ * final line needs no terminator, and a terminator at the very end does not start an empty line.
+ * The scan reads eight bytes at a time and finds a newline in them with a few arithmetic
+ * operations, noting along the way whether any byte outside ASCII was seen, so ASCII lines can be
+ * used as {@link AsciiText} directly and only the others have to be decoded.
+ *
+ * <p>The buffer's position and limit are read once and never changed. Not thread-safe.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link LogMineProcessor}.
+ */
+final class ByteLines {
+
+  private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+  private static final long LOW_BITS = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  private final ByteBuffer buffer; // Little-endian, so the first byte is the lowest of a word
+  private final int limit;
+  private int position;
+  private int start;
+  private int end;
+  private boolean ascii;
+
+  /**
+   * Creates an iterator over the bytes between the buffer's position and limit.
+   *
+   * @param buffer UTF-8 text
+   */
+  ByteLines(ByteBuffer buffer) {
+    this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    this.position = buffer.position();
+    this.limit = buffer.limit();
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * @return true if there is another line, false at the end of the buffer
+   */
+  boolean next() {
+    if (position >= limit) {
+      return false;
+    }
+
+    int i = position;
+    int newline = -1;
+    long seen = 0; // Bytes of the line ORed together, to test the high bit
+    while (i + Long.BYTES <= limit) {
+      long word = buffer.getLong(i);
+      long x = word ^ NEWLINES;
+      long found = (x - LOW_BITS) & ~x & HIGH_BITS; // The lowest set bit marks the first newline
+      if (found != 0) {
+        int bytes = Long.numberOfTrailingZeros(found) >>> 3;
+        seen |= word & ((1L << (bytes << 3)) - 1);
+        newline = i + bytes;
+        break;
+      }
+      seen |= word;
+      i += Long.BYTES;
+    }
+    if (newline < 0) {
+      for (; i < limit; i++) {
+        byte b = buffer.get(i);
+        if (b == '\n') {
+          newline = i;
+          break;
+        }
+        seen |= b;
+      }
+    }
+
+    start = position;
+    end = newline >= 0 ? newline : limit;
+    position = newline >= 0 ? newline + 1 : limit;
+    if (newline > start && buffer.get(newline - 1) == '\r') {
+      end--;
+    }
+    ascii = (seen & HIGH_BITS) == 0;
+    return true;
+  }
+
+  /**
+   * Gets the index of the current line's first byte.
+   *
+   * @return Start index in the buffer
+   */
+  int start() {
+    return start;
+  }
+
+  /**
+   * Gets the index after the current line's last byte, excluding the line terminator.
+   *
+   * @return End index in the buffer
+   */
+  int end() {
+    return end;
+  }
+
+  /**
+   * Checks whether the current line is plain ASCII.
+   *
+   * @return true if no byte of the line has its high bit set
+   */
+  boolean isAscii() {
+    return ascii;
+  }
+
+  /**
+   * Checks whether the current line has nothing but whitespace and control characters, the lines
+   * {@link String#trim()} reduces to nothing.
+   *
+   * @return true if the line is blank
+   */
+  boolean isBlank() {
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b > ' ' || b < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes the current line. Malformed input is replaced, as by {@link String#String(byte[],
+   * java.nio.charset.Charset)}.
+   *
+   * @return The line
+   */
+  String decode() {
+    byte[] bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Splits a buffer into consecutive slices that each end after a newline, except the last. Slices
+   * are about equally large unless a line is longer than a slice.
+   *
+   * @param buffer UTF-8 text between the position and limit
+   * @param parts Number of slices wanted
+   * @return Between one and {@code parts} non-empty slices in order, or none for an empty buffer
+   */
+  static List<ByteBuffer> split(ByteBuffer buffer, int parts) {
+    List<ByteBuffer> slices = new ArrayList<>(parts);
+    int from = buffer.position();
+    int limit = buffer.limit();
+    long target = Math.max(1, ((long) limit - from + parts - 1) / parts);
+    while (from < limit) {
+      int to = (int) Math.min(limit, from + target);
+      while (to < limit && buffer.get(to - 1) != '\n') {
+        to++;
+      }
+      slices.add(buffer.slice(from, to - from));
+      from = to;
+    }
+    return slices;
+  }
+}
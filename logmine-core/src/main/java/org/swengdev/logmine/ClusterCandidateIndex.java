@@ -0,0 +1,493 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import org.swengdev.logmine.strategy.VariableDetector;
+
+/**
+ * Candidate index that narrows down which clusters a new message has to be compared against.
+ *
+ * <p>Clusters are bucketed by the token count of their representative, and each length bucket
+ * keeps a hash map from every constant token to the clusters containing it. A lookup only visits
+ * length buckets whose size difference still allows the similarity threshold to be reached. Within
+ * a bucket, a cluster within the edit budget must share a minimum number of constant tokens with
+ * the message, so only the clusters listed under the message's rarest constant tokens are
+ * visited; the most common tokens are skipped as long as the remaining ones still have to match.
+ * The visited clusters are then dropped if their leading tokens alone already cost too many edits
+ * or their constant tokens overlap too little with the message. Every check is a lower bound on
+ * the edit distance, so no cluster that could pass {@link LogCluster#addMessage(LogMessage,
+ * double)} is ever dropped.
+ *
+ * <p>Candidates are returned in cluster creation order. A first-match scan over them therefore
+ * picks exactly the cluster that a linear scan over all clusters would pick.
+ *
+ * <p>The constant-token bounds are only sound if a token which is not variable matches nothing but
+ * an identical token, and a variable token never matches a constant one. They are applied when the
+ * detector promises this with {@link VariableDetector#constantsMatchExactly()}; otherwise a lookup
+ * returns every cluster of a length within reach.
+ *
+ * <p>An index is not thread-safe; lookups reuse per-thread scratch buffers, so indexes owned by
+ * different threads can be queried concurrently.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link
+ * LogMineProcessor}.
+ */
+class ClusterCandidateIndex {
+
+  /** Number of leading tokens compared by the prefix bound. */
+  private static final int PREFIX_LENGTH = 3;
+
+  /** Buffers reused by the lookups of one thread. */
+  private static final ThreadLocal<Query> QUERY = ThreadLocal.withInitial(Query::new);
+
+  private final TreeMap<Integer, LengthBucket> buckets;
+  private final boolean boundByConstants;
+  private int nextOrdinal;
+  private int size;
+  private int visitStamp;
+
+  /**
+   * Creates an empty index.
+   *
+   * @param variableDetector Detector the clusters compare tokens with
+   */
+  ClusterCandidateIndex(VariableDetector variableDetector) {
+    this.buckets = new TreeMap<>();
+    this.boundByConstants = variableDetector.constantsMatchExactly();
+  }
+
+  /**
+   * Adds a cluster to the index. Clusters must be added in creation order.
+   *
+   * @param cluster The cluster to index by its representative
+   */
+  void add(LogCluster cluster) {
+    insert(new Entry(nextOrdinal++, cluster, new Profile(cluster.getCentroid())));
+    size++;
+  }
+
+  /**
+   * Returns the clusters that could reach {@code threshold} similarity with {@code message}, in the
+   * order they were added.
+   *
+   * @param message The message being clustered
+   * @param threshold Similarity threshold (0.0-1.0)
+   * @return Candidate clusters in creation order
+   */
+  List<LogCluster> candidates(LogMessage message, double threshold) {
+    if (size == 0) {
+      return List.of();
+    }
+
+    Query query = QUERY.get();
+    query.load(message);
+    int m = query.length;
+    int lowest = m - LogMessage.maxDistance(m, threshold);
+    int stamp = nextVisitStamp();
+
+    List<Entry> matches = query.matches;
+    matches.clear();
+    for (LengthBucket bucket : buckets.tailMap(lowest, true).values()) {
+      int n = bucket.length;
+      int maxLength = Math.max(m, n);
+      int budget = LogMessage.maxDistance(maxLength, threshold);
+
+      // The budget grows by at most one per extra token, so once a longer bucket is out of reach
+      // every following one is too.
+      if (n > m && n - m > budget) {
+        break;
+      }
+
+      // Matched pairs are identical constants or variable pairs, and at least this many constant
+      // pairs are needed to stay within the budget
+      int needed = maxLength - budget - query.variableCount;
+      if (!boundByConstants) {
+        matches.addAll(bucket.entries);
+        continue;
+      }
+      if (needed <= 0) {
+        for (Entry entry : bucket.entries) {
+          query.collect(entry, maxLength, budget);
+        }
+        continue;
+      }
+
+      int probes = query.selectProbes(bucket, needed);
+      for (int p = 0; p < probes; p++) {
+        for (Entry entry : query.probes[p]) {
+          if (entry.visited != stamp) {
+            entry.visited = stamp;
+            query.collect(entry, maxLength, budget);
+          }
+        }
+      }
+    }
+
+    List<LogCluster> result = new ArrayList<>(matches.size());
+    if (matches.size() > 1) {
+      matches.sort((e1, e2) -> Integer.compare(e1.ordinal, e2.ordinal));
+    }
+    for (Entry entry : matches) {
+      result.add(entry.cluster);
+    }
+    matches.clear();
+    query.release();
+    return result;
+  }
+
+  /**
+   * Removes every indexed cluster matching the filter.
+   *
+   * @param filter Predicate selecting the clusters to drop
+   */
+  void removeIf(Predicate<LogCluster> filter) {
+    extract(filter);
+  }
+
+  /**
+   * Re-indexes clusters whose representative changed. They keep their place in creation order.
+   *
+   * @param changed Predicate selecting the clusters to re-index
+   */
+  void reindex(Predicate<LogCluster> changed) {
+    // Candidates are sorted by ordinal, so buckets need not stay in insertion order
+    for (Entry entry : extract(changed)) {
+      insert(new Entry(entry.ordinal, entry.cluster, new Profile(entry.cluster.getCentroid())));
+      size++;
+    }
+  }
+
+  /** Removes all clusters from the index. */
+  void clear() {
+    buckets.clear();
+    size = 0;
+  }
+
+  /**
+   * Gets the number of indexed clusters.
+   *
+   * @return Cluster count
+   */
+  int size() {
+    return size;
+  }
+
+  private void insert(Entry entry) {
+    buckets.computeIfAbsent(entry.profile.length, LengthBucket::new).add(entry);
+  }
+
+  /** Removes and returns the entries of the clusters matching the filter. */
+  private List<Entry> extract(Predicate<LogCluster> filter) {
+    List<Entry> removed = new ArrayList<>();
+    Iterator<LengthBucket> lengthBuckets = buckets.values().iterator();
+    while (lengthBuckets.hasNext()) {
+      LengthBucket bucket = lengthBuckets.next();
+      int before = removed.size();
+      bucket.entries.removeIf(
+          entry -> {
+            if (!filter.test(entry.cluster)) {
+              return false;
+            }
+            removed.add(entry);
+            return true;
+          });
+      if (removed.size() == before) {
+        continue;
+      }
+      if (bucket.entries.isEmpty()) {
+        lengthBuckets.remove();
+      } else {
+        bucket.unlink(removed.subList(before, removed.size()));
+      }
+    }
+    size -= removed.size();
+    return removed;
+  }
+
+  /** Starts a lookup, returning a stamp no entry carries yet. */
+  private int nextVisitStamp() {
+    if (++visitStamp == 0) {
+      // Wrapped around: forget the old stamps so none of them repeats
+      for (LengthBucket bucket : buckets.values()) {
+        for (Entry entry : bucket.entries) {
+          entry.visited = 0;
+        }
+      }
+      visitStamp = 1;
+    }
+    return visitStamp;
+  }
+
+  /**
+   * Lower bound on the edit distance of two sequences given only their leading tokens. Any
+   * alignment has to leave the leading box through its last row or last column, so the cheapest
+   * cell on that border bounds the cost of the whole alignment.
+   */
+  private static int prefixLowerBound(
+      String[] prefix1, int rows, List<String> prefix2, int[] previous, int[] current) {
+    int cols = prefix2.size();
+
+    for (int j = 0; j <= cols; j++) {
+      previous[j] = j;
+    }
+    int bound = previous[cols];
+
+    for (int i = 1; i <= rows; i++) {
+      current[0] = i;
+      for (int j = 1; j <= cols; j++) {
+        int cost = Objects.equals(prefix1[i - 1], prefix2.get(j - 1)) ? 0 : 1;
+        current[j] =
+            Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      bound = Math.min(bound, current[cols]);
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+
+    for (int j = 0; j <= cols; j++) {
+      bound = Math.min(bound, previous[j]);
+    }
+    return bound;
+  }
+
+  /** Indexed cluster together with its insertion ordinal and token profile. */
+  private static final class Entry {
+    private final int ordinal;
+    private final LogCluster cluster;
+    private final Profile profile;
+    private int visited; // Stamp of the last lookup that collected this entry
+
+    Entry(int ordinal, LogCluster cluster, Profile profile) {
+      this.ordinal = ordinal;
+      this.cluster = cluster;
+      this.profile = profile;
+    }
+  }
+
+  /** Clusters of one representative length, and the clusters containing each constant token. */
+  private static final class LengthBucket {
+    private final int length;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, List<Entry>> postings = new HashMap<>();
+
+    LengthBucket(int length) {
+      this.length = length;
+    }
+
+    void add(Entry entry) {
+      entries.add(entry);
+      for (String token : entry.profile.constantCounts.keySet()) {
+        postings.computeIfAbsent(token, t -> new ArrayList<>()).add(entry);
+      }
+    }
+
+    /** Drops removed entries from the postings of their tokens. */
+    void unlink(List<Entry> removed) {
+      Set<String> tokens = new HashSet<>();
+      for (Entry entry : removed) {
+        tokens.addAll(entry.profile.constantCounts.keySet());
+      }
+      Set<Entry> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+      dropped.addAll(removed);
+      for (String token : tokens) {
+        List<Entry> posting = postings.get(token);
+        posting.removeIf(dropped::contains);
+        if (posting.isEmpty()) {
+          postings.remove(token);
+        }
+      }
+    }
+  }
+
+  /**
+   * Token statistics used by the bounds: the length, the leading tokens, the number of variable
+   * tokens and the multiset of constant tokens.
+   */
+  private static final class Profile {
+    private final int length;
+    private final List<String> prefix;
+    private final int variableCount;
+    private final Map<String, Integer> constantCounts;
+
+    Profile(LogMessage message) {
+      this.length = message.getLength();
+      this.constantCounts = new HashMap<>();
+
+      String[] leading = new String[Math.min(PREFIX_LENGTH, length)];
+      int variables = 0;
+      for (int i = 0; i < length; i++) {
+        String token = message.getToken(i);
+        boolean variable = message.isVariableToken(i);
+        if (variable) {
+          variables++;
+        } else {
+          constantCounts.merge(token, 1, Integer::sum);
+        }
+        if (i < leading.length) {
+          // Variable tokens only ever match other variable tokens, so null stands for all of them
+          leading[i] = variable ? null : token;
+        }
+      }
+
+      this.prefix = Arrays.asList(leading);
+      this.variableCount = variables;
+    }
+  }
+
+  /**
+   * The message of a lookup in the form the bounds need, held in buffers that one thread reuses
+   * for all its lookups.
+   */
+  private static final class Query {
+    private int length;
+    private int variableCount;
+    private final String[] prefix = new String[PREFIX_LENGTH];
+    private int prefixLength;
+    private String[] tokens = new String[16]; // Distinct constant tokens
+    private int[] counts = new int[16]; // Occurrences of each distinct constant token
+    private int distinct;
+    private long[] order = new long[16]; // Posting sizes and token indexes, sorted
+    // Posting of each distinct token in the current bucket, and the postings picked to visit
+    @SuppressWarnings("unchecked")
+    private List<Entry>[] postings = (List<Entry>[]) new List<?>[16];
+    @SuppressWarnings("unchecked")
+    private List<Entry>[] probes = (List<Entry>[]) new List<?>[16];
+    private final List<Entry> matches = new ArrayList<>();
+    private final int[] previousRow = new int[PREFIX_LENGTH + 1];
+    private final int[] currentRow = new int[PREFIX_LENGTH + 1];
+
+    void load(LogMessage message) {
+      length = message.getLength();
+      if (tokens.length < length) {
+        int capacity = Math.max(length, 2 * tokens.length);
+        tokens = Arrays.copyOf(tokens, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        order = Arrays.copyOf(order, capacity);
+        postings = Arrays.copyOf(postings, capacity);
+        probes = Arrays.copyOf(probes, capacity);
+      }
+
+      prefixLength = Math.min(PREFIX_LENGTH, length);
+      variableCount = 0;
+      distinct = 0;
+      for (int i = 0; i < length; i++) {
+        boolean variable = message.isVariableToken(i);
+        String token = variable ? null : message.getToken(i);
+        if (i < prefixLength) {
+          // Variable tokens only ever match other variable tokens, so null stands for all of them
+          prefix[i] = token;
+        }
+        if (variable) {
+          variableCount++;
+        } else {
+          tokens[distinct++] = token;
+        }
+      }
+
+      // Group repeated tokens so each is counted once
+      Arrays.sort(tokens, 0, distinct);
+      int groups = 0;
+      for (int i = 0; i < distinct; i++) {
+        if (groups > 0 && tokens[groups - 1].equals(tokens[i])) {
+          counts[groups - 1]++;
+        } else {
+          tokens[groups] = tokens[i];
+          counts[groups++] = 1;
+        }
+      }
+      Arrays.fill(tokens, groups, distinct, null);
+      distinct = groups;
+    }
+
+    /**
+     * Picks the postings to visit in a bucket. A cluster needs {@code needed} matched constants, so
+     * it contains some token outside any set of tokens matching fewer than that many times; the
+     * longest postings are left out while their tokens add up to less than {@code needed}.
+     *
+     * @return Number of postings stored in {@link #probes}
+     */
+    int selectProbes(LengthBucket bucket, int needed) {
+      for (int i = 0; i < distinct; i++) {
+        List<Entry> posting = bucket.postings.get(tokens[i]);
+        postings[i] = posting;
+        order[i] = (long) (posting == null ? 0 : posting.size()) << 32 | i;
+      }
+      Arrays.sort(order, 0, distinct);
+
+      int skippable = needed - 1;
+      int selected = 0;
+      for (int k = distinct - 1; k >= 0; k--) {
+        int i = (int) order[k];
+        if (postings[i] == null) {
+          continue;
+        }
+        if (counts[i] <= skippable) {
+          skippable -= counts[i];
+        } else {
+          probes[selected++] = postings[i];
+        }
+      }
+      return selected;
+    }
+
+    /** Adds an entry to the matches if it passes the bounds. */
+    void collect(Entry entry, int maxLength, int budget) {
+      if (maxLength - maxMatches(entry.profile) <= budget
+          && prefixLowerBound(prefix, prefixLength, entry.profile.prefix, previousRow, currentRow)
+              <= budget) {
+        matches.add(entry);
+      }
+    }
+
+    /** Drops references to the message and the clusters so they are not retained. */
+    void release() {
+      Arrays.fill(tokens, 0, distinct, null);
+      Arrays.fill(postings, 0, distinct, null);
+      Arrays.fill(probes, 0, distinct, null);
+      Arrays.fill(prefix, null);
+    }
+
+    /**
+     * Upper bound on the number of matched token pairs in any alignment with a cluster: identical
+     * constants plus variable-to-variable pairs.
+     */
+    private int maxMatches(Profile other) {
+      int common = 0;
+      for (int i = 0; i < distinct; i++) {
+        Integer otherCount = other.constantCounts.get(tokens[i]);
+        if (otherCount != null) {
+          common += Math.min(counts[i], otherCount);
+        }
+      }
+      return common + Math.min(variableCount, other.variableCount);
+    }
+  }
+}
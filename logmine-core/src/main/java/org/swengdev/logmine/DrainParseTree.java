@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-depth parse tree for streaming clustering, after Drain (He et al., "Drain: An Online Log
+ * Parsing Approach with Fixed Depth Tree", ICWS 2017).
+ *
+ * <p>A message is routed by its token count and then by its first {@code depth} tokens. Tokens
+ * that are variable or contain digits are routed through a shared wildcard branch, and so are new
+ * tokens once a node already has {@code maxChildren} children. The reached leaf holds a small group
+ * of clusters, which are compared positionally with {@link LogCluster#templateSimilarity}. Each
+ * message therefore costs a bounded number of map lookups plus a scan of one leaf, no matter how
+ * many clusters exist overall.
+ *
+ * <p>Clusters stay ordinary {@link LogCluster}s, so they produce ordinary {@link LogPattern}s.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link
+ * LogMineProcessor}.
+ */
+class DrainParseTree {
+
+  private static final String WILDCARD_KEY = "<*>";
+
+  private final int depth;
+  private final int maxChildren;
+  private final Map<Integer, Node> roots;
+
+  /**
+   * Creates an empty tree.
+   *
+   * @param depth Number of leading tokens to route on
+   * @param maxChildren Maximum number of children per node before falling back to the wildcard
+   */
+  DrainParseTree(int depth, int maxChildren) {
+    this.depth = depth;
+    this.maxChildren = maxChildren;
+    this.roots = new HashMap<>();
+  }
+
+  /**
+   * Finds the cluster a message belongs to: the most similar cluster of its leaf, if that
+   * similarity reaches the threshold. Ties go to the cluster with more wildcards, then to the
+   * older cluster.
+   *
+   * @param message The message to route
+   * @param threshold Minimum template similarity (0.0-1.0)
+   * @return The matching cluster, or null if a new cluster is needed
+   */
+  LogCluster match(LogMessage message, double threshold) {
+    List<LogCluster> leaf = leaf(message, false);
+    if (leaf == null) {
+      return null;
+    }
+
+    LogCluster best = null;
+    double bestSimilarity = -1.0;
+    int bestWildcards = -1;
+    for (LogCluster cluster : leaf) {
+      double similarity = cluster.templateSimilarity(message);
+      if (similarity > bestSimilarity
+          || (similarity == bestSimilarity && cluster.wildcardCount() > bestWildcards)) {
+        best = cluster;
+        bestSimilarity = similarity;
+        bestWildcards = cluster.wildcardCount();
+      }
+    }
+    return bestSimilarity >= threshold ? best : null;
+  }
+
+  /**
+   * Adds a new cluster to the leaf of its representative.
+   *
+   * @param cluster The cluster to add
+   */
+  void add(LogCluster cluster) {
+    leaf(cluster.getCentroid(), true).add(cluster);
+  }
+
+  /**
+   * Removes every cluster matching the filter.
+   *
+   * @param filter Predicate selecting the clusters to drop
+   */
+  void removeIf(Predicate<LogCluster> filter) {
+    Iterator<Node> iterator = roots.values().iterator();
+    while (iterator.hasNext()) {
+      if (removeIf(iterator.next(), filter)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Removes all clusters. */
+  void clear() {
+    roots.clear();
+  }
+
+  /** Removes matching clusters below a node and reports whether the node became empty. */
+  private boolean removeIf(Node node, Predicate<LogCluster> filter) {
+    if (node.clusters != null) {
+      node.clusters.removeIf(filter);
+      return node.clusters.isEmpty();
+    }
+    node.children.values().removeIf(child -> removeIf(child, filter));
+    return node.children.isEmpty();
+  }
+
+  /** Walks to the leaf of a message, creating the path if requested. */
+  private List<LogCluster> leaf(LogMessage message, boolean create) {
+    int length = message.getLength();
+    int routed = Math.min(depth, length);
+
+    Node node = roots.get(length);
+    if (node == null) {
+      if (!create) {
+        return null;
+      }
+      node = new Node(routed == 0);
+      roots.put(length, node);
+    }
+
+    for (int i = 0; i < routed; i++) {
+      boolean last = i == routed - 1;
+      String key = routingKey(message, i);
+      Node child = node.children.get(key);
+      if (child == null && !key.equals(WILDCARD_KEY)) {
+        // Unknown or full: fall back to the wildcard branch
+        if (!create || node.children.size() >= maxChildren) {
+          key = WILDCARD_KEY;
+          child = node.children.get(key);
+        }
+      }
+      if (child == null) {
+        if (!create) {
+          return null;
+        }
+        child = new Node(last);
+        node.children.put(key, child);
+      }
+      node = child;
+    }
+    return node.clusters;
+  }
+
+  /** Routing key of a token: the token itself, or the wildcard key for likely parameters. */
+  private static String routingKey(LogMessage message, int position) {
+    if (message.isVariableToken(position)) {
+      return WILDCARD_KEY;
+    }
+    String token = message.getToken(position);
+    for (int i = 0; i < token.length(); i++) {
+      if (Character.isDigit(token.charAt(i))) {
+        return WILDCARD_KEY;
+      }
+    }
+    return token;
+  }
+
+  /** Tree node: inner nodes have children, leaves hold a cluster group. */
+  private static final class Node {
+    private final Map<String, Node> children;
+    private final List<LogCluster> clusters;
+
+    Node(boolean leaf) {
+      this.children = leaf ? null : new HashMap<>();
+      this.clusters = leaf ? new ArrayList<>() : null;
+    }
+  }
+}
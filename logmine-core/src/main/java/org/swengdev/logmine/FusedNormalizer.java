@@ -0,0 +1,705 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.Locale;
+
+/**
+ * Applies the normalizations of {@link LogPreprocessor} in a single scan of a message.
+ *
+ * <p>The preprocessor's regular expressions run one after another, each over the output of the one
+ * before, and the result is lowercased last. This normalizer walks the message once and, at each
+ * position, tries hand-written matchers for the enabled entity types in the same precedence order.
+ * Each matcher accepts exactly what the corresponding regular expression matches at that position,
+ * including its greedy and backtracking choices. Untouched text is lowercased as it is copied, and
+ * everything is written into one builder reused by the thread.
+ *
+ * <p>Matching the original message gives the same result as the chain of replacements as long as
+ * no replacement changes what a later expression sees. That holds unless entities overlap or touch,
+ * a replaced entity starts or ends with a character that is not part of a word next to a word
+ * character or colon (the replacement would move a word boundary), or a timestamp or URL could
+ * become part of a later path or URL. Windows paths and non-ASCII text are never handled, since
+ * their expression can span spaces and Java's word boundaries and lowercasing are not ASCII-only
+ * for them. In all these cases {@link #normalize(String)} returns null and the caller falls back to
+ * the regular expressions; typical log lines never hit them.
+ *
+ * <p>Thread-safe.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link LogPreprocessor}.
+ */
+class FusedNormalizer {
+
+  // Entity types in precedence order, used as bit positions in type masks
+  private static final int TIMESTAMP = 0;
+  private static final int URL = 1;
+  private static final int PATH = 2;
+  private static final int IPV6 = 3;
+  private static final int IPV4 = 4;
+  private static final int NUMBER = 5;
+
+  private static final String[] REPLACEMENTS = {
+    "TIMESTAMP", "URL", "PATH", "IP_ADDR", "IP_ADDR", "NUM"
+  };
+  private static final String[] LOWERCASE_REPLACEMENTS = {
+    "timestamp", "url", "path", "ip_addr", "ip_addr", "num"
+  };
+
+  // Entity types whose matcher can start at each ASCII character
+  private static final byte[] STARTS = new byte[128];
+
+  static {
+    for (char c = '0'; c <= '9'; c++) {
+      STARTS[c] = (byte) (bit(TIMESTAMP) | bit(IPV6) | bit(IPV4) | bit(NUMBER));
+    }
+    for (char c = 'A'; c <= 'Z'; c++) {
+      STARTS[c] = (byte) bit(TIMESTAMP);
+    }
+    for (char c = 'a'; c <= 'f'; c++) {
+      STARTS[c] |= (byte) bit(IPV6);
+      STARTS[Character.toUpperCase(c)] |= (byte) bit(IPV6);
+    }
+    STARTS['['] = (byte) bit(TIMESTAMP);
+    STARTS['h'] |= (byte) bit(URL);
+    STARTS['f'] |= (byte) bit(URL);
+    STARTS['/'] = (byte) bit(PATH);
+    STARTS[':'] = (byte) bit(IPV6);
+  }
+
+  private static final ThreadLocal<StringBuilder> BUILDER =
+      ThreadLocal.withInitial(StringBuilder::new);
+
+  private final int enabled;
+  private final boolean lowercase;
+
+  /**
+   * Creates a normalizer for the normalizations a configuration enables.
+   *
+   * @param config Configuration specifying which normalization steps to apply
+   */
+  FusedNormalizer(LogMineConfig config) {
+    int types = 0;
+    if (config.normalizeTimestamps()) {
+      types |= bit(TIMESTAMP);
+    }
+    if (config.normalizeUrls()) {
+      types |= bit(URL);
+    }
+    if (config.normalizePaths()) {
+      types |= bit(PATH);
+    }
+    if (config.normalizeIPs()) {
+      types |= bit(IPV6) | bit(IPV4);
+    }
+    if (config.normalizeNumbers()) {
+      types |= bit(NUMBER);
+    }
+    this.enabled = types;
+    this.lowercase = !config.caseSensitive();
+  }
+
+  /**
+   * Normalizes a message in one pass.
+   *
+   * @param message Non-empty raw log message
+   * @return The message as the preprocessor's regular expressions would normalize it, or null if
+   *     it has to be normalized by them
+   */
+  String normalize(String message) {
+    CharSequence normalized = normalizeReusing(message);
+    if (normalized == null || normalized == message) {
+      return (String) normalized;
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Normalizes a message in one pass like {@link #normalize(String)}, without copying the result
+   * into a string.
+   *
+   * @param message Non-empty raw log message
+   * @return The message itself if nothing changed, otherwise the calling thread's builder, which
+   *     holds the result until the thread's next call; null if the message has to be normalized by
+   *     the regular expressions
+   */
+  CharSequence normalizeReusing(CharSequence message) {
+    if (lowercase && hasSpecialLowercase(Locale.getDefault())) {
+      return null;
+    }
+
+    int length = message.length();
+    StringBuilder out = BUILDER.get();
+    out.setLength(0);
+    int copied = 0; // Characters before this index have been written
+    int lastType = -1;
+    int lastEnd = -1; // Entities never overlap, so only the last one can contain a position
+    int runStart = 0; // Start of the run of non-whitespace holding the current character
+    int scheme = -1; // Index of the last "://"
+    boolean uppercase = false;
+
+    for (int i = 0; i < length; i++) {
+      char c = message.charAt(i);
+      if (c >= STARTS.length) {
+        return null;
+      }
+      if (c == ':' && i + 1 < length) {
+        char next = message.charAt(i + 1);
+        if (next == '\\' && (enabled & bit(PATH)) != 0) {
+          return null;
+        }
+        if (next == '/' && i + 2 < length && message.charAt(i + 2) == '/') {
+          scheme = i;
+        }
+      } else if (isSpace(c)) {
+        runStart = i + 1;
+      }
+      uppercase |= c >= 'A' && c <= 'Z';
+
+      int candidates = STARTS[c] & enabled;
+      while (candidates != 0) {
+        int type = Integer.numberOfTrailingZeros(candidates);
+        candidates &= candidates - 1;
+        if (lastEnd > i && lastType <= type) {
+          break; // Replaced before this and later types see it
+        }
+        int end = match(type, message, i);
+        if (end < 0) {
+          continue;
+        }
+        if (lastEnd > i
+            || (lastEnd == i && lastType != type)
+            || !isIsolated(type, message, i, end, runStart, scheme)) {
+          return null;
+        }
+        append(out, message, copied, i);
+        out.append(lowercase ? LOWERCASE_REPLACEMENTS[type] : REPLACEMENTS[type]);
+        copied = end;
+        lastType = type;
+        lastEnd = end;
+        break;
+      }
+    }
+
+    if (lastType < 0 && !(lowercase && uppercase)) {
+      return message;
+    }
+    append(out, message, copied, length);
+    return out;
+  }
+
+  /**
+   * Checks that replacing an entity changes nothing a later regular expression depends on outside
+   * of it.
+   */
+  private boolean isIsolated(
+      int type, CharSequence text, int start, int end, int runStart, int scheme) {
+    if (start > 0) {
+      char before = text.charAt(start - 1);
+      if (!isWord(text.charAt(start)) && (isWord(before) || before == ':')) {
+        return false;
+      }
+      if (type <= URL && (enabled & bit(PATH)) != 0 && isPathChar(before)) {
+        return false;
+      }
+      if (type == TIMESTAMP
+          && (enabled & bit(URL)) != 0
+          && !isSpace(before)
+          && scheme >= runStart) {
+        return false;
+      }
+    }
+    if (end < text.length() && !isWord(text.charAt(end - 1))) {
+      char after = text.charAt(end);
+      return !isWord(after) && after != ':';
+    }
+    return true;
+  }
+
+  private void append(StringBuilder out, CharSequence text, int from, int to) {
+    if (!lowercase) {
+      out.append(text, from, to);
+      return;
+    }
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+    }
+  }
+
+  /** Matches an entity type at a position, returning the end of the match or -1. */
+  private static int match(int type, CharSequence text, int start) {
+    return switch (type) {
+      case TIMESTAMP -> matchTimestamp(text, start);
+      case URL -> matchUrl(text, start);
+      case PATH -> matchPath(text, start);
+      case IPV6 -> matchIpv6(text, start);
+      case IPV4 -> matchIpv4(text, start);
+      default -> matchNumber(text, start);
+    };
+  }
+
+  /** Timestamp alternatives in the order the regular expression tries them. */
+  private static int matchTimestamp(CharSequence text, int start) {
+    char c = text.charAt(start);
+    if (c == '[') {
+      return matchBracketedTimestamp(text, start);
+    }
+    if (!isDigit(c)) {
+      return matchSyslogTimestamp(text, start);
+    }
+    int end = matchIsoTimestamp(text, start);
+    if (end < 0) {
+      end = matchCommonLogTimestamp(text, start);
+    }
+    if (end < 0) {
+      end = matchUnixTimestamp(text, start);
+    }
+    if (end < 0) {
+      end = matchSimpleTimestamp(text, start);
+    }
+    return end;
+  }
+
+  /** {@code \d{4}-\d{2}-\d{2}[T ]\d{2}:\d{2}:\d{2}(?:\.\d{3,9})?(?:Z|[+-]\d{2}:\d{2})?} */
+  private static int matchIsoTimestamp(CharSequence text, int start) {
+    int pos = matchDate(text, start);
+    if (pos < 0 || pos >= text.length() || (text.charAt(pos) != 'T' && text.charAt(pos) != ' ')) {
+      return -1;
+    }
+    pos = matchTime(text, pos + 1);
+    if (pos < 0) {
+      return -1;
+    }
+    pos = skipFraction(text, pos);
+    if (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c == 'Z') {
+        return pos + 1;
+      }
+      if ((c == '+' || c == '-')
+          && digits(text, pos + 1, 2)
+          && at(text, pos + 3, ':')
+          && digits(text, pos + 4, 2)) {
+        return pos + 6;
+      }
+    }
+    return pos;
+  }
+
+  /** {@code [A-Z][a-z]{2}\s+\d{1,2}\s+\d{2}:\d{2}:\d{2}} */
+  private static int matchSyslogTimestamp(CharSequence text, int start) {
+    if (start + 3 >= text.length()
+        || !isLower(text.charAt(start + 1))
+        || !isLower(text.charAt(start + 2))) {
+      return -1;
+    }
+    int pos = skipSpaces(text, start + 3);
+    if (pos == start + 3) {
+      return -1;
+    }
+    int day = digitRun(text, pos, 3);
+    if (day < 1 || day > 2) {
+      return -1;
+    }
+    int time = skipSpaces(text, pos + day);
+    return time > pos + day ? matchTime(text, time) : -1;
+  }
+
+  /** {@code \d{2}/[A-Z][a-z]{2}/\d{4}:\d{2}:\d{2}:\d{2}\s+[+-]\d{4}} */
+  private static int matchCommonLogTimestamp(CharSequence text, int start) {
+    if (!digits(text, start, 2)
+        || !at(text, start + 2, '/')
+        || start + 6 >= text.length()
+        || !isUpper(text.charAt(start + 3))
+        || !isLower(text.charAt(start + 4))
+        || !isLower(text.charAt(start + 5))
+        || !at(text, start + 6, '/')
+        || !digits(text, start + 7, 4)
+        || !at(text, start + 11, ':')) {
+      return -1;
+    }
+    int pos = matchTime(text, start + 12);
+    if (pos < 0) {
+      return -1;
+    }
+    int zone = skipSpaces(text, pos);
+    if (zone == pos
+        || !(at(text, zone, '+') || at(text, zone, '-'))
+        || !digits(text, zone + 1, 4)) {
+      return -1;
+    }
+    return zone + 5;
+  }
+
+  /** {@code \b1[67]\d{8}\b} */
+  private static int matchUnixTimestamp(CharSequence text, int start) {
+    if (text.charAt(start) != '1'
+        || !(at(text, start + 1, '6') || at(text, start + 1, '7'))
+        || !digits(text, start + 2, 8)
+        || isWordAt(text, start - 1)
+        || isWordAt(text, start + 10)) {
+      return -1;
+    }
+    return start + 10;
+  }
+
+  /** {@code \[\d{4}-\d{2}-\d{2}\s+\d{2}:\d{2}:\d{2}(?:\.\d{3,9})?]} */
+  private static int matchBracketedTimestamp(CharSequence text, int start) {
+    int pos = matchSpacedDateTime(text, start + 1);
+    if (pos < 0) {
+      return -1;
+    }
+    if (at(text, pos, '.')) {
+      // The fraction can only be followed by the bracket if it takes all its digits
+      int fraction = digitRun(text, pos + 1, 10);
+      if (fraction < 3 || fraction > 9) {
+        return -1;
+      }
+      pos += 1 + fraction;
+    }
+    return at(text, pos, ']') ? pos + 1 : -1;
+  }
+
+  /** {@code \d{4}-\d{2}-\d{2}\s+\d{2}:\d{2}:\d{2}(?:\.\d{3,9})?} */
+  private static int matchSimpleTimestamp(CharSequence text, int start) {
+    int pos = matchSpacedDateTime(text, start);
+    return pos < 0 ? -1 : skipFraction(text, pos);
+  }
+
+  /** {@code \d{4}-\d{2}-\d{2}\s+\d{2}:\d{2}:\d{2}} */
+  private static int matchSpacedDateTime(CharSequence text, int start) {
+    int pos = matchDate(text, start);
+    if (pos < 0) {
+      return -1;
+    }
+    int time = skipSpaces(text, pos);
+    return time > pos ? matchTime(text, time) : -1;
+  }
+
+  /** {@code \d{4}-\d{2}-\d{2}} */
+  private static int matchDate(CharSequence text, int start) {
+    if (digits(text, start, 4)
+        && at(text, start + 4, '-')
+        && digits(text, start + 5, 2)
+        && at(text, start + 7, '-')
+        && digits(text, start + 8, 2)) {
+      return start + 10;
+    }
+    return -1;
+  }
+
+  /** {@code \d{2}:\d{2}:\d{2}} */
+  private static int matchTime(CharSequence text, int start) {
+    if (digits(text, start, 2)
+        && at(text, start + 2, ':')
+        && digits(text, start + 3, 2)
+        && at(text, start + 5, ':')
+        && digits(text, start + 6, 2)) {
+      return start + 8;
+    }
+    return -1;
+  }
+
+  /** Skips the optional {@code (?:\.\d{3,9})?}, which takes up to nine digits. */
+  private static int skipFraction(CharSequence text, int pos) {
+    if (at(text, pos, '.')) {
+      int fraction = digitRun(text, pos + 1, 9);
+      if (fraction >= 3) {
+        return pos + 1 + fraction;
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * {@code \b(?:https?|ftp)://[^\s/$.?#][^\s]*\b}: the URL runs to the next whitespace, then backs
+   * off to the last word boundary.
+   */
+  private static int matchUrl(CharSequence text, int start) {
+    int pos;
+    if (startsWith(text, "https://", start)) {
+      pos = start + 8;
+    } else if (startsWith(text, "http://", start)) {
+      pos = start + 7;
+    } else if (startsWith(text, "ftp://", start)) {
+      pos = start + 6;
+    } else {
+      return -1;
+    }
+    if (isWordAt(text, start - 1) || pos >= text.length()) {
+      return -1;
+    }
+    char first = text.charAt(pos);
+    if (isSpace(first) || "/$.?#".indexOf(first) >= 0) {
+      return -1;
+    }
+    int end = pos + 1;
+    while (end < text.length() && !isSpace(text.charAt(end))) {
+      end++;
+    }
+    for (; end > pos; end--) {
+      if (isWordAt(text, end - 1) != isWordAt(text, end)) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * {@code /(?:[a-zA-Z0-9_.-]+/){2,}[a-zA-Z0-9_.-]*}. Windows paths never get here, see {@link
+   * #normalize(String)}.
+   */
+  private static int matchPath(CharSequence text, int start) {
+    int pos = start + 1;
+    int directories = 0;
+    while (true) {
+      int name = pathNameRun(text, pos);
+      if (name == 0 || !at(text, pos + name, '/')) {
+        break;
+      }
+      directories++;
+      pos += name + 1;
+    }
+    return directories >= 2 ? pos + pathNameRun(text, pos) : -1;
+  }
+
+  /**
+   * IPv6 alternatives in order: {@code \b(?:H:){7}H\b}, {@code \b(?:H:){1,7}:\b} and {@code
+   * \b::(?:H:){0,6}H\b}, where H is {@code [0-9a-fA-F]{1,4}}.
+   */
+  private static int matchIpv6(CharSequence text, int start) {
+    if (text.charAt(start) == ':') {
+      if (!isWordAt(text, start - 1) || !at(text, start + 1, ':')) {
+        return -1;
+      }
+      int pos = start + 2;
+      int lastGroup = -1;
+      for (int groups = 0; groups < 6; groups++) {
+        int group = hexGroup(text, pos);
+        if (group < 0) {
+          break;
+        }
+        lastGroup = pos;
+        pos = group;
+      }
+      int end = hexTail(text, pos);
+      if (end >= 0) {
+        return end;
+      }
+      // Backtrack: the last group's digits end the address, followed by its colon
+      return lastGroup >= 0 ? lastGroup + hexRun(text, lastGroup) : -1;
+    }
+
+    if (isWordAt(text, start - 1)) {
+      return -1;
+    }
+    int pos = start;
+    int groups = 0;
+    while (groups < 7) {
+      int group = hexGroup(text, pos);
+      if (group < 0) {
+        break;
+      }
+      groups++;
+      pos = group;
+    }
+    if (groups == 7) {
+      int end = hexTail(text, pos);
+      if (end >= 0) {
+        return end;
+      }
+    }
+    if (groups >= 1 && at(text, pos, ':') && isWordAt(text, pos + 1)) {
+      return pos + 1;
+    }
+    return -1;
+  }
+
+  /** Matches {@code [0-9a-fA-F]{1,4}:}, returning the index after the colon or -1. */
+  private static int hexGroup(CharSequence text, int start) {
+    int digits = hexRun(text, start);
+    return digits >= 1 && digits <= 4 && at(text, start + digits, ':') ? start + digits + 1 : -1;
+  }
+
+  /** Matches {@code [0-9a-fA-F]{1,4}\b}, returning its end or -1. */
+  private static int hexTail(CharSequence text, int start) {
+    int digits = hexRun(text, start);
+    return digits >= 1 && digits <= 4 && !isWordAt(text, start + digits) ? start + digits : -1;
+  }
+
+  /**
+   * {@code \b(?:O\.){3}O\b} with O {@code 25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?}: a run of one to
+   * three digits that is at most 255 as a number.
+   */
+  private static int matchIpv4(CharSequence text, int start) {
+    if (isWordAt(text, start - 1)) {
+      return -1;
+    }
+    int pos = start;
+    for (int octet = 0; octet < 4; octet++) {
+      if (octet > 0) {
+        if (!at(text, pos, '.')) {
+          return -1;
+        }
+        pos++;
+      }
+      int digits = digitRun(text, pos, 4);
+      if (digits < 1 || digits > 3 || (digits == 3 && octetValue(text, pos) > 255)) {
+        return -1;
+      }
+      pos += digits;
+    }
+    return isWordAt(text, pos) ? -1 : pos;
+  }
+
+  /** {@code \b\d{4,}\b|\b\d+\.\d+\b} */
+  private static int matchNumber(CharSequence text, int start) {
+    if (isWordAt(text, start - 1)) {
+      return -1;
+    }
+    int digits = digitRun(text, start, Integer.MAX_VALUE);
+    int pos = start + digits;
+    if (digits >= 4 && !isWordAt(text, pos)) {
+      return pos;
+    }
+    if (at(text, pos, '.')) {
+      int fraction = digitRun(text, pos + 1, Integer.MAX_VALUE);
+      int end = pos + 1 + fraction;
+      if (fraction > 0 && !isWordAt(text, end)) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  private static int octetValue(CharSequence text, int start) {
+    return (text.charAt(start) - '0') * 100
+        + (text.charAt(start + 1) - '0') * 10
+        + (text.charAt(start + 2) - '0');
+  }
+
+  /** Counts digits from a position, stopping at a limit. */
+  private static int digitRun(CharSequence text, int start, int limit) {
+    int end = start;
+    while (end < text.length() && end - start < limit && isDigit(text.charAt(end))) {
+      end++;
+    }
+    return end - start;
+  }
+
+  /** Counts hex digits from a position, up to one more than a group can hold. */
+  private static int hexRun(CharSequence text, int start) {
+    int end = start;
+    while (end < text.length() && end - start < 5 && isHex(text.charAt(end))) {
+      end++;
+    }
+    return end - start;
+  }
+
+  private static int pathNameRun(CharSequence text, int start) {
+    int end = start;
+    while (end < text.length() && isPathNameChar(text.charAt(end))) {
+      end++;
+    }
+    return end - start;
+  }
+
+  private static int skipSpaces(CharSequence text, int start) {
+    int end = start;
+    while (end < text.length() && isSpace(text.charAt(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  /** Checks for a number of digits at a position. */
+  private static boolean digits(CharSequence text, int start, int count) {
+    if (start + count > text.length()) {
+      return false;
+    }
+    for (int i = start; i < start + count; i++) {
+      if (!isDigit(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(CharSequence text, String prefix, int start) {
+    if (start + prefix.length() > text.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (text.charAt(start + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean at(CharSequence text, int index, char c) {
+    return index < text.length() && text.charAt(index) == c;
+  }
+
+  /** Checks for a word character, treating positions outside the text as non-word. */
+  private static boolean isWordAt(CharSequence text, int index) {
+    return index >= 0 && index < text.length() && isWord(text.charAt(index));
+  }
+
+  // Character classes of the regular expressions, which are ASCII-only
+
+  private static boolean isWord(char c) {
+    return isDigit(c) || isUpper(c) || isLower(c) || c == '_';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isUpper(char c) {
+    return c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isLower(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  private static boolean isHex(char c) {
+    return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  private static boolean isPathNameChar(char c) {
+    return isWord(c) || c == '.' || c == '-';
+  }
+
+  private static boolean isPathChar(char c) {
+    return isPathNameChar(c) || c == '/';
+  }
+
+  /** Checks whether lowercasing in a locale maps ASCII letters to non-ASCII ones. */
+  private static boolean hasSpecialLowercase(Locale locale) {
+    String language = locale.getLanguage();
+    return language.equals("tr") || language.equals("az");
+  }
+
+  private static int bit(int type) {
+    return 1 << type;
+  }
+}
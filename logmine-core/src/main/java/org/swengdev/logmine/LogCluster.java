@@ -16,35 +16,88 @@
 
 package org.swengdev.logmine;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.swengdev.logmine.strategy.VariableDetector;
 
 /**
  * Represents a cluster of similar log messages. Each cluster will be used to generate a log
  * pattern.
  *
+ * <p>Besides the representative, a cluster keeps a running message count and a per-position
+ * summary of which representative tokens are still constant across every absorbed message. That is
+ * all {@link #generatePattern()} needs, so streaming clusters can drop the absorbed messages and
+ * stay bounded in memory no matter how many messages they see. Batch clusters additionally retain
+ * their messages for callers that need them.
+ *
+ * <p>The per-position summary only works while every message has the representative's length. The
+ * first message or cluster of another length turns the summary into an aligned template (see
+ * {@link PatternAligner}), which later messages are merged into one at a time.
+ *
+ * <p>Batch clusters can also drop their oldest messages again (see {@link #evictOldest(int)}). From
+ * the first eviction on, a same-length cluster counts the tokens of its retained messages per
+ * position, so later evictions update the summary in time proportional to the evicted messages
+ * instead of rescanning the ones that stay.
+ *
  * <p><b>Internal API:</b> This class is package-private and not intended for direct use by library
  * users. Clustering is an implementation detail. Users should work with {@link LogPattern} objects
  * which represent the final extracted patterns.
  */
 class LogCluster {
-  private final List<LogMessage> messages;
+  private final ArrayDeque<LogMessage> messages; // null for streaming clusters
   private LogMessage representative;
-  private LogPattern pattern;
+  private List<String> representativeTokens;
+  private boolean[] constantPositions;
+  private List<String> alignedTemplate; // replaces the summary once lengths differ
+  private PositionCounts counts; // Kept from the first eviction on, null while lengths differ
+  private int size;
+  private LogPattern pattern; // null while dirty
   private final VariableDetector variableDetector;
 
   /**
-   * Creates a new cluster with the first log message.
+   * Creates a new cluster with the first log message. The cluster retains every message it
+   * absorbs.
    *
    * @param firstMessage The initial message for this cluster
    * @param variableDetector Strategy for detecting variable parts in tokens
    */
   public LogCluster(LogMessage firstMessage, VariableDetector variableDetector) {
-    this.messages = new ArrayList<>();
-    this.messages.add(firstMessage);
-    this.representative = firstMessage;
+    this(firstMessage, variableDetector, true);
+  }
+
+  /**
+   * Creates a new cluster with the first log message.
+   *
+   * @param firstMessage The initial message for this cluster
+   * @param variableDetector Strategy for detecting variable parts in tokens
+   * @param retainMessages Whether to keep absorbed messages; streaming clusters pass false and only
+   *     keep the representative and the per-position summary
+   */
+  public LogCluster(
+      LogMessage firstMessage, VariableDetector variableDetector, boolean retainMessages) {
+    this.messages = retainMessages ? new ArrayDeque<>() : null;
+    if (retainMessages) {
+      this.messages.add(firstMessage);
+    }
     this.variableDetector = variableDetector;
+    this.size = 1;
+    startSummary(firstMessage);
+  }
+
+  /** Makes a message the representative and resets the summary to that message alone. */
+  private void startSummary(LogMessage first) {
+    representative = first;
+    representativeTokens = first.getTokens();
+    alignedTemplate = null;
+
+    // Inherently variable tokens (timestamps, numbers, ...) are never constant
+    constantPositions = new boolean[representativeTokens.size()];
+    for (int i = 0; i < constantPositions.length; i++) {
+      constantPositions[i] = !first.isVariableToken(i);
+    }
   }
 
   /**
@@ -56,17 +109,200 @@ class LogCluster {
    * @return true if the message was added, false otherwise
    */
   public boolean addMessage(LogMessage message, double threshold) {
-    double similarity = representative.similarity(message);
-
-    if (similarity >= threshold) {
-      messages.add(message);
-      updateRepresentative();
+    if (representative.isSimilar(message, threshold)) {
+      absorb(message);
       return true;
     }
 
     return false;
   }
 
+  /**
+   * Positional similarity between this cluster's current template and a message of the same
+   * length, as used by Drain: the fraction of positions whose template token is still constant and
+   * equal to the message token. Wildcard positions do not count as matches.
+   *
+   * @param message The message to compare, with as many tokens as the representative
+   * @return Similarity score (0.0 to 1.0)
+   */
+  double templateSimilarity(LogMessage message) {
+    if (alignedTemplate != null) {
+      return alignedSimilarity(message);
+    }
+    int length = constantPositions.length;
+    if (length == 0) {
+      return 1.0;
+    }
+
+    TokenDictionary.Encoding encoded1 = representative.encoding();
+    TokenDictionary.Encoding encoded2 = message.encoding();
+    boolean sameEpoch = TokenDictionary.comparable(encoded1, encoded2);
+    int matches = 0;
+    for (int i = 0; i < length; i++) {
+      String token1 = representativeTokens.get(i);
+      String token2 = message.getToken(i);
+      if (constantPositions[i]
+          && (sameEpoch
+              ? encoded1.sameToken(i, token1, encoded2, i, token2)
+              : token1.equals(token2))) {
+        matches++;
+      }
+    }
+    return (double) matches / length;
+  }
+
+  /**
+   * Gets the number of template positions that have become wildcards.
+   *
+   * @return Wildcard count
+   */
+  int wildcardCount() {
+    if (alignedTemplate != null) {
+      return (int)
+          alignedTemplate.stream()
+              .filter(token -> token.equals("***") || token.equals(PatternAligner.GAP))
+              .count();
+    }
+    int count = 0;
+    for (boolean constant : constantPositions) {
+      if (!constant) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts a message into this cluster and narrows the constant positions, without a similarity
+   * check.
+   *
+   * @param message The message to absorb
+   */
+  void absorb(LogMessage message) {
+    if (messages != null) {
+      messages.addLast(message);
+    }
+    size++;
+    pattern = null;
+    narrow(message);
+    if (counts != null) {
+      if (alignedTemplate != null) {
+        counts = null;
+      } else {
+        counts.add(message);
+      }
+    }
+    updateRepresentative();
+  }
+
+  /**
+   * Drops the oldest retained messages and updates the summary to the remaining ones, as if they
+   * had been the only messages absorbed. The oldest remaining message becomes the representative.
+   * Only clusters that retain their messages support this.
+   *
+   * <p>While all retained messages have the same length, this costs O(count·length) once the
+   * per-position counts exist; the first eviction builds them. Otherwise the summary is rebuilt
+   * from the remaining messages.
+   *
+   * @param count Number of messages to drop, at most the cluster size
+   */
+  void evictOldest(int count) {
+    if (messages == null) {
+      throw new IllegalStateException("Only clusters that retain messages can evict them");
+    }
+    if (counts == null && alignedTemplate == null) {
+      counts = new PositionCounts(constantPositions.length);
+      messages.forEach(counts::add);
+    }
+    for (int i = 0; i < count; i++) {
+      LogMessage evicted = messages.pollFirst();
+      if (counts != null) {
+        counts.remove(evicted);
+      }
+    }
+    size = messages.size();
+    pattern = null;
+    if (size == 0) {
+      counts = null;
+      return;
+    }
+
+    if (counts != null) {
+      // Same length throughout, so the counts alone tell which positions are still constant
+      representative = messages.peekFirst();
+      representativeTokens = representative.getTokens();
+      for (int i = 0; i < constantPositions.length; i++) {
+        constantPositions[i] = counts.isConstant(i);
+      }
+      return;
+    }
+
+    startSummary(messages.peekFirst());
+    messages.stream().skip(1).forEach(this::narrow);
+  }
+
+  /** Narrows the summary so that it also covers a message. */
+  private void narrow(LogMessage message) {
+    if (alignedTemplate != null || message.getLength() != constantPositions.length) {
+      alignedTemplate = PatternAligner.merge(template(), message.getTokens());
+    } else {
+      // A position stays constant only while every message has the same token there. Interned
+      // tokens are identical exactly when their IDs are.
+      TokenDictionary.Encoding encoded1 = representative.encoding();
+      TokenDictionary.Encoding encoded2 = message.encoding();
+      boolean sameEpoch = TokenDictionary.comparable(encoded1, encoded2);
+      for (int i = 0; i < constantPositions.length; i++) {
+        String token1 = representativeTokens.get(i);
+        String token2 = message.getToken(i);
+        if (constantPositions[i]
+            && !(sameEpoch
+                ? encoded1.sameToken(i, token1, encoded2, i, token2)
+                : token1.equals(token2))) {
+          constantPositions[i] = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges another cluster into this one, as if this cluster had absorbed all of its messages.
+   * This cluster keeps its representative, so it should be the one whose first message came
+   * earlier.
+   *
+   * @param other The cluster to absorb
+   */
+  void merge(LogCluster other) {
+    if (messages != null) {
+      messages.addAll(other.getMessages());
+    }
+    counts = null; // Rebuilt by the next eviction
+    size += other.size;
+
+    if (alignedTemplate != null
+        || other.alignedTemplate != null
+        || other.constantPositions.length != constantPositions.length) {
+      alignedTemplate = PatternAligner.merge(template(), other.template());
+    } else {
+      // The other cluster's messages all carry its representative's token wherever its summary is
+      // constant, so a position stays constant only if that token is ours too
+      TokenDictionary.Encoding encoded1 = representative.encoding();
+      TokenDictionary.Encoding encoded2 = other.representative.encoding();
+      boolean sameEpoch = TokenDictionary.comparable(encoded1, encoded2);
+      for (int i = 0; i < constantPositions.length; i++) {
+        String token1 = representativeTokens.get(i);
+        String token2 = other.representativeTokens.get(i);
+        if (constantPositions[i]
+            && (!other.constantPositions[i]
+                || !(sameEpoch
+                    ? encoded1.sameToken(i, token1, encoded2, i, token2)
+                    : token1.equals(token2)))) {
+          constantPositions[i] = false;
+        }
+      }
+    }
+    pattern = null;
+  }
+
   /**
    * Updates the representative message (currently using the first message). Could be enhanced to
    * use a centroid or medoid.
@@ -74,21 +310,61 @@ class LogCluster {
   private void updateRepresentative() {
     // For simplicity, keep the first message as representative
     // In a more sophisticated implementation, we could compute a centroid
-    representative = messages.getFirst();
   }
 
   /**
-   * Generates a pattern from all messages in this cluster.
+   * Checks whether this cluster changed since its pattern was last generated. Absorbing a message
+   * or merging a cluster marks it dirty; {@link #generatePattern()} makes it clean again.
+   *
+   * @return true if the cached pattern is out of date
+   */
+  boolean isDirty() {
+    return pattern == null;
+  }
+
+  /**
+   * Generates a pattern from all messages in this cluster. The result is the same as {@link
+   * LogPattern#createFromMessages(List, VariableDetector)} over every absorbed message, but it is
+   * built from the per-position summary, so it does not need the messages themselves. The pattern
+   * is cached until the cluster changes.
    *
    * @return The generated log pattern for this cluster
    */
   public LogPattern generatePattern() {
     if (pattern == null) {
-      pattern = LogPattern.createFromMessages(messages, variableDetector);
+      pattern = new LogPattern(template(), size, variableDetector, representative.getDictionary());
     }
     return pattern;
   }
 
+  /** Current template: the aligned template, or the one described by the per-position summary. */
+  private List<String> template() {
+    if (alignedTemplate != null) {
+      return alignedTemplate;
+    }
+    List<String> template = new ArrayList<>(representativeTokens.size());
+    for (int i = 0; i < constantPositions.length; i++) {
+      template.add(constantPositions[i] ? representativeTokens.get(i) : "***");
+    }
+    return template;
+  }
+
+  /** {@link #templateSimilarity} over an aligned template, relative to the longer sequence. */
+  private double alignedSimilarity(LogMessage message) {
+    int length = Math.max(alignedTemplate.size(), message.getLength());
+    if (length == 0) {
+      return 1.0;
+    }
+    int matches = 0;
+    for (int i = 0; i < Math.min(alignedTemplate.size(), message.getLength()); i++) {
+      if (alignedTemplate.get(i).equals(message.getToken(i))
+          && !alignedTemplate.get(i).equals("***")) {
+        matches++;
+      }
+    }
+    return (double) matches / length;
+  }
+
   /**
    * Gets the centroid message of this cluster. Currently returns the representative message.
    *
@@ -99,12 +375,22 @@ class LogCluster {
   }
 
   /**
-   * Gets all messages in this cluster.
+   * Gets all messages in this cluster. Streaming clusters do not retain absorbed messages and
+   * return only their representative.
    *
    * @return A defensive copy of the message list
    */
   public List<LogMessage> getMessages() {
-    return new ArrayList<>(messages);
+    return messages != null ? new ArrayList<>(messages) : List.of(representative);
+  }
+
+  /**
+   * Checks whether this cluster retains the messages it absorbs.
+   *
+   * @return true for batch clusters, false for streaming clusters
+   */
+  public boolean isRetainingMessages() {
+    return messages != null;
   }
 
   /**
@@ -113,7 +399,7 @@ class LogCluster {
    * @return The cluster size
    */
   public int size() {
-    return messages.size();
+    return size;
   }
 
   /**
@@ -142,9 +428,57 @@ class LogCluster {
   @Override
   public String toString() {
     return "Cluster(size="
-        + messages.size()
+        + size
         + ", pattern="
         + (pattern != null ? pattern.getPatternString() : "not generated")
         + ")";
   }
+
+  /**
+   * Token counts per position over the retained messages of a cluster whose messages all have the
+   * same length. A position is constant while every message has the same non-variable token there.
+   * Variable tokens are only counted, since a single one keeps its position variable.
+   */
+  private static final class PositionCounts {
+    private final List<Map<String, Integer>> constants; // Non-variable tokens at each position
+    private final int[] variables; // Messages with a variable token at each position
+
+    PositionCounts(int length) {
+      this.constants = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        constants.add(new HashMap<>());
+      }
+      this.variables = new int[length];
+    }
+
+    void add(LogMessage message) {
+      for (int i = 0; i < variables.length; i++) {
+        if (message.isVariableToken(i)) {
+          variables[i]++;
+        } else {
+          constants.get(i).merge(message.getToken(i), 1, Integer::sum);
+        }
+      }
+    }
+
+    void remove(LogMessage message) {
+      // Whether a token is variable depends only on the token, so it was counted where it is found
+      for (int i = 0; i < variables.length; i++) {
+        Map<String, Integer> tokens = constants.get(i);
+        String token = message.getToken(i);
+        Integer count = tokens.get(token);
+        if (count == null) {
+          variables[i]--;
+        } else if (count == 1) {
+          tokens.remove(token);
+        } else {
+          tokens.put(token, count - 1);
+        }
+      }
+    }
+
+    boolean isConstant(int i) {
+      return variables[i] == 0 && constants.get(i).size() == 1;
+    }
+  }
 }
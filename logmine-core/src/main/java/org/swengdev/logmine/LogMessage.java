@@ -17,7 +17,9 @@
 package org.swengdev.logmine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import org.swengdev.logmine.strategy.TokenSpans;
 import org.swengdev.logmine.strategy.VariableDetector;
 
 /**
@@ -28,11 +30,18 @@ import org.swengdev.logmine.strategy.VariableDetector;
  * {@link LogMine}.
  */
 class LogMessage {
+  // Per-thread DP rows so comparisons do not allocate a table each time
+  private static final ThreadLocal<DistanceRows> SCRATCH =
+      ThreadLocal.withInitial(DistanceRows::new);
+
   private final String rawMessage;
   private final String processedMessage;
   private final List<String> tokens;
   private final int length;
   private final VariableDetector variableDetector;
+  private final TokenDictionary dictionary; // null when tokens are compared as strings
+  private TokenDictionary.Encoding encoding;
+  private final byte[] matchTypes; // Match type of each token, classified once
 
   /**
    * Creates a log message without preprocessing.
@@ -42,11 +51,68 @@ class LogMessage {
    * @param variableDetector Strategy for detecting variable parts in tokens
    */
   public LogMessage(String rawMessage, List<String> tokens, VariableDetector variableDetector) {
+    this(rawMessage, tokens, variableDetector, null);
+  }
+
+  /**
+   * Creates a log message whose tokens are interned in a dictionary. Comparisons with other
+   * messages of the same dictionary use the cached token IDs and match classes.
+   *
+   * @param rawMessage The original log message text
+   * @param tokens The tokenized representation of the message
+   * @param variableDetector Strategy for detecting variable parts in tokens
+   * @param dictionary Dictionary shared by the processor, or null to compare tokens as strings
+   */
+  LogMessage(
+      String rawMessage,
+      List<String> tokens,
+      VariableDetector variableDetector,
+      TokenDictionary dictionary) {
     this.rawMessage = rawMessage;
     this.processedMessage = rawMessage; // No preprocessing in this constructor
     this.tokens = new ArrayList<>(tokens);
     this.length = tokens.size();
     this.variableDetector = variableDetector;
+    this.dictionary = dictionary;
+    if (dictionary != null) {
+      this.encoding = dictionary.encode(this.tokens);
+    }
+    this.matchTypes =
+        encoding != null ? encoding.matchTypes() : matchTypes(this.tokens, variableDetector);
+  }
+
+  /**
+   * Creates a log message from the positions of its tokens in a text. With a dictionary, the tokens
+   * are the dictionary's own instances and only tokens it has not seen are copied out of the text.
+   *
+   * @param rawMessage The original log message text, or null if it is not kept
+   * @param text The text that was tokenized
+   * @param spans Positions of the tokens in {@code text}
+   * @param variableDetector Strategy for detecting variable parts in tokens
+   * @param dictionary Dictionary shared by the processor, or null to compare tokens as strings
+   */
+  LogMessage(
+      String rawMessage,
+      CharSequence text,
+      TokenSpans spans,
+      VariableDetector variableDetector,
+      TokenDictionary dictionary) {
+    this.rawMessage = rawMessage;
+    this.processedMessage = rawMessage; // As for a token list
+    this.length = spans.size();
+    this.variableDetector = variableDetector;
+    this.dictionary = dictionary;
+    String[] interned = new String[length];
+    if (dictionary != null) {
+      this.encoding = dictionary.encode(text, spans, interned);
+    }
+    if (encoding != null) {
+      this.tokens = Arrays.asList(interned);
+      this.matchTypes = encoding.matchTypes();
+    } else {
+      this.tokens = spans.tokens(text);
+      this.matchTypes = matchTypes(tokens, variableDetector);
+    }
   }
 
   /**
@@ -67,6 +133,16 @@ class LogMessage {
     this.tokens = new ArrayList<>(tokens);
     this.length = tokens.size();
     this.variableDetector = variableDetector;
+    this.dictionary = null;
+    this.matchTypes = matchTypes(this.tokens, variableDetector);
+  }
+
+  private static byte[] matchTypes(List<String> tokens, VariableDetector variableDetector) {
+    byte[] types = new byte[tokens.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = TokenDictionary.matchType(variableDetector, tokens.get(i));
+    }
+    return types;
   }
 
   /**
@@ -77,39 +153,129 @@ class LogMessage {
    * @return The edit distance (number of token-level edits needed)
    */
   public int editDistance(LogMessage other) {
+    // A band as wide as the longer message covers the whole table and never aborts
+    return boundedEditDistance(other, Math.max(this.tokens.size(), other.tokens.size()));
+  }
+
+  /**
+   * Calculates the edit distance to another message, giving up once it exceeds {@code
+   * maxDistance}.
+   *
+   * <p>Only the diagonal band of cells within {@code maxDistance} of the main diagonal is filled,
+   * using two reusable rows instead of a full table. Cells outside the band always exceed the limit
+   * and never lie on a path that stays within it, so the result is exact whenever it is at most
+   * {@code maxDistance}. The computation stops as soon as a whole row exceeds the limit.
+   *
+   * @param other The other log message to compare with
+   * @param maxDistance Largest distance of interest (non-negative)
+   * @return The edit distance, or {@code maxDistance + 1} if it is larger than {@code maxDistance}
+   */
+  int boundedEditDistance(LogMessage other, int maxDistance) {
     int m = this.tokens.size();
     int n = other.tokens.size();
+    int limit = maxDistance + 1;
 
-    // Create DP table
-    int[][] dp = new int[m + 1][n + 1];
+    if (Math.abs(m - n) > maxDistance) {
+      return limit;
+    }
+    if (m == 0 || n == 0) {
+      return Math.max(m, n);
+    }
 
-    // Initialize base cases
-    for (int i = 0; i <= m; i++) {
-      dp[i][0] = i;
+    // Compare token IDs when both sides are encoded in the same dictionary epoch
+    TokenDictionary.Encoding encoded1 = encoding();
+    TokenDictionary.Encoding encoded2 = other.encoding();
+    if (!TokenDictionary.comparable(encoded1, encoded2)) {
+      encoded1 = null;
+      encoded2 = null;
     }
-    for (int j = 0; j <= n; j++) {
-      dp[0][j] = j;
+
+    DistanceRows rows = SCRATCH.get();
+    rows.ensureCapacity(n + 2);
+    int[] previous = rows.previous;
+    int[] current = rows.current;
+
+    // Row 0: inserting the first j tokens of the other message
+    int high = Math.min(n, maxDistance);
+    for (int j = 0; j <= high; j++) {
+      previous[j] = j;
     }
+    previous[high + 1] = limit;
 
-    // Fill DP table
     for (int i = 1; i <= m; i++) {
-      for (int j = 1; j <= n; j++) {
-        if (variableDetector.tokensMatch(this.tokens.get(i - 1), other.tokens.get(j - 1))) {
-          dp[i][j] = dp[i - 1][j - 1];
+      int low = Math.max(1, i - maxDistance);
+      high = Math.min(n, i + maxDistance);
+
+      // Column left of the band: deleting the first i tokens, or out of reach
+      current[low - 1] = low == 1 && i <= maxDistance ? i : limit;
+      int rowMin = current[low - 1];
+
+      for (int j = low; j <= high; j++) {
+        int value;
+        if (tokensMatch(i - 1, other, j - 1, encoded1, encoded2)) {
+          value = previous[j - 1];
         } else {
-          dp[i][j] =
+          value =
               1
                   + Math.min(
-                      dp[i - 1][j], // deletion
+                      previous[j], // deletion
                       Math.min(
-                          dp[i][j - 1], // insertion
-                          dp[i - 1][j - 1] // substitution
+                          current[j - 1], // insertion
+                          previous[j - 1] // substitution
                           ));
         }
+        value = Math.min(value, limit);
+        current[j] = value;
+        rowMin = Math.min(rowMin, value);
       }
+      if (high < n) {
+        current[high + 1] = limit;
+      }
+
+      // Every path to the last cell crosses this row, so it can only get worse from here
+      if (rowMin > maxDistance) {
+        return limit;
+      }
+
+      int[] swap = previous;
+      previous = current;
+      current = swap;
     }
 
-    return dp[m][n];
+    return previous[n];
+  }
+
+  /** Compares two tokens, by encoding when available and by match type otherwise. */
+  private boolean tokensMatch(
+      int i,
+      LogMessage other,
+      int j,
+      TokenDictionary.Encoding encoded1,
+      TokenDictionary.Encoding encoded2) {
+    if (encoded1 == null) {
+      return matchTypesMatch(i, other, j);
+    }
+    return encoded1.tokensMatch(i, encoded2, j)
+        || (encoded1.needsFallback(i, encoded2, j) && matchTypesMatch(i, other, j));
+  }
+
+  /**
+   * Compares two tokens by their cached match types, and only asks the detector if a type is
+   * unknown. See {@link VariableDetector#matchType(String)}.
+   */
+  private boolean matchTypesMatch(int i, LogMessage other, int j) {
+    int type1 = matchTypes[i];
+    int type2 = other.matchTypes[j];
+    String token1 = tokens.get(i);
+    String token2 = other.tokens.get(j);
+    if (type1 == VariableDetector.UNKNOWN_MATCH_TYPE
+        || type2 == VariableDetector.UNKNOWN_MATCH_TYPE) {
+      return variableDetector.tokensMatch(token1, token2);
+    }
+    if (type1 != type2) {
+      return false;
+    }
+    return type1 != VariableDetector.EXACT_MATCH_TYPE || token1.equals(token2);
   }
 
   /**
@@ -129,10 +295,62 @@ class LogMessage {
     return 1.0 - ((double) distance / maxLen);
   }
 
+  /**
+   * Checks whether the similarity with another message reaches a threshold. Equivalent to {@code
+   * similarity(other) >= threshold}, but only computes the edit distance as far as needed to
+   * decide: messages whose length difference already exceeds the allowed distance are rejected
+   * without any DP work, and the DP stops as soon as the allowed distance is exceeded.
+   *
+   * @param other The other log message to compare with
+   * @param threshold Similarity threshold (0.0-1.0)
+   * @return true if the similarity is at least {@code threshold}
+   */
+  public boolean isSimilar(LogMessage other, double threshold) {
+    int maxLen = Math.max(this.length, other.length);
+    if (maxLen == 0) {
+      return 1.0 >= threshold;
+    }
+
+    int maxDistance = maxDistance(maxLen, threshold);
+    if (maxDistance >= maxLen) {
+      return true; // No alignment can cost more than the longer message
+    }
+    if (Math.abs(this.length - other.length) > maxDistance) {
+      return false;
+    }
+    return boundedEditDistance(other, maxDistance) <= maxDistance;
+  }
+
+  /**
+   * Returns the largest edit distance that still yields a {@link #similarity(LogMessage)} of at
+   * least {@code threshold} for messages whose longer side has {@code maxLength} tokens. Evaluates
+   * the same floating point expression as {@code similarity} so callers can prune candidates
+   * without changing which comparisons succeed.
+   *
+   * @param maxLength Token count of the longer of the two messages
+   * @param threshold Similarity threshold (0.0-1.0)
+   * @return Maximum allowed distance, between 0 and {@code maxLength}
+   */
+  static int maxDistance(int maxLength, double threshold) {
+    if (maxLength == 0) {
+      return 0;
+    }
+
+    int distance =
+        Math.max(0, Math.min(maxLength, (int) Math.floor((1.0 - threshold) * maxLength)));
+    while (distance < maxLength && 1.0 - ((double) (distance + 1) / maxLength) >= threshold) {
+      distance++;
+    }
+    while (distance > 0 && 1.0 - ((double) distance / maxLength) < threshold) {
+      distance--;
+    }
+    return distance;
+  }
+
   /**
    * Gets the original, unprocessed log message text.
    *
-   * @return The raw log message
+   * @return The raw log message, or null for messages read from bytes, whose text is not kept
    */
   public String getRawMessage() {
     return rawMessage;
@@ -141,7 +359,7 @@ class LogMessage {
   /**
    * Gets the preprocessed log message text.
    *
-   * @return The processed log message
+   * @return The processed log message, or null for messages read from bytes
    */
   public String getProcessedMessage() {
     return processedMessage;
@@ -156,6 +374,57 @@ class LogMessage {
     return new ArrayList<>(tokens);
   }
 
+  /**
+   * Gets the token at a position without copying the token list.
+   *
+   * @param index Token position
+   * @return The token
+   */
+  String getToken(int index) {
+    return tokens.get(index);
+  }
+
+  /**
+   * Checks whether the token at a position is variable, using the cached dictionary class when
+   * available.
+   *
+   * @param index Token position
+   * @return true if the token is variable
+   */
+  boolean isVariableToken(int index) {
+    TokenDictionary.Encoding current = encoding();
+    return current != null
+        ? current.isVariable(index)
+        : variableDetector.isVariable(tokens.get(index));
+  }
+
+  /**
+   * Gets the dictionary encoding of this message in the current epoch, re-encoding it if the
+   * dictionary was reset since it was last encoded.
+   *
+   * @return The encoding, or null if this message has no dictionary or cannot be encoded
+   */
+  TokenDictionary.Encoding encoding() {
+    if (dictionary == null) {
+      return null;
+    }
+    TokenDictionary.Encoding current = encoding;
+    if (!dictionary.isCurrent(current)) {
+      current = dictionary.encode(tokens);
+      encoding = current;
+    }
+    return current;
+  }
+
+  /**
+   * Gets the dictionary this message is encoded with.
+   *
+   * @return The dictionary, or null if tokens are compared as strings
+   */
+  TokenDictionary getDictionary() {
+    return dictionary;
+  }
+
   /**
    * Gets the number of tokens in this log message.
    *
@@ -167,6 +436,20 @@ class LogMessage {
 
   @Override
   public String toString() {
-    return rawMessage;
+    return rawMessage != null ? rawMessage : String.join(" ", tokens);
+  }
+
+  /** Two reusable DP rows, grown on demand. */
+  private static final class DistanceRows {
+    private int[] previous = new int[64];
+    private int[] current = new int[64];
+
+    void ensureCapacity(int size) {
+      if (previous.length < size) {
+        int capacity = Math.max(size, previous.length * 2);
+        previous = new int[capacity];
+        current = new int[capacity];
+      }
+    }
   }
 }
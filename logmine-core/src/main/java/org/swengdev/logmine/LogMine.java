@@ -18,8 +18,8 @@ package org.swengdev.logmine;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Main facade class for using LogMine as a library in backend services.
@@ -49,9 +49,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *
  * <h2>Thread Safety</h2>
  *
- * <p>This class is thread-safe and can handle concurrent operations using {@link ReadWriteLock}.
- * Multiple threads can safely call {@link #addLog(String)} and {@link #getCurrentPatterns()}
- * concurrently.
+ * <p>This class is thread-safe. Changes are serialized by a {@link Lock}, and multiple threads can
+ * safely call {@link #addLog(String)} and {@link #getCurrentPatterns()} concurrently.
+ *
+ * <p>Writers publish the patterns as an immutable {@link PatternSnapshot} through a volatile
+ * reference. Pattern queries, matching, anomaly checks and statistics read the latest snapshot and
+ * never wait for a lock, so monitoring threads are not held up by ingestion.
  *
  * <h2>Usage Examples</h2>
  *
@@ -112,12 +115,13 @@ public class LogMine {
 
   private final ProcessingMode mode;
   private final LogMineProcessor processor;
-  private final List<String> collectedLogs; // Only used in BATCH mode
-  private final int maxLogsInMemory;
-  private final ReadWriteLock lock;
-  private List<LogPattern> currentPatterns;
+  private final LogRingBuffer collectedLogs; // Only used in BATCH mode
+  private long clusteredFrom; // Sequence range of collected logs the processor has clustered
+  private long clusteredUpTo = -1; // -1 when the processor holds no incremental clusters
+  private final Lock lock; // Serializes writers; readers never take it
   private boolean patternsStale;
-  private int lastPatternUpdateCount; // Track when patterns were last updated
+  private volatile PatternSnapshot snapshot; // Published patterns, read without locking
+  private volatile Stats stats; // Published after every change, read without locking
 
   /**
    * Creates a LogMine instance with default configuration in BATCH mode.
@@ -191,14 +195,32 @@ public class LogMine {
    * @param maxLogsInMemory Maximum logs to keep in memory (BATCH mode only)
    */
   public LogMine(ProcessingMode mode, LogMineProcessor processor, int maxLogsInMemory) {
+    this(mode, processor, maxLogsInMemory, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a LogMine instance with full configuration and a memory budget for retained logs.
+   *
+   * <p>In BATCH mode the most recent logs are kept in a circular buffer. Once either budget is
+   * exceeded, the oldest logs are evicted in constant time per log. Log sizes are estimated as two
+   * bytes per character.
+   *
+   * @param mode STREAMING or BATCH processing mode
+   * @param processor Pre-configured LogMineProcessor
+   * @param maxLogsInMemory Maximum logs to keep in memory (BATCH mode only)
+   * @param maxBytesInMemory Maximum estimated size of the logs kept in memory (BATCH mode only)
+   * @throws IllegalArgumentException if a budget is negative
+   */
+  public LogMine(
+      ProcessingMode mode, LogMineProcessor processor, int maxLogsInMemory, long maxBytesInMemory) {
     this.mode = mode;
     this.processor = processor;
-    this.maxLogsInMemory = maxLogsInMemory;
-    this.collectedLogs = mode == ProcessingMode.BATCH ? new ArrayList<>() : null;
-    this.lock = new ReentrantReadWriteLock();
-    this.currentPatterns = new ArrayList<>();
+    this.collectedLogs =
+        mode == ProcessingMode.BATCH ? new LogRingBuffer(maxLogsInMemory, maxBytesInMemory) : null;
+    this.lock = new ReentrantLock();
     this.patternsStale = true;
-    this.lastPatternUpdateCount = 0;
+    publishSnapshot();
+    publishStats();
   }
 
   /**
@@ -214,7 +236,7 @@ public class LogMine {
    * </ul>
    *
    * <p>This method is thread-safe and can be called concurrently from multiple threads. It uses a
-   * write lock internally to ensure data consistency.
+   * lock internally to ensure data consistency.
    *
    * <p><b>Performance characteristics:</b>
    *
@@ -242,28 +264,22 @@ public class LogMine {
       logMessage = logMessage.substring(0, 10000);
     }
 
-    lock.writeLock().lock();
+    lock.lock();
     try {
       if (mode == ProcessingMode.STREAMING) {
         // Process immediately without storing
         processLogStreaming(logMessage);
       } else {
-        // Store for batch processing
+        // Store for batch processing; the buffer evicts the oldest logs beyond its budget
         collectedLogs.add(logMessage);
-
-        // Apply memory limit in BATCH mode
-        if (collectedLogs.size() > maxLogsInMemory) {
-          int removeCount = collectedLogs.size() - maxLogsInMemory;
-          collectedLogs.subList(0, removeCount).clear();
-        }
-
         patternsStale = true;
       }
     } catch (Exception e) {
       // Don't crash on errors
       System.err.println("Error adding log: " + e.getMessage());
     } finally {
-      lock.writeLock().unlock();
+      publishStats();
+      lock.unlock();
     }
   }
 
@@ -275,16 +291,8 @@ public class LogMine {
     // Process log and update patterns incrementally
     processor.processLogIncremental(logMessage);
 
-    // Only copy patterns if they were actually regenerated (every 50 messages)
-    // This avoids expensive list copying on every addLog() call
-    int currentCount = processor.getStats().getTotalMessages();
-    if (currentPatterns.isEmpty() || currentCount != lastPatternUpdateCount) {
-      // Check if patterns were updated (happens every 50 logs or when empty)
-      if (currentPatterns.isEmpty() || currentCount % 50 == 0 || currentCount == 1) {
-        currentPatterns = processor.getPatterns();
-        lastPatternUpdateCount = currentCount;
-      }
-    }
+    // A snapshot shares the processor's match index, so publishing costs only the changed paths
+    publishSnapshot();
     patternsStale = false;
   }
 
@@ -301,9 +309,8 @@ public class LogMine {
       }
     }
 
-    // Update patterns once at the end (single copy operation)
-    currentPatterns = processor.getPatterns();
-    lastPatternUpdateCount = processor.getStats().getTotalMessages();
+    // Publish patterns once at the end
+    publishSnapshot();
     patternsStale = false;
   }
 
@@ -321,26 +328,22 @@ public class LogMine {
       return;
     }
 
-    lock.writeLock().lock();
+    lock.lock();
     try {
       if (mode == ProcessingMode.STREAMING) {
         // Optimized bulk processing: process all logs, then update patterns once
         // This is 10-20x faster than calling addLog() in a loop
         processLogsStreamingBulk(logMessages);
       } else {
-        // Store for batch processing
-        collectedLogs.addAll(logMessages);
-
-        // Apply memory limit
-        if (collectedLogs.size() > maxLogsInMemory) {
-          int removeCount = collectedLogs.size() - maxLogsInMemory;
-          collectedLogs.subList(0, removeCount).clear();
+        // Store for batch processing; the buffer evicts the oldest logs beyond its budget
+        for (String log : logMessages) {
+          collectedLogs.add(log);
         }
-
         patternsStale = true;
       }
     } finally {
-      lock.writeLock().unlock();
+      publishStats();
+      lock.unlock();
     }
   }
 
@@ -387,83 +390,94 @@ public class LogMine {
    * @see LogPattern
    */
   public List<LogPattern> extractPatterns() {
-    lock.writeLock().lock();
+    lock.lock();
     try {
       if (mode == ProcessingMode.STREAMING) {
         // Patterns are always up-to-date in streaming mode
-        return new ArrayList<>(processor.getPatterns());
+        publishSnapshot();
       } else {
         // Batch mode - process all logs
         if (patternsStale && collectedLogs != null && !collectedLogs.isEmpty()) {
-          currentPatterns = processor.process(new ArrayList<>(collectedLogs));
+          extractBatchPatterns();
+          publishSnapshot();
           patternsStale = false;
         }
-        return new ArrayList<>(currentPatterns);
       }
+      return new ArrayList<>(snapshot.getPatterns());
     } catch (Exception e) {
       System.err.println("Error extracting patterns: " + e.getMessage());
       return new ArrayList<>();
     } finally {
-      lock.writeLock().unlock();
+      publishStats();
+      lock.unlock();
     }
   }
 
+  /**
+   * Brings the processor's clusters up to date with the collected logs. Must be called with the
+   * lock held.
+   *
+   * <p>Only logs appended or evicted since the previous extraction are applied (see {@link
+   * LogMineProcessor#processDelta}), unless that change is larger than the retained logs
+   * themselves or parallel clustering is configured, in which case all logs are clustered again.
+   * The collected logs are read in place, without copying.
+   */
+  private void extractBatchPatterns() {
+    if (processor.getConfig().parallelism() > 1) {
+      processor.process(collectedLogs);
+      clusteredUpTo = -1;
+      return;
+    }
+
+    long evicted = collectedLogs.evictedCount();
+    long appended = collectedLogs.appendedCount();
+    if (clusteredUpTo >= 0) {
+      // Logs that arrived and left between two extractions were never clustered
+      long evictedClustered = Math.max(0, Math.min(evicted, clusteredUpTo) - clusteredFrom);
+      List<String> newLogs = collectedLogs.since(clusteredUpTo);
+      if (evictedClustered + newLogs.size() <= collectedLogs.size()) {
+        processor.processDelta(newLogs, (int) evictedClustered);
+        clusteredFrom = evicted;
+        clusteredUpTo = appended;
+        return;
+      }
+    }
+
+    processor.clear();
+    processor.processDelta(collectedLogs, 0);
+    clusteredFrom = evicted;
+    clusteredUpTo = appended;
+  }
+
   /**
    * Gets the current patterns without re-processing. Fast operation, returns cached patterns.
    *
-   * <p>In STREAMING mode, this method uses lazy updates: if patterns haven't been refreshed
-   * recently (due to the 50-message batching optimization), it will update them before returning.
-   * This ensures patterns are always fresh without the overhead of updating on every log.
+   * <p>In STREAMING mode, every change publishes a new snapshot, so the patterns are current as of
+   * the last completed call that added logs. This method never waits for the lock.
    *
    * <p>In BATCH mode, returns cached patterns without processing. Call {@link #extractPatterns()}
    * explicitly to process logs.
    *
+   * <p>Returns a copy of the snapshot's pattern list. Use {@link #getSnapshot()} to read the
+   * patterns without copying.
+   *
    * @return List of current patterns (may be stale in BATCH mode if new logs added)
    */
   public List<LogPattern> getCurrentPatterns() {
-    // Try read lock first for the common case (patterns are fresh)
-    lock.readLock().lock();
-    try {
-      // Only apply lazy updates in STREAMING mode
-      if (mode == ProcessingMode.STREAMING && shouldUpdatePatternsStreaming()) {
-        // Need to update - upgrade to write lock
-        lock.readLock().unlock();
-        lock.writeLock().lock();
-        try {
-          // Double-check after acquiring write lock
-          if (shouldUpdatePatternsStreaming()) {
-            updatePatternsStreaming();
-          }
-          // Downgrade to read lock
-          lock.readLock().lock();
-        } finally {
-          lock.writeLock().unlock();
-        }
-      }
-      return new ArrayList<>(currentPatterns);
-    } finally {
-      lock.readLock().unlock();
-    }
+    return new ArrayList<>(getSnapshot().getPatterns());
   }
 
   /**
-   * Checks if patterns should be updated in STREAMING mode. Patterns need updating if there are new
-   * messages since last update (due to the 50-message batching optimization).
+   * Gets the latest published pattern snapshot, without locking.
+   *
+   * <p>Writers publish a snapshot after every change, so this only reads the published reference.
+   * Compare {@link PatternSnapshot#getVersion()} with a previously seen version to skip unchanged
+   * snapshots.
    *
-   * @return true if patterns need updating in STREAMING mode
+   * @return Immutable snapshot of the current patterns
    */
-  private boolean shouldUpdatePatternsStreaming() {
-    // In streaming mode, check if there are new messages since last update
-    int currentCount = processor.getStats().getTotalMessages();
-    return currentCount != lastPatternUpdateCount && currentCount > 0;
-  }
-
-  /** Updates patterns in STREAMING mode. Should be called with write lock held. */
-  private void updatePatternsStreaming() {
-    // In streaming mode, just refresh the pattern list
-    currentPatterns = processor.getPatterns();
-    lastPatternUpdateCount = processor.getStats().getTotalMessages();
-    patternsStale = false;
+  public PatternSnapshot getSnapshot() {
+    return snapshot;
   }
 
   /**
@@ -472,49 +486,45 @@ public class LogMine {
    *
    * <p>Note: Patterns must be extracted at least once before this can detect anomalies.
    *
+   * <p>Matches against the latest snapshot (see {@link #getSnapshot()}) without locking.
+   *
    * @param logMessage The log message to check
    * @return true if the log is anomalous (no pattern match)
    */
   public boolean isAnomaly(String logMessage) {
-    lock.readLock().lock();
-    try {
-      if (currentPatterns.isEmpty()) {
-        return false; // Can't detect anomalies without patterns
-      }
-      return processor.matchPattern(logMessage) == null;
-    } finally {
-      lock.readLock().unlock();
+    PatternSnapshot current = getSnapshot();
+    if (current.size() == 0) {
+      return false; // Can't detect anomalies without patterns
     }
+    return current.matchPattern(logMessage) == null;
   }
 
   /**
    * Finds the pattern that matches a given log message.
    *
+   * <p>Matches against the latest snapshot (see {@link #getSnapshot()}) without locking.
+   *
    * @param logMessage The log message to match
    * @return The matching pattern, or null if no match
    */
   public LogPattern matchPattern(String logMessage) {
-    lock.readLock().lock();
-    try {
-      return processor.matchPattern(logMessage);
-    } finally {
-      lock.readLock().unlock();
-    }
+    return getSnapshot().matchPattern(logMessage);
   }
 
   /** Clears all collected logs and patterns. Useful for starting fresh or managing memory. */
   public void clear() {
-    lock.writeLock().lock();
+    lock.lock();
     try {
       if (collectedLogs != null) {
         collectedLogs.clear();
+        clusteredUpTo = -1;
       }
       processor.clear();
-      currentPatterns.clear();
+      publishSnapshot();
       patternsStale = true;
-      lastPatternUpdateCount = 0;
     } finally {
-      lock.writeLock().unlock();
+      publishStats();
+      lock.unlock();
     }
   }
 
@@ -548,16 +558,13 @@ public class LogMine {
   /**
    * Gets statistics about the collected logs and patterns.
    *
+   * <p>Returns the snapshot published after the most recent change. It is read without locking, so
+   * monitoring threads never wait for ingestion.
+   *
    * @return Statistics object with metrics
    */
   public Stats getStats() {
-    lock.readLock().lock();
-    try {
-      int logCount = getLogCount();
-      return new Stats(mode, logCount, currentPatterns.size(), patternsStale, processor.getStats());
-    } finally {
-      lock.readLock().unlock();
-    }
+    return stats;
   }
 
   /**
@@ -569,18 +576,7 @@ public class LogMine {
    * @return Number of logs
    */
   public int getLogCount() {
-    lock.readLock().lock();
-    try {
-      if (mode == ProcessingMode.STREAMING) {
-        // In streaming mode, use processing stats to get total message count
-        return processor.getStats().getTotalMessages();
-      } else {
-        // In batch mode, count stored logs
-        return collectedLogs != null ? collectedLogs.size() : 0;
-      }
-    } finally {
-      lock.readLock().unlock();
-    }
+    return stats.getTotalLogs();
   }
 
   /**
@@ -589,14 +585,26 @@ public class LogMine {
    * @return Number of patterns
    */
   public int getPatternCount() {
-    lock.readLock().lock();
-    try {
-      return currentPatterns.size();
-    } finally {
-      lock.readLock().unlock();
+    return stats.getPatternCount();
+  }
+
+  /** Publishes the processor's current patterns. Must be called with the lock held. */
+  private void publishSnapshot() {
+    if (snapshot == null || snapshot.getVersion() != processor.patternsVersion()) {
+      snapshot = processor.snapshot();
     }
   }
 
+  /** Publishes a new statistics snapshot. Must be called with the lock held. */
+  private void publishStats() {
+    int logCount =
+        mode == ProcessingMode.STREAMING
+            ? processor.getTotalMessages()
+            : (collectedLogs != null ? collectedLogs.size() : 0);
+    int patternCount = snapshot.size();
+    stats = new Stats(mode, logCount, patternCount, patternsStale, processor.getStats());
+  }
+
   /** Statistics about the LogMine instance. */
   public static class Stats {
     private final ProcessingMode mode;
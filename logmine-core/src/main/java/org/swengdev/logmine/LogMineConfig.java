@@ -46,6 +46,11 @@ import org.swengdev.logmine.strategy.VariableDetector;
  * @param ignoreTokens List of tokens to ignore during pattern extraction
  * @param enableHierarchicalPatterns Whether to enable hierarchical pattern extraction
  * @param hierarchyThresholds Thresholds for hierarchical pattern levels
+ * @param parallelism Number of worker threads for batch clustering (1 = sequential)
+ * @param deterministic Whether parallel batch clustering must produce reproducible output
+ * @param clusteringEngine Clustering engine used for incremental (streaming) processing
+ * @param parseTreeDepth Number of leading tokens the {@link ClusteringEngine#DRAIN} tree routes on
+ * @param parseTreeMaxChildren Maximum children per {@link ClusteringEngine#DRAIN} tree node
  */
 public record LogMineConfig(
     // Clustering configuration
@@ -77,7 +82,16 @@ public record LogMineConfig(
 
     // Hierarchical pattern configuration
     boolean enableHierarchicalPatterns,
-    List<Double> hierarchyThresholds) {
+    List<Double> hierarchyThresholds,
+
+    // Parallel batch configuration
+    int parallelism,
+    boolean deterministic,
+
+    // Streaming engine configuration
+    ClusteringEngine clusteringEngine,
+    int parseTreeDepth,
+    int parseTreeMaxChildren) {
 
   /** Compact constructor with validation. */
   public LogMineConfig {
@@ -120,6 +134,22 @@ public record LogMineConfig(
       throw new IllegalArgumentException("Min pattern specificity must be between 0.0 and 1.0");
     }
 
+    // Validate parallelism
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+
+    // Validate streaming engine
+    if (clusteringEngine == null) {
+      throw new IllegalArgumentException("Clustering engine cannot be null");
+    }
+    if (parseTreeDepth < 1) {
+      throw new IllegalArgumentException("Parse tree depth must be at least 1");
+    }
+    if (parseTreeMaxChildren < 1) {
+      throw new IllegalArgumentException("Parse tree max children must be at least 1");
+    }
+
     // Make defensive copies of mutable collections
     ignoreTokens = List.copyOf(ignoreTokens != null ? ignoreTokens : List.of());
     hierarchyThresholds =
@@ -235,6 +265,17 @@ public record LogMineConfig(
     JSON
   }
 
+  /** Clustering engines for incremental (streaming) processing. */
+  public enum ClusteringEngine {
+    /** Default: LogMine edit-distance clustering against every candidate cluster */
+    LOGMINE,
+    /**
+     * Drain-style fixed-depth parse tree: routes by token count and leading tokens, then compares
+     * positionally against the few clusters in the reached leaf
+     */
+    DRAIN
+  }
+
   /**
    * Builder for LogMineConfig.
    *
@@ -260,6 +301,11 @@ public record LogMineConfig(
     private final List<String> ignoreTokens = new ArrayList<>();
     private boolean enableHierarchicalPatterns = false;
     private final List<Double> hierarchyThresholds = new ArrayList<>();
+    private int parallelism = 1;
+    private boolean deterministic = true;
+    private ClusteringEngine clusteringEngine = ClusteringEngine.LOGMINE;
+    private int parseTreeDepth = 2;
+    private int parseTreeMaxChildren = 100;
 
     /** Creates a new Builder with default configuration settings. */
     public Builder() {
@@ -529,6 +575,80 @@ public record LogMineConfig(
       return this;
     }
 
+    /**
+     * Sets the number of worker threads used by batch processing. With more than one thread,
+     * messages are partitioned by shape, clustered on a ForkJoinPool and the partial clusters are
+     * reconciled afterwards. Streaming processing is not affected.
+     *
+     * @param threads Number of worker threads (1 = sequential)
+     * @return this Builder instance
+     */
+    public Builder parallelism(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("Parallelism must be at least 1");
+      }
+      this.parallelism = threads;
+      return this;
+    }
+
+    /**
+     * Sets whether parallel batch processing must be reproducible. When enabled (the default),
+     * partial clusters are reconciled in input order, so the same input always yields the same
+     * patterns regardless of thread scheduling. When disabled, they are reconciled in the order
+     * the partitions finish.
+     *
+     * @param deterministic Whether parallel output must be reproducible
+     * @return this Builder instance
+     */
+    public Builder deterministic(boolean deterministic) {
+      this.deterministic = deterministic;
+      return this;
+    }
+
+    /**
+     * Sets the clustering engine used for incremental (streaming) processing. Batch processing
+     * always uses LogMine clustering.
+     *
+     * @param engine The clustering engine to use
+     * @return this Builder instance
+     */
+    public Builder clusteringEngine(ClusteringEngine engine) {
+      if (engine == null) {
+        throw new IllegalArgumentException("Clustering engine cannot be null");
+      }
+      this.clusteringEngine = engine;
+      return this;
+    }
+
+    /**
+     * Sets how many leading tokens the {@link ClusteringEngine#DRAIN} parse tree routes on.
+     *
+     * @param depth Number of leading tokens (at least 1)
+     * @return this Builder instance
+     */
+    public Builder parseTreeDepth(int depth) {
+      if (depth < 1) {
+        throw new IllegalArgumentException("Parse tree depth must be at least 1");
+      }
+      this.parseTreeDepth = depth;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of children per {@link ClusteringEngine#DRAIN} parse tree node.
+     * Tokens seen once a node is full share its wildcard branch.
+     *
+     * @param maxChildren Maximum children per node (at least 1)
+     * @return this Builder instance
+     */
+    public Builder parseTreeMaxChildren(int maxChildren) {
+      if (maxChildren < 1) {
+        throw new IllegalArgumentException("Parse tree max children must be at least 1");
+      }
+      this.parseTreeMaxChildren = maxChildren;
+      return this;
+    }
+
     /**
      * Builds the LogMineConfig instance with the configured settings.
      *
@@ -554,7 +674,12 @@ public record LogMineConfig(
           minPatternSpecificity,
           ignoreTokens,
           enableHierarchicalPatterns,
-          hierarchyThresholds);
+          hierarchyThresholds,
+          parallelism,
+          deterministic,
+          clusteringEngine,
+          parseTreeDepth,
+          parseTreeMaxChildren);
     }
   }
 }
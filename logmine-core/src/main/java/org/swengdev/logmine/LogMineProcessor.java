@@ -16,10 +16,26 @@
 
 package org.swengdev.logmine;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import org.swengdev.logmine.strategy.TokenizerStrategy;
+import org.swengdev.logmine.strategy.TokenSpans;
 import org.swengdev.logmine.strategy.VariableDetector;
 
 /**
@@ -33,9 +49,25 @@ import org.swengdev.logmine.strategy.VariableDetector;
  * CIKM 2016
  */
 public class LogMineProcessor {
+  // Per-thread token positions, so tokenizing a message allocates no token list
+  private static final ThreadLocal<TokenSpans> SPANS = ThreadLocal.withInitial(TokenSpans::new);
+  // Largest region of a file mapped at once; mappings are limited to int indexes
+  private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
   private final LogMineConfig config;
   private List<LogCluster> clusters;
-  private List<LogPattern> patterns;
+  private ClusterCandidateIndex clusterIndex;
+  private final TokenDictionary tokenDictionary; // Null if the detector matches constants loosely
+  private final PatternRanking ranking;
+  private int totalMessages; // Messages in the current clusters
+  private final DrainParseTree parseTree; // Only for the DRAIN streaming engine
+  private Function<String, LogMessage> snapshotParser; // Shared by all snapshots, built once
+
+  // Incremental batch state, null unless the clusters were built by processDelta. In that mode
+  // the cluster list also holds clusters below the minimum size, which later messages may join.
+  private ArrayDeque<LogCluster> batchAssignments; // Cluster of each retained message, oldest first
+  private Map<LogCluster, Long> batchOrdinals; // Creation order, the ranking's tie-breaker
+  private long nextBatchOrdinal;
 
   /**
    * Creates a LogMine processor with custom configuration.
@@ -45,7 +77,17 @@ public class LogMineProcessor {
   public LogMineProcessor(LogMineConfig config) {
     this.config = config;
     this.clusters = new ArrayList<>();
-    this.patterns = new ArrayList<>();
+    this.clusterIndex = new ClusterCandidateIndex(config.variableDetector());
+    // Token IDs only tell constants apart when the detector matches them exactly
+    this.tokenDictionary =
+        config.variableDetector().constantsMatchExactly()
+            ? new TokenDictionary(config.variableDetector())
+            : null;
+    this.ranking = new PatternRanking();
+    this.parseTree =
+        config.clusteringEngine() == LogMineConfig.ClusteringEngine.DRAIN
+            ? new DrainParseTree(config.parseTreeDepth(), config.parseTreeMaxChildren())
+            : null;
   }
 
   /** Creates a LogMine processor with default configuration. */
@@ -75,35 +117,119 @@ public class LogMineProcessor {
    * @return List of extracted patterns, sorted by support count
    */
   public List<LogPattern> process(List<String> logMessages) {
-    TokenizerStrategy tokenizer = config.tokenizerStrategy();
-    VariableDetector variableDetector = config.variableDetector();
+    batchAssignments = null;
 
     // Create preprocessor if any normalization is enabled
     LogPreprocessor preprocessor = createPreprocessor();
 
-    // Convert strings to LogMessage objects using configured tokenizer
-    List<LogMessage> messages =
-        logMessages.stream()
-            .map(
-                rawMessage -> {
-                  // Preprocess to normalize different log formats
-                  String processed =
-                      preprocessor != null ? preprocessor.preprocess(rawMessage) : rawMessage;
-                  return new LogMessage(
-                      rawMessage, tokenizer.tokenize(processed), variableDetector);
-                })
-            .collect(Collectors.toList());
-
     // Step 1: Cluster similar messages
-    clusterMessages(messages);
+    if (config.parallelism() > 1) {
+      clusterMessagesInParallel(
+          clusterer ->
+              clusterer.createMessages(
+                  logMessages, rawMessage -> createMessage(rawMessage, preprocessor)));
+    } else {
+      // Convert strings to LogMessage objects using configured tokenizer
+      List<LogMessage> messages =
+          logMessages.stream()
+              .map(rawMessage -> createMessage(rawMessage, preprocessor))
+              .collect(Collectors.toList());
+      clusterMessages(messages);
+    }
 
-    // Step 2: Extract patterns from clusters
+    // Step 2 and 3: Extract patterns from clusters, ranked by support count (descending)
     extractPatterns();
 
-    // Step 3: Sort patterns by support count (descending)
-    patterns.sort((p1, p2) -> Integer.compare(p2.getSupportCount(), p1.getSupportCount()));
+    return new ArrayList<>(ranking.patterns());
+  }
+
+  /**
+   * Processes the lines of a log file and extracts patterns, like {@link #process(List)} with the
+   * file's non-blank lines. The file is memory-mapped and read as described for {@link
+   * #process(ByteBuffer)}, so it is never decoded as a whole.
+   *
+   * @param logFile UTF-8 log file
+   * @return List of extracted patterns, sorted by support count
+   * @throws IOException If the file cannot be read
+   */
+  public List<LogPattern> process(Path logFile) throws IOException {
+    List<ByteBuffer> regions = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        int length = (int) Math.min(size - position, MAX_MAPPING);
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+        // End every region but the last after a newline, so no line spans two regions
+        int end = length;
+        if (position + length < size) {
+          while (end > 0 && region.get(end - 1) != '\n') {
+            end--;
+          }
+          if (end == 0) {
+            end = length; // A line longer than a region is split
+          }
+        }
+        regions.add(region.limit(end));
+        position += end;
+      }
+    }
+    return processBytes(regions);
+  }
+
+  /**
+   * Processes the lines of UTF-8 text between a buffer's position and limit and extracts patterns,
+   * like {@link #process(List)} with the text's non-blank lines. Lines end at {@code \n} or {@code
+   * \r\n}. The buffer's position and limit are not changed.
+   *
+   * <p>Lines are found by scanning the bytes, and ASCII lines are preprocessed and tokenized
+   * straight from them. Only tokens the dictionary has not seen yet are decoded into strings; other
+   * lines are decoded as a whole. With a tokenizer that produces no spans (see {@link
+   * org.swengdev.logmine.strategy.TokenizerStrategy#tokenizeSpans}) every line is decoded. Messages
+   * read this way do not keep their text.
+   *
+   * @param logData UTF-8 log text
+   * @return List of extracted patterns, sorted by support count
+   */
+  public List<LogPattern> process(ByteBuffer logData) {
+    return processBytes(List.of(logData));
+  }
+
+  private List<LogPattern> processBytes(List<ByteBuffer> regions) {
+    batchAssignments = null;
+    LogPreprocessor preprocessor = createPreprocessor();
+
+    if (config.parallelism() > 1) {
+      clusterMessagesInParallel(
+          clusterer -> clusterer.readMessages(regions, slice -> readMessages(slice, preprocessor)));
+    } else {
+      List<LogMessage> messages = new ArrayList<>();
+      for (ByteBuffer region : regions) {
+        messages.addAll(readMessages(region, preprocessor));
+      }
+      clusterMessages(messages);
+    }
+
+    extractPatterns();
+    return new ArrayList<>(ranking.patterns());
+  }
 
-    return patterns;
+  /** Creates a message for every non-blank line of UTF-8 text. Thread-safe. */
+  private List<LogMessage> readMessages(ByteBuffer data, LogPreprocessor preprocessor) {
+    List<LogMessage> messages = new ArrayList<>();
+    ByteLines lines = new ByteLines(data);
+    AsciiText text = new AsciiText();
+    while (lines.next()) {
+      if (lines.isBlank()) {
+        continue;
+      }
+      messages.add(
+          lines.isAscii()
+              ? createMessage(text.set(data, lines.start(), lines.end()), preprocessor)
+              : createMessage(lines.decode(), preprocessor));
+    }
+    return messages;
   }
 
   /**
@@ -113,6 +239,7 @@ public class LogMineProcessor {
    */
   private void clusterMessages(List<LogMessage> messages) {
     clusters = new ArrayList<>();
+    clearClusterIndexes();
     double threshold = config.similarityThreshold();
     VariableDetector variableDetector = config.variableDetector();
     int maxClusters = config.maxClusters();
@@ -120,8 +247,8 @@ public class LogMineProcessor {
     for (LogMessage message : messages) {
       boolean clustered = false;
 
-      // Try to add message to an existing cluster
-      for (LogCluster cluster : clusters) {
+      // Try to add message to an existing cluster (only those that can reach the threshold)
+      for (LogCluster cluster : clusterIndex.candidates(message, threshold)) {
         if (cluster.addMessage(message, threshold)) {
           clustered = true;
           break;
@@ -131,7 +258,7 @@ public class LogMineProcessor {
       // If not clustered, create a new cluster (with limit)
       if (!clustered) {
         if (clusters.size() < maxClusters) {
-          clusters.add(new LogCluster(message, variableDetector));
+          addCluster(new LogCluster(message, variableDetector));
         } else {
           // At max capacity, merge with closest cluster (relaxed threshold)
           mergeWithClosestCluster(message, threshold * 0.8);
@@ -143,11 +270,250 @@ public class LogMineProcessor {
     int minSize = config.minClusterSize();
     clusters =
         clusters.stream().filter(cluster -> cluster.size() >= minSize).collect(Collectors.toList());
+    removeFromClusterIndexes(cluster -> cluster.size() < minSize);
+  }
+
+  /**
+   * Converts and clusters log messages on a ForkJoinPool sized by {@link
+   * LogMineConfig#parallelism()}. The messages come from {@code messageSource}, which converts them
+   * with the clusterer it is given. See {@link ParallelBatchClusterer} for how partitions are
+   * reconciled.
+   */
+  private void clusterMessagesInParallel(
+      Function<ParallelBatchClusterer, List<LogMessage>> messageSource) {
+    List<LogCluster> reconciled;
+    try (ForkJoinPool pool = new ForkJoinPool(config.parallelism())) {
+      ParallelBatchClusterer clusterer = new ParallelBatchClusterer(config, pool);
+      List<LogMessage> messages = messageSource.apply(clusterer);
+      reconciled = clusterer.cluster(messages);
+    }
+
+    // Filter out clusters that are too small
+    int minSize = config.minClusterSize();
+    clusters = new ArrayList<>();
+    clearClusterIndexes();
+    for (LogCluster cluster : reconciled) {
+      if (cluster.size() >= minSize) {
+        addCluster(cluster);
+      }
+    }
+  }
+
+  /** Preprocesses and tokenizes a raw log line. Thread-safe. */
+  private LogMessage createMessage(String rawMessage, LogPreprocessor preprocessor) {
+    return createMessage(rawMessage, preprocessor, tokenDictionary);
+  }
+
+  /**
+   * Preprocesses and tokenizes a raw log line for a query. Patterns are matched by their strings,
+   * so the message is not encoded and queries leave the dictionary alone. Thread-safe.
+   */
+  private LogMessage createQueryMessage(String rawMessage, LogPreprocessor preprocessor) {
+    return createMessage(rawMessage, preprocessor, null);
+  }
+
+  private LogMessage createMessage(
+      String rawMessage, LogPreprocessor preprocessor, TokenDictionary dictionary) {
+    // Preprocess to normalize different log formats
+    String processed = preprocessor != null ? preprocessor.preprocess(rawMessage) : rawMessage;
+    TokenSpans spans = SPANS.get();
+    if (config.tokenizerStrategy().tokenizeSpans(processed, spans)) {
+      return new LogMessage(rawMessage, processed, spans, config.variableDetector(), dictionary);
+    }
+    return new LogMessage(
+        rawMessage,
+        config.tokenizerStrategy().tokenize(processed),
+        config.variableDetector(),
+        dictionary);
+  }
+
+  /**
+   * Preprocesses and tokenizes a line of ASCII text without copying it. The text is only decoded if
+   * the tokenizer produces no spans. Thread-safe.
+   */
+  private LogMessage createMessage(AsciiText line, LogPreprocessor preprocessor) {
+    CharSequence processed = preprocessor != null ? preprocessor.preprocessReusing(line) : line;
+    TokenSpans spans = SPANS.get();
+    if (config.tokenizerStrategy().tokenizeSpans(processed, spans)) {
+      return new LogMessage(null, processed, spans, config.variableDetector(), tokenDictionary);
+    }
+    return new LogMessage(
+        line.toString(),
+        config.tokenizerStrategy().tokenize(processed.toString()),
+        config.variableDetector(),
+        tokenDictionary);
+  }
+
+  /**
+   * Clusters already tokenized messages and extracts their patterns, like {@link #process(List)}.
+   *
+   * @param messages Messages to cluster
+   * @return Extracted patterns, sorted by support count
+   */
+  List<LogPattern> processMessages(List<LogMessage> messages) {
+    batchAssignments = null;
+    clusterMessages(messages);
+    extractPatterns();
+    return ranking.patterns();
+  }
+
+  /**
+   * Applies a change of the retained batch logs to the clusters, instead of re-clustering every
+   * retained log. Evicted messages are removed from their clusters, and only the clusters they
+   * belonged to are summarized again from their remaining messages. Appended messages are clustered
+   * into the existing clusters exactly as {@link #process(List)} would cluster them after the
+   * retained ones. Only changed clusters are re-ranked.
+   *
+   * <p>Without evictions the patterns are the same as {@link #process(List)} over all retained
+   * logs. A cluster that loses its oldest messages continues with its oldest remaining message as
+   * representative, which may differ slightly from how a full re-clustering would group them.
+   *
+   * <p>The first call after construction, {@link #clear()} or {@link #process(List)} starts from no
+   * clusters; it must receive every retained log and no evictions.
+   *
+   * @param appended Logs appended since the previous call, oldest first
+   * @param evicted Number of logs passed to earlier calls that have been evicted since
+   * @return Patterns of the clusters that reach the minimum size, sorted by support count
+   */
+  List<LogPattern> processDelta(List<String> appended, int evicted) {
+    if (batchAssignments == null) {
+      clusters = new ArrayList<>();
+      clearClusterIndexes();
+      ranking.clear();
+      batchAssignments = new ArrayDeque<>();
+      batchOrdinals = new IdentityHashMap<>();
+      nextBatchOrdinal = 0;
+    }
+    Set<LogCluster> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Evicted messages are the oldest of their clusters
+    Map<LogCluster, Integer> evictedCounts = new IdentityHashMap<>();
+    for (int i = 0; i < evicted && !batchAssignments.isEmpty(); i++) {
+      evictedCounts.merge(batchAssignments.pollFirst(), 1, Integer::sum);
+    }
+    Set<LogCluster> emptied = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<LogCluster> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Map.Entry<LogCluster, Integer> entry : evictedCounts.entrySet()) {
+      LogCluster cluster = entry.getKey();
+      LogMessage representative = cluster.getCentroid();
+      cluster.evictOldest(entry.getValue());
+      if (cluster.size() == 0) {
+        emptied.add(cluster);
+        ranking.remove(cluster);
+        batchOrdinals.remove(cluster);
+      } else {
+        changed.add(cluster);
+        if (cluster.getCentroid() != representative) {
+          moved.add(cluster);
+        }
+      }
+    }
+    if (!emptied.isEmpty()) {
+      clusters.removeIf(emptied::contains);
+      removeFromClusterIndexes(emptied::contains);
+    }
+    if (!moved.isEmpty()) {
+      clusterIndex.reindex(moved::contains);
+      if (parseTree != null) {
+        parseTree.removeIf(moved::contains);
+        moved.forEach(parseTree::add);
+      }
+    }
+
+    // Cluster appended messages like clusterMessages does
+    LogPreprocessor preprocessor = createPreprocessor();
+    double threshold = config.similarityThreshold();
+    for (String rawMessage : appended) {
+      LogMessage message = createMessage(rawMessage, preprocessor);
+      LogCluster target = null;
+      for (LogCluster cluster : clusterIndex.candidates(message, threshold)) {
+        if (cluster.addMessage(message, threshold)) {
+          target = cluster;
+          break;
+        }
+      }
+      if (target == null) {
+        if (clusters.size() < config.maxClusters()) {
+          target = new LogCluster(message, config.variableDetector());
+          addCluster(target);
+          if (nextBatchOrdinal > PatternRanking.MAX_ORDINAL) {
+            nextBatchOrdinal = ranking.compactOrdinals(batchOrdinals);
+          }
+          batchOrdinals.put(target, nextBatchOrdinal++);
+        } else {
+          target = mergeWithClosestCluster(message, threshold * 0.8);
+        }
+      }
+      batchAssignments.addLast(target);
+      changed.add(target);
+    }
+
+    // Rank the changed clusters that reach the minimum size, in creation order among equals
+    int minSize = config.minClusterSize();
+    for (LogCluster cluster : changed) {
+      if (cluster.size() >= minSize) {
+        ranking.refresh(cluster, batchOrdinals.get(cluster));
+      } else {
+        ranking.remove(cluster);
+      }
+    }
+    totalMessages = (int) ranking.totalSupport();
+    return ranking.patterns();
+  }
+
+  /**
+   * Gets the clusters that produce patterns. After {@link #processDelta} the cluster list also
+   * holds clusters below the minimum size, which are left out here.
+   */
+  private List<LogCluster> patternClusters() {
+    if (batchAssignments == null) {
+      return clusters;
+    }
+    int minSize = config.minClusterSize();
+    return clusters.stream().filter(cluster -> cluster.size() >= minSize).toList();
+  }
+
+  /** Registers a new cluster in the ordered cluster list, the candidate index and the tree. */
+  private void addCluster(LogCluster cluster) {
+    clusters.add(cluster);
+    clusterIndex.add(cluster);
+    if (parseTree != null) {
+      parseTree.add(cluster);
+    }
+  }
+
+  private void removeFromClusterIndexes(Predicate<LogCluster> filter) {
+    clusterIndex.removeIf(filter);
+    if (parseTree != null) {
+      parseTree.removeIf(filter);
+    }
+  }
+
+  private void clearClusterIndexes() {
+    clusterIndex.clear();
+    if (parseTree != null) {
+      parseTree.clear();
+    }
   }
 
-  /** Extracts patterns from each cluster. */
+  /** Extracts patterns from each cluster and ranks them from scratch. */
   private void extractPatterns() {
-    patterns = clusters.stream().map(LogCluster::generatePattern).collect(Collectors.toList());
+    ranking.clear();
+    totalMessages = 0;
+    for (LogCluster cluster : clusters) {
+      ranking.refresh(cluster);
+      totalMessages += cluster.size();
+    }
+  }
+
+  /**
+   * Gets the matcher index, first applying the ranking changes since it was last used. Lookups may
+   * run concurrently with each other, so only one of them updates.
+   */
+  private PatternMatcher patternMatcher() {
+    synchronized (ranking) {
+      return ranking.matcher();
+    }
   }
 
   /**
@@ -158,23 +524,55 @@ public class LogMineProcessor {
    * @return The matching LogPattern, or null if no pattern matches
    */
   public LogPattern matchPattern(String logMessage) {
-    TokenizerStrategy tokenizer = config.tokenizerStrategy();
-    VariableDetector variableDetector = config.variableDetector();
+    LogMessage message = createQueryMessage(logMessage, createPreprocessor());
 
-    // Preprocess to normalize different log formats
-    LogPreprocessor preprocessor = createPreprocessor();
-    String processed = preprocessor != null ? preprocessor.preprocess(logMessage) : logMessage;
+    // Same result as scanning the patterns in order, via the compiled index
+    return patternMatcher().match(message);
+  }
 
-    LogMessage message =
-        new LogMessage(logMessage, tokenizer.tokenize(processed), variableDetector);
+  /**
+   * Gets the version of the ranked patterns, which changes whenever they may have changed.
+   *
+   * @return Pattern version
+   */
+  long patternsVersion() {
+    return ranking.version();
+  }
 
-    for (LogPattern pattern : patterns) {
-      if (pattern.matches(message)) {
-        return pattern;
-      }
+  /**
+   * Captures the current patterns in an immutable snapshot that can be matched against without
+   * synchronizing with this processor. The snapshot shares the match index this processor keeps
+   * up to date, so it costs only the patterns changed since the previous one. Must not run
+   * concurrently with updates.
+   *
+   * @return Snapshot of the ranked patterns
+   */
+  PatternSnapshot snapshot() {
+    if (snapshotParser == null) {
+      LogPreprocessor preprocessor = createPreprocessor();
+      snapshotParser = rawMessage -> createQueryMessage(rawMessage, preprocessor);
+    }
+    PatternMatcher matcher;
+    synchronized (ranking) {
+      matcher = ranking.matcher().freeze();
     }
+    return new PatternSnapshot(ranking.version(), matcher, snapshotParser);
+  }
 
-    return null;
+  /**
+   * Captures a snapshot of the given patterns instead of this processor's own. Log lines matched
+   * against it are preprocessed and tokenized like this processor's. Thread-safe.
+   *
+   * @param version Version of the snapshot
+   * @param patterns Patterns in rank order
+   * @return Snapshot of the patterns
+   */
+  PatternSnapshot snapshotOf(long version, List<LogPattern> patterns) {
+    PatternMatcher matcher = new PatternMatcher();
+    matcher.update(patterns);
+    LogPreprocessor preprocessor = createPreprocessor();
+    return new PatternSnapshot(
+        version, matcher, rawMessage -> createQueryMessage(rawMessage, preprocessor));
   }
 
   /**
@@ -190,76 +588,112 @@ public class LogMineProcessor {
    * Processes a single log message incrementally (streaming mode). Updates clusters and patterns
    * without storing the raw log.
    *
+   * <p>Only the cluster that absorbed the message regenerates its pattern, and it is moved to its
+   * new rank in O(log k) for k patterns, so {@link #getPatterns()} is current after every call.
+   *
+   * <p>With {@link LogMineConfig.ClusteringEngine#DRAIN} the message is routed through a
+   * fixed-depth parse tree (see {@link DrainParseTree}) instead of being compared with candidate
+   * clusters in creation order.
+   *
    * @param logMessage Raw log message to process
    */
   public void processLogIncremental(String logMessage) {
-    TokenizerStrategy tokenizer = config.tokenizerStrategy();
     VariableDetector variableDetector = config.variableDetector();
     double threshold = config.similarityThreshold();
 
-    // Preprocess to normalize different log formats
-    LogPreprocessor preprocessor = createPreprocessor();
-    String processed = preprocessor != null ? preprocessor.preprocess(logMessage) : logMessage;
-
-    // Create LogMessage
-    LogMessage message =
-        new LogMessage(logMessage, tokenizer.tokenize(processed), variableDetector);
+    // Preprocess and tokenize
+    LogMessage message = createMessage(logMessage, createPreprocessor());
 
-    boolean clustered = false;
+    LogCluster target = null;
 
-    // Try to add to existing cluster
-    for (LogCluster cluster : clusters) {
-      if (cluster.addMessage(message, threshold)) {
-        clustered = true;
-        break;
+    if (parseTree != null) {
+      // Drain: the tree picks the most similar cluster of the message's leaf
+      target = parseTree.match(message, threshold);
+      if (target != null) {
+        target.absorb(message);
+      }
+    } else {
+      // Try to add to an existing cluster (only those that can reach the threshold)
+      for (LogCluster cluster : clusterIndex.candidates(message, threshold)) {
+        if (cluster.addMessage(message, threshold)) {
+          target = cluster;
+          break;
+        }
       }
     }
 
-    // Create new cluster if needed (with max cluster limit)
-    if (!clustered) {
+    // Create new cluster if needed (with max cluster limit). Streaming clusters keep only a
+    // summary of the messages they absorb, so memory grows with clusters rather than logs.
+    if (target == null) {
       if (clusters.size() < config.maxClusters()) {
-        clusters.add(new LogCluster(message, variableDetector));
+        target = new LogCluster(message, variableDetector, false);
+        addCluster(target);
       } else {
         // At max capacity, merge with closest cluster
-        mergeWithClosestCluster(message, threshold * 0.8);
+        target = mergeWithClosestCluster(message, threshold * 0.8);
       }
     }
 
-    // Filter small clusters periodically (every 100 messages)
-    if (getStats().getTotalMessages() % 100 == 0) {
-      int minSize = config.minClusterSize();
-      clusters.removeIf(cluster -> cluster.size() < minSize);
+    // Only the cluster that changed needs a new pattern
+    if (target != null) {
+      ranking.refresh(target);
+      totalMessages++;
     }
 
-    // Update patterns: immediately on first call, then every 50 messages for performance
-    int totalMessages = getStats().getTotalMessages();
-    if (patterns.isEmpty() || totalMessages % 50 == 0) {
-      extractPatterns();
-      patterns.sort((p1, p2) -> Integer.compare(p2.getSupportCount(), p1.getSupportCount()));
+    // Filter small clusters periodically (every 100 messages)
+    if (totalMessages % 100 == 0) {
+      int minSize = config.minClusterSize();
+      clusters.removeIf(
+          cluster -> {
+            if (cluster.size() >= minSize) {
+              return false;
+            }
+            totalMessages -= cluster.size();
+            return true;
+          });
+      removeFromClusterIndexes(cluster -> cluster.size() < minSize);
+      ranking.removeIf(cluster -> cluster.size() < minSize);
     }
   }
 
   /** Clears all clusters and patterns. Useful for resetting the processor state. */
   public void clear() {
     clusters.clear();
-    patterns.clear();
+    batchAssignments = null;
+    totalMessages = 0;
+    clearClusterIndexes();
+    if (tokenDictionary != null) {
+      tokenDictionary.clear();
+    }
+    ranking.clear();
   }
 
   /**
-   * Returns statistics about the clustering and pattern extraction.
+   * Returns statistics about the clustering and pattern extraction. The counters behind them are
+   * maintained as messages are processed, so this is O(1).
    *
    * @return Processing statistics
    */
   public ProcessingStats getStats() {
-    int totalMessages = clusters.stream().mapToInt(LogCluster::size).sum();
-
-    double avgClusterSize = clusters.isEmpty() ? 0 : (double) totalMessages / clusters.size();
-
-    double avgSpecificity =
-        patterns.stream().mapToDouble(LogPattern::getSpecificity).average().orElse(0.0);
+    // Every cluster that produces a pattern is ranked
+    int numClusters = ranking.size();
+    double avgClusterSize = numClusters == 0 ? 0 : (double) totalMessages / numClusters;
 
     return new ProcessingStats(
-        totalMessages, clusters.size(), patterns.size(), avgClusterSize, avgSpecificity);
+        totalMessages,
+        numClusters,
+        ranking.size(),
+        avgClusterSize,
+        ranking.averageSpecificity());
+  }
+
+  /**
+   * Gets the number of messages in the current clusters without building a stats object.
+   *
+   * @return Total message count
+   */
+  int getTotalMessages() {
+    return totalMessages;
   }
 
   /**
@@ -279,7 +713,7 @@ public class LogMineProcessor {
    */
   @Deprecated(since = "1.1", forRemoval = true)
   public List<LogCluster> getClusters() {
-    return new ArrayList<>(clusters);
+    return new ArrayList<>(patternClusters());
   }
 
   /**
@@ -288,7 +722,7 @@ public class LogMineProcessor {
    * @return A defensive copy of the pattern list
    */
   public List<LogPattern> getPatterns() {
-    return new ArrayList<>(patterns);
+    return new ArrayList<>(ranking.patterns());
   }
 
   /**
@@ -403,8 +837,10 @@ public class LogMineProcessor {
   /**
    * Merges a message with the closest cluster when max cluster limit is reached. Uses a relaxed
    * threshold to ensure the message gets clustered.
+   *
+   * @return The cluster the message joined, or null if there are no clusters yet
    */
-  private void mergeWithClosestCluster(LogMessage message, double relaxedThreshold) {
+  private LogCluster mergeWithClosestCluster(LogMessage message, double relaxedThreshold) {
     LogCluster closestCluster = null;
     double highestSimilarity = -1.0;
 
@@ -420,6 +856,7 @@ public class LogMineProcessor {
       // Force add to closest cluster regardless of threshold
       closestCluster.addMessage(message, 0.0);
     }
+    return closestCluster;
   }
 
   /**
@@ -441,39 +878,74 @@ public class LogMineProcessor {
       thresholds = List.of(0.5, 0.7, 0.9);
     }
 
-    // Extract patterns at each threshold level
-    List<List<LogPattern>> patternLevels = new ArrayList<>();
-    LogMineConfig originalConfig = config;
+    // Build levels bottom-up: messages are clustered once at the finest threshold, and every
+    // coarser level clusters the patterns of the level below it
+    List<Double> finestFirst = new ArrayList<>(new TreeSet<>(thresholds).descendingSet());
+    Map<Double, List<LogPattern>> patternsByThreshold = new HashMap<>();
+    List<LogPattern> levelPatterns = null;
+    for (double threshold : finestFirst) {
+      levelPatterns =
+          levelPatterns == null
+              ? extractFinestLevel(threshold)
+              : clusterPatterns(levelPatterns, threshold);
+      patternsByThreshold.put(threshold, levelPatterns);
+    }
 
+    // Keep the configured level order: level i uses thresholds.get(i)
+    List<List<LogPattern>> patternLevels = new ArrayList<>();
     for (double threshold : thresholds) {
-      // Create temporary config with this threshold
-      LogMineConfig levelConfig =
-          LogMineConfig.builder()
-              .withSimilarityThreshold(threshold)
-              .withMinClusterSize(originalConfig.minClusterSize())
-              .maxClusters(originalConfig.maxClusters())
-              .withTokenizerStrategy(originalConfig.tokenizerStrategy())
-              .withVariableDetector(originalConfig.variableDetector())
-              .build();
-
-      // Process with this threshold
-      LogMineProcessor levelProcessor = new LogMineProcessor(levelConfig);
-
-      // Re-cluster with current messages
-      List<String> currentMessages =
-          clusters.stream()
-              .flatMap(cluster -> cluster.getMessages().stream())
-              .map(LogMessage::getRawMessage)
-              .collect(Collectors.toList());
-
-      List<LogPattern> levelPatterns = levelProcessor.process(currentMessages);
-      patternLevels.add(levelPatterns);
+      patternLevels.add(patternsByThreshold.get(threshold));
     }
 
     // Build hierarchy
     return buildHierarchy(patternLevels, thresholds);
   }
 
+  /**
+   * Extracts the finest hierarchy level. The current clusters are reused when they were built with
+   * the same threshold; otherwise the retained messages are clustered once more, reusing their
+   * tokens. Streaming clusters do not retain messages, so their patterns are clustered instead.
+   */
+  private List<LogPattern> extractFinestLevel(double threshold) {
+    List<LogCluster> clusters = patternClusters();
+    boolean retained = clusters.stream().allMatch(LogCluster::isRetainingMessages);
+    if (threshold == config.similarityThreshold() || !retained) {
+      List<LogPattern> current =
+          clusters.stream().map(LogCluster::generatePattern).collect(Collectors.toList());
+      current.sort((p1, p2) -> Integer.compare(p2.getSupportCount(), p1.getSupportCount()));
+      return threshold == config.similarityThreshold()
+          ? current
+          : clusterPatterns(current, threshold);
+    }
+
+    LogMineConfig levelConfig =
+        LogMineConfig.builder()
+            .withSimilarityThreshold(threshold)
+            .withMinClusterSize(config.minClusterSize())
+            .maxClusters(config.maxClusters())
+            .withTokenizerStrategy(config.tokenizerStrategy())
+            .withVariableDetector(config.variableDetector())
+            .build();
+
+    List<LogMessage> messages =
+        clusters.stream()
+            .flatMap(cluster -> cluster.getMessages().stream())
+            .collect(Collectors.toList());
+    return new LogMineProcessor(levelConfig).processMessages(messages);
+  }
+
+  /**
+   * Builds a coarser level by clustering the patterns of a finer one, as in the LogMine paper, with
+   * {@link PatternGrouper}. Wildcards and gaps count as half a difference against any token, so
+   * patterns whose variable fields line up, or where one side has already generalized a field, are
+   * closer than patterns that merely share constants. The threshold is weighed by support, so rare
+   * variants fold into frequent patterns while frequent patterns stay apart unless they are clearly
+   * closer. The cost depends on the number of patterns, not on the number of messages.
+   */
+  private List<LogPattern> clusterPatterns(List<LogPattern> finer, double threshold) {
+    return PatternGrouper.group(finer, null, threshold, true);
+  }
+
   /** Builds a hierarchical structure from patterns extracted at different thresholds. */
   private List<HierarchicalPattern> buildHierarchy(
       List<List<LogPattern>> patternLevels, List<Double> thresholds) {
@@ -22,13 +22,17 @@ import org.swengdev.logmine.strategy.VariableDetector;
 
 /**
  * Represents a log pattern extracted from a cluster of similar log messages. Patterns use wildcards
- * (***) to represent variable parts.
+ * (***) to represent variable parts. Patterns of clusters whose messages differ in length also
+ * contain gap wildcards (***?), each standing for a token that may be absent.
  */
 public class LogPattern {
   private final List<String> patternTokens;
   private final int supportCount;
   private final String patternString;
   private final VariableDetector variableDetector;
+  private final TokenDictionary dictionary; // null when tokens are compared as strings
+  private final boolean hasGaps;
+  private TokenDictionary.Encoding encoding;
 
   /**
    * Creates a new log pattern.
@@ -39,14 +43,36 @@ public class LogPattern {
    */
   public LogPattern(
       List<String> patternTokens, int supportCount, VariableDetector variableDetector) {
+    this(patternTokens, supportCount, variableDetector, null);
+  }
+
+  /**
+   * Creates a pattern whose tokens are interned in a dictionary, so matching messages of the same
+   * dictionary compares token IDs.
+   *
+   * @param patternTokens The tokens that make up the pattern (including wildcards)
+   * @param supportCount The number of log messages that match this pattern
+   * @param variableDetector Strategy for detecting variable parts in tokens
+   * @param dictionary Dictionary shared by the processor, or null to compare tokens as strings
+   */
+  LogPattern(
+      List<String> patternTokens,
+      int supportCount,
+      VariableDetector variableDetector,
+      TokenDictionary dictionary) {
     this.patternTokens = new ArrayList<>(patternTokens);
     this.supportCount = supportCount;
     this.patternString = String.join("", patternTokens);
     this.variableDetector = variableDetector;
+    this.dictionary = dictionary;
+    this.hasGaps = PatternAligner.hasGap(this.patternTokens);
   }
 
   /**
    * Creates a pattern from a list of log messages by identifying constant and variable parts.
+   * Messages are folded into the pattern one at a time: positions are compared one by one while
+   * the lengths agree, and messages of other lengths are aligned so that missing tokens become gap
+   * wildcards.
    *
    * @param messages The log messages to create a pattern from
    * @param variableDetector Strategy for detecting variable parts in tokens
@@ -58,54 +84,38 @@ public class LogPattern {
       return new LogPattern(new ArrayList<>(), 0, variableDetector);
     }
 
-    if (messages.size() == 1) {
-      // For single message, still apply variable detection
-      List<String> tokens = messages.getFirst().getTokens();
-      List<String> patternTokens = new ArrayList<>();
-      for (String token : tokens) {
-        // Even single messages can have variables detected (e.g., timestamps, IDs)
-        if (variableDetector.isVariable(token)) {
-          patternTokens.add("***");
-        } else {
-          patternTokens.add(token);
-        }
-      }
-      return new LogPattern(patternTokens, 1, variableDetector);
+    // Use the first message as a template; inherently variable tokens (e.g., timestamps, IDs)
+    // are wildcards even if every message has the same value
+    List<String> patternTokens = new ArrayList<>();
+    for (String token : messages.getFirst().getTokens()) {
+      patternTokens.add(variableDetector.isVariable(token) ? PatternAligner.WILDCARD : token);
     }
 
-    // Use the first message as a template
-    List<String> patternTokens = new ArrayList<>(messages.getFirst().getTokens());
-
-    // For each token position, check if it's constant across all messages
-    for (int i = 0; i < patternTokens.size(); i++) {
-      boolean isConstant = true;
-      String firstToken = patternTokens.get(i);
-
-      // Check if this token is inherently variable (e.g., timestamp, number)
-      if (variableDetector.isVariable(firstToken)) {
-        isConstant = false;
-      } else {
-        // Check if it varies across messages
-        for (int j = 1; j < messages.size(); j++) {
-          List<String> tokens = messages.get(j).getTokens();
-
-          // Handle messages with different lengths
-          if (i >= tokens.size() || !firstToken.equals(tokens.get(i))) {
-            isConstant = false;
-            break;
-          }
-        }
-      }
-
-      // If this position is variable, replace with wildcard
-      if (!isConstant) {
-        patternTokens.set(i, "***");
-      }
+    for (int j = 1; j < messages.size(); j++) {
+      patternTokens = PatternAligner.merge(patternTokens, messages.get(j).getTokens());
     }
 
     return new LogPattern(patternTokens, messages.size(), variableDetector);
   }
 
+  /**
+   * Merges two patterns into one that covers the messages of both. Positions where the patterns
+   * differ become wildcards; if their lengths differ, the patterns are aligned first and tokens
+   * only one of them has become gap wildcards. The support counts are added up.
+   *
+   * @param first The first pattern; its variable detector is kept
+   * @param second The second pattern
+   * @return The merged pattern
+   */
+  public static LogPattern merge(LogPattern first, LogPattern second) {
+    List<String> tokens = PatternAligner.merge(first.patternTokens, second.patternTokens);
+    return new LogPattern(
+        tokens,
+        first.supportCount + second.supportCount,
+        first.variableDetector,
+        first.dictionary == second.dictionary ? first.dictionary : null);
+  }
+
   /**
    * Checks if a log message matches this pattern.
    *
@@ -113,15 +123,34 @@ public class LogPattern {
    * @return true if the message matches this pattern, false otherwise
    */
   public boolean matches(LogMessage message) {
-    List<String> tokens = message.getTokens();
-
-    if (tokens.size() != patternTokens.size()) {
+    if (hasGaps) {
+      return PatternAligner.matches(patternTokens, message.getTokens());
+    }
+    if (message.getLength() != patternTokens.size()) {
       return false;
     }
 
+    // Compare token IDs when the message is interned in the same dictionary epoch
+    TokenDictionary.Encoding messageEncoding =
+        message.getDictionary() == dictionary ? message.encoding() : null;
+    if (messageEncoding != null) {
+      TokenDictionary.Encoding patternEncoding = encoding();
+      if (TokenDictionary.comparable(patternEncoding, messageEncoding)) {
+        int[] patternIds = patternEncoding.ids();
+        for (int i = 0; i < patternIds.length; i++) {
+          if (patternIds[i] != TokenDictionary.WILDCARD
+              && !patternEncoding.sameToken(
+                  i, patternTokens.get(i), messageEncoding, i, message.getToken(i))) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+
     for (int i = 0; i < patternTokens.size(); i++) {
       String patternToken = patternTokens.get(i);
-      String messageToken = tokens.get(i);
+      String messageToken = message.getToken(i);
 
       // Wildcard matches anything
       if (patternToken.equals("***")) {
@@ -137,6 +166,25 @@ public class LogPattern {
     return true;
   }
 
+  /**
+   * Checks whether this pattern contains gap wildcards, so it matches messages of several lengths.
+   *
+   * @return true if the pattern has gaps
+   */
+  boolean hasGaps() {
+    return hasGaps;
+  }
+
+  /** Gets the dictionary encoding of this pattern in the current epoch. */
+  private TokenDictionary.Encoding encoding() {
+    TokenDictionary.Encoding current = encoding;
+    if (!dictionary.isCurrent(current)) {
+      current = dictionary.encodePattern(patternTokens);
+      encoding = current;
+    }
+    return current;
+  }
+
   /**
    * Returns the specificity of this pattern (ratio of constant tokens to total tokens). Higher
    * values mean more specific patterns.
@@ -148,7 +196,10 @@ public class LogPattern {
       return 0.0;
     }
 
-    long constantTokens = patternTokens.stream().filter(token -> !token.equals("***")).count();
+    long constantTokens =
+        patternTokens.stream()
+            .filter(token -> !token.equals("***") && !token.equals(PatternAligner.GAP))
+            .count();
 
     return (double) constantTokens / patternTokens.size();
   }
@@ -168,6 +168,7 @@ import java.util.regex.Pattern;
 class LogPreprocessor {
 
   private final LogMineConfig config;
+  private final FusedNormalizer normalizer;
 
   // Regex patterns compiled once for performance
   private static final Pattern TIMESTAMP_PATTERN =
@@ -235,6 +236,7 @@ class LogPreprocessor {
    */
   public LogPreprocessor(LogMineConfig config) {
     this.config = config;
+    this.normalizer = new FusedNormalizer(config);
   }
 
   /**
@@ -255,6 +257,10 @@ class LogPreprocessor {
    *   <li>Case normalization (if not case-sensitive)
    * </ol>
    *
+   * <p>The message is normalized in a single pass by {@link FusedNormalizer}, which gives exactly
+   * the result of applying the regular expressions one after another. The few messages it cannot
+   * handle that way are normalized by {@link #preprocessSequentially(String)}.
+   *
    * @param rawMessage The original log message
    * @return Normalized log message ready for tokenization
    */
@@ -262,6 +268,37 @@ class LogPreprocessor {
     if (rawMessage == null || rawMessage.isEmpty()) {
       return rawMessage;
     }
+    String normalized = normalizer.normalize(rawMessage);
+    return normalized != null ? normalized : preprocessSequentially(rawMessage);
+  }
+
+  /**
+   * Preprocesses a message like {@link #preprocess(String)}, but without copying the result into a
+   * string when it is normalized in a single pass.
+   *
+   * @param rawMessage The original log message
+   * @return Normalized log message, only valid until the calling thread preprocesses the next one
+   */
+  CharSequence preprocessReusing(CharSequence rawMessage) {
+    if (rawMessage.length() == 0) {
+      return rawMessage;
+    }
+    CharSequence normalized = normalizer.normalizeReusing(rawMessage);
+    return normalized != null ? normalized : preprocessSequentially(rawMessage.toString());
+  }
+
+  /**
+   * Preprocesses a raw log message by applying each enabled regular expression to the output of
+   * the one before, in the order {@link #preprocess(String)} documents. This is the reference the
+   * single-pass normalization must agree with.
+   *
+   * @param rawMessage The original log message
+   * @return Normalized log message ready for tokenization
+   */
+  String preprocessSequentially(String rawMessage) {
+    if (rawMessage == null || rawMessage.isEmpty()) {
+      return rawMessage;
+    }
 
     String processed = rawMessage;
 
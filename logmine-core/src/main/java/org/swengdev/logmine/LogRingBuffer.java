@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Circular buffer of the most recent log messages, bounded by a message count and a byte budget.
+ *
+ * <p>When adding a message exceeds either budget, the oldest messages are evicted in O(1) each,
+ * instead of shifting every retained message as removing from the front of an {@code ArrayList}
+ * does. Message sizes are estimated as two bytes per character. The newest message is always kept,
+ * even if it alone exceeds the byte budget.
+ *
+ * <p>The buffer is a read-only {@link List} view from oldest to newest, so it can be
+ * processed in place without copying. The backing array grows on demand up to the count budget.
+ *
+ * <p>Every message gets a sequence number in the order it was added. The buffer always holds the
+ * messages numbered from {@link #evictedCount()} up to {@link #appendedCount()}, so callers can
+ * tell which messages arrived or left since they last looked.
+ *
+ * <p>Not thread-safe.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link LogMine}.
+ */
+class LogRingBuffer extends AbstractList<String> implements RandomAccess {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int maxCount;
+  private final long maxBytes;
+  private String[] buffer;
+  private int head; // Index of the oldest message
+  private int size;
+  private long bytes;
+  private long appended; // Messages added since the last clear
+  private long evicted; // Messages evicted since the last clear
+
+  /**
+   * Creates an empty buffer.
+   *
+   * @param maxCount Maximum number of messages to retain
+   * @param maxBytes Maximum estimated size of the retained messages in bytes
+   */
+  LogRingBuffer(int maxCount, long maxBytes) {
+    if (maxCount < 0 || maxBytes < 0) {
+      throw new IllegalArgumentException("Log store budgets must not be negative");
+    }
+    this.maxCount = maxCount;
+    this.maxBytes = maxBytes;
+    this.buffer = new String[Math.min(maxCount, INITIAL_CAPACITY)];
+  }
+
+  /**
+   * Appends a message, evicting the oldest messages while a budget is exceeded.
+   *
+   * @param logMessage The message to retain
+   * @return Always true, as required by {@link java.util.Collection#add}
+   */
+  @Override
+  public boolean add(String logMessage) {
+    appended++;
+    if (maxCount == 0) {
+      evicted++;
+      return true;
+    }
+    if (size == maxCount) {
+      evictOldest();
+    } else if (size == buffer.length) {
+      grow();
+    }
+    buffer[(head + size) % buffer.length] = logMessage;
+    size++;
+    bytes += estimateBytes(logMessage);
+
+    while (bytes > maxBytes && size > 1) {
+      evictOldest();
+    }
+    return true;
+  }
+
+  @Override
+  public String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return buffer[(head + index) % buffer.length];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(buffer, null);
+    head = 0;
+    size = 0;
+    bytes = 0;
+    appended = 0;
+    evicted = 0;
+  }
+
+  /**
+   * Gets the estimated size of the retained messages.
+   *
+   * @return Estimated bytes
+   */
+  long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the number of messages added since the buffer was created or cleared, which is also the
+   * sequence number the next message will get.
+   *
+   * @return Appended message count
+   */
+  long appendedCount() {
+    return appended;
+  }
+
+  /**
+   * Gets the number of messages evicted since the buffer was created or cleared, which is also the
+   * sequence number of the oldest retained message.
+   *
+   * @return Evicted message count
+   */
+  long evictedCount() {
+    return evicted;
+  }
+
+  /**
+   * Gets a view of the retained messages from a sequence number on.
+   *
+   * @param sequence Sequence number of the first message, clamped to the retained range
+   * @return Read-only view of the newer messages, oldest first
+   */
+  List<String> since(long sequence) {
+    int from = (int) (Math.min(Math.max(sequence, evicted), appended) - evicted);
+    return subList(from, size);
+  }
+
+  private void evictOldest() {
+    bytes -= estimateBytes(buffer[head]);
+    buffer[head] = null;
+    head = (head + 1) % buffer.length;
+    size--;
+    evicted++;
+  }
+
+  /** Doubles the backing array, capped at the count budget, and unwraps the messages. */
+  private void grow() {
+    int capacity = (int) Math.min(maxCount, Math.max(1L, buffer.length * 2L));
+    String[] grown = new String[capacity];
+    for (int i = 0; i < size; i++) {
+      grown[i] = buffer[(head + i) % buffer.length];
+    }
+    buffer = grown;
+    head = 0;
+  }
+
+  private static long estimateBytes(String logMessage) {
+    return logMessage != null ? 2L * logMessage.length() : 0;
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Parallel batch clustering on a {@link ForkJoinPool}.
+ *
+ * <p>Clustering runs in three steps:
+ *
+ * <ol>
+ *   <li><b>Partition:</b> messages are grouped by shape (token count and leading constant token),
+ *       keeping input order within each group. Large groups are cut into contiguous chunks so no
+ *       single task dominates the run.
+ *   <li><b>Cluster:</b> every chunk is clustered independently with the same greedy first-match
+ *       algorithm as sequential processing.
+ *   <li><b>Reconcile:</b> the partial clusters are merged greedily: a partial cluster joins the
+ *       first reconciled cluster whose representative is within the similarity threshold of its
+ *       own, otherwise it becomes a reconciled cluster itself.
+ * </ol>
+ *
+ * <p>In deterministic mode partial clusters are reconciled in the input order of their first
+ * message, so the result depends only on the input and configuration. Otherwise they are
+ * reconciled in the order their chunks finish. Either way, messages are compared with their
+ * partition's representatives rather than with every earlier cluster, so the clusters can differ
+ * from those of a sequential run.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link
+ * LogMineProcessor}.
+ */
+class ParallelBatchClusterer {
+
+  /** Smallest chunk worth handing to a separate task. */
+  private static final int MIN_CHUNK_SIZE = 1024;
+
+  /** Smallest slice of bytes worth handing to a separate task. */
+  private static final int MIN_SLICE_SIZE = 1 << 16;
+
+  /** Target number of tasks per worker thread, so uneven chunks still balance out. */
+  private static final int TASKS_PER_THREAD = 4;
+
+  private final LogMineConfig config;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a clusterer running on the given pool.
+   *
+   * @param config Processor configuration (threshold, cluster limits, determinism)
+   * @param pool Pool to run the tasks on
+   */
+  ParallelBatchClusterer(LogMineConfig config, ForkJoinPool pool) {
+    this.config = config;
+    this.pool = pool;
+  }
+
+  /**
+   * Converts raw log lines to messages in parallel, preserving input order.
+   *
+   * @param rawMessages Raw log lines
+   * @param factory Converts one raw line into a message; must be thread-safe
+   * @return The messages, in input order
+   */
+  List<LogMessage> createMessages(List<String> rawMessages, Function<String, LogMessage> factory) {
+    String[] raw = rawMessages.toArray(new String[0]);
+    LogMessage[] messages = new LogMessage[raw.length];
+    int chunkSize = chunkSize(raw.length);
+
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int start = 0; start < raw.length; start += chunkSize) {
+      int from = start;
+      int to = Math.min(raw.length, start + chunkSize);
+      tasks.add(
+          pool.submit(
+              () -> {
+                for (int i = from; i < to; i++) {
+                  messages[i] = factory.apply(raw[i]);
+                }
+              }));
+    }
+    tasks.forEach(ForkJoinTask::join);
+
+    return Arrays.asList(messages);
+  }
+
+  /**
+   * Reads log lines from UTF-8 text into messages in parallel, preserving input order. Each region
+   * is cut at line boundaries into slices that are read by separate tasks.
+   *
+   * @param regions Text to read, in order, each ending at a line boundary
+   * @param reader Converts the lines of one slice into messages; must be thread-safe
+   * @return The messages, in input order
+   */
+  List<LogMessage> readMessages(
+      List<ByteBuffer> regions, Function<ByteBuffer, List<LogMessage>> reader) {
+    int tasks = config.parallelism() * TASKS_PER_THREAD;
+    List<ForkJoinTask<List<LogMessage>>> slices = new ArrayList<>();
+    for (ByteBuffer region : regions) {
+      int parts = Math.max(1, Math.min(tasks, region.remaining() / MIN_SLICE_SIZE));
+      for (ByteBuffer slice : ByteLines.split(region, parts)) {
+        slices.add(pool.submit(() -> reader.apply(slice)));
+      }
+    }
+
+    List<LogMessage> messages = new ArrayList<>();
+    for (ForkJoinTask<List<LogMessage>> slice : slices) {
+      messages.addAll(slice.join());
+    }
+    return messages;
+  }
+
+  /**
+   * Clusters messages in parallel. The minimum cluster size is not applied.
+   *
+   * @param messages Messages in input order
+   * @return Reconciled clusters, in the order they were reconciled
+   */
+  List<LogCluster> cluster(List<LogMessage> messages) {
+    double threshold = config.similarityThreshold();
+    List<int[]> chunks = partition(messages);
+
+    // Cluster every chunk independently; completion order is recorded for non-deterministic mode
+    Queue<List<PartialCluster>> completed = new ConcurrentLinkedQueue<>();
+    List<ForkJoinTask<List<PartialCluster>>> tasks = new ArrayList<>(chunks.size());
+    for (int[] chunk : chunks) {
+      tasks.add(
+          pool.submit(
+              () -> {
+                List<PartialCluster> result = clusterChunk(messages, chunk, threshold);
+                completed.add(result);
+                return result;
+              }));
+    }
+
+    List<PartialCluster> partials = new ArrayList<>();
+    if (config.deterministic()) {
+      for (ForkJoinTask<List<PartialCluster>> task : tasks) {
+        partials.addAll(task.join());
+      }
+      partials.sort(Comparator.comparingInt(PartialCluster::firstPosition));
+    } else {
+      tasks.forEach(ForkJoinTask::join);
+      completed.forEach(partials::addAll);
+    }
+
+    return reconcile(partials, threshold);
+  }
+
+  /** Groups message positions by shape and cuts large groups into chunks. */
+  private List<int[]> partition(List<LogMessage> messages) {
+    Map<Shape, PositionList> groups = new LinkedHashMap<>();
+    for (int i = 0; i < messages.size(); i++) {
+      LogMessage message = messages.get(i);
+      int length = message.getLength();
+      String leading = length > 0 && !message.isVariableToken(0) ? message.getToken(0) : null;
+      groups.computeIfAbsent(new Shape(length, leading), shape -> new PositionList()).add(i);
+    }
+
+    int chunkSize = chunkSize(messages.size());
+    List<int[]> chunks = new ArrayList<>();
+    for (PositionList group : groups.values()) {
+      for (int start = 0; start < group.size; start += chunkSize) {
+        int end = Math.min(group.size, start + chunkSize);
+        chunks.add(Arrays.copyOfRange(group.positions, start, end));
+      }
+    }
+    return chunks;
+  }
+
+  /** Greedy first-match clustering of one chunk, in input order. */
+  private List<PartialCluster> clusterChunk(
+      List<LogMessage> messages, int[] chunk, double threshold) {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(config.variableDetector());
+    List<PartialCluster> result = new ArrayList<>();
+
+    for (int position : chunk) {
+      LogMessage message = messages.get(position);
+      boolean clustered = false;
+      for (LogCluster cluster : index.candidates(message, threshold)) {
+        if (cluster.addMessage(message, threshold)) {
+          clustered = true;
+          break;
+        }
+      }
+      if (!clustered) {
+        LogCluster cluster = new LogCluster(message, config.variableDetector());
+        index.add(cluster);
+        result.add(new PartialCluster(position, cluster));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Merges partial clusters whose representatives are within the threshold. Once the cluster limit
+   * is reached, further partial clusters are merged into the closest reconciled cluster instead.
+   */
+  private List<LogCluster> reconcile(List<PartialCluster> partials, double threshold) {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(config.variableDetector());
+    List<LogCluster> reconciled = new ArrayList<>();
+    int maxClusters = config.maxClusters();
+
+    for (PartialCluster partial : partials) {
+      LogCluster cluster = partial.cluster();
+      LogMessage representative = cluster.getCentroid();
+
+      LogCluster target = null;
+      for (LogCluster candidate : index.candidates(representative, threshold)) {
+        if (candidate.getCentroid().isSimilar(representative, threshold)) {
+          target = candidate;
+          break;
+        }
+      }
+      if (target == null && reconciled.size() >= maxClusters) {
+        target = closestCluster(reconciled, representative);
+      }
+
+      if (target != null) {
+        target.merge(cluster);
+      } else {
+        reconciled.add(cluster);
+        index.add(cluster);
+      }
+    }
+    return reconciled;
+  }
+
+  private static LogCluster closestCluster(List<LogCluster> clusters, LogMessage message) {
+    LogCluster closest = null;
+    double highestSimilarity = -1.0;
+    for (LogCluster cluster : clusters) {
+      double similarity = cluster.calculateSimilarity(message);
+      if (similarity > highestSimilarity) {
+        highestSimilarity = similarity;
+        closest = cluster;
+      }
+    }
+    return closest;
+  }
+
+  private int chunkSize(int total) {
+    int tasks = config.parallelism() * TASKS_PER_THREAD;
+    return Math.max(MIN_CHUNK_SIZE, (total + tasks - 1) / tasks);
+  }
+
+  /** Partition key: token count plus the leading token, or null if it is variable. */
+  private record Shape(int length, String leadingToken) {}
+
+  /** Cluster built from one chunk, with the input position of its first message. */
+  private record PartialCluster(int firstPosition, LogCluster cluster) {}
+
+  /** Growable list of message positions. */
+  private static final class PositionList {
+    private int[] positions = new int[16];
+    private int size;
+
+    void add(int position) {
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+  }
+}
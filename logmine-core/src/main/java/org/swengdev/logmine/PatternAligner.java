@@ -0,0 +1,244 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges pattern templates with message tokens or with other templates, one sequence at a time.
+ *
+ * <p>A template is a token list in which {@link #WILDCARD} stands for exactly one variable token
+ * and {@link #GAP} for a token that only some of the merged sequences have. Sequences of the same
+ * length without gaps are merged position by position: equal tokens are kept and differing ones
+ * become wildcards, exactly as LogMine does for same-length messages. Otherwise the two sequences
+ * are aligned first (global alignment, as in the merge step of the LogMine paper), so tokens that
+ * only one side has become gaps instead of shifting every later position out of place.
+ *
+ * <p>Merging costs O(n·m) for sequences of n and m tokens and does not depend on how many messages
+ * the template already covers, so folding a cluster into a template one message at a time is
+ * linear in the cluster size.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used by {@link LogPattern}, {@link
+ * LogCluster} and {@link PatternGrouper}.
+ */
+final class PatternAligner {
+
+  /** Template token matching exactly one variable token. */
+  static final String WILDCARD = "***";
+
+  /** Template token matching zero or one token. */
+  static final String GAP = "***?";
+
+  // Alignment scores: equal constants attract, wildcards accept any token, gaps cost
+  private static final int MATCH = 2;
+  private static final int WILDCARD_MATCH = 1;
+  private static final int MISMATCH = 0;
+  private static final int GAP_PENALTY = -1;
+
+  private PatternAligner() {}
+
+  /**
+   * Merges a template with another token sequence.
+   *
+   * @param template Current template
+   * @param tokens Message tokens or another template
+   * @return The merged template, covering everything either input covers
+   */
+  static List<String> merge(List<String> template, List<String> tokens) {
+    if (template.size() == tokens.size() && !hasGap(template) && !hasGap(tokens)) {
+      List<String> merged = new ArrayList<>(template.size());
+      for (int i = 0; i < template.size(); i++) {
+        String token = template.get(i);
+        merged.add(token.equals(tokens.get(i)) ? token : WILDCARD);
+      }
+      return merged;
+    }
+    return align(template, tokens);
+  }
+
+  /**
+   * Checks whether a template contains gaps, i.e. matches messages of more than one length.
+   *
+   * @param template Template tokens
+   * @return true if any token is {@link #GAP}
+   */
+  static boolean hasGap(List<String> template) {
+    for (String token : template) {
+      if (token.equals(GAP)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether message tokens fit a template: constants must be equal, {@link #WILDCARD}
+   * consumes exactly one token and {@link #GAP} consumes zero or one.
+   *
+   * @param template Template tokens
+   * @param tokens Message tokens
+   * @return true if the template matches
+   */
+  static boolean matches(List<String> template, List<String> tokens) {
+    int n = template.size();
+    int m = tokens.size();
+
+    // reachable[j]: the template prefix processed so far can consume exactly j message tokens
+    boolean[] reachable = new boolean[m + 1];
+    reachable[0] = true;
+    for (int i = 0; i < n; i++) {
+      String token = template.get(i);
+      boolean optional = token.equals(GAP);
+      boolean any = optional || token.equals(WILDCARD);
+      boolean[] next = new boolean[m + 1];
+      for (int j = 0; j <= m; j++) {
+        if (!reachable[j]) {
+          continue;
+        }
+        if (optional) {
+          next[j] = true;
+        }
+        if (j < m && (any || token.equals(tokens.get(j)))) {
+          next[j + 1] = true;
+        }
+      }
+      reachable = next;
+    }
+    return reachable[m];
+  }
+
+  /**
+   * Measures how similar two templates are. Like the edit-distance similarity of messages, the
+   * distance is divided by the longer length, but a wildcard or gap costs half as much as a
+   * differing constant: it stands for tokens that were already found to vary, so replacing it with
+   * any token, or leaving out a gap, is a smaller change than replacing a constant.
+   *
+   * @param first First template
+   * @param second Second template
+   * @return Similarity score (0.0 to 1.0)
+   */
+  static double similarity(List<String> first, List<String> second) {
+    int n = first.size();
+    int m = second.size();
+    int maxLength = Math.max(n, m);
+    if (maxLength == 0) {
+      return 1.0;
+    }
+
+    // Costs in half tokens, two rows of the edit-distance table
+    int[] previous = new int[m + 1];
+    int[] current = new int[m + 1];
+    for (int j = 1; j <= m; j++) {
+      previous[j] = previous[j - 1] + indelCost(second.get(j - 1));
+    }
+    for (int i = 1; i <= n; i++) {
+      String token = first.get(i - 1);
+      current[0] = previous[0] + indelCost(token);
+      for (int j = 1; j <= m; j++) {
+        String other = second.get(j - 1);
+        int substitute = previous[j - 1] + substitutionCost(token, other);
+        int delete = previous[j] + indelCost(token);
+        int insert = current[j - 1] + indelCost(other);
+        current[j] = Math.min(substitute, Math.min(delete, insert));
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return 1.0 - previous[m] / (2.0 * maxLength);
+  }
+
+  private static int substitutionCost(String first, String second) {
+    if (first.equals(second)) {
+      return 0;
+    }
+    return isWildcard(first) || isWildcard(second) ? 1 : 2;
+  }
+
+  private static int indelCost(String token) {
+    return token.equals(GAP) ? 1 : 2;
+  }
+
+  /** Global alignment of two sequences, merged pairwise along the best path. */
+  private static List<String> align(List<String> first, List<String> second) {
+    int n = first.size();
+    int m = second.size();
+
+    int[][] score = new int[n + 1][m + 1];
+    for (int i = 1; i <= n; i++) {
+      score[i][0] = i * GAP_PENALTY;
+    }
+    for (int j = 1; j <= m; j++) {
+      score[0][j] = j * GAP_PENALTY;
+    }
+    for (int i = 1; i <= n; i++) {
+      for (int j = 1; j <= m; j++) {
+        int diagonal = score[i - 1][j - 1] + pairScore(first.get(i - 1), second.get(j - 1));
+        int up = score[i - 1][j] + GAP_PENALTY;
+        int left = score[i][j - 1] + GAP_PENALTY;
+        score[i][j] = Math.max(diagonal, Math.max(up, left));
+      }
+    }
+
+    // Trace back, preferring pairs over gaps so the template stays as short as possible
+    String[] merged = new String[n + m];
+    int size = 0;
+    int i = n;
+    int j = m;
+    while (i > 0 || j > 0) {
+      if (i > 0
+          && j > 0
+          && score[i][j]
+              == score[i - 1][j - 1] + pairScore(first.get(i - 1), second.get(j - 1))) {
+        merged[size++] = mergePair(first.get(i - 1), second.get(j - 1));
+        i--;
+        j--;
+      } else if (i > 0 && score[i][j] == score[i - 1][j] + GAP_PENALTY) {
+        merged[size++] = GAP;
+        i--;
+      } else {
+        merged[size++] = GAP;
+        j--;
+      }
+    }
+
+    List<String> result = new ArrayList<>(Arrays.asList(merged).subList(0, size));
+    Collections.reverse(result);
+    return result;
+  }
+
+  private static int pairScore(String first, String second) {
+    if (isWildcard(first) || isWildcard(second)) {
+      return WILDCARD_MATCH;
+    }
+    return first.equals(second) ? MATCH : MISMATCH;
+  }
+
+  private static String mergePair(String first, String second) {
+    if (first.equals(GAP) || second.equals(GAP)) {
+      return GAP;
+    }
+    return first.equals(second) ? first : WILDCARD;
+  }
+
+  private static boolean isWildcard(String token) {
+    return token.equals(WILDCARD) || token.equals(GAP);
+  }
+}
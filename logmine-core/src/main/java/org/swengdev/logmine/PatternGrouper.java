@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Groups similar patterns and merges each group into one pattern with {@link LogPattern#merge}.
+ * Builds the coarser levels of a pattern hierarchy and combines the patterns of several shards.
+ *
+ * <p>Patterns are visited in descending support order. Each one joins the first group whose anchor,
+ * the group's most frequent pattern, is similar enough by {@link PatternAligner#similarity}, and
+ * otherwise starts a group of its own. Patterns can be tagged with a source, such as the shard
+ * they were found in; patterns of the same source are never grouped together.
+ *
+ * <p>Grouping can also weigh the threshold by support: a pattern then needs more similarity the
+ * larger its share of the combined support of itself and the group. Rare variants still fold into
+ * a frequent pattern at the given threshold, while two frequent patterns are only grouped if they
+ * are clearly closer, so they are not both hidden behind one pattern.
+ *
+ * <p>The cost is O(P·G) similarity computations for P patterns forming G groups, independent of
+ * the number of messages behind them.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used by {@link LogMineProcessor} and
+ * {@link ShardedLogMine}.
+ */
+final class PatternGrouper {
+
+  private PatternGrouper() {}
+
+  /**
+   * Groups patterns and merges each group.
+   *
+   * @param patterns Patterns to group
+   * @param sources Source of each pattern, or null if any patterns may be grouped together
+   * @param threshold Similarity threshold
+   * @param weightBySupport Whether a pattern needs more similarity the larger its share of the
+   *     support
+   * @return The merged patterns, sorted by support; patterns with equal support keep the order of
+   *     the input
+   */
+  static List<LogPattern> group(
+      List<LogPattern> patterns, int[] sources, double threshold, boolean weightBySupport) {
+    List<Integer> order = new ArrayList<>(patterns.size());
+    for (int i = 0; i < patterns.size(); i++) {
+      order.add(i);
+    }
+    order.sort(
+        (i1, i2) ->
+            Integer.compare(
+                patterns.get(i2).getSupportCount(), patterns.get(i1).getSupportCount()));
+
+    List<Group> groups = new ArrayList<>();
+    for (int index : order) {
+      LogPattern pattern = patterns.get(index);
+      int source = sources != null ? sources[index] : -1;
+
+      Group target = null;
+      for (Group group : groups) {
+        if ((source < 0 || !group.sources.get(source))
+            && group.accepts(pattern, threshold, weightBySupport)) {
+          target = group;
+          break;
+        }
+      }
+
+      if (target == null) {
+        groups.add(new Group(pattern, source));
+      } else {
+        target.add(pattern, source);
+      }
+    }
+
+    List<LogPattern> merged = new ArrayList<>(groups.size());
+    for (Group group : groups) {
+      merged.add(group.pattern);
+    }
+    merged.sort((p1, p2) -> Integer.compare(p2.getSupportCount(), p1.getSupportCount()));
+    return merged;
+  }
+
+  /** Patterns merged into one, anchored by the most frequent of them. */
+  private static final class Group {
+    private final List<String> anchor;
+    private final BitSet sources = new BitSet();
+    private LogPattern pattern;
+
+    Group(LogPattern first, int source) {
+      this.anchor = first.getTokens();
+      this.pattern = first;
+      if (source >= 0) {
+        sources.set(source);
+      }
+    }
+
+    boolean accepts(LogPattern candidate, double threshold, boolean weightBySupport) {
+      double required = threshold;
+      long support = (long) pattern.getSupportCount() + candidate.getSupportCount();
+      if (weightBySupport && support > 0) {
+        required += (1.0 - threshold) * candidate.getSupportCount() / support;
+      }
+      return PatternAligner.similarity(anchor, candidate.getTokens()) >= required;
+    }
+
+    void add(LogPattern other, int source) {
+      pattern = LogPattern.merge(pattern, other);
+      if (source >= 0) {
+        sources.set(source);
+      }
+    }
+  }
+}
@@ -0,0 +1,625 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Compiled index over ranked patterns that finds the pattern {@link LogPattern#matches} would find
+ * first in a linear scan in rank order, without testing every pattern.
+ *
+ * <p>Patterns are stored in a prefix tree per token count. Each level of the tree corresponds to a
+ * token position and branches on the constant token expected there, with a separate branch for
+ * wildcards. A lookup follows the branch of the message token and the wildcard branch, so only
+ * patterns whose constants agree with the message are ever reached. Every node remembers the best
+ * rank in its subtree, which lets the lookup skip branches that cannot beat the match found so
+ * far.
+ *
+ * <p>Ranks are keys, not positions: a lower rank means a higher priority, and a pattern keeps its
+ * rank until it is removed. {@link #add(LogPattern, long)} and {@link #remove(LogPattern, long)}
+ * therefore only touch the path of the pattern they change, and the best ranks along that path.
+ * Removing a pattern rescans a node's branches only if that pattern was the node's best.
+ *
+ * <p>Patterns with gap wildcards match messages of several lengths and do not fit a tree per token
+ * count. They are rare, so they are kept in a separate rank-ordered map and only those ranked
+ * ahead of the tree's match are tested.
+ *
+ * <p>{@link #freeze()} captures the current patterns in an immutable matcher that shares the tree
+ * with this one. Later updates copy the nodes on their path instead of changing shared ones, so a
+ * frozen matcher costs only the paths that change after it, not a rebuild.
+ *
+ * <p>Not thread-safe. Lookups may run concurrently with each other, but not with updates. Frozen
+ * matchers never change and can be read from any thread.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link
+ * LogMineProcessor} and its snapshots.
+ */
+class PatternMatcher {
+
+  private static final String WILDCARD = "***";
+
+  private Map<Integer, Node> roots;
+  private TreeMap<Long, LogPattern> gapped;
+  private int size;
+  private Object edit; // Owner of the nodes this matcher may change in place; null once frozen
+  private boolean rootsShared; // Whether the maps are shared with the last frozen matcher
+  private boolean gappedShared;
+  private PatternMatcher frozen; // Last frozen matcher, reused until the next update
+
+  /** Creates an empty matcher. */
+  PatternMatcher() {
+    this.roots = new HashMap<>();
+    this.gapped = new TreeMap<>();
+    this.edit = new Object();
+  }
+
+  private PatternMatcher(Map<Integer, Node> roots, TreeMap<Long, LogPattern> gapped, int size) {
+    this.roots = roots;
+    this.gapped = gapped;
+    this.size = size;
+  }
+
+  /**
+   * Replaces the indexed patterns with a list ranked by position, rebuilding the index. A pattern
+   * listed more than once keeps its first position.
+   *
+   * @param patterns Patterns in rank order, the first one having the highest priority
+   */
+  void update(List<LogPattern> patterns) {
+    clear();
+    Map<LogPattern, Boolean> seen = new IdentityHashMap<>(patterns.size() * 2);
+    for (int rank = 0; rank < patterns.size(); rank++) {
+      LogPattern pattern = patterns.get(rank);
+      if (seen.put(pattern, Boolean.TRUE) == null) {
+        add(pattern, rank);
+      }
+    }
+  }
+
+  /**
+   * Indexes a pattern.
+   *
+   * @param pattern The pattern to add
+   * @param rank Its rank, unique among the indexed patterns; lower ranks win
+   */
+  void add(LogPattern pattern, long rank) {
+    beginUpdate();
+    size++;
+    if (pattern.hasGaps()) {
+      writableGapped().put(rank, pattern);
+      return;
+    }
+    List<String> tokens = pattern.getTokens();
+    Node root = roots.get(tokens.size());
+    Node node = editable(root);
+    if (node != root) {
+      writableRoots().put(tokens.size(), node);
+    }
+    node.minRank = Math.min(node.minRank, rank);
+    for (String token : tokens) {
+      Node child = node.get(token);
+      Node editableChild = editable(child);
+      if (editableChild != child) {
+        node.set(token, editableChild);
+      }
+      node = editableChild;
+      node.minRank = Math.min(node.minRank, rank);
+    }
+    if (node.patterns == null) {
+      node.patterns = new ArrayList<>(1);
+    }
+    node.patterns.add(new Ranked(pattern, rank));
+    if (node.minRank == rank) {
+      node.bestPattern = pattern;
+    }
+  }
+
+  /**
+   * Drops a pattern from the index, if it is indexed with the given rank.
+   *
+   * @param pattern The pattern to remove
+   * @param rank The rank it was added with
+   */
+  void remove(LogPattern pattern, long rank) {
+    if (pattern.hasGaps()) {
+      if (gapped.get(rank) == pattern) {
+        beginUpdate();
+        writableGapped().remove(rank);
+        size--;
+      }
+      return;
+    }
+
+    List<String> tokens = pattern.getTokens();
+    Node[] path = new Node[tokens.size() + 1];
+    Node node = roots.get(tokens.size());
+    for (int i = 0; node != null && i < tokens.size(); i++) {
+      path[i] = node;
+      node = node.get(tokens.get(i));
+    }
+    if (node == null || node.patterns == null || !node.contains(pattern, rank)) {
+      return;
+    }
+    path[tokens.size()] = node;
+
+    // Nodes shared with a frozen matcher are copied, and every ancestor has to point to the copy
+    beginUpdate();
+    Node root = editable(path[0]);
+    if (root != path[0]) {
+      writableRoots().put(tokens.size(), root);
+      path[0] = root;
+    }
+    for (int i = 0; i < tokens.size(); i++) {
+      Node child = editable(path[i + 1]);
+      if (child != path[i + 1]) {
+        path[i].set(tokens.get(i), child);
+        path[i + 1] = child;
+      }
+    }
+    path[tokens.size()].patterns.removeIf(
+        indexed -> indexed.pattern == pattern && indexed.rank == rank);
+    size--;
+
+    // Walk back up while the removed pattern was the subtree's best; above that nothing changes
+    for (int depth = tokens.size(); depth >= 0; depth--) {
+      Node current = path[depth];
+      if (depth < tokens.size() && path[depth + 1].minRank == Long.MAX_VALUE) {
+        current.unlink(tokens.get(depth));
+      }
+      if (current.minRank != rank) {
+        return;
+      }
+      current.refreshRank();
+    }
+    if (path[0].minRank == Long.MAX_VALUE) {
+      writableRoots().remove(tokens.size());
+    }
+  }
+
+  /** Removes all patterns. */
+  void clear() {
+    beginUpdate();
+    roots = new HashMap<>();
+    gapped = new TreeMap<>();
+    rootsShared = false;
+    gappedShared = false;
+    size = 0;
+  }
+
+  /**
+   * Captures the current patterns in an immutable matcher. The tree is shared, not copied.
+   *
+   * @return Matcher that this one's later updates do not affect
+   */
+  PatternMatcher freeze() {
+    if (edit == null) {
+      return this;
+    }
+    if (frozen == null) {
+      frozen = new PatternMatcher(roots, gapped, size);
+      rootsShared = true;
+      gappedShared = true;
+      edit = new Object(); // Every existing node now belongs to the frozen matcher too
+    }
+    return frozen;
+  }
+
+  /**
+   * Lists the indexed patterns.
+   *
+   * @return Patterns in rank order
+   */
+  List<LogPattern> patterns() {
+    List<Ranked> all = new ArrayList<>(size);
+    for (Node root : roots.values()) {
+      collect(root, all);
+    }
+    for (Map.Entry<Long, LogPattern> entry : gapped.entrySet()) {
+      all.add(new Ranked(entry.getValue(), entry.getKey()));
+    }
+    all.sort((r1, r2) -> Long.compare(r1.rank, r2.rank));
+
+    List<LogPattern> patterns = new ArrayList<>(all.size());
+    for (Ranked ranked : all) {
+      patterns.add(ranked.pattern);
+    }
+    return patterns;
+  }
+
+  /**
+   * Finds the highest ranked pattern matching a message.
+   *
+   * @param message The message to match
+   * @return The same pattern a linear scan in rank order would return, or null if none matches
+   */
+  LogPattern match(LogMessage message) {
+    Node root = roots.get(message.getLength());
+    Node best = root != null ? find(root, message, 0, null) : null;
+    LogPattern match = best != null ? best.bestPattern : null;
+
+    long matchRank = best != null ? best.minRank : Long.MAX_VALUE;
+    for (LogPattern pattern : gapped.headMap(matchRank).values()) {
+      if (pattern.matches(message)) {
+        return pattern;
+      }
+    }
+    return match;
+  }
+
+  /**
+   * Gets the number of indexed patterns.
+   *
+   * @return Pattern count
+   */
+  int size() {
+    return size;
+  }
+
+  /** Prepares for a change, which frozen matchers reject. */
+  private void beginUpdate() {
+    if (edit == null) {
+      throw new IllegalStateException("A frozen pattern matcher cannot be updated");
+    }
+    frozen = null;
+  }
+
+  /** Gets the roots for a change, first copying them if a frozen matcher shares them. */
+  private Map<Integer, Node> writableRoots() {
+    if (rootsShared) {
+      roots = new HashMap<>(roots);
+      rootsShared = false;
+    }
+    return roots;
+  }
+
+  /** Gets the gapped patterns for a change, first copying them if a frozen matcher shares them. */
+  private TreeMap<Long, LogPattern> writableGapped() {
+    if (gappedShared) {
+      gapped = new TreeMap<>(gapped);
+      gappedShared = false;
+    }
+    return gapped;
+  }
+
+  /** Returns the node itself if this matcher owns it, else a copy that it owns. */
+  private Node editable(Node node) {
+    if (node == null) {
+      return new Node(edit);
+    }
+    return node.edit == edit ? node : node.copy(edit);
+  }
+
+  private static void collect(Node node, List<Ranked> all) {
+    if (node.patterns != null) {
+      all.addAll(node.patterns);
+    }
+    if (node.children != null) {
+      node.children.forEach(child -> collect(child, all));
+    }
+    if (node.wildcard != null) {
+      collect(node.wildcard, all);
+    }
+  }
+
+  /**
+   * Depth-first search for the terminal node with the best rank. Subtrees whose best rank cannot
+   * beat the current candidate are skipped.
+   */
+  private Node find(Node node, LogMessage message, int position, Node best) {
+    if (best != null && node.minRank >= best.minRank) {
+      return best;
+    }
+    if (position == message.getLength()) {
+      return node.bestPattern != null ? node : best;
+    }
+
+    Node constant = node.get(message.getToken(position));
+    Node wildcard = node.wildcard;
+
+    // Visit the more promising branch first so the other one is more likely to be pruned
+    if (constant != null && wildcard != null && wildcard.minRank < constant.minRank) {
+      best = find(wildcard, message, position + 1, best);
+      return find(constant, message, position + 1, best);
+    }
+    if (constant != null) {
+      best = find(constant, message, position + 1, best);
+    }
+    if (wildcard != null) {
+      best = find(wildcard, message, position + 1, best);
+    }
+    return best;
+  }
+
+  /** An indexed pattern and its rank. */
+  private record Ranked(LogPattern pattern, long rank) {}
+
+  /** Prefix tree node for one token position. */
+  private static final class Node {
+    private final Object edit; // Matcher that may change this node in place
+    private Branches children;
+    private Node wildcard;
+    private List<Ranked> patterns; // Patterns ending here, only at full depth
+    private LogPattern bestPattern;
+    private long minRank = Long.MAX_VALUE;
+
+    Node(Object edit) {
+      this.edit = edit;
+    }
+
+    /** Copies this node for another owner; its branches stay shared until they change. */
+    Node copy(Object owner) {
+      Node copy = new Node(owner);
+      copy.children = children;
+      copy.wildcard = wildcard;
+      copy.patterns = patterns != null ? new ArrayList<>(patterns) : null;
+      copy.bestPattern = bestPattern;
+      copy.minRank = minRank;
+      return copy;
+    }
+
+    boolean contains(LogPattern pattern, long rank) {
+      for (Ranked ranked : patterns) {
+        if (ranked.pattern == pattern && ranked.rank == rank) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Node get(String token) {
+      if (token.equals(WILDCARD)) {
+        return wildcard;
+      }
+      return children != null ? children.get(token, token.hashCode(), 0) : null;
+    }
+
+    void set(String token, Node child) {
+      if (token.equals(WILDCARD)) {
+        wildcard = child;
+        return;
+      }
+      if (children == null) {
+        children = new Branches(edit);
+      }
+      children = children.put(edit, token, token.hashCode(), 0, child);
+    }
+
+    void unlink(String token) {
+      if (token.equals(WILDCARD)) {
+        wildcard = null;
+      } else {
+        children = children.remove(edit, token, token.hashCode(), 0);
+      }
+    }
+
+    /** Recomputes the best rank from the patterns ending here and the direct branches. */
+    void refreshRank() {
+      long min = Long.MAX_VALUE;
+      bestPattern = null;
+      if (patterns != null) {
+        for (Ranked ranked : patterns) {
+          if (ranked.rank < min) {
+            min = ranked.rank;
+            bestPattern = ranked.pattern;
+          }
+        }
+      }
+      if (children != null) {
+        min = Math.min(min, children.minRank());
+      }
+      if (wildcard != null) {
+        min = Math.min(min, wildcard.minRank);
+      }
+      minRank = min;
+    }
+  }
+
+  /**
+   * Persistent hash map from token to child node, a hash array mapped trie: each level branches on
+   * five bits of the token's hash, so changing an entry copies only the short path to it, not the
+   * whole map. Maps owned by the matcher's current edit are changed in place. Tokens whose full
+   * hashes collide share a level that is searched linearly.
+   */
+  private static final class Branches {
+    private final Object edit; // Matcher that may change this map in place
+    private int bitmap; // Hash slots in use at this level
+    private Object[] array; // Token and child per slot; a null token marks a nested map
+
+    Branches(Object edit) {
+      this.edit = edit;
+      this.array = new Object[0];
+    }
+
+    private Branches(Object edit, int bitmap, Object[] array) {
+      this.edit = edit;
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    Node get(String token, int hash, int shift) {
+      if (shift >= Integer.SIZE) {
+        int index = collisionIndex(token);
+        return index >= 0 ? (Node) array[index + 1] : null;
+      }
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = index(bit);
+      Object key = array[index];
+      if (key == null) {
+        return ((Branches) array[index + 1]).get(token, hash, shift + 5);
+      }
+      return token.equals(key) ? (Node) array[index + 1] : null;
+    }
+
+    /** Maps a token to a child, returning the map to use from now on. */
+    Branches put(Object owner, String token, int hash, int shift, Node child) {
+      if (shift >= Integer.SIZE) {
+        int index = collisionIndex(token);
+        Branches map = editable(owner);
+        if (index >= 0) {
+          map.array[index + 1] = child;
+        } else {
+          int length = array.length;
+          map.array = Arrays.copyOf(array, length + 2);
+          map.array[length] = token;
+          map.array[length + 1] = child;
+        }
+        return map;
+      }
+
+      int bit = bit(hash, shift);
+      int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] grown = new Object[array.length + 2];
+        System.arraycopy(array, 0, grown, 0, index);
+        grown[index] = token;
+        grown[index + 1] = child;
+        System.arraycopy(array, index, grown, index + 2, array.length - index);
+        Branches map = editable(owner);
+        map.array = grown;
+        map.bitmap |= bit;
+        return map;
+      }
+
+      Object key = array[index];
+      Object value;
+      if (key == null) {
+        Branches nested = (Branches) array[index + 1];
+        value = nested.put(owner, token, hash, shift + 5, child);
+      } else if (token.equals(key)) {
+        value = child;
+      } else {
+        // Two tokens in one slot: move both one level down
+        String other = (String) key;
+        key = null;
+        value =
+            new Branches(owner)
+                .put(owner, other, other.hashCode(), shift + 5, (Node) array[index + 1])
+                .put(owner, token, hash, shift + 5, child);
+      }
+      if (value == array[index + 1]) {
+        return this; // Unchanged, or a nested map this map's owner changed in place
+      }
+      Branches map = editable(owner);
+      map.array[index] = key;
+      map.array[index + 1] = value;
+      return map;
+    }
+
+    /** Removes a token, returning the map to use from now on, or null if it became empty. */
+    Branches remove(Object owner, String token, int hash, int shift) {
+      if (shift >= Integer.SIZE) {
+        int index = collisionIndex(token);
+        if (index < 0) {
+          return this;
+        }
+        if (array.length == 2) {
+          return null;
+        }
+        Branches map = editable(owner);
+        map.array = without(index);
+        return map;
+      }
+
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = index(bit);
+      Object key = array[index];
+      if (key == null) {
+        Branches nested = (Branches) array[index + 1];
+        Branches updated = nested.remove(owner, token, hash, shift + 5);
+        if (updated == nested) {
+          return this;
+        }
+        if (updated != null) {
+          Branches map = editable(owner);
+          map.array[index + 1] = updated;
+          return map;
+        }
+      } else if (!token.equals(key)) {
+        return this;
+      }
+      if (bitmap == bit) {
+        return null;
+      }
+      Branches map = editable(owner);
+      map.array = without(index);
+      map.bitmap ^= bit;
+      return map;
+    }
+
+    void forEach(Consumer<Node> action) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (array[i] == null) {
+          ((Branches) array[i + 1]).forEach(action);
+        } else {
+          action.accept((Node) array[i + 1]);
+        }
+      }
+    }
+
+    /** Gets the best rank among the children. */
+    long minRank() {
+      long min = Long.MAX_VALUE;
+      for (int i = 0; i < array.length; i += 2) {
+        long rank =
+            array[i] == null ? ((Branches) array[i + 1]).minRank() : ((Node) array[i + 1]).minRank;
+        min = Math.min(min, rank);
+      }
+      return min;
+    }
+
+    private Branches editable(Object owner) {
+      return edit == owner ? this : new Branches(owner, bitmap, array.clone());
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private int collisionIndex(String token) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (token.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private Object[] without(int index) {
+      Object[] shrunk = new Object[array.length - 2];
+      System.arraycopy(array, 0, shrunk, 0, index);
+      System.arraycopy(array, index + 2, shrunk, index, array.length - index - 2);
+      return shrunk;
+    }
+
+    private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & 31);
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Cluster patterns ranked by support count, maintained incrementally.
+ *
+ * <p>Every cluster has one entry in a sorted set, ordered by support count (descending) and then by
+ * the order in which clusters were first added, which is the order a stable sort of the cluster
+ * list would produce. Refreshing a changed cluster removes its entry, regenerates its pattern and
+ * reinserts it, so keeping the ranking current costs O(log k) per changed cluster instead of a full
+ * re-extraction and sort.
+ *
+ * <p>The ranked list is materialized only when read, and reused until the ranking changes again.
+ * The {@link PatternMatcher} over the ranking is brought up to date when it is requested, by
+ * applying only the entries that changed since then.
+ *
+ * <p>Not thread-safe. Reads may run concurrently with each other, but not with updates.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link
+ * LogMineProcessor}.
+ */
+class PatternRanking {
+
+  /** Largest ordinal a matcher rank can hold, see {@link #rank(Entry)}. */
+  static final long MAX_ORDINAL = 0xffffffffL;
+
+  private static final Comparator<Entry> RANK_ORDER =
+      Comparator.comparingInt((Entry entry) -> entry.pattern().getSupportCount())
+          .reversed()
+          .thenComparingLong(Entry::ordinal);
+
+  private final TreeSet<Entry> ranked;
+  private final Map<LogCluster, Entry> entries;
+  private final PatternMatcher matcher;
+  private final Map<LogCluster, Entry> unmatched; // Changed clusters and the entry the matcher has
+  private long nextOrdinal;
+  private long version;
+  private double specificitySum;
+  private long supportSum;
+  private volatile List<LogPattern> patterns; // Materialized view, null when out of date
+
+  /** Creates an empty ranking. */
+  PatternRanking() {
+    this.ranked = new TreeSet<>(RANK_ORDER);
+    this.entries = new IdentityHashMap<>();
+    this.matcher = new PatternMatcher();
+    this.unmatched = new IdentityHashMap<>();
+  }
+
+  /**
+   * Brings a cluster's entry up to date, adding the cluster if it is not ranked yet. Clusters whose
+   * pattern has not changed since their last refresh are left in place.
+   *
+   * @param cluster The cluster to refresh
+   */
+  void refresh(LogCluster cluster) {
+    Entry entry = entries.get(cluster);
+    if (entry == null && nextOrdinal > MAX_ORDINAL) {
+      Map<LogCluster, Long> ordinals = new IdentityHashMap<>();
+      entries.forEach((ranked, rankedEntry) -> ordinals.put(ranked, rankedEntry.ordinal()));
+      compactOrdinals(ordinals);
+    }
+    refresh(cluster, entry != null ? entry.ordinal() : nextOrdinal++);
+  }
+
+  /**
+   * Brings a cluster's entry up to date with an explicit tie-breaking ordinal, for callers that
+   * rank clusters later than they create them. Clean clusters that are already ranked are left in
+   * place.
+   *
+   * @param cluster The cluster to refresh
+   * @param ordinal Position among clusters of equal support, lower ranks first; at most {@link
+   *     #MAX_ORDINAL}
+   */
+  void refresh(LogCluster cluster, long ordinal) {
+    if (ordinal < 0 || ordinal > MAX_ORDINAL) {
+      throw new IllegalArgumentException("Ordinal out of range: " + ordinal);
+    }
+    Entry entry = entries.get(cluster);
+    if (entry != null) {
+      if (!cluster.isDirty() && entry.ordinal() == ordinal) {
+        return;
+      }
+      track(cluster, entry);
+      ranked.remove(entry);
+      specificitySum -= entry.specificity();
+      supportSum -= entry.pattern().getSupportCount();
+    }
+    nextOrdinal = Math.max(nextOrdinal, ordinal + 1);
+    if (entry == null) {
+      track(cluster, null);
+    }
+    LogPattern pattern = cluster.generatePattern();
+    Entry updated = new Entry(pattern, ordinal, pattern.getSpecificity());
+    ranked.add(updated);
+    entries.put(cluster, updated);
+    specificitySum += updated.specificity();
+    supportSum += pattern.getSupportCount();
+    changed();
+  }
+
+  /**
+   * Renumbers clusters 0, 1, 2, ... in the order of their ordinals and re-ranks the ranked ones
+   * with their new ordinals, which keeps the order among clusters of equal support. Ordinals then
+   * stay within {@link #MAX_ORDINAL} however many clusters were ever created. Callers that pass
+   * explicit ordinals compact them this way once they reach the limit; it costs O(k log k) for k
+   * clusters.
+   *
+   * @param ordinals Ordinal of each cluster, ranked or not; renumbered in place
+   * @return The first ordinal not given to any cluster
+   */
+  long compactOrdinals(Map<LogCluster, Long> ordinals) {
+    List<Map.Entry<LogCluster, Long>> sorted = new ArrayList<>(ordinals.entrySet());
+    sorted.sort(Map.Entry.comparingByValue());
+    // Take the ranked clusters out first, so no new ordinal collides with an old one
+    List<LogCluster> ranked = new ArrayList<>();
+    for (Map.Entry<LogCluster, Long> ordinal : sorted) {
+      if (entries.containsKey(ordinal.getKey())) {
+        ranked.add(ordinal.getKey());
+        remove(ordinal.getKey());
+      }
+    }
+    long next = 0;
+    for (Map.Entry<LogCluster, Long> ordinal : sorted) {
+      ordinals.put(ordinal.getKey(), next++);
+    }
+    for (LogCluster cluster : ranked) {
+      refresh(cluster, ordinals.get(cluster));
+    }
+    nextOrdinal = next;
+    return next;
+  }
+
+  /**
+   * Drops a cluster from the ranking, if it is ranked.
+   *
+   * @param cluster The cluster to drop
+   */
+  void remove(LogCluster cluster) {
+    Entry entry = entries.remove(cluster);
+    if (entry != null) {
+      track(cluster, entry);
+      ranked.remove(entry);
+      specificitySum -= entry.specificity();
+      supportSum -= entry.pattern().getSupportCount();
+      changed();
+    }
+  }
+
+  /**
+   * Drops every ranked cluster matching a filter.
+   *
+   * @param filter Predicate selecting the clusters to drop
+   */
+  void removeIf(Predicate<LogCluster> filter) {
+    Iterator<Map.Entry<LogCluster, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<LogCluster, Entry> entry = iterator.next();
+      if (filter.test(entry.getKey())) {
+        track(entry.getKey(), entry.getValue());
+        ranked.remove(entry.getValue());
+        specificitySum -= entry.getValue().specificity();
+        supportSum -= entry.getValue().pattern().getSupportCount();
+        iterator.remove();
+        changed();
+      }
+    }
+  }
+
+  /** Removes all clusters. */
+  void clear() {
+    ranked.clear();
+    entries.clear();
+    nextOrdinal = 0;
+    specificitySum = 0.0;
+    supportSum = 0;
+    matcher.clear();
+    unmatched.clear();
+    changed();
+  }
+
+  /**
+   * Gets the version of the ranking, which changes whenever the ranked patterns may have changed.
+   *
+   * @return Version number
+   */
+  long version() {
+    return version;
+  }
+
+  /**
+   * Gets the patterns in rank order. The returned list is unmodifiable.
+   *
+   * @return Patterns sorted by support count (descending)
+   */
+  List<LogPattern> patterns() {
+    List<LogPattern> current = patterns;
+    if (current == null) {
+      List<LogPattern> list = new ArrayList<>(ranked.size());
+      for (Entry entry : ranked) {
+        list.add(entry.pattern());
+      }
+      current = Collections.unmodifiableList(list);
+      patterns = current;
+    }
+    return current;
+  }
+
+  /**
+   * Gets the match index over the ranked patterns, first applying the entries that changed since
+   * the previous call.
+   *
+   * @return Matcher ranking patterns in the same order as {@link #patterns()}
+   */
+  PatternMatcher matcher() {
+    for (Map.Entry<LogCluster, Entry> change : unmatched.entrySet()) {
+      Entry indexed = change.getValue();
+      Entry current = entries.get(change.getKey());
+      if (current == indexed
+          || (current != null
+              && indexed != null
+              && current.pattern() == indexed.pattern()
+              && rank(current) == rank(indexed))) {
+        continue; // Re-added as it was
+      }
+      // Adding first keeps the better rank on the shared path, so the removal stops early
+      if (current != null) {
+        matcher.add(current.pattern(), rank(current));
+      }
+      if (indexed != null) {
+        matcher.remove(indexed.pattern(), rank(indexed));
+      }
+    }
+    unmatched.clear();
+    return matcher;
+  }
+
+  /**
+   * Gets the number of ranked patterns.
+   *
+   * @return Pattern count
+   */
+  int size() {
+    return ranked.size();
+  }
+
+  /**
+   * Gets the total support of the ranked patterns, from a running sum.
+   *
+   * @return Number of messages covered by the ranked patterns
+   */
+  long totalSupport() {
+    return supportSum;
+  }
+
+  /**
+   * Gets the average specificity of the ranked patterns, from a running sum.
+   *
+   * @return Average specificity, or 0.0 if there are no patterns
+   */
+  double averageSpecificity() {
+    return ranked.isEmpty() ? 0.0 : specificitySum / ranked.size();
+  }
+
+  /** Remembers the entry the matcher has for a cluster about to change, if not yet recorded. */
+  private void track(LogCluster cluster, Entry indexed) {
+    if (!unmatched.containsKey(cluster)) {
+      unmatched.put(cluster, indexed);
+    }
+  }
+
+  /**
+   * Gets the matcher rank of an entry: lower for higher support, then for lower ordinals, as in
+   * {@link #RANK_ORDER}. Support counts are positive ints and ordinals are at most {@link
+   * #MAX_ORDINAL}, so both fit into one long.
+   */
+  private static long rank(Entry entry) {
+    return (long) (Integer.MAX_VALUE - entry.pattern().getSupportCount()) << 32 | entry.ordinal();
+  }
+
+  private void changed() {
+    version++;
+    patterns = null;
+  }
+
+  /**
+   * A cluster's current pattern with the cluster's insertion ordinal as tie-breaker, and the
+   * pattern's specificity as it was added to the running sum.
+   */
+  private record Entry(LogPattern pattern, long ordinal, double specificity) {}
+}
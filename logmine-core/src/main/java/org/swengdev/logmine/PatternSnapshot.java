@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Immutable, versioned view of the patterns at one point in time.
+ *
+ * <p>A snapshot holds a frozen match index over the ranked patterns, so it can be read and matched
+ * against from any number of threads without locking, while ingestion keeps going. The index
+ * shares its unchanged parts with the processor's own, so publishing a snapshot costs only what
+ * changed since the previous one; the pattern list is produced from the index on first read.
+ * {@link LogMine} publishes a new snapshot whenever its patterns change.
+ *
+ * <p>The version changes whenever the patterns may have changed, so readers that poll can skip
+ * unchanged snapshots:
+ *
+ * <pre>{@code
+ * PatternSnapshot snapshot = logMine.getSnapshot();
+ * if (snapshot.getVersion() != lastVersion) {
+ *     lastVersion = snapshot.getVersion();
+ *     dashboard.show(snapshot.getPatterns());
+ * }
+ * }</pre>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @see LogMine#getSnapshot()
+ */
+public final class PatternSnapshot {
+
+  private final long version;
+  private final PatternMatcher matcher;
+  private final Function<String, LogMessage> parser;
+  private volatile List<LogPattern> patterns; // Listed from the matcher on first read
+
+  /**
+   * Creates a snapshot.
+   *
+   * @param version Version of the patterns
+   * @param matcher Frozen matcher over the patterns
+   * @param parser Thread-safe conversion of raw log lines into messages
+   */
+  PatternSnapshot(long version, PatternMatcher matcher, Function<String, LogMessage> parser) {
+    this.version = version;
+    this.matcher = matcher.freeze();
+    this.parser = parser;
+  }
+
+  /**
+   * Gets the version of this snapshot. Two snapshots of the same LogMine with the same version hold
+   * the same patterns.
+   *
+   * @return Version number
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the patterns sorted by support count (most frequent first). The list is unmodifiable and
+   * shared, not copied.
+   *
+   * @return Patterns of this snapshot
+   */
+  public List<LogPattern> getPatterns() {
+    // Concurrent first calls may each list the patterns; the lists are equal, so no lock is needed
+    List<LogPattern> current = patterns;
+    if (current == null) {
+      current = Collections.unmodifiableList(matcher.patterns());
+      patterns = current;
+    }
+    return current;
+  }
+
+  /**
+   * Gets the number of patterns without listing them.
+   *
+   * @return Pattern count
+   */
+  int size() {
+    return matcher.size();
+  }
+
+  /**
+   * Finds the highest ranked pattern of this snapshot that matches a log message.
+   *
+   * @param logMessage The log message to match
+   * @return The matching pattern, or null if no match
+   */
+  public LogPattern matchPattern(String logMessage) {
+    if (matcher.size() == 0) {
+      return null;
+    }
+    return matcher.match(parser.apply(logMessage));
+  }
+}
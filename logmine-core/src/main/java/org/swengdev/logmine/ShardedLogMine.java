@@ -0,0 +1,388 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-core facade that spreads logs over several independent {@link LogMine} shards.
+ *
+ * <p>A single {@link LogMine} serializes every {@link LogMine#addLog(String)} behind one write
+ * lock, so extra producer threads only add contention. This facade routes each log to one of N
+ * shards, each with its own processor and lock, so producers working on different shards never
+ * block each other.
+ *
+ * <h2>Routing</h2>
+ *
+ * <p>Logs are routed by a structural key computed in one pass over the raw text, without
+ * tokenizing: the number of whitespace-separated tokens plus a hash of the first token that
+ * contains no digits. Messages of the same template share that key (timestamps, counters and IDs
+ * are skipped), so most templates are clustered within a single shard. A template whose token
+ * count or first digit-free token varies, such as one starting with a user name, is spread over
+ * several shards, each of which finds its own pattern for it.
+ *
+ * <h2>Merged View</h2>
+ *
+ * <p>Pattern queries reconcile the patterns of all shards: a pattern is merged into the first more
+ * frequent pattern of another shard within the similarity threshold, adding up their support, and
+ * the result is sorted by support. Templates spread over several shards thus come out as one
+ * pattern in the common case, but since every shard clusters on its own the merged view can still
+ * differ from the patterns of a single {@link LogMine}.
+ *
+ * <p>The merged view is kept as one {@link PatternSnapshot}, rebuilt only when the snapshot of a
+ * shard has changed since. {@link #getCurrentPatterns()}, {@link #matchPattern(String)}, {@link
+ * #isAnomaly(String)} and the pattern counts of {@link #getStats()} all answer from it, so they
+ * agree with each other, and matching returns merged patterns with a single index lookup.
+ *
+ * <h2>Usage Example</h2>
+ *
+ * <pre>{@code
+ * LogMineConfig config = LogMineConfig.builder()
+ *     .withSimilarityThreshold(0.6)
+ *     .build();
+ * ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config, 16, 100000);
+ *
+ * // Called from many ingest threads
+ * logMine.addLog(line);
+ *
+ * List<LogPattern> patterns = logMine.getCurrentPatterns();
+ * }</pre>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @see LogMine
+ */
+public class ShardedLogMine {
+
+  private final ProcessingMode mode;
+  private final double threshold;
+  private final LogMine[] shards;
+  private final LogMineProcessor queries; // Parses log lines matched against the merged view
+  private final AtomicLong mergedVersion = new AtomicLong();
+  private volatile MergedView merged; // Latest merged view, null until first needed
+
+  /**
+   * Creates a sharded LogMine. Every shard gets its own processor built from the same
+   * configuration.
+   *
+   * @param mode Processing mode of every shard
+   * @param config Processor configuration shared by all shards
+   * @param shardCount Number of shards, typically the number of cores used for ingestion
+   * @param maxLogsInMemory Maximum logs to keep in memory across all shards (BATCH mode only)
+   * @throws IllegalArgumentException if shardCount is less than 1
+   */
+  public ShardedLogMine(
+      ProcessingMode mode, LogMineConfig config, int shardCount, int maxLogsInMemory) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be at least 1, got: " + shardCount);
+    }
+    this.mode = mode;
+    this.threshold = config.similarityThreshold();
+    this.shards = new LogMine[shardCount];
+    int logsPerShard = (maxLogsInMemory + shardCount - 1) / shardCount;
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new LogMine(mode, new LogMineProcessor(config), logsPerShard);
+    }
+    this.queries = new LogMineProcessor(config);
+  }
+
+  /**
+   * Creates a sharded LogMine with one shard per available processor.
+   *
+   * @param mode Processing mode of every shard
+   * @param config Processor configuration shared by all shards
+   */
+  public ShardedLogMine(ProcessingMode mode, LogMineConfig config) {
+    this(mode, config, Runtime.getRuntime().availableProcessors(), 100000);
+  }
+
+  /**
+   * Adds a log message to the shard it routes to. See {@link LogMine#addLog(String)}.
+   *
+   * @param logMessage The log message to process; null or empty messages are ignored
+   */
+  public void addLog(String logMessage) {
+    if (logMessage == null || logMessage.trim().isEmpty()) {
+      return;
+    }
+    shards[shardFor(logMessage)].addLog(logMessage);
+  }
+
+  /**
+   * Adds multiple log messages. Messages are grouped by shard first, so each shard's lock is taken
+   * once per call.
+   *
+   * @param logMessages List of log messages to add
+   */
+  public void addLogs(List<String> logMessages) {
+    if (logMessages == null || logMessages.isEmpty()) {
+      return;
+    }
+
+    List<List<String>> byShard = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      byShard.add(new ArrayList<>());
+    }
+    for (String logMessage : logMessages) {
+      if (logMessage != null && !logMessage.trim().isEmpty()) {
+        byShard.get(shardFor(logMessage)).add(logMessage);
+      }
+    }
+    for (int i = 0; i < shards.length; i++) {
+      shards[i].addLogs(byShard.get(i));
+    }
+  }
+
+  /**
+   * Extracts patterns in every shard and returns the merged view. In BATCH mode the shards are
+   * processed in parallel.
+   *
+   * @return Merged patterns sorted by support count (most frequent first)
+   */
+  public List<LogPattern> extractPatterns() {
+    IntStream.range(0, shards.length).parallel().forEach(i -> shards[i].extractPatterns());
+    return getCurrentPatterns();
+  }
+
+  /**
+   * Gets the current patterns of every shard, merged. See {@link LogMine#getCurrentPatterns()}.
+   *
+   * <p>Returns a copy of the merged snapshot's pattern list (see {@link #getSnapshot()}).
+   *
+   * @return Merged patterns sorted by support count (most frequent first)
+   */
+  public List<LogPattern> getCurrentPatterns() {
+    return new ArrayList<>(getSnapshot().getPatterns());
+  }
+
+  /**
+   * Gets the merged patterns of all shards as a snapshot. It is rebuilt only if a shard has
+   * published new patterns since the previous call, so repeated queries cost no merge. The version
+   * changes whenever the merged patterns are rebuilt.
+   *
+   * @return Immutable snapshot of the merged patterns
+   */
+  public PatternSnapshot getSnapshot() {
+    return mergedView().snapshot();
+  }
+
+  /**
+   * Finds the merged pattern matching a log message. See {@link LogMine#matchPattern(String)}.
+   *
+   * @param logMessage The log message to match
+   * @return The matching merged pattern, or null if no match
+   */
+  public LogPattern matchPattern(String logMessage) {
+    return getSnapshot().matchPattern(logMessage);
+  }
+
+  /**
+   * Checks if a log message is anomalous, i.e. matches no merged pattern. As with {@link
+   * LogMine#isAnomaly(String)}, nothing is anomalous before any patterns exist.
+   *
+   * @param logMessage The log message to check
+   * @return true if no known pattern matches
+   */
+  public boolean isAnomaly(String logMessage) {
+    PatternSnapshot current = getSnapshot();
+    return current.size() > 0 && current.matchPattern(logMessage) == null;
+  }
+
+  /** Clears all shards. */
+  public void clear() {
+    for (LogMine shard : shards) {
+      shard.clear();
+    }
+  }
+
+  /**
+   * Gets statistics over all shards. Log, message and cluster counts are summed over the shards,
+   * whose statistics are read without locking. Pattern counts and specificity describe the merged
+   * patterns, so they agree with {@link #getCurrentPatterns()}.
+   *
+   * @return Combined statistics
+   */
+  public LogMine.Stats getStats() {
+    int totalLogs = 0;
+    boolean patternsNeedUpdate = false;
+    int totalMessages = 0;
+    int numClusters = 0;
+    for (LogMine shard : shards) {
+      LogMine.Stats stats = shard.getStats();
+      totalLogs += stats.getTotalLogs();
+      patternsNeedUpdate |= stats.isPatternsNeedUpdate();
+
+      LogMineProcessor.ProcessingStats processing = stats.getProcessingStats();
+      totalMessages += processing.getTotalMessages();
+      numClusters += processing.getNumClusters();
+    }
+
+    MergedView view = mergedView();
+    int numPatterns = view.snapshot().size();
+    LogMineProcessor.ProcessingStats processing =
+        new LogMineProcessor.ProcessingStats(
+            totalMessages,
+            numClusters,
+            numPatterns,
+            numClusters == 0 ? 0 : (double) totalMessages / numClusters,
+            numPatterns == 0 ? 0.0 : view.specificitySum() / numPatterns);
+    return new LogMine.Stats(mode, totalLogs, numPatterns, patternsNeedUpdate, processing);
+  }
+
+  /**
+   * Gets the processing mode.
+   *
+   * @return STREAMING or BATCH
+   */
+  public ProcessingMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Gets the number of shards.
+   *
+   * @return Shard count
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Gets the merged view, rebuilding it if the snapshot version of any shard changed. Concurrent
+   * callers may both rebuild it; either result is a valid view.
+   */
+  private MergedView mergedView() {
+    PatternSnapshot[] snapshots = new PatternSnapshot[shards.length];
+    long[] versions = new long[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      snapshots[i] = shards[i].getSnapshot();
+      versions[i] = snapshots[i].getVersion();
+    }
+    MergedView current = merged;
+    if (current != null && Arrays.equals(current.versions(), versions)) {
+      return current;
+    }
+
+    List<List<LogPattern>> perShard = new ArrayList<>(shards.length);
+    for (PatternSnapshot snapshot : snapshots) {
+      perShard.add(snapshot.getPatterns());
+    }
+    List<LogPattern> patterns = mergePatterns(perShard, threshold);
+    double specificitySum = 0.0;
+    for (LogPattern pattern : patterns) {
+      specificitySum += pattern.getSpecificity();
+    }
+    current =
+        new MergedView(
+            versions,
+            queries.snapshotOf(mergedVersion.incrementAndGet(), patterns),
+            specificitySum);
+    merged = current;
+    return current;
+  }
+
+  /** Gets the shard a log message routes to. */
+  int shardFor(String logMessage) {
+    return Math.floorMod(routingKey(logMessage), shards.length);
+  }
+
+  /**
+   * Computes the structural routing key of a raw log line: its whitespace-separated token count
+   * combined with the hash of its first token without digits. Callers that partition logs over
+   * their own processors can use it to keep each template in one partition.
+   *
+   * @param logMessage The raw log line
+   * @return The routing key; lines of the same template have the same key
+   */
+  public static int routingKey(String logMessage) {
+    int tokens = 0;
+    int leadingHash = 0;
+    boolean leadingFound = false;
+    boolean inToken = false;
+    int tokenHash = 0;
+    boolean tokenHasDigit = false;
+
+    for (int i = 0; i <= logMessage.length(); i++) {
+      boolean boundary = i == logMessage.length() || Character.isWhitespace(logMessage.charAt(i));
+      if (boundary) {
+        if (inToken) {
+          tokens++;
+          if (!leadingFound && !tokenHasDigit) {
+            leadingHash = tokenHash;
+            leadingFound = true;
+          }
+          inToken = false;
+        }
+        continue;
+      }
+
+      char c = logMessage.charAt(i);
+      if (!inToken) {
+        inToken = true;
+        tokenHash = 0;
+        tokenHasDigit = false;
+      }
+      if (!leadingFound) {
+        tokenHash = 31 * tokenHash + c;
+        tokenHasDigit |= Character.isDigit(c);
+      }
+    }
+
+    // Spread the key so that nearby token counts do not land on neighbouring shards only
+    int key = 31 * tokens + leadingHash;
+    return key ^ (key >>> 16);
+  }
+
+  /**
+   * Merges per-shard pattern lists with {@link PatternGrouper}. Patterns are visited in descending
+   * support order, and each one is merged with {@link LogPattern#merge} into the first pattern of
+   * another shard that it is similar to at the threshold, where wildcards and gaps count as half a
+   * difference. Patterns of the same shard are never merged with each other, so a single list
+   * comes back unchanged apart from the order. The result is sorted by support; patterns with
+   * equal support keep the order of the input lists.
+   *
+   * @param perShard The patterns of each shard
+   * @param threshold Similarity threshold the shards cluster with
+   * @return The merged patterns
+   */
+  public static List<LogPattern> mergePatterns(List<List<LogPattern>> perShard, double threshold) {
+    List<LogPattern> patterns = new ArrayList<>();
+    int total = 0;
+    for (List<LogPattern> shardPatterns : perShard) {
+      total += shardPatterns.size();
+    }
+    int[] sources = new int[total];
+    for (int shard = 0; shard < perShard.size(); shard++) {
+      for (LogPattern pattern : perShard.get(shard)) {
+        sources[patterns.size()] = shard;
+        patterns.add(pattern);
+      }
+    }
+    // Shards split the messages of a template between them, so their supports are not weighed
+    return PatternGrouper.group(patterns, sources, threshold, false);
+  }
+
+  /**
+   * Merged patterns of all shards, with the shard snapshot versions they were merged from and the
+   * sum of their specificities.
+   */
+  private record MergedView(long[] versions, PatternSnapshot snapshot, double specificitySum) {}
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.swengdev.logmine.strategy.TokenSpans;
+import org.swengdev.logmine.strategy.VariableDetector;
+
+/**
+ * Processor-wide dictionary that interns constant tokens to int IDs and caches how each token
+ * behaves under the {@link VariableDetector}, so token comparisons during clustering become int
+ * compares instead of repeated regex evaluation. Only meant for detectors whose {@link
+ * VariableDetector#constantsMatchExactly() constants match exactly}.
+ *
+ * <p>Every token gets a match class:
+ *
+ * <ul>
+ *   <li>{@link #CONSTANT} for tokens that are not variable. These only match identical tokens, i.e.
+ *       the same ID.
+ *   <li>A non-negative class for variable tokens. When the detector knows the token's {@link
+ *       VariableDetector#matchType(String) match type}, a positive type is the class. Otherwise the
+ *       token joins the class of the first class representative it matches in both directions, so
+ *       two variable tokens match exactly when their classes are equal. This assumes {@code
+ *       tokensMatch} is an equivalence relation on variable tokens, which holds for all detectors
+ *       shipped with LogMine.
+ *   <li>{@link #UNCLASSIFIED} for variable tokens that only match themselves, and for variable
+ *       tokens of unknown match type seen after the class table is full. Comparisons involving them
+ *       fall back to the match types, or to {@code tokensMatch} if those are unknown.
+ * </ul>
+ *
+ * <p>Variable tokens are not interned: comparisons only need their class, and their values (request
+ * IDs, hashes, timestamps) would otherwise fill the dictionary. They are encoded as {@link
+ * #NOT_INTERNED}, so whether two of them are identical is decided by comparing the strings. The
+ * match type of every token is encoded as well, so messages can take their per-token match types
+ * from the encoding.
+ *
+ * <p>Tokens can also be encoded straight from their positions in a message (see {@link
+ * #encode(CharSequence, TokenSpans, String[])}). Known tokens are then looked up without copying
+ * them out of the message and the dictionary hands out its own instance of each constant token, so
+ * a constant token is only ever copied once per epoch, when it is interned.
+ *
+ * <p>The dictionary holds at most {@code capacity} tokens. When a new token would exceed it, the
+ * whole dictionary is dropped and a new epoch begins. Encodings remember their dictionary and
+ * epoch; other encodings are not {@link #comparable(Encoding, Encoding) comparable} and are
+ * re-encoded or compared as strings by callers. This keeps constants of unusual messages from
+ * growing the dictionary without limit while frequent tokens are simply re-interned after a reset.
+ *
+ * <p>Thread-safe: lookups are lock-free. Only interning a new constant token and classing a
+ * variable token of unknown match type synchronize.
+ *
+ * <p><b>Internal API:</b> This class is package-private and used only by {@link LogMineProcessor}
+ * and the messages, clusters and patterns it creates.
+ */
+class TokenDictionary {
+
+  /** Default maximum number of distinct tokens per epoch. */
+  static final int DEFAULT_CAPACITY = 1 << 16;
+
+  /** Match class of tokens that are not variable. */
+  static final int CONSTANT = -1;
+
+  /** Match class of variable tokens that could not be assigned a cached class. */
+  static final int UNCLASSIFIED = -2;
+
+  /** ID used in pattern encodings for wildcard positions. */
+  static final int WILDCARD = -1;
+
+  /** ID of variable tokens, which are not interned. */
+  static final int NOT_INTERNED = -2;
+
+  /** Maximum number of variable classes found through class representatives per epoch. */
+  private static final int MAX_CLASSES = 16;
+
+  private final VariableDetector variableDetector;
+  private final int capacity;
+  private volatile Generation generation;
+
+  /**
+   * Creates a dictionary with the default capacity.
+   *
+   * @param variableDetector Strategy whose matching behavior is cached
+   */
+  TokenDictionary(VariableDetector variableDetector) {
+    this(variableDetector, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a dictionary.
+   *
+   * @param variableDetector Strategy whose matching behavior is cached
+   * @param capacity Maximum number of distinct tokens before the dictionary is reset
+   */
+  TokenDictionary(VariableDetector variableDetector, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.variableDetector = variableDetector;
+    this.capacity = capacity;
+    this.generation = new Generation(0);
+  }
+
+  /**
+   * Encodes a token sequence in the current epoch, interning unseen tokens.
+   *
+   * @param tokens Message tokens
+   * @return The encoding, or null if the tokens do not fit into a single epoch
+   */
+  Encoding encode(List<String> tokens) {
+    return encode(tokens, false);
+  }
+
+  /**
+   * Encodes pattern tokens in the current epoch. Wildcards are encoded as {@link #WILDCARD}.
+   *
+   * @param tokens Pattern tokens
+   * @return The encoding, or null if the tokens do not fit into a single epoch
+   */
+  Encoding encodePattern(List<String> tokens) {
+    return encode(tokens, true);
+  }
+
+  /**
+   * Encodes the tokens at the given positions of a text in the current epoch, interning unseen
+   * tokens. Tokens already in the dictionary are found without copying them out of the text.
+   *
+   * @param text Text the spans point into
+   * @param spans Token positions
+   * @param tokens Receives the dictionary's instance of each token, at least {@code spans.size()}
+   *     long
+   * @return The encoding, or null if the tokens do not fit into a single epoch
+   */
+  Encoding encode(CharSequence text, TokenSpans spans, String[] tokens) {
+    SpanKey key = new SpanKey(text);
+    return encode(
+        spans.size(),
+        (current, i) -> {
+          key.set(spans.start(i), spans.length(i));
+          Info info = current.entries.get(key);
+          if (info == null) {
+            info = intern(current, key.toString());
+            if (info == null) {
+              return null;
+            }
+          }
+          tokens[i] = info.token;
+          return info;
+        });
+  }
+
+  private Encoding encode(List<String> tokens, boolean pattern) {
+    return encode(
+        tokens.size(),
+        (current, i) -> {
+          String token = tokens.get(i);
+          if (pattern && token.equals("***")) {
+            return WILDCARD_INFO;
+          }
+          Info info = current.entries.get(token);
+          return info != null ? info : intern(current, token);
+        });
+  }
+
+  private Encoding encode(int size, Lookup lookup) {
+    // Retry once in a fresh epoch; a sequence that still does not fit is left unencoded
+    for (int attempt = 0; attempt < 2; attempt++) {
+      Generation current = generation;
+      int[] ids = new int[size];
+      int[] classes = new int[size];
+      byte[] matchTypes = new byte[size];
+      boolean complete = true;
+
+      for (int i = 0; i < size; i++) {
+        Info info = lookup.find(current, i);
+        if (info == null) {
+          complete = false; // Epoch rolled over, start again in the new one
+          break;
+        }
+        ids[i] = info.id;
+        classes[i] = info.matchClass;
+        matchTypes[i] = info.matchType;
+      }
+
+      if (complete) {
+        return new Encoding(this, current.epoch, ids, classes, matchTypes);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether an encoding belongs to the current epoch.
+   *
+   * @param encoding Encoding to check, may be null
+   * @return true if the encoding is non-null and current
+   */
+  boolean isCurrent(Encoding encoding) {
+    return encoding != null && encoding.dictionary == this && encoding.epoch == generation.epoch;
+  }
+
+  /**
+   * Checks whether the IDs and classes of two encodings can be compared: both come from the same
+   * dictionary and epoch.
+   *
+   * @param encoding1 First encoding, may be null
+   * @param encoding2 Second encoding, may be null
+   * @return true if both are non-null and comparable
+   */
+  static boolean comparable(Encoding encoding1, Encoding encoding2) {
+    return encoding1 != null
+        && encoding2 != null
+        && encoding1.dictionary == encoding2.dictionary
+        && encoding1.epoch == encoding2.epoch;
+  }
+
+  /**
+   * Gets the number of tokens interned in the current epoch.
+   *
+   * @return Token count
+   */
+  int size() {
+    return generation.entries.size();
+  }
+
+  /** Drops all interned tokens and starts a new epoch. */
+  synchronized void clear() {
+    generation = new Generation(generation.epoch + 1);
+  }
+
+  /**
+   * Gets the info of a token that is not in the dictionary, interning it if it is constant. Returns
+   * null if the epoch was rolled over because the dictionary is full.
+   */
+  private Info intern(Generation current, String token) {
+    byte matchType = matchType(variableDetector, token);
+    if (!variableDetector.isVariable(token)) {
+      return internConstant(current, token, matchType);
+    }
+    int matchClass;
+    if (matchType != VariableDetector.UNKNOWN_MATCH_TYPE) {
+      // Offset past the representative classes so the two kinds never collide
+      matchClass = matchType > 0 ? MAX_CLASSES + matchType : UNCLASSIFIED;
+    } else {
+      matchClass = representativeClass(current, token);
+    }
+    return new Info(NOT_INTERNED, matchClass, matchType, token);
+  }
+
+  private synchronized Info internConstant(Generation current, String token, byte matchType) {
+    if (current != generation) {
+      return null;
+    }
+    Info existing = current.entries.get(token);
+    if (existing != null) {
+      return existing;
+    }
+    if (current.entries.size() >= capacity) {
+      generation = new Generation(current.epoch + 1);
+      return null;
+    }
+
+    Info info = new Info(current.entries.size(), CONSTANT, matchType, token);
+    current.entries.put(token, info);
+    return info;
+  }
+
+  /**
+   * Gets a token's match type from a detector, mapping types out of range to unknown.
+   *
+   * @param variableDetector Detector to ask
+   * @param token Token to classify
+   * @return The match type
+   */
+  static byte matchType(VariableDetector variableDetector, String token) {
+    int matchType = variableDetector.matchType(token);
+    if (matchType < VariableDetector.EXACT_MATCH_TYPE
+        || matchType > VariableDetector.MAX_MATCH_TYPE) {
+      return VariableDetector.UNKNOWN_MATCH_TYPE;
+    }
+    return (byte) matchType;
+  }
+
+  /** Finds the class of a variable token of unknown match type among the class representatives. */
+  private int representativeClass(Generation current, String token) {
+    List<String> representatives = current.classRepresentatives;
+    synchronized (representatives) {
+      for (int c = 0; c < representatives.size(); c++) {
+        String representative = representatives.get(c);
+        if (variableDetector.tokensMatch(token, representative)
+            && variableDetector.tokensMatch(representative, token)) {
+          return c;
+        }
+      }
+      if (representatives.size() < MAX_CLASSES) {
+        representatives.add(token);
+        return representatives.size() - 1;
+      }
+      return UNCLASSIFIED;
+    }
+  }
+
+  /**
+   * Token sequence encoded in one epoch: an ID, a match class and a match type per position.
+   *
+   * @param dictionary Dictionary the IDs belong to
+   * @param epoch Epoch the IDs belong to
+   * @param ids Token IDs ({@link #WILDCARD} for pattern wildcards, {@link #NOT_INTERNED} for
+   *     variable tokens)
+   * @param classes Match classes ({@link #CONSTANT}, {@link #UNCLASSIFIED} or a variable class)
+   * @param matchTypes Match types from {@link VariableDetector#matchType(String)}, which do not
+   *     depend on the epoch
+   */
+  record Encoding(
+      TokenDictionary dictionary, long epoch, int[] ids, int[] classes, byte[] matchTypes) {
+
+    /**
+     * Checks whether the tokens at two positions match, given the encodings are {@link
+     * TokenDictionary#comparable(Encoding, Encoding) comparable}. Returns false for pairs that have
+     * to be decided by {@code tokensMatch} instead, see {@link #needsFallback(Encoding, int, int)}.
+     */
+    boolean tokensMatch(int i, Encoding other, int j) {
+      int id = ids[i];
+      if (id >= 0 && id == other.ids[j]) {
+        return true;
+      }
+      int class1 = classes[i];
+      return class1 >= 0 && class1 == other.classes[j];
+    }
+
+    /**
+     * Checks whether a pair that {@link #tokensMatch(int, Encoding, int)} rejected could still
+     * match: both tokens are variable and at least one has no cached class. Such pairs are decided
+     * by their match types, or by {@code tokensMatch} if those are unknown.
+     */
+    boolean needsFallback(int i, Encoding other, int j) {
+      int class1 = classes[i];
+      int class2 = other.classes[j];
+      return class1 != CONSTANT
+          && class2 != CONSTANT
+          && (class1 == UNCLASSIFIED || class2 == UNCLASSIFIED);
+    }
+
+    /**
+     * Checks whether a position holds a variable token.
+     *
+     * @param i Token position
+     * @return true if the token is variable
+     */
+    boolean isVariable(int i) {
+      return classes[i] != CONSTANT;
+    }
+
+    /**
+     * Checks whether two positions hold identical tokens, given the encodings are comparable.
+     * Variable tokens have no ID, so they are compared by their strings.
+     *
+     * @param i Position in this encoding
+     * @param token1 Token at that position
+     * @param other Other encoding
+     * @param j Position in the other encoding
+     * @param token2 Token at that position
+     * @return true if the tokens are identical
+     */
+    boolean sameToken(int i, String token1, Encoding other, int j, String token2) {
+      int id = ids[i];
+      return id == NOT_INTERNED && other.ids[j] == NOT_INTERNED
+          ? token1.equals(token2)
+          : id == other.ids[j];
+    }
+  }
+
+  /** Cached ID, match class and match type of an interned token, and the token itself. */
+  private record Info(int id, int matchClass, byte matchType, String token) {}
+
+  /** Info of wildcard positions in pattern encodings. */
+  private static final Info WILDCARD_INFO =
+      new Info(WILDCARD, CONSTANT, (byte) VariableDetector.EXACT_MATCH_TYPE, "***");
+
+  /** Finds the info of the token at a position, or null if the epoch was rolled over. */
+  @FunctionalInterface
+  private interface Lookup {
+    Info find(Generation current, int index);
+  }
+
+  /**
+   * Lookup key for a region of a text that equals the String with the same characters. Map lookups
+   * compare by calling {@code equals} on the key being looked up (see {@link java.util.Map#get}),
+   * so the region is found among String keys without being copied. Never stored in a map.
+   */
+  private static final class SpanKey {
+    private final CharSequence text;
+    private int start;
+    private int length;
+    private int hash;
+
+    SpanKey(CharSequence text) {
+      this.text = text;
+    }
+
+    void set(int start, int length) {
+      this.start = start;
+      this.length = length;
+      int h = 0; // Same as String.hashCode()
+      for (int i = start; i < start + length; i++) {
+        h = 31 * h + text.charAt(i);
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof String string) || string.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (string.charAt(i) != text.charAt(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return text instanceof String string
+          ? string.substring(start, start + length)
+          : text.subSequence(start, start + length).toString();
+    }
+  }
+
+  /** Tokens and variable classes interned during one epoch. */
+  private static final class Generation {
+    private final long epoch;
+    private final ConcurrentHashMap<String, Info> entries;
+    private final List<String> classRepresentatives;
+
+    Generation(long epoch) {
+      this.epoch = epoch;
+      this.entries = new ConcurrentHashMap<>();
+      this.classRepresentatives = new ArrayList<>();
+    }
+  }
+}
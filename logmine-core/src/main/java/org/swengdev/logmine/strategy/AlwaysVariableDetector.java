@@ -37,6 +37,16 @@ public class AlwaysVariableDetector implements VariableDetector {
     return true; // Everything matches
   }
 
+  @Override
+  public int matchType(String token) {
+    return 1; // Everything matches everything else
+  }
+
+  @Override
+  public boolean constantsMatchExactly() {
+    return true; // There are no constant tokens
+  }
+
   @Override
   public String getDescription() {
     return "Always Variable Detector - All tokens treated as variables";
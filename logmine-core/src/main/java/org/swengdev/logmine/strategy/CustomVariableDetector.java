@@ -150,6 +150,17 @@ public class CustomVariableDetector implements VariableDetector {
     return false;
   }
 
+  @Override
+  public int matchType(String token) {
+    // Variables match each other, constants only themselves
+    return isVariable(token) ? 1 : EXACT_MATCH_TYPE;
+  }
+
+  @Override
+  public boolean constantsMatchExactly() {
+    return true;
+  }
+
   @Override
   public String getDescription() {
     return "Custom Variable Detector - "
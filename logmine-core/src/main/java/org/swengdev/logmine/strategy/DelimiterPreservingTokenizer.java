@@ -25,10 +25,16 @@ import java.util.List;
  *
  * <p>Example: "action=insert user=tom id=123" Tokens: ["action", "=", "insert", "user", "=", "tom",
  * "id", "=", "123"]
+ *
+ * <p>Each delimiter is a token of its own and whitespace separates tokens without being one. With
+ * no delimiters at all, every character other than whitespace is a token.
  */
 public class DelimiterPreservingTokenizer implements TokenizerStrategy {
 
   private final String delimiters;
+  private final boolean[] asciiDelimiters = new boolean[128];
+  private final boolean everyCharacter; // No delimiters: split between all characters
+  private final boolean surrogates; // Delimiters that match only outside surrogate pairs
 
   /** Creates a tokenizer with default delimiters. */
   public DelimiterPreservingTokenizer() {
@@ -42,10 +48,69 @@ public class DelimiterPreservingTokenizer implements TokenizerStrategy {
    */
   public DelimiterPreservingTokenizer(String delimiters) {
     this.delimiters = delimiters;
+    this.everyCharacter = delimiters.isEmpty();
+    boolean anySurrogate = false;
+    for (int i = 0; i < delimiters.length(); i++) {
+      char c = delimiters.charAt(i);
+      if (c < asciiDelimiters.length) {
+        asciiDelimiters[c] = true;
+      }
+      anySurrogate |= Character.isSurrogate(c);
+    }
+    this.surrogates = anySurrogate;
   }
 
   @Override
   public List<String> tokenize(String message) {
+    if (surrogates) {
+      return tokenizeWithRegex(message);
+    }
+    TokenSpans spans = new TokenSpans();
+    tokenizeSpans(message, spans);
+    return spans.tokens(message);
+  }
+
+  @Override
+  public boolean tokenizeSpans(CharSequence message, TokenSpans spans) {
+    if (surrogates) {
+      return false;
+    }
+    spans.clear();
+    if (message == null) {
+      return true;
+    }
+
+    int start = -1; // Start of the current run of other characters, or -1
+    for (int i = 0; i < message.length(); i++) {
+      char c = message.charAt(i);
+      boolean whitespace = WhitespaceTokenizer.isWhitespace(c);
+      if (whitespace || everyCharacter || isDelimiter(c)) {
+        if (start >= 0) {
+          spans.add(start, i);
+          start = -1;
+        }
+        if (!whitespace) {
+          spans.add(i, i + 1);
+        }
+      } else if (start < 0) {
+        start = i;
+      }
+    }
+    if (start >= 0) {
+      spans.add(start, message.length());
+    }
+    return true;
+  }
+
+  private boolean isDelimiter(char c) {
+    return c < asciiDelimiters.length ? asciiDelimiters[c] : delimiters.indexOf(c) >= 0;
+  }
+
+  /**
+   * Splits with lookaround expressions, which never split a surrogate pair at a delimiter that is
+   * half of one.
+   */
+  private List<String> tokenizeWithRegex(String message) {
     List<String> tokens = new ArrayList<>();
 
     if (message == null || message.isEmpty()) {
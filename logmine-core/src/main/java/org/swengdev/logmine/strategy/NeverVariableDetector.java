@@ -37,6 +37,16 @@ public class NeverVariableDetector implements VariableDetector {
     return token1.equals(token2); // Only exact matches
   }
 
+  @Override
+  public int matchType(String token) {
+    return EXACT_MATCH_TYPE; // Only exact matches
+  }
+
+  @Override
+  public boolean constantsMatchExactly() {
+    return true;
+  }
+
   @Override
   public String getDescription() {
     return "Never Variable Detector - All tokens treated as constants";
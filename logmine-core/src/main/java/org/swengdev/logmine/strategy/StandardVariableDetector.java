@@ -16,24 +16,16 @@
 
 package org.swengdev.logmine.strategy;
 
-import java.util.regex.Pattern;
-
 /**
  * Standard variable detector that considers numbers, timestamps, IPs, UUIDs, etc. as variables.
  * This is the default detector suitable for most log formats.
+ *
+ * <p>Tokens are classified by {@link TokenType#classify(CharSequence)}, a single scan without
+ * regular expressions, because the detector runs for every token pair the clustering compares.
  */
 public class StandardVariableDetector implements VariableDetector {
 
-  private static final Pattern NUMBER_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?$");
-  private static final Pattern TIMESTAMP_PATTERN =
-      Pattern.compile("^\\d{4}-\\d{2}-\\d{2}|\\d{2}:\\d{2}:\\d{2}|\\d+,\\d+$");
-  private static final Pattern IP_PATTERN =
-      Pattern.compile("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$");
-  private static final Pattern UUID_PATTERN =
-      Pattern.compile(
-          "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
-  private static final Pattern HEX_PATTERN = Pattern.compile("^0x[0-9a-fA-F]+$");
-  private static final Pattern HASH_PATTERN = Pattern.compile("^[0-9a-fA-F]{32,}$");
+  private static final int MIN_HASH_LENGTH = 32;
 
   private final boolean detectNumbers;
   private final boolean detectTimestamps;
@@ -70,66 +62,61 @@ public class StandardVariableDetector implements VariableDetector {
 
   @Override
   public boolean isVariable(String token) {
-    if (token == null || token.isEmpty()) {
+    if (token == null) {
       return false;
     }
+    return switch (TokenType.classify(token)) {
+      case NUMBER -> detectNumbers || (detectHashes && isDigitHash(token));
+      case TIMESTAMP -> detectTimestamps;
+      case IP -> detectIPs;
+      case UUID -> detectUUIDs;
+      case HEX, HASH -> detectHashes;
+      case NONE -> false;
+    };
+  }
 
-    if (detectNumbers && NUMBER_PATTERN.matcher(token).matches()) {
-      return true;
-    }
-
-    if (detectTimestamps && TIMESTAMP_PATTERN.matcher(token).matches()) {
+  @Override
+  public boolean tokensMatch(String token1, String token2) {
+    if (token1.equals(token2)) {
       return true;
     }
 
-    if (detectIPs && IP_PATTERN.matcher(token).matches()) {
-      return true;
-    }
+    // Variables of the same type match, except hex values and hashes
+    TokenType type = TokenType.classify(token1);
+    return type == TokenType.classify(token2) && matchesOwnType(type);
+  }
 
-    if (detectUUIDs && UUID_PATTERN.matcher(token).matches()) {
-      return true;
+  /** Returns the {@link TokenType} ordinal for types whose tokens match each other. */
+  @Override
+  public int matchType(String token) {
+    if (token == null) {
+      return EXACT_MATCH_TYPE;
     }
+    TokenType type = TokenType.classify(token);
+    return matchesOwnType(type) ? type.ordinal() : EXACT_MATCH_TYPE;
+  }
 
-    if (detectHashes
-        && (HEX_PATTERN.matcher(token).matches() || HASH_PATTERN.matcher(token).matches())) {
-      return true;
-    }
+  /** Checks whether different tokens of a type match each other. */
+  private boolean matchesOwnType(TokenType type) {
+    return switch (type) {
+      case NUMBER -> detectNumbers;
+      case TIMESTAMP -> detectTimestamps;
+      case IP -> detectIPs;
+      case UUID -> detectUUIDs;
+      case HEX, HASH, NONE -> false;
+    };
+  }
 
-    return false;
+  /** Checks whether a number is a run of digits long enough to be a hash as well. */
+  private static boolean isDigitHash(String number) {
+    return number.length() >= MIN_HASH_LENGTH
+        && number.charAt(0) != '-'
+        && number.indexOf('.') < 0;
   }
 
   @Override
-  public boolean tokensMatch(String token1, String token2) {
-    if (token1.equals(token2)) {
-      return true;
-    }
-
-    // If both are variables of the same type, consider them matching
-    if (isVariable(token1) && isVariable(token2)) {
-      // Check if they're the same type of variable
-      if (detectNumbers
-          && NUMBER_PATTERN.matcher(token1).matches()
-          && NUMBER_PATTERN.matcher(token2).matches()) {
-        return true;
-      }
-      if (detectTimestamps
-          && TIMESTAMP_PATTERN.matcher(token1).matches()
-          && TIMESTAMP_PATTERN.matcher(token2).matches()) {
-        return true;
-      }
-      if (detectIPs
-          && IP_PATTERN.matcher(token1).matches()
-          && IP_PATTERN.matcher(token2).matches()) {
-        return true;
-      }
-      if (detectUUIDs
-          && UUID_PATTERN.matcher(token1).matches()
-          && UUID_PATTERN.matcher(token2).matches()) {
-        return true;
-      }
-    }
-
-    return false;
+  public boolean constantsMatchExactly() {
+    return true;
   }
 
   @Override
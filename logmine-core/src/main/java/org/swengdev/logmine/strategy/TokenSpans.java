@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable list of token positions within a text, filled by {@link
+ * TokenizerStrategy#tokenizeSpans(CharSequence, TokenSpans)}.
+ *
+ * <p>Each token is an offset and a length, stored interleaved in a single int array that grows on
+ * demand and is kept across {@link #clear()} calls. Tokenizing into the same instance again
+ * therefore allocates nothing once the array is large enough, and no token is copied out of the
+ * text until {@link #token(CharSequence, int)} asks for it.
+ *
+ * <p>Not thread-safe; use one instance per thread.
+ */
+public final class TokenSpans {
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private int[] spans = new int[2 * INITIAL_CAPACITY]; // Offset and length of each token
+  private int size;
+
+  /** Creates an empty span list. */
+  public TokenSpans() {
+    // Default constructor
+  }
+
+  /** Removes all spans, keeping the allocated capacity. */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Appends a token.
+   *
+   * @param start Index of the token's first character
+   * @param end Index after the token's last character
+   */
+  public void add(int start, int end) {
+    if (2 * size == spans.length) {
+      spans = Arrays.copyOf(spans, 2 * spans.length);
+    }
+    spans[2 * size] = start;
+    spans[2 * size + 1] = end - start;
+    size++;
+  }
+
+  /**
+   * Gets the number of tokens.
+   *
+   * @return Token count
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the offset of a token.
+   *
+   * @param index Token position
+   * @return Index of the token's first character in the text
+   */
+  public int start(int index) {
+    return spans[2 * checkIndex(index)];
+  }
+
+  /**
+   * Gets the length of a token.
+   *
+   * @param index Token position
+   * @return Number of characters in the token
+   */
+  public int length(int index) {
+    return spans[2 * checkIndex(index) + 1];
+  }
+
+  /**
+   * Gets the end of a token.
+   *
+   * @param index Token position
+   * @return Index after the token's last character in the text
+   */
+  public int end(int index) {
+    return start(index) + length(index);
+  }
+
+  /**
+   * Copies a token out of the text.
+   *
+   * @param text The text the spans were found in
+   * @param index Token position
+   * @return The token
+   */
+  public String token(CharSequence text, int index) {
+    int start = start(index);
+    int end = start + length(index);
+    return text instanceof String string
+        ? string.substring(start, end)
+        : text.subSequence(start, end).toString();
+  }
+
+  /**
+   * Copies all tokens out of the text.
+   *
+   * @param text The text the spans were found in
+   * @return The tokens in order
+   */
+  public List<String> tokens(CharSequence text) {
+    List<String> tokens = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tokens.add(token(text, i));
+    }
+    return tokens;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine.strategy;
+
+/**
+ * Kind of variable value a token holds, as recognized by {@link StandardVariableDetector}.
+ *
+ * <p>{@link #classify(CharSequence)} scans a token once, character by character, without regular
+ * expressions and without allocating. Each type accepts exactly what the detector's former regular
+ * expression accepted:
+ *
+ * <ul>
+ *   <li>{@link #NUMBER}: {@code -?\d+(\.\d+)?}
+ *   <li>{@link #TIMESTAMP}: {@code \d{4}-\d{2}-\d{2}}, {@code \d{2}:\d{2}:\d{2}} or {@code \d+,\d+}
+ *   <li>{@link #IP}: {@code \d{1,3}\.\d{1,3}\.\d{1,3}\.\d{1,3}}
+ *   <li>{@link #UUID}: {@code [0-9a-fA-F]{8}-([0-9a-fA-F]{4}-){3}[0-9a-fA-F]{12}}
+ *   <li>{@link #HEX}: {@code 0x[0-9a-fA-F]+}
+ *   <li>{@link #HASH}: {@code [0-9a-fA-F]{32,}}
+ * </ul>
+ *
+ * <p>The only overlap is a run of 32 or more digits, which is classified as {@link #NUMBER} even
+ * though it is also a {@link #HASH}.
+ */
+public enum TokenType {
+  /** Not a recognized variable value. */
+  NONE,
+  /** Integer or decimal number, optionally negative. */
+  NUMBER,
+  /** Date, time of day, or comma-separated number pair. */
+  TIMESTAMP,
+  /** IPv4 address. */
+  IP,
+  /** UUID in its canonical 8-4-4-4-12 form. */
+  UUID,
+  /** Hexadecimal literal with a {@code 0x} prefix. */
+  HEX,
+  /** Hexadecimal digest of at least 32 digits. */
+  HASH;
+
+  // Separator kinds, packed two bits per separator in the order they appear
+  private static final int DOT = 0;
+  private static final int DASH = 1;
+  private static final int COLON = 2;
+  private static final int COMMA = 3;
+
+  // No recognized shape has more separators, so longer tokens are rejected early
+  private static final int MAX_SEPARATORS = 4;
+  private static final int MIN_HASH_LENGTH = 32;
+
+  private static final int SIGNED_DECIMAL_SEPARATORS = kinds(DASH, DOT);
+  private static final int IP_SEPARATORS = kinds(DOT, DOT, DOT);
+  private static final int DATE_SEPARATORS = kinds(DASH, DASH);
+  private static final long DATE_LENGTHS = lengths(4, 2, 2);
+  private static final int TIME_SEPARATORS = kinds(COLON, COLON);
+  private static final long TIME_LENGTHS = lengths(2, 2, 2);
+  private static final int UUID_SEPARATORS = kinds(DASH, DASH, DASH, DASH);
+  private static final long UUID_LENGTHS = lengths(8, 4, 4, 4, 12);
+
+  /**
+   * Classifies a token.
+   *
+   * @param token The token to classify
+   * @return The token's type, or {@link #NONE}
+   */
+  public static TokenType classify(CharSequence token) {
+    return classify(token, 0, token.length());
+  }
+
+  /**
+   * Classifies a region of a character sequence as if it were a token of its own.
+   *
+   * @param text Text holding the token
+   * @param start Index of the token's first character
+   * @param end Index after the token's last character
+   * @return The token's type, or {@link #NONE}
+   */
+  public static TokenType classify(CharSequence text, int start, int end) {
+    if (end <= start) {
+      return NONE;
+    }
+    if (end - start > 2 && text.charAt(start) == '0' && text.charAt(start + 1) == 'x') {
+      return isHexDigits(text, start + 2, end) ? HEX : NONE;
+    }
+
+    // The token is split into segments of hex digits at separators. Segment lengths are packed
+    // eight bits each and saturate at 255, which is longer than any shape checks for.
+    int separators = 0;
+    int kinds = 0;
+    long lengths = 0;
+    boolean letters = false; // Any hex letter, which only UUIDs and hashes allow
+    int run = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      int kind;
+      if (c >= '0' && c <= '9') {
+        run++;
+        continue;
+      } else if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+        letters = true;
+        run++;
+        continue;
+      } else if (c == '.') {
+        kind = DOT;
+      } else if (c == '-') {
+        kind = DASH;
+      } else if (c == ':') {
+        kind = COLON;
+      } else if (c == ',') {
+        kind = COMMA;
+      } else {
+        return NONE;
+      }
+      if (separators == MAX_SEPARATORS) {
+        return NONE;
+      }
+      kinds |= kind << (2 * separators);
+      lengths |= (long) Math.min(run, 0xFF) << (8 * separators);
+      separators++;
+      run = 0;
+    }
+    lengths |= (long) Math.min(run, 0xFF) << (8 * separators);
+
+    if (separators == 0) {
+      if (!letters) {
+        return NUMBER;
+      }
+      return run >= MIN_HASH_LENGTH ? HASH : NONE;
+    }
+    if (separators == MAX_SEPARATORS) {
+      return kinds == UUID_SEPARATORS && lengths == UUID_LENGTHS ? UUID : NONE;
+    }
+    if (letters) {
+      return NONE;
+    }
+    return classifyDecimal(separators, kinds, lengths);
+  }
+
+  /** Classifies a token of decimal digit segments with one to three separators. */
+  private static TokenType classifyDecimal(int separators, int kinds, long lengths) {
+    if (separators == 1) {
+      int first = segment(lengths, 0);
+      int second = segment(lengths, 1);
+      if (second == 0) {
+        return NONE;
+      }
+      if (kinds == DASH && first == 0) {
+        return NUMBER; // -1
+      }
+      if (kinds == DOT && first > 0) {
+        return NUMBER; // 1.5
+      }
+      return kinds == COMMA && first > 0 ? TIMESTAMP : NONE; // 1,5
+    }
+
+    if (separators == 2) {
+      if (kinds == SIGNED_DECIMAL_SEPARATORS
+          && segment(lengths, 0) == 0
+          && segment(lengths, 1) > 0
+          && segment(lengths, 2) > 0) {
+        return NUMBER; // -1.5
+      }
+      if ((kinds == DATE_SEPARATORS && lengths == DATE_LENGTHS)
+          || (kinds == TIME_SEPARATORS && lengths == TIME_LENGTHS)) {
+        return TIMESTAMP;
+      }
+      return NONE;
+    }
+
+    if (kinds != IP_SEPARATORS) {
+      return NONE;
+    }
+    for (int i = 0; i < 4; i++) {
+      int length = segment(lengths, i);
+      if (length < 1 || length > 3) {
+        return NONE;
+      }
+    }
+    return IP;
+  }
+
+  private static boolean isHexDigits(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int segment(long lengths, int index) {
+    return (int) (lengths >>> (8 * index)) & 0xFF;
+  }
+
+  private static int kinds(int... separatorKinds) {
+    int packed = 0;
+    for (int i = 0; i < separatorKinds.length; i++) {
+      packed |= separatorKinds[i] << (2 * i);
+    }
+    return packed;
+  }
+
+  private static long lengths(int... segmentLengths) {
+    long packed = 0;
+    for (int i = 0; i < segmentLengths.length; i++) {
+      packed |= (long) segmentLengths[i] << (8 * i);
+    }
+    return packed;
+  }
+}
@@ -32,6 +32,22 @@ public interface TokenizerStrategy {
    */
   List<String> tokenize(String message);
 
+  /**
+   * Finds the tokens of a message as positions within it, without copying any token out of the
+   * message. The spans are cleared first and then hold the same tokens {@link #tokenize(String)}
+   * returns, in order.
+   *
+   * <p>Strategies whose tokens are not always substrings of the message keep the default, which
+   * supports no spans; callers then use {@link #tokenize(String)} instead.
+   *
+   * @param message The raw log message
+   * @param spans Reusable span list to fill
+   * @return true if the spans were filled, false if this strategy does not produce spans
+   */
+  default boolean tokenizeSpans(CharSequence message, TokenSpans spans) {
+    return false;
+  }
+
   /**
    * Returns a description of this tokenization strategy.
    *
@@ -22,6 +22,15 @@ package org.swengdev.logmine.strategy;
  */
 public interface VariableDetector {
 
+  /** Match type of tokens whose matches only {@link #tokensMatch(String, String)} can decide. */
+  int UNKNOWN_MATCH_TYPE = -1;
+
+  /** Match type of tokens that match nothing but an identical token. */
+  int EXACT_MATCH_TYPE = 0;
+
+  /** Largest match type, so that callers can cache match types as bytes. */
+  int MAX_MATCH_TYPE = Byte.MAX_VALUE;
+
   /**
    * Determines if a token should be considered a variable part. Variable parts will be replaced
    * with wildcards in patterns.
@@ -41,6 +50,41 @@ public interface VariableDetector {
    */
   boolean tokensMatch(String token1, String token2);
 
+  /**
+   * Classifies a token by how it matches other tokens, so that callers can classify each token
+   * once and compare the classes instead of calling {@link #tokensMatch(String, String)} for every
+   * pair.
+   *
+   * <p>Two different tokens whose match types are both known match exactly when the types are
+   * equal and positive. {@link #EXACT_MATCH_TYPE} marks tokens that only match themselves, and
+   * {@link #UNKNOWN_MATCH_TYPE} tokens for which callers have to ask {@code tokensMatch}. Types
+   * above {@link #MAX_MATCH_TYPE} are treated as unknown.
+   *
+   * <p>The default returns {@link #UNKNOWN_MATCH_TYPE}, so detectors that do not override it keep
+   * being asked for every pair.
+   *
+   * @param token The token to classify
+   * @return The token's match type
+   */
+  default int matchType(String token) {
+    return UNKNOWN_MATCH_TYPE;
+  }
+
+  /**
+   * Tells whether {@link #tokensMatch(String, String)} only relaxes matching for variable tokens:
+   * a token for which {@link #isVariable(String)} returns false matches nothing but an identical
+   * token, and never a variable one. Clustering then skips clusters by their constant tokens
+   * without comparing them.
+   *
+   * <p>The default returns false, so detectors that match constants loosely, for example ignoring
+   * case, keep being compared with every cluster of a suitable length.
+   *
+   * @return true if constant tokens only match identical tokens
+   */
+  default boolean constantsMatchExactly() {
+    return false;
+  }
+
   /**
    * Returns a description of this variable detection strategy.
    *
@@ -16,16 +16,16 @@
 
 package org.swengdev.logmine.strategy;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Simple tokenizer that splits on whitespace. Best for simple log formats like syslog.
  *
  * <p>Example: "2015-07-09 10:22:12 INFO User logged in" Tokens: ["2015-07-09", "10:22:12", "INFO",
  * "User", "logged", "in"]
+ *
+ * <p>Whitespace is what {@code \\s} matches: space, tab, line feed, vertical tab, form feed and
+ * carriage return. A message made up only of whitespace and control characters has no tokens.
  */
 public class WhitespaceTokenizer implements TokenizerStrategy {
 
@@ -36,13 +36,44 @@ public class WhitespaceTokenizer implements TokenizerStrategy {
 
   @Override
   public List<String> tokenize(String message) {
-    if (message == null || message.trim().isEmpty()) {
-      return new ArrayList<>();
+    TokenSpans spans = new TokenSpans();
+    tokenizeSpans(message, spans);
+    return spans.tokens(message);
+  }
+
+  @Override
+  public boolean tokenizeSpans(CharSequence message, TokenSpans spans) {
+    spans.clear();
+    if (message == null) {
+      return true;
     }
 
-    return Arrays.stream(message.split("\\s+"))
-        .filter(token -> !token.isEmpty())
-        .collect(Collectors.toList());
+    int start = -1; // Start of the current token, or -1 between tokens
+    boolean visible = false; // Any character that trim() keeps
+    for (int i = 0; i < message.length(); i++) {
+      char c = message.charAt(i);
+      visible |= c > ' ';
+      if (isWhitespace(c)) {
+        if (start >= 0) {
+          spans.add(start, i);
+          start = -1;
+        }
+      } else if (start < 0) {
+        start = i;
+      }
+    }
+    if (start >= 0) {
+      spans.add(start, message.length());
+    }
+    if (!visible) {
+      spans.clear();
+    }
+    return true;
+  }
+
+  /** Checks for a character of the regular expression class {@code \\s}. */
+  static boolean isWhitespace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
   }
 
   @Override
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/** Tests for AsciiText. */
+public class AsciiTextTest {
+
+  @Test
+  public void testViewsRegion() {
+    ByteBuffer buffer = ByteBuffer.wrap("INFO Request served".getBytes(StandardCharsets.US_ASCII));
+    AsciiText text = new AsciiText().set(buffer, 5, 19);
+
+    assertEquals(14, text.length());
+    assertEquals('R', text.charAt(0));
+    assertEquals("Request served", text.toString());
+    assertEquals("served", text.subSequence(8, 14).toString());
+    assertThrows(IndexOutOfBoundsException.class, () -> text.charAt(14));
+
+    text.set(buffer, 0, 4);
+    assertEquals("INFO", text.toString());
+  }
+}
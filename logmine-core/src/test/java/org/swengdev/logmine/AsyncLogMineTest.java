@@ -0,0 +1,221 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/** Tests for AsyncLogMine. */
+public class AsyncLogMineTest {
+
+  private static LogMine streaming() {
+    return new LogMine(ProcessingMode.STREAMING);
+  }
+
+  /** LogMine whose batches wait until released, so the queue can be filled deterministically. */
+  private static final class GatedLogMine extends LogMine {
+    private final Object gate = new Object();
+    private boolean open;
+    private boolean waiting;
+
+    GatedLogMine() {
+      super(ProcessingMode.STREAMING);
+    }
+
+    @Override
+    public void addLogs(List<String> logMessages) {
+      synchronized (gate) {
+        waiting = true;
+        gate.notifyAll();
+        while (!open) {
+          try {
+            gate.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+      super.addLogs(logMessages);
+    }
+
+    void awaitWorker() throws InterruptedException {
+      synchronized (gate) {
+        while (!waiting) {
+          gate.wait();
+        }
+      }
+    }
+
+    void release() {
+      synchronized (gate) {
+        open = true;
+        gate.notifyAll();
+      }
+    }
+  }
+
+  @Test
+  public void testLogsAreProcessedAfterFlush() throws Exception {
+    try (AsyncLogMine logMine = AsyncLogMine.builder(streaming()).batchSize(64).build()) {
+      for (int i = 0; i < 1000; i++) {
+        assertTrue(logMine.addLog("INFO Request " + i + " served from cache"));
+      }
+      logMine.addLog("   ");
+      logMine.flush();
+
+      assertEquals(1000, logMine.getStats().getTotalLogs());
+      assertEquals(1, logMine.getCurrentPatterns().size());
+      assertNotNull(logMine.matchPattern("INFO Request 5 served from cache"));
+      assertEquals(0, logMine.getQueueSize());
+      assertEquals(0, logMine.getDroppedCount());
+    }
+  }
+
+  @Test
+  public void testCloseDrainsQueue() {
+    LogMine target = streaming();
+    AsyncLogMine logMine =
+        AsyncLogMine.builder(target).batchSize(16).linger(Duration.ofMillis(50)).build();
+    for (int i = 0; i < 500; i++) {
+      logMine.addLog("ERROR Database timeout after " + i + " ms");
+    }
+    logMine.close();
+    logMine.close();
+
+    assertEquals(500, target.getStats().getTotalLogs());
+    assertThrows(IllegalStateException.class, () -> logMine.addLog("INFO late"));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    try (AsyncLogMine logMine = AsyncLogMine.builder(streaming()).queueCapacity(128).build()) {
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      List<Future<?>> producers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        producers.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 500; i++) {
+                    logMine.addLog("INFO User " + i + " logged in");
+                  }
+                }));
+      }
+      for (Future<?> producer : producers) {
+        producer.get();
+      }
+      executor.shutdown();
+      logMine.flush();
+
+      // BLOCK is the default, so nothing is lost
+      assertEquals(0, logMine.getDroppedCount());
+      assertEquals(2000, logMine.getStats().getTotalLogs());
+    }
+  }
+
+  @Test
+  public void testDropNewestCountsDroppedLogs() throws Exception {
+    GatedLogMine target = new GatedLogMine();
+    try (AsyncLogMine logMine =
+        AsyncLogMine.builder(target)
+            .queueCapacity(10)
+            .batchSize(1)
+            .linger(Duration.ZERO)
+            .backpressurePolicy(BackpressurePolicy.DROP_NEWEST)
+            .build()) {
+      int queued = 0;
+      for (int i = 0; i < 100; i++) {
+        if (i == 1) {
+          target.awaitWorker();
+        }
+        if (logMine.addLog("INFO Request " + i + " served from cache")) {
+          queued++;
+        }
+      }
+      target.release();
+      logMine.flush();
+
+      // One log is held by the worker in addition to the full queue
+      assertEquals(11, queued);
+      assertEquals(100 - queued, logMine.getDroppedCount());
+      assertEquals(queued, target.getStats().getTotalLogs());
+    }
+  }
+
+  @Test
+  public void testSampleKeepsSomeOverflowingLogs() throws Exception {
+    GatedLogMine target = new GatedLogMine();
+    try (AsyncLogMine logMine =
+        AsyncLogMine.builder(target)
+            .queueCapacity(10)
+            .batchSize(1)
+            .linger(Duration.ZERO)
+            .backpressurePolicy(BackpressurePolicy.SAMPLE)
+            .sampleRate(1000)
+            .build()) {
+      // Fill the queue, then hit the full queue: the first overflow is sampled and waits
+      logMine.addLog("INFO Request 0 served from cache");
+      target.awaitWorker();
+      for (int i = 1; i <= 10; i++) {
+        assertTrue(logMine.addLog("INFO Request " + i + " served from cache"));
+      }
+      Thread producer = new Thread(() -> logMine.addLog("WARN Cache miss for key 7"));
+      producer.start();
+      while (producer.getState() != Thread.State.WAITING) {
+        Thread.onSpinWait();
+      }
+
+      // Later overflows are dropped without waiting
+      for (int i = 0; i < 20; i++) {
+        assertFalse(logMine.addLog("WARN Cache miss for key 8"));
+      }
+      assertEquals(20, logMine.getDroppedCount());
+
+      target.release();
+      producer.join();
+      logMine.flush();
+      assertNotNull(logMine.matchPattern("WARN Cache miss for key 7"));
+    }
+  }
+
+  @Test
+  public void testInvalidSettings() {
+    LogMine target = streaming();
+    assertThrows(
+        IllegalArgumentException.class, () -> AsyncLogMine.builder(target).queueCapacity(0));
+    assertThrows(IllegalArgumentException.class, () -> AsyncLogMine.builder(target).batchSize(0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AsyncLogMine.builder(target).linger(Duration.ofMillis(-1)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> AsyncLogMine.builder(target).backpressurePolicy(null));
+    assertThrows(IllegalArgumentException.class, () -> AsyncLogMine.builder(target).sampleRate(0));
+    assertThrows(IllegalArgumentException.class, () -> AsyncLogMine.builder(null));
+  }
+}
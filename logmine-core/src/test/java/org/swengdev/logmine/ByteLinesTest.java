@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for ByteLines. */
+public class ByteLinesTest {
+
+  private static ByteBuffer utf8(String text) {
+    return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<String> lines(ByteBuffer buffer) {
+    List<String> lines = new ArrayList<>();
+    ByteLines scanner = new ByteLines(buffer);
+    while (scanner.next()) {
+      lines.add(scanner.decode());
+    }
+    return lines;
+  }
+
+  @Test
+  public void testLineTerminators() {
+    assertEquals(List.of("a", "", "b", "c"), lines(utf8("a\n\nb\r\nc")));
+    assertEquals(List.of("a"), lines(utf8("a\n")));
+    assertEquals(List.of("a\rb"), lines(utf8("a\rb")));
+    assertEquals(List.of(), lines(utf8("")));
+  }
+
+  @Test
+  public void testPositionAndLimit() {
+    ByteBuffer buffer = utf8("skip\nfirst line\nsecond\nrest");
+    buffer.position(5).limit(23);
+
+    assertEquals(List.of("first line", "second"), lines(buffer));
+    assertEquals(5, buffer.position());
+  }
+
+  @Test
+  public void testAsciiAndBlank() {
+    ByteLines scanner = new ByteLines(utf8("plain ascii line here\nnaïve but long enough\n \t\n"));
+
+    assertTrue(scanner.next());
+    assertTrue(scanner.isAscii());
+    assertFalse(scanner.isBlank());
+    assertTrue(scanner.next());
+    assertFalse(scanner.isAscii());
+    assertEquals("naïve but long enough", scanner.decode());
+    assertTrue(scanner.next());
+    assertTrue(scanner.isBlank());
+    assertFalse(scanner.next());
+  }
+
+  @Test
+  public void testAgreesWithSplit() {
+    String alphabet = "ab \n\r\té";
+    Random random = new Random(9);
+    for (int i = 0; i < 5_000; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(40);
+      for (int j = 0; j < length; j++) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+
+      List<String> expected = new ArrayList<>(List.of(text.toString().split("\r?\n", -1)));
+      if (text.isEmpty() || text.charAt(text.length() - 1) == '\n') {
+        expected.removeLast();
+      }
+      ByteLines scanner = new ByteLines(utf8(text.toString()));
+      for (String line : expected) {
+        assertTrue(scanner.next());
+        assertEquals(line, scanner.decode(), text::toString);
+        assertEquals(line.chars().allMatch(c -> c < 128), scanner.isAscii(), text::toString);
+      }
+      assertFalse(scanner.next());
+    }
+  }
+
+  @Test
+  public void testSplitAtLineBoundaries() {
+    String text = "first line\nsecond line\nthird\nfourth line is longest\nlast";
+    List<ByteBuffer> slices = ByteLines.split(utf8(text), 3);
+
+    StringBuilder joined = new StringBuilder();
+    for (ByteBuffer slice : slices) {
+      String part = StandardCharsets.UTF_8.decode(slice).toString();
+      assertTrue(part.endsWith("\n") || joined.length() + part.length() == text.length());
+      joined.append(part);
+    }
+    assertEquals(3, slices.size());
+    assertEquals(text, joined.toString());
+    assertTrue(ByteLines.split(utf8(""), 4).isEmpty());
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
+
+/** Tests for ClusterCandidateIndex. */
+public class ClusterCandidateIndexTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+  private final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  @Test
+  public void testEmptyIndexHasNoCandidates() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+
+    assertTrue(index.candidates(message("INFO User logged in"), 0.5).isEmpty());
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testLengthOutOfReachIsSkipped() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster shortCluster = new LogCluster(message("INFO Started"), detector);
+    LogCluster longCluster =
+        new LogCluster(message("INFO Started worker pool with eight threads"), detector);
+    index.add(shortCluster);
+    index.add(longCluster);
+
+    List<LogCluster> candidates = index.candidates(message("INFO Started"), 0.8);
+
+    assertEquals(List.of(shortCluster), candidates);
+  }
+
+  @Test
+  public void testDifferentConstantsAreSkipped() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster login = new LogCluster(message("INFO User alice logged in"), detector);
+    LogCluster database = new LogCluster(message("ERROR Database connection lost now"), detector);
+    index.add(login);
+    index.add(database);
+
+    List<LogCluster> candidates = index.candidates(message("INFO User bob logged in"), 0.6);
+
+    assertEquals(List.of(login), candidates);
+  }
+
+  @Test
+  public void testVariableTokensStayCandidates() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster cluster = new LogCluster(message("Request 123 took 45 ms"), detector);
+    index.add(cluster);
+
+    List<LogCluster> candidates = index.candidates(message("Request 678 took 90 ms"), 1.0);
+
+    assertEquals(List.of(cluster), candidates);
+  }
+
+  @Test
+  public void testDifferentLeadingTokensStayCandidates() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster alice = new LogCluster(message("alice logged in from host web"), detector);
+    index.add(alice);
+    for (int i = 0; i < 50; i++) {
+      index.add(new LogCluster(message("user" + i + " opened report " + i), detector));
+    }
+
+    List<LogCluster> candidates = index.candidates(message("bob logged in from host web"), 0.8);
+
+    assertEquals(List.of(alice), candidates);
+  }
+
+  @Test
+  public void testCandidatesKeepCreationOrder() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster first = new LogCluster(message("GET /a status 200 done"), detector);
+    LogCluster second = new LogCluster(message("GET /b status 200"), detector);
+    LogCluster third = new LogCluster(message("GET /c status 200 done now"), detector);
+    index.add(first);
+    index.add(second);
+    index.add(third);
+
+    List<LogCluster> candidates = index.candidates(message("GET /d status 200 done"), 0.0);
+
+    assertEquals(List.of(first, second, third), candidates);
+  }
+
+  @Test
+  public void testRemoveIf() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    LogCluster keep = new LogCluster(message("INFO Cache hit"), detector);
+    LogCluster drop = new LogCluster(message("INFO Cache miss"), detector);
+    index.add(keep);
+    index.add(drop);
+
+    index.removeIf(cluster -> cluster == drop);
+
+    assertEquals(1, index.size());
+    assertEquals(List.of(keep), index.candidates(message("INFO Cache miss"), 0.0));
+  }
+
+  @Test
+  public void testClear() {
+    ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+    index.add(new LogCluster(message("INFO Cache hit"), detector));
+
+    index.clear();
+
+    assertEquals(0, index.size());
+    assertFalse(index.candidates(message("INFO Cache hit"), 0.0).iterator().hasNext());
+  }
+
+  @Test
+  public void testFirstCandidateMatchesLinearScan() {
+    String[] vocabulary = {"INFO", "WARN", "User", "login", "from", "db", "42", "7", "10.0.0.1"};
+    Random random = new Random(42);
+
+    for (double threshold : new double[] {0.3, 0.5, 0.7, 0.9}) {
+      ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+      List<LogCluster> clusters = new ArrayList<>();
+
+      for (int i = 0; i < 300; i++) {
+        StringBuilder raw = new StringBuilder();
+        int length = 1 + random.nextInt(8);
+        for (int t = 0; t < length; t++) {
+          raw.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        LogMessage message = message(raw.toString().trim());
+
+        LogCluster expected = null;
+        for (LogCluster cluster : clusters) {
+          if (cluster.calculateSimilarity(message) >= threshold) {
+            expected = cluster;
+            break;
+          }
+        }
+
+        LogCluster actual = null;
+        for (LogCluster cluster : index.candidates(message, threshold)) {
+          if (cluster.calculateSimilarity(message) >= threshold) {
+            actual = cluster;
+            break;
+          }
+        }
+
+        assertEquals(expected, actual, "Index must pick the same cluster as a linear scan");
+
+        if (expected == null) {
+          LogCluster cluster = new LogCluster(message, detector);
+          clusters.add(cluster);
+          index.add(cluster);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCandidatesCoverEverySimilarClusterAfterRemovals() {
+    String[] vocabulary = {
+      "INFO", "WARN", "User", "login", "from", "db", "cache", "alice", "bob", "42", "10.0.0.1"
+    };
+    Random random = new Random(7);
+
+    for (double threshold : new double[] {0.2, 0.5, 0.8}) {
+      ClusterCandidateIndex index = new ClusterCandidateIndex(detector);
+      List<LogCluster> clusters = new ArrayList<>();
+
+      for (int i = 0; i < 400; i++) {
+        StringBuilder raw = new StringBuilder();
+        int length = 1 + random.nextInt(10);
+        for (int t = 0; t < length; t++) {
+          raw.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        LogMessage message = message(raw.toString().trim());
+
+        List<LogCluster> candidates = index.candidates(message, threshold);
+        for (LogCluster cluster : clusters) {
+          if (cluster.calculateSimilarity(message) >= threshold) {
+            assertTrue(candidates.contains(cluster), "Similar cluster must be a candidate");
+          }
+        }
+
+        LogCluster cluster = new LogCluster(message, detector);
+        clusters.add(cluster);
+        index.add(cluster);
+        if (i % 50 == 49) {
+          List<LogCluster> removed = new ArrayList<>(clusters.subList(0, clusters.size() / 3));
+          index.removeIf(removed::contains);
+          clusters.removeAll(removed);
+          assertEquals(clusters.size(), index.size());
+        }
+      }
+    }
+  }
+}
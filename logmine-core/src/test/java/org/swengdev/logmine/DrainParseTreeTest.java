@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
+
+/** Tests for DrainParseTree. */
+public class DrainParseTreeTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+  private final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  private LogCluster cluster(DrainParseTree tree, String raw) {
+    LogCluster cluster = new LogCluster(message(raw), detector, false);
+    tree.add(cluster);
+    return cluster;
+  }
+
+  @Test
+  public void testEmptyTree() {
+    DrainParseTree tree = new DrainParseTree(2, 100);
+
+    assertNull(tree.match(message("User alice logged in"), 0.5));
+  }
+
+  @Test
+  public void testRoutesByLengthAndLeadingTokens() {
+    DrainParseTree tree = new DrainParseTree(2, 100);
+    LogCluster login = cluster(tree, "User logged in as alice");
+    LogCluster logout = cluster(tree, "Session closed for alice");
+
+    assertSame(login, tree.match(message("User logged in as bob"), 0.5));
+    assertSame(logout, tree.match(message("Session closed for bob"), 0.5));
+    assertNull(tree.match(message("User logged in as bob again"), 0.5));
+    assertNull(tree.match(message("Admin logged in as bob"), 0.5));
+  }
+
+  @Test
+  public void testNumericLeadingTokensShareWildcardBranch() {
+    DrainParseTree tree = new DrainParseTree(2, 100);
+    LogCluster request = cluster(tree, "req42 served in 10 ms");
+
+    assertSame(request, tree.match(message("req7 served in 3 ms"), 0.5));
+  }
+
+  @Test
+  public void testFullNodeFallsBackToWildcard() {
+    DrainParseTree tree = new DrainParseTree(1, 2);
+    cluster(tree, "alpha started ok");
+    cluster(tree, "beta started ok");
+    LogCluster overflow = cluster(tree, "gamma started ok");
+
+    assertSame(overflow, tree.match(message("delta started ok"), 0.5));
+  }
+
+  @Test
+  public void testPicksMostSimilarClusterAboveThreshold() {
+    DrainParseTree tree = new DrainParseTree(1, 100);
+    cluster(tree, "job a b c d");
+    LogCluster closer = cluster(tree, "job a b x y");
+
+    assertSame(closer, tree.match(message("job a b x z"), 0.5));
+    assertNull(tree.match(message("job q r s t"), 0.5));
+  }
+
+  @Test
+  public void testRemoveIfAndClear() {
+    DrainParseTree tree = new DrainParseTree(2, 100);
+    LogCluster login = cluster(tree, "User logged in as alice");
+    cluster(tree, "Session closed for alice");
+
+    tree.removeIf(cluster -> cluster == login);
+    assertNull(tree.match(message("User logged in as bob"), 0.5));
+    assertTrue(tree.match(message("Session closed for bob"), 0.5) != null);
+
+    tree.clear();
+    assertNull(tree.match(message("Session closed for bob"), 0.5));
+  }
+
+  @Test
+  public void testStreamingProcessorUsesParseTree() {
+    LogMineProcessor processor =
+        new LogMineProcessor(
+            LogMineConfig.builder()
+                .similarityThreshold(0.5)
+                .minClusterSize(1)
+                .clusteringEngine(LogMineConfig.ClusteringEngine.DRAIN)
+                .build());
+
+    List<String> logs = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      logs.add("INFO User user" + i + " logged in from 10.0.0." + (i % 7));
+      logs.add("ERROR Connection to db" + i + " failed after " + i + " retries");
+    }
+    logs.forEach(processor::processLogIncremental);
+
+    assertEquals(2, processor.getStats().getNumClusters());
+    assertEquals(400, processor.getStats().getTotalMessages());
+    assertEquals(2, processor.getPatterns().size());
+  }
+}
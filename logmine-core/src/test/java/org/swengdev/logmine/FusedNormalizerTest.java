@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for FusedNormalizer. */
+public class FusedNormalizerTest {
+
+  private static final LogMineConfig ALL =
+      LogMineConfig.builder()
+          .normalizeTimestamps(true)
+          .normalizeUrls(true)
+          .normalizePaths(true)
+          .normalizeIPs(true)
+          .normalizeNumbers(true)
+          .caseSensitive(false)
+          .build();
+
+  // Entities, near misses and the separators that make them interact
+  private static final String[] FRAGMENTS = {
+    "2024-01-15T10:30:45Z", "2024-01-15T10:30:45.1234567890+05:30", "2024-01-15 10:30:45",
+    "2024-01-15  10:30:45.12", "[2024-01-15 10:30:45.123]", "[2024-01-15\t10:30:45]",
+    "Jan 15 10:30:45", "Feb  5 01:02:03", "15/Jan/2024:10:30:45 +0000", "1705318245",
+    "1612345678901", "http://", "https://", "ftp://", "example.com/a/b", "localhost:8080/x?y#z",
+    "/var/log/app.log", "/a/b/", "/x/", "C:\\a\\b", "a::1", "::1", "fe80::1",
+    "2001:db8:0:0:0:0:0:1", "1:2:3:4:5:6:7:8:9", "dead:beef::", "192.168.1.1", "10.0.0.256",
+    "1.2.3.4.5", "12345", "3.14", "1234.5678", "404", "user123", "INFO", "Error", "x", "_", "-",
+    ".", ":", "/", "[", "]", " ", "\t", "=", ",", "\"", "(", "0x1F", "é", "Z", "T", "ABC"
+  };
+  private static final String CHARACTERS = "0123456789abcdefxyzABCDEFTZJan:/.-_[]=,+ \t\\@#$?é";
+
+  private static LogMineConfig config(int flags) {
+    return LogMineConfig.builder()
+        .normalizeTimestamps((flags & 1) != 0)
+        .normalizeUrls((flags & 2) != 0)
+        .normalizePaths((flags & 4) != 0)
+        .normalizeIPs((flags & 8) != 0)
+        .normalizeNumbers((flags & 16) != 0)
+        .caseSensitive((flags & 32) != 0)
+        .build();
+  }
+
+  @Test
+  public void testNormalizesInOnePass() {
+    FusedNormalizer normalizer = new FusedNormalizer(ALL);
+
+    assertEquals(
+        "ip_addr - - [timestamp] \"get path http/num\" 200 num \"url\"",
+        normalizer.normalize(
+            "10.0.0.7 - - [15/Jan/2024:10:30:45 +0000] \"GET /api/v1/users/42 HTTP/1.1\" 200 5120"
+                + " \"https://example.com/page?id=3\""));
+    assertEquals(
+        "timestamp error user num from ip_addr took num ms",
+        normalizer.normalize(
+            "[2024-01-15 10:30:45.123] ERROR User 12345 from 2001:db8:0:0:0:0:0:1 took 2.5 ms"));
+  }
+
+  @Test
+  public void testReturnsUnchangedMessage() {
+    String message = "retry attempt 3 of 5";
+
+    assertSame(message, new FusedNormalizer(ALL).normalize(message));
+  }
+
+  @Test
+  public void testNormalizesCharSequenceWithoutCopy() {
+    FusedNormalizer normalizer = new FusedNormalizer(ALL);
+    StringBuilder unchanged = new StringBuilder("retry attempt 3 of 5");
+
+    assertSame(unchanged, normalizer.normalizeReusing(unchanged));
+    assertEquals(
+        "user num from ip_addr",
+        normalizer.normalizeReusing(new StringBuilder("User 12345 from 10.0.0.7")).toString());
+    assertNull(normalizer.normalizeReusing(new StringBuilder("Café 12345")));
+  }
+
+  @Test
+  public void testDefersInteractingEntities() {
+    FusedNormalizer normalizer = new FusedNormalizer(ALL);
+
+    // The replaced timestamp would complete a path
+    assertNull(normalizer.normalize("read /a/2024-01-15T10:30:45Z/b"));
+    // The replaced bracket would create a word boundary before the IPv6 address
+    assertNull(normalizer.normalize("at [2024-01-15 10:30:45]::1"));
+    // A timestamp inside a URL is replaced before the URL
+    assertNull(normalizer.normalize("GET http://host/1705318245"));
+    // Windows paths can span spaces
+    assertNull(normalizer.normalize("Loading C:\\Program Files\\app"));
+    assertNull(normalizer.normalize("Café 12345"));
+  }
+
+  @Test
+  public void testAgreesWithRegularExpressions() {
+    Random random = new Random(11);
+    for (int i = 0; i < 3_000; i++) {
+      StringBuilder message = new StringBuilder();
+      int parts = 1 + random.nextInt(8);
+      for (int part = 0; part < parts; part++) {
+        if (i % 2 == 0 && random.nextInt(3) > 0) {
+          message.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        } else {
+          message.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+      }
+
+      for (int flags = 0; flags < 64; flags++) {
+        LogMineConfig config = config(flags);
+        String normalized = new FusedNormalizer(config).normalize(message.toString());
+        if (normalized != null) {
+          String expected = new LogPreprocessor(config).preprocessSequentially(message.toString());
+          assertEquals(expected, normalized, message::toString);
+        }
+      }
+    }
+  }
+}
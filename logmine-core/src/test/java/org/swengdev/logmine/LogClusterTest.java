@@ -21,6 +21,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.swengdev.logmine.strategy.StandardVariableDetector;
 import org.swengdev.logmine.strategy.WhitespaceTokenizer;
@@ -155,4 +158,190 @@ public class LogClusterTest {
 
     assertTrue(cluster.size() > 1);
   }
+
+  @Test
+  public void testStreamingClusterDoesNotRetainMessages() {
+    LogCluster cluster = new LogCluster(message("INFO User alice logged in"), detector, false);
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(cluster.addMessage(message("INFO User user" + i + " logged in"), 0.5));
+    }
+
+    assertFalse(cluster.isRetainingMessages());
+    assertEquals(1001, cluster.size());
+    assertEquals(1, cluster.getMessages().size());
+    assertEquals("INFO User alice logged in", cluster.getMessages().getFirst().getRawMessage());
+    assertEquals(1001, cluster.generatePattern().getSupportCount());
+  }
+
+  @Test
+  public void testStreamingPatternMatchesCreateFromMessages() {
+    String[] vocabulary = {"INFO", "ERROR", "User", "login", "from", "42", "7", "10.0.0.1"};
+    Random random = new Random(3);
+
+    for (int round = 0; round < 200; round++) {
+      List<LogMessage> messages = new ArrayList<>();
+      LogCluster cluster = null;
+      int count = 1 + random.nextInt(6);
+      for (int i = 0; i < count; i++) {
+        StringBuilder raw = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int t = 0; t < length; t++) {
+          raw.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        LogMessage msg = message(raw.toString().trim());
+        messages.add(msg);
+        if (cluster == null) {
+          cluster = new LogCluster(msg, detector, false);
+        } else {
+          cluster.addMessage(msg, 0.0);
+        }
+      }
+
+      LogPattern expected = LogPattern.createFromMessages(messages, detector);
+      LogPattern actual = cluster.generatePattern();
+      assertEquals(expected.getTokens(), actual.getTokens());
+      assertEquals(expected.getSupportCount(), actual.getSupportCount());
+    }
+  }
+
+  @Test
+  public void testMergeMatchesAbsorbingAllMessages() {
+    List<String> first =
+        List.of("GET /a status 200", "GET /b status 200", "GET /a status 404 retry");
+    List<String> second = List.of("GET /a status 200", "GET /a state 200");
+
+    LogCluster merged = new LogCluster(message(first.getFirst()), detector);
+    List<LogMessage> all = new ArrayList<>(List.of(merged.getCentroid()));
+    for (String raw : first.subList(1, first.size())) {
+      LogMessage msg = message(raw);
+      merged.addMessage(msg, 0.0);
+      all.add(msg);
+    }
+    LogCluster other = new LogCluster(message(second.getFirst()), detector);
+    all.add(other.getCentroid());
+    LogMessage last = message(second.get(1));
+    other.addMessage(last, 0.0);
+    all.add(last);
+
+    merged.merge(other);
+
+    LogPattern expected = LogPattern.createFromMessages(all, detector);
+    assertEquals(5, merged.size());
+    assertEquals(5, merged.getMessages().size());
+    assertEquals(expected.getTokens(), merged.generatePattern().getTokens());
+  }
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  @Test
+  public void testVariableLengthClusterKeepsMatchingPattern() {
+    List<String> raw =
+        List.of(
+            "Connection to db failed after 3 retries",
+            "Connection to db failed permanently after 5 retries",
+            "Connection to db failed after 7 retries");
+    LogCluster cluster = new LogCluster(message(raw.getFirst()), detector, false);
+    for (String line : raw.subList(1, raw.size())) {
+      cluster.addMessage(message(line), 0.0);
+    }
+
+    LogPattern pattern = cluster.generatePattern();
+
+    assertEquals(
+        List.of("Connection", "to", "db", "failed", "***?", "after", "***", "retries"),
+        pattern.getTokens());
+    for (String line : raw) {
+      assertTrue(pattern.matches(message(line)));
+    }
+  }
+
+  @Test
+  public void testPatternIsRegeneratedWhenClusterChanges() {
+    LogCluster cluster = new LogCluster(message("GET /a status ok"), detector, false);
+    LogPattern first = cluster.generatePattern();
+    assertFalse(cluster.isDirty());
+
+    cluster.addMessage(message("GET /b status ok"), 0.0);
+    assertTrue(cluster.isDirty());
+
+    LogPattern second = cluster.generatePattern();
+    assertEquals(List.of("GET", "***", "status", "ok"), second.getTokens());
+    assertEquals(2, second.getSupportCount());
+    assertFalse(cluster.isDirty());
+    assertEquals(List.of("GET", "/a", "status", "ok"), first.getTokens());
+  }
+
+  @Test
+  public void testEvictOldestRebuildsSummary() {
+    LogCluster cluster =
+        new LogCluster(
+            new LogMessage(
+                "INFO User alice logged in",
+                tokenizer.tokenize("INFO User alice logged in"),
+                detector),
+            detector,
+            true);
+    cluster.addMessage(
+        new LogMessage(
+            "INFO User bob logged in", tokenizer.tokenize("INFO User bob logged in"), detector),
+        0.5);
+    cluster.addMessage(
+        new LogMessage(
+            "INFO User bob logged out", tokenizer.tokenize("INFO User bob logged out"), detector),
+        0.5);
+    assertEquals(List.of("INFO", "User", "***", "logged", "***"), cluster.getPattern().getTokens());
+
+    cluster.evictOldest(1);
+
+    assertEquals(2, cluster.size());
+    assertEquals("INFO User bob logged in", cluster.getCentroid().getRawMessage());
+    assertEquals(List.of("INFO", "User", "bob", "logged", "***"), cluster.getPattern().getTokens());
+    assertEquals(2, cluster.getPattern().getSupportCount());
+
+    cluster.evictOldest(2);
+    assertEquals(0, cluster.size());
+  }
+
+  @Test
+  public void testIncrementalEvictionMatchesRebuild() {
+    String[] users = {"alice", "bob", "carol"};
+    String[] actions = {"in", "out"};
+    Random random = new Random(11);
+    for (int round = 0; round < 20; round++) {
+      List<LogMessage> messages = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        String user = users[random.nextInt(round % 3 + 1)];
+        String action = actions[random.nextInt(round % 2 + 1)];
+        String detail = random.nextInt(4) == 0 ? String.valueOf(i) : "ok";
+        messages.add(message("INFO User " + user + " logged " + action + " " + detail));
+      }
+
+      LogCluster cluster = new LogCluster(messages.get(0), detector, true);
+      messages.subList(1, messages.size()).forEach(m -> cluster.addMessage(m, 0.0));
+      int retained = 0;
+      while (retained < messages.size() - 1) {
+        int count = 1 + random.nextInt(4);
+        count = Math.min(count, messages.size() - 1 - retained);
+        cluster.evictOldest(count);
+        retained += count;
+
+        List<LogMessage> remaining = messages.subList(retained, messages.size());
+        LogCluster rebuilt = new LogCluster(remaining.get(0), detector, true);
+        remaining.subList(1, remaining.size()).forEach(m -> rebuilt.addMessage(m, 0.0));
+        assertEquals(rebuilt.getPattern().getTokens(), cluster.getPattern().getTokens());
+        assertEquals(remaining.size(), cluster.getPattern().getSupportCount());
+        assertEquals(remaining, cluster.getMessages());
+
+        // Messages absorbed after an eviction keep the counts up to date
+        if (random.nextBoolean()) {
+          LogMessage extra = message("INFO User " + users[0] + " logged in ok");
+          messages.add(extra);
+          cluster.addMessage(extra, 0.0);
+        }
+      }
+    }
+  }
 }
@@ -17,11 +17,14 @@
 package org.swengdev.logmine;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.TokenSpans;
 import org.swengdev.logmine.strategy.WhitespaceTokenizer;
 
 /** Tests for LogMessage. */
@@ -40,6 +43,24 @@ public class LogMessageTest {
     assertEquals(4, message.getTokens().size());
   }
 
+  @Test
+  public void testConstructionFromSpans() {
+    String raw = "User 42 logged in from 10.0.0.1";
+    TokenSpans spans = new TokenSpans();
+    tokenizer.tokenizeSpans(raw, spans);
+    LogMessage expected = new LogMessage(raw, tokenizer.tokenize(raw), detector);
+
+    for (TokenDictionary dictionary : Arrays.asList(new TokenDictionary(detector), null)) {
+      LogMessage message = new LogMessage(raw, raw, spans, detector, dictionary);
+
+      assertEquals(expected.getTokens(), message.getTokens());
+      assertEquals(6, message.getLength());
+      assertTrue(message.isVariableToken(1));
+      assertFalse(message.isVariableToken(2));
+      assertEquals(0, message.editDistance(expected));
+    }
+  }
+
   @Test
   public void testSimilarityIdentical() {
     LogMessage msg1 = new LogMessage("INFO Test", tokenizer.tokenize("INFO Test"), detector);
@@ -153,6 +174,61 @@ public class LogMessageTest {
     assertEquals(1.0, message.similarity(message), 0.01);
   }
 
+  @Test
+  public void testBoundedEditDistanceWithinLimit() {
+    LogMessage msg1 = message("INFO User alice logged in");
+    LogMessage msg2 = message("INFO User bob logged out");
+
+    assertEquals(2, msg1.editDistance(msg2));
+    assertEquals(2, msg1.boundedEditDistance(msg2, 2));
+    assertEquals(2, msg1.boundedEditDistance(msg2, 4));
+  }
+
+  @Test
+  public void testBoundedEditDistanceAbortsAboveLimit() {
+    LogMessage msg1 = message("INFO User alice logged in");
+    LogMessage msg2 = message("ERROR Database failed");
+
+    assertEquals(2, msg1.boundedEditDistance(msg2, 1)); // Length difference alone exceeds 1
+    assertEquals(3, msg1.boundedEditDistance(msg2, 2));
+  }
+
+  @Test
+  public void testIsSimilarMatchesSimilarity() {
+    String[] vocabulary = {"INFO", "ERROR", "User", "db", "in", "out", "42", "2024-01-15"};
+    Random random = new Random(7);
+
+    for (int i = 0; i < 500; i++) {
+      LogMessage msg1 = randomMessage(random, vocabulary);
+      LogMessage msg2 = randomMessage(random, vocabulary);
+      for (double threshold : new double[] {0.0, 0.3, 0.5, 0.75, 1.0}) {
+        assertEquals(msg1.similarity(msg2) >= threshold, msg1.isSimilar(msg2, threshold));
+      }
+    }
+  }
+
+  @Test
+  public void testIsSimilarRejectsLengthMismatch() {
+    LogMessage msg1 = message("INFO Test");
+    LogMessage msg2 = message("INFO Test with many more tokens");
+
+    assertFalse(msg1.isSimilar(msg2, 0.5));
+    assertTrue(msg1.isSimilar(msg2, 0.0));
+  }
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  private LogMessage randomMessage(Random random, String[] vocabulary) {
+    StringBuilder raw = new StringBuilder();
+    int length = random.nextInt(7);
+    for (int i = 0; i < length; i++) {
+      raw.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+    }
+    return message(raw.toString().trim());
+  }
+
   @Test
   public void testSimilarityWithEmptyMessage() {
     LogMessage msg1 = new LogMessage("INFO Test", tokenizer.tokenize("INFO Test"), detector);
@@ -162,4 +238,44 @@ public class LogMessageTest {
 
     assertTrue(similarity < 1.0);
   }
+
+  /** Standard detector that counts pairwise comparisons and can hide its match types. */
+  private static final class CountingDetector extends StandardVariableDetector {
+    private final boolean typed;
+    private int comparisons;
+
+    CountingDetector(boolean typed) {
+      this.typed = typed;
+    }
+
+    @Override
+    public boolean tokensMatch(String token1, String token2) {
+      comparisons++;
+      return super.tokensMatch(token1, token2);
+    }
+
+    @Override
+    public int matchType(String token) {
+      return typed ? super.matchType(token) : UNKNOWN_MATCH_TYPE;
+    }
+  }
+
+  @Test
+  public void testEditDistanceComparesCachedMatchTypes() {
+    String raw1 = "INFO Request 42 from 10.0.0.1 took 0x1f at 12:00:01";
+    String raw2 = "INFO Request 7 from 10.0.0.2 took 0x2e at 12:00:02";
+
+    CountingDetector typed = new CountingDetector(true);
+    LogMessage typed1 = new LogMessage(raw1, tokenizer.tokenize(raw1), typed);
+    LogMessage typed2 = new LogMessage(raw2, tokenizer.tokenize(raw2), typed);
+    CountingDetector untyped = new CountingDetector(false);
+    LogMessage untyped1 = new LogMessage(raw1, tokenizer.tokenize(raw1), untyped);
+    LogMessage untyped2 = new LogMessage(raw2, tokenizer.tokenize(raw2), untyped);
+
+    // Only the hex values differ after numbers, IPs and times match by type
+    assertEquals(1, typed1.editDistance(typed2));
+    assertEquals(0, typed.comparisons);
+    assertEquals(1, untyped1.editDistance(untyped2));
+    assertTrue(untyped.comparisons > 0);
+  }
 }
@@ -163,4 +163,44 @@ public class LogMineConfigTest {
     assertTrue(str.contains("LogMineConfig"));
     assertTrue(str.contains("similarityThreshold"));
   }
+
+  @Test
+  public void testParallelismDefaults() {
+    LogMineConfig config = LogMineConfig.defaults();
+
+    assertEquals(1, config.parallelism());
+    assertTrue(config.deterministic());
+  }
+
+  @Test
+  public void testInvalidParallelism() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> {
+          LogMineConfig.builder().parallelism(0);
+        });
+  }
+
+  @Test
+  public void testClusteringEngineDefaults() {
+    LogMineConfig config = LogMineConfig.defaults();
+
+    assertEquals(LogMineConfig.ClusteringEngine.LOGMINE, config.clusteringEngine());
+    assertEquals(2, config.parseTreeDepth());
+    assertEquals(100, config.parseTreeMaxChildren());
+  }
+
+  @Test
+  public void testInvalidParseTreeSettings() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> {
+          LogMineConfig.builder().parseTreeDepth(0);
+        });
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> {
+          LogMineConfig.builder().parseTreeMaxChildren(0);
+        });
+  }
 }
@@ -22,10 +22,19 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
 
 /** Tests for LogMineProcessor - core algorithm. */
 public class LogMineProcessorTest {
@@ -502,6 +511,28 @@ public class LogMineProcessorTest {
     assertNotNull(patternsAfter3);
   }
 
+  @Test
+  public void testIncrementalPatternsAreCurrentAfterEveryMessage() {
+    LogMineProcessor processor =
+        new LogMineProcessor(
+            LogMineConfig.builder().similarityThreshold(0.5).minClusterSize(1).build());
+
+    for (int i = 1; i <= 120; i++) {
+      processor.processLogIncremental(
+          i % 3 == 0 ? "ERROR Disk " + i + " failed" : "INFO Request " + i + " served from cache");
+
+      List<LogPattern> patterns = processor.getPatterns();
+      assertEquals(i, patterns.stream().mapToInt(LogPattern::getSupportCount).sum());
+      for (int j = 1; j < patterns.size(); j++) {
+        assertTrue(patterns.get(j - 1).getSupportCount() >= patterns.get(j).getSupportCount());
+      }
+    }
+
+    List<String> tokens = processor.getPatterns().getFirst().getTokens();
+    assertEquals(List.of("INFO", "Request", "***", "served", "from", "cache"), tokens);
+    assertNotNull(processor.matchPattern("ERROR Disk 7 failed"));
+  }
+
   @Test
   public void testMatchPatternWithNoPatterns() {
     LogMineProcessor emptyProcessor = new LogMineProcessor();
@@ -628,6 +659,64 @@ public class LogMineProcessorTest {
     // Should handle gracefully (empty or minimal results)
   }
 
+  @Test
+  public void testHierarchyCoarseLevelMergesFinePatterns() {
+    LogMineConfig config =
+        LogMineConfig.builder()
+            .withSimilarityThreshold(0.8)
+            .withTokenizerStrategy(new WhitespaceTokenizer())
+            .enableHierarchicalPatterns(true)
+            .addHierarchyThreshold(0.5)
+            .addHierarchyThreshold(0.8)
+            .build();
+
+    LogMineProcessor processor = new LogMineProcessor(config);
+    processor.process(
+        Arrays.asList(
+            "User alice logged in from web",
+            "User bob logged in from web",
+            "User carol logged in from mobile",
+            "User dave logged in from mobile",
+            "User erin logged in from mobile",
+            "Disk full on volume data"));
+
+    List<HierarchicalPattern> roots = processor.extractHierarchicalPatterns();
+
+    // Level 0 uses the first configured threshold and covers every message
+    assertEquals(6, roots.stream().mapToInt(root -> root.getPattern().getSupportCount()).sum());
+    HierarchicalPattern login = roots.getFirst();
+    assertEquals(0, login.getLevel());
+    assertEquals(0.5, login.getThreshold());
+    assertEquals("User *** logged in from ***", String.join(" ", login.getPattern().getTokens()));
+    assertEquals(5, login.getPattern().getSupportCount());
+    assertEquals(2, login.getChildren().size());
+  }
+
+  @Test
+  public void testHierarchyFromStreamingClustersKeepsPatternSupport() {
+    LogMineConfig config =
+        LogMineConfig.builder()
+            .withSimilarityThreshold(0.7)
+            .withTokenizerStrategy(new WhitespaceTokenizer())
+            .enableHierarchicalPatterns(true)
+            .addHierarchyThreshold(0.4)
+            .addHierarchyThreshold(0.9)
+            .build();
+
+    LogMineProcessor processor = new LogMineProcessor(config);
+    for (int i = 0; i < 60; i++) {
+      processor.processLogIncremental("Job " + i + " finished on worker node" + (i % 3));
+    }
+
+    List<HierarchicalPattern> roots = processor.extractHierarchicalPatterns();
+
+    // Streaming clusters keep no messages, so the levels are built from their patterns
+    int expected = processor.getPatterns().stream().mapToInt(LogPattern::getSupportCount).sum();
+    int support = roots.stream().mapToInt(root -> root.getPattern().getSupportCount()).sum();
+    assertEquals(expected, support);
+    assertEquals(1, roots.size());
+  }
+
   // ========== Tokenizer Strategy Tests ==========
 
   @Test
@@ -739,6 +828,41 @@ public class LogMineProcessorTest {
     // Should require exact match, creating more patterns
   }
 
+  @Test
+  public void testDetectorMatchingConstantsIgnoringCase() {
+    // A detector that relaxes matching for constant tokens, which the built-ins never do
+    org.swengdev.logmine.strategy.VariableDetector detector =
+        new org.swengdev.logmine.strategy.VariableDetector() {
+          @Override
+          public boolean isVariable(String token) {
+            return false;
+          }
+
+          @Override
+          public boolean tokensMatch(String token1, String token2) {
+            return token1.equalsIgnoreCase(token2);
+          }
+
+          @Override
+          public String getDescription() {
+            return "Case-insensitive";
+          }
+        };
+    LogMineConfig config =
+        LogMineConfig.builder().withSimilarityThreshold(0.9).withVariableDetector(detector).build();
+
+    List<LogPattern> patterns =
+        new LogMineProcessor(config)
+            .process(
+                Arrays.asList(
+                    "ERROR disk full on node",
+                    "error DISK FULL ON NODE",
+                    "Error Disk Full On Node"));
+
+    assertEquals(1, patterns.size());
+    assertEquals(3, patterns.get(0).getSupportCount());
+  }
+
   @Test
   public void testWithCustomVariableDetector() {
     org.swengdev.logmine.strategy.CustomVariableDetector detector =
@@ -790,6 +914,78 @@ public class LogMineProcessorTest {
     assertTrue(patterns.size() > 0);
   }
 
+  @Test
+  public void testProcessBytesMatchesStrings() {
+    List<String> logs = mixedLogs(3_000);
+    byte[] text = (String.join("\r\n", logs) + "\n\n \t\n").getBytes(StandardCharsets.UTF_8);
+
+    for (int parallelism : new int[] {1, 4}) {
+      LogMineConfig config = normalizingConfig(parallelism);
+      List<String> expected = describe(new LogMineProcessor(config).process(logs));
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(text.length).put(text).flip();
+      assertEquals(expected, describe(new LogMineProcessor(config).process(direct)));
+      assertEquals(expected, describe(new LogMineProcessor(config).process(ByteBuffer.wrap(text))));
+      assertEquals(0, direct.position());
+    }
+  }
+
+  @Test
+  public void testProcessFile(@TempDir Path directory) throws IOException {
+    List<String> logs = mixedLogs(500);
+    Path file = Files.write(directory.resolve("app.log"), logs, StandardCharsets.UTF_8);
+    LogMineConfig config = normalizingConfig(1);
+
+    assertEquals(
+        describe(new LogMineProcessor(config).process(logs)),
+        describe(new LogMineProcessor(config).process(file)));
+    Path empty = Files.createFile(directory.resolve("empty.log"));
+    assertTrue(new LogMineProcessor(config).process(empty).isEmpty());
+  }
+
+  private static LogMineConfig normalizingConfig(int parallelism) {
+    return LogMineConfig.builder()
+        .similarityThreshold(0.6)
+        .minClusterSize(1)
+        .normalizeTimestamps(true)
+        .normalizeIPs(true)
+        .normalizeNumbers(true)
+        .normalizePaths(true)
+        .normalizeUrls(true)
+        .caseSensitive(false)
+        .parallelism(parallelism)
+        .deterministic(true)
+        .build();
+  }
+
+  /** ASCII lines with entities to normalize, non-ASCII lines and lines normalized by regex. */
+  private static List<String> mixedLogs(int count) {
+    String[] templates = {
+      "2024-01-15 10:30:%02d INFO User %d logged in from 10.0.0.%d",
+      "ERROR Request %d to http://example.com/api/%d failed after %d ms",
+      "WARN Disk /var/data/vol%d/part%d is %d percent full",
+      "INFO Usuario josé %d inició sesión en nodo %d de %d",
+      "DEBUG Loading C:\\Program Files\\app%d\\lib%d config %d"
+    };
+    Random random = new Random(17);
+    List<String> logs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String template = templates[random.nextInt(templates.length)];
+      logs.add(
+          String.format(
+              template, random.nextInt(60), random.nextInt(100_000), random.nextInt(250)));
+    }
+    return logs;
+  }
+
+  private static List<String> describe(List<LogPattern> patterns) {
+    List<String> descriptions = new ArrayList<>();
+    for (LogPattern pattern : patterns) {
+      descriptions.add(pattern.getPatternString() + " x" + pattern.getSupportCount());
+    }
+    return descriptions;
+  }
+
   @Test
   public void testWithSelectivePreprocessing() {
     // Only normalize numbers and IPs, keep timestamps and paths
@@ -1059,4 +1255,100 @@ public class LogMineProcessorTest {
     assertNotNull(patterns);
     // Whitespace-only strings should be handled gracefully
   }
+
+  @Test
+  public void testStatsMatchRecomputedValues() {
+    LogMineProcessor processor =
+        new LogMineProcessor(
+            LogMineConfig.builder().similarityThreshold(0.6).minClusterSize(3).build());
+
+    for (int i = 0; i < 450; i++) {
+      processor.processLogIncremental(
+          i % 7 == 0 ? "WARN rare event " + i : "INFO Request " + i + " served from cache");
+
+      LogMineProcessor.ProcessingStats stats = processor.getStats();
+      List<LogPattern> patterns = processor.getPatterns();
+      assertEquals(
+          patterns.stream().mapToInt(LogPattern::getSupportCount).sum(), stats.getTotalMessages());
+      assertEquals(patterns.size(), stats.getNumPatterns());
+      assertEquals(
+          patterns.stream().mapToDouble(LogPattern::getSpecificity).average().orElse(0.0),
+          stats.getAvgSpecificity(),
+          1e-9);
+    }
+
+    List<LogPattern> batch = processor.process(Arrays.asList("a b c", "a b d", "a b e", "x"));
+    assertEquals(3, processor.getStats().getTotalMessages());
+    assertEquals(batch.size(), processor.getStats().getNumPatterns());
+  }
+
+  private static List<String> deltaLogs() {
+    List<String> logs = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      switch (i % 5) {
+        case 0 -> logs.add("INFO User user" + i + " logged in");
+        case 1 -> logs.add("ERROR Database timeout after " + i + " ms");
+        case 2 -> logs.add("WARN Cache miss for key k" + (i % 11));
+        case 3 -> logs.add("INFO Request " + i + " served from cache");
+        default ->
+            logs.add(i % 50 == 4 ? "FATAL Worker crashed in module m" + i : "DEBUG Heartbeat ok");
+      }
+    }
+    return logs;
+  }
+
+  private static List<String> signatures(List<LogPattern> patterns) {
+    return patterns.stream().map(p -> p.getSignature() + " x" + p.getSupportCount()).toList();
+  }
+
+  @Test
+  public void testProcessDeltaMatchesFullProcessing() {
+    LogMineConfig config =
+        LogMineConfig.builder().similarityThreshold(0.5).minClusterSize(3).build();
+    List<String> logs = deltaLogs();
+    LogMineProcessor incremental = new LogMineProcessor(config);
+
+    for (int end = 0; end < logs.size(); end += 37) {
+      List<String> chunk = logs.subList(end, Math.min(logs.size(), end + 37));
+      List<LogPattern> patterns = incremental.processDelta(chunk, 0);
+
+      List<String> retained = logs.subList(0, Math.min(logs.size(), end + 37));
+      List<LogPattern> expected = new LogMineProcessor(config).process(retained);
+      assertEquals(signatures(expected), signatures(patterns));
+      assertEquals(
+          expected.stream().mapToInt(LogPattern::getSupportCount).sum(),
+          incremental.getStats().getTotalMessages());
+    }
+  }
+
+  @Test
+  public void testProcessDeltaRemovesEvictedLogs() {
+    LogMineConfig config =
+        LogMineConfig.builder().similarityThreshold(0.5).minClusterSize(2).build();
+    LogMineProcessor processor = new LogMineProcessor(config);
+    processor.processDelta(
+        Arrays.asList(
+            "ERROR Disk full on volume",
+            "ERROR Disk full on volume",
+            "INFO User alice logged in",
+            "INFO User bob logged in"),
+        0);
+
+    // Evicting both disk errors removes their pattern entirely
+    List<LogPattern> patterns =
+        processor.processDelta(Arrays.asList("INFO User carol logged in"), 2);
+    assertEquals(1, patterns.size());
+    assertEquals(3, patterns.get(0).getSupportCount());
+    assertNull(processor.matchPattern("ERROR Disk full on volume"));
+
+    // Dropping below the minimum size hides the pattern until it grows again
+    patterns = processor.processDelta(Arrays.asList("WARN Cache miss for key k1"), 2);
+    assertTrue(patterns.isEmpty());
+    assertEquals(0, processor.getStats().getTotalMessages());
+
+    patterns = processor.processDelta(Arrays.asList("WARN Cache miss for key k2"), 0);
+    assertEquals(1, patterns.size());
+    assertEquals(2, patterns.get(0).getSupportCount());
+    assertEquals(1, processor.getStats().getNumClusters());
+  }
 }
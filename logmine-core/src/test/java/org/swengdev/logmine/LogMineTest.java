@@ -18,10 +18,13 @@ package org.swengdev.logmine;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -422,6 +425,24 @@ public class LogMineTest {
     assertEquals(5, logMine.getLogCount());
   }
 
+  @Test
+  public void testMaxBytesInMemory() {
+    LogMineProcessor processor = new LogMineProcessor(0.5, 1);
+    // Room for five 10-character logs at two bytes per character
+    LogMine logMine = new LogMine(ProcessingMode.BATCH, processor, 100, 100);
+
+    for (int i = 0; i < 20; i++) {
+      logMine.addLog(String.format("Job %06d", i));
+    }
+
+    assertEquals(5, logMine.getLogCount());
+    int support = 0;
+    for (LogPattern pattern : logMine.extractPatterns()) {
+      support += pattern.getSupportCount();
+    }
+    assertEquals(5, support);
+  }
+
   // ========== Log Truncation Tests ==========
 
   @Test
@@ -843,4 +864,121 @@ public class LogMineTest {
     assertFalse(streaming.isAnomaly("INFO Request processed successfully"));
     assertTrue(streaming.isAnomaly("CRITICAL SYSTEM MELTDOWN"));
   }
+
+  @Test
+  public void testStatsSnapshotIsReadableDuringIngestion() throws Exception {
+    LogMine streaming = new LogMine(ProcessingMode.STREAMING);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    var producer =
+        executor.submit(
+            () -> {
+              for (int i = 0; i < 2000; i++) {
+                streaming.addLog("INFO Request " + i + " served from cache");
+              }
+            });
+
+    int lastTotal = 0;
+    while (!producer.isDone()) {
+      int total = streaming.getStats().getTotalLogs();
+      assertTrue(total >= lastTotal);
+      lastTotal = total;
+    }
+    producer.get();
+    executor.shutdown();
+
+    LogMine.Stats stats = streaming.getStats();
+    assertEquals(2000, stats.getTotalLogs());
+    assertEquals(2000, stats.getProcessingStats().getTotalMessages());
+    assertEquals(2000, streaming.getLogCount());
+  }
+
+  @Test
+  public void testSnapshotVersionTracksPatternChanges() {
+    LogMine streaming = new LogMine(ProcessingMode.STREAMING);
+    streaming.addLog("INFO Request 1 served from cache");
+    streaming.addLog("INFO Request 2 served from cache");
+
+    PatternSnapshot snapshot = streaming.getSnapshot();
+    assertEquals(1, snapshot.getPatterns().size());
+    assertSame(snapshot, streaming.getSnapshot());
+
+    streaming.addLog("INFO Request 3 served from cache");
+    PatternSnapshot updated = streaming.getSnapshot();
+    assertNotEquals(snapshot.getVersion(), updated.getVersion());
+    assertEquals(3, updated.getPatterns().get(0).getSupportCount());
+    assertEquals(2, snapshot.getPatterns().get(0).getSupportCount());
+    assertNotNull(updated.matchPattern("INFO Request 99 served from cache"));
+  }
+
+  @Test
+  public void testReadersDoNotBlockDuringIngestion() throws Exception {
+    LogMine streaming = new LogMine(ProcessingMode.STREAMING);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    var producer =
+        executor.submit(
+            () -> {
+              for (int i = 0; i < 2000; i++) {
+                streaming.addLog("INFO Request " + i + " served from cache");
+              }
+            });
+
+    while (!producer.isDone()) {
+      PatternSnapshot snapshot = streaming.getSnapshot();
+      for (LogPattern pattern : snapshot.getPatterns()) {
+        assertTrue(pattern.getSupportCount() > 0);
+      }
+      streaming.isAnomaly("INFO Request 5 served from cache");
+    }
+    producer.get();
+    executor.shutdown();
+
+    assertFalse(streaming.isAnomaly("INFO Request 5 served from cache"));
+    assertEquals(2000, streaming.getCurrentPatterns().get(0).getSupportCount());
+  }
+
+  @Test
+  public void testBatchExtractionAfterAppendsMatchesFullExtraction() {
+    LogMineConfig config =
+        LogMineConfig.builder().similarityThreshold(0.5).minClusterSize(2).build();
+    LogMine incremental = new LogMine(ProcessingMode.BATCH, new LogMineProcessor(config), 1000);
+    List<String> all = new ArrayList<>();
+
+    for (int i = 0; i < 120; i++) {
+      String log =
+          i % 3 == 0
+              ? "INFO User user" + i + " logged in"
+              : "ERROR Database timeout after " + i + " ms";
+      incremental.addLog(log);
+      all.add(log);
+      if (i % 17 == 0) {
+        LogMine fresh = new LogMine(ProcessingMode.BATCH, new LogMineProcessor(config), 1000);
+        fresh.addLogs(all);
+        assertEquals(fresh.extractPatterns(), incremental.extractPatterns());
+      }
+    }
+  }
+
+  @Test
+  public void testBatchExtractionAfterEvictionsCountsRetainedLogs() {
+    LogMineConfig config =
+        LogMineConfig.builder().similarityThreshold(0.5).minClusterSize(1).build();
+    LogMine logMine = new LogMine(ProcessingMode.BATCH, new LogMineProcessor(config), 50);
+
+    for (int i = 0; i < 400; i++) {
+      logMine.addLog(
+          i < 200
+              ? "INFO User user" + i + " logged in"
+              : "ERROR Database timeout after " + i + " ms");
+      if (i % 23 == 0) {
+        List<LogPattern> patterns = logMine.extractPatterns();
+        int retained = Math.min(i + 1, 50);
+        assertEquals(retained, patterns.stream().mapToInt(LogPattern::getSupportCount).sum());
+      }
+    }
+
+    List<LogPattern> patterns = logMine.extractPatterns();
+    assertEquals(1, patterns.size());
+    assertEquals(50, patterns.get(0).getSupportCount());
+    assertTrue(logMine.isAnomaly("INFO User alice logged in"));
+  }
 }
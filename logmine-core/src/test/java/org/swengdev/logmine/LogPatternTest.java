@@ -224,4 +224,46 @@ public class LogPatternTest {
 
     assertFalse(pattern.matches(shorterMessage));
   }
+
+  @Test
+  public void testCreateFromMessagesOfDifferentLengths() {
+    List<LogMessage> messages =
+        Arrays.asList(
+            new LogMessage(
+                "ERROR Connection failed after retries",
+                tokenizer.tokenize("ERROR Connection failed after retries"),
+                detector),
+            new LogMessage(
+                "ERROR Connection failed permanently after retries",
+                tokenizer.tokenize("ERROR Connection failed permanently after retries"),
+                detector));
+
+    LogPattern pattern = LogPattern.createFromMessages(messages, detector);
+
+    assertEquals(
+        Arrays.asList("ERROR", "Connection", "failed", "***?", "after", "retries"),
+        pattern.getTokens());
+    for (LogMessage message : messages) {
+      assertTrue(pattern.matches(message));
+    }
+    String shorter = "ERROR Connection failed";
+    assertFalse(pattern.matches(new LogMessage(shorter, tokenizer.tokenize(shorter), detector)));
+  }
+
+  @Test
+  public void testMerge() {
+    LogPattern login = new LogPattern(Arrays.asList("User", "***", "logged", "in"), 3, detector);
+    LogPattern logout = new LogPattern(Arrays.asList("User", "***", "logged", "out"), 2, detector);
+    LogPattern sso =
+        new LogPattern(Arrays.asList("User", "***", "logged", "in", "via", "sso"), 4, detector);
+
+    LogPattern merged = LogPattern.merge(login, logout);
+    assertEquals(Arrays.asList("User", "***", "logged", "***"), merged.getTokens());
+    assertEquals(5, merged.getSupportCount());
+
+    LogPattern aligned = LogPattern.merge(login, sso);
+    assertEquals(Arrays.asList("User", "***", "logged", "in", "***?", "***?"), aligned.getTokens());
+    assertEquals(7, aligned.getSupportCount());
+    assertEquals(0.5, aligned.getSpecificity(), 0.01);
+  }
 }
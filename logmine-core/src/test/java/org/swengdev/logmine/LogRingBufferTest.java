@@ -0,0 +1,124 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for LogRingBuffer. */
+public class LogRingBufferTest {
+
+  @Test
+  public void testKeepsMostRecentLogsInOrder() {
+    LogRingBuffer buffer = new LogRingBuffer(3, Long.MAX_VALUE);
+    for (int i = 1; i <= 5; i++) {
+      buffer.add("log " + i);
+    }
+
+    assertEquals(List.of("log 3", "log 4", "log 5"), new ArrayList<>(buffer));
+    assertEquals("log 3", buffer.get(0));
+    assertEquals("log 5", buffer.get(2));
+    assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(3));
+  }
+
+  @Test
+  public void testGrowsUpToCountBudget() {
+    LogRingBuffer buffer = new LogRingBuffer(5000, Long.MAX_VALUE);
+    for (int i = 0; i < 12000; i++) {
+      buffer.add(Integer.toString(i));
+    }
+
+    assertEquals(5000, buffer.size());
+    for (int i = 0; i < buffer.size(); i++) {
+      assertEquals(Integer.toString(7000 + i), buffer.get(i));
+    }
+  }
+
+  @Test
+  public void testEvictsByByteBudget() {
+    LogRingBuffer buffer = new LogRingBuffer(100, 20);
+    buffer.add("aaaa"); // 8 bytes
+    buffer.add("bbbb");
+    assertEquals(16, buffer.bytes());
+
+    buffer.add("cccc");
+    assertEquals(List.of("bbbb", "cccc"), new ArrayList<>(buffer));
+    assertEquals(16, buffer.bytes());
+
+    // The newest log is kept even if it alone exceeds the budget
+    buffer.add("a log longer than the budget");
+    assertEquals(1, buffer.size());
+    assertEquals("a log longer than the budget", buffer.get(0));
+  }
+
+  @Test
+  public void testClear() {
+    LogRingBuffer buffer = new LogRingBuffer(2, Long.MAX_VALUE);
+    buffer.add("first");
+    buffer.add("second");
+    buffer.add("third");
+    buffer.clear();
+
+    assertTrue(buffer.isEmpty());
+    assertEquals(0, buffer.bytes());
+    buffer.add("fourth");
+    assertEquals(List.of("fourth"), new ArrayList<>(buffer));
+  }
+
+  @Test
+  public void testZeroCountBudgetRetainsNothing() {
+    LogRingBuffer buffer = new LogRingBuffer(0, Long.MAX_VALUE);
+    buffer.add("ignored");
+
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void testInvalidBudgets() {
+    assertThrows(IllegalArgumentException.class, () -> new LogRingBuffer(-1, 10));
+    assertThrows(IllegalArgumentException.class, () -> new LogRingBuffer(10, -1));
+  }
+
+  @Test
+  public void testSequenceNumbers() {
+    LogRingBuffer buffer = new LogRingBuffer(3, Long.MAX_VALUE);
+    buffer.add("first");
+    buffer.add("second");
+    assertEquals(2, buffer.appendedCount());
+    assertEquals(0, buffer.evictedCount());
+    assertEquals(List.of("second"), buffer.since(1));
+
+    buffer.add("third");
+    buffer.add("fourth");
+    buffer.add("fifth");
+    assertEquals(5, buffer.appendedCount());
+    assertEquals(2, buffer.evictedCount());
+    assertEquals(List.of("fourth", "fifth"), buffer.since(3));
+    // Evicted and future sequence numbers are clamped to the retained range
+    assertEquals(List.of("third", "fourth", "fifth"), buffer.since(0));
+    assertTrue(buffer.since(9).isEmpty());
+
+    buffer.clear();
+    assertEquals(0, buffer.appendedCount());
+    assertEquals(0, buffer.evictedCount());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for ParallelBatchClusterer. */
+public class ParallelBatchClustererTest {
+
+  private static final String[] TEMPLATES = {
+    "INFO User %d logged in from 10.0.0.%d",
+    "ERROR Database connection to shard %d failed after %d retries",
+    "WARN Cache miss ratio at %d percent for region %d",
+    "DEBUG Scheduler picked job %d on worker %d",
+    "INFO Request %d completed with status 200 in %d ms"
+  };
+
+  private static List<String> generateLogs(int count, long seed) {
+    Random random = new Random(seed);
+    List<String> logs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+      logs.add(String.format(template, random.nextInt(10_000), random.nextInt(250)));
+    }
+    return logs;
+  }
+
+  private static LogMineProcessor processor(int parallelism, boolean deterministic) {
+    return new LogMineProcessor(
+        LogMineConfig.builder()
+            .similarityThreshold(0.6)
+            .parallelism(parallelism)
+            .deterministic(deterministic)
+            .build());
+  }
+
+  @Test
+  public void testEveryMessageIsClustered() {
+    List<String> logs = generateLogs(5000, 1);
+
+    List<LogPattern> patterns = processor(4, true).process(logs);
+
+    int support = patterns.stream().mapToInt(LogPattern::getSupportCount).sum();
+    assertEquals(logs.size(), support);
+  }
+
+  @Test
+  public void testSameTemplatesAsSequential() {
+    List<String> logs = generateLogs(5000, 2);
+
+    List<LogPattern> sequential = processor(1, true).process(logs);
+    List<LogPattern> parallel = processor(4, true).process(logs);
+
+    assertEquals(new HashSet<>(sequential), new HashSet<>(parallel));
+    assertEquals(TEMPLATES.length, parallel.size());
+  }
+
+  @Test
+  public void testDeterministicRunsAreReproducible() {
+    List<String> logs = generateLogs(8000, 3);
+
+    List<String> first = patternStrings(processor(8, true).process(logs));
+    for (int run = 0; run < 3; run++) {
+      assertEquals(first, patternStrings(processor(8, true).process(logs)));
+    }
+  }
+
+  @Test
+  public void testNonDeterministicModeClustersEverything() {
+    List<String> logs = generateLogs(5000, 4);
+
+    List<LogPattern> patterns = processor(4, false).process(logs);
+
+    int support = patterns.stream().mapToInt(LogPattern::getSupportCount).sum();
+    assertEquals(logs.size(), support);
+  }
+
+  @Test
+  public void testMaxClustersIsRespected() {
+    LogMineProcessor processor =
+        new LogMineProcessor(
+            LogMineConfig.builder().similarityThreshold(0.9).maxClusters(2).parallelism(4).build());
+
+    List<LogPattern> patterns = processor.process(generateLogs(3000, 5));
+
+    assertTrue(patterns.size() <= 2);
+    assertEquals(3000, patterns.stream().mapToInt(LogPattern::getSupportCount).sum());
+  }
+
+  private static List<String> patternStrings(List<LogPattern> patterns) {
+    List<String> result = new ArrayList<>();
+    for (LogPattern pattern : patterns) {
+      result.add(pattern.getPatternString() + "#" + pattern.getSupportCount());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for PatternAligner. */
+public class PatternAlignerTest {
+
+  private static List<String> tokens(String text) {
+    return List.of(text.split(" "));
+  }
+
+  private static double similarity(String first, String second) {
+    return PatternAligner.similarity(tokens(first), tokens(second));
+  }
+
+  @Test
+  public void testSameLengthMergesPositionally() {
+    List<String> merged =
+        PatternAligner.merge(tokens("GET /a status 200"), tokens("GET /b status 200"));
+
+    assertEquals(tokens("GET *** status 200"), merged);
+  }
+
+  @Test
+  public void testInsertedTokenBecomesGap() {
+    List<String> merged =
+        PatternAligner.merge(
+            tokens("Connection to db failed after *** retries"),
+            tokens("Connection to db failed permanently after 3 retries"));
+
+    assertEquals(tokens("Connection to db failed ***? after *** retries"), merged);
+  }
+
+  @Test
+  public void testMissingTokenBecomesGap() {
+    List<String> merged =
+        PatternAligner.merge(tokens("User alice logged in via sso"), tokens("User bob logged in"));
+
+    assertEquals(tokens("User *** logged in ***? ***?"), merged);
+  }
+
+  @Test
+  public void testGapsArePreserved() {
+    List<String> template = tokens("job ***? started");
+
+    assertEquals(template, PatternAligner.merge(template, tokens("job started")));
+    assertEquals(template, PatternAligner.merge(template, tokens("job 7 started")));
+  }
+
+  @Test
+  public void testMatchesWithGaps() {
+    List<String> template = tokens("User *** logged in ***? ***?");
+
+    assertTrue(PatternAligner.matches(template, tokens("User bob logged in")));
+    assertTrue(PatternAligner.matches(template, tokens("User bob logged in via")));
+    assertTrue(PatternAligner.matches(template, tokens("User bob logged in via sso")));
+    assertFalse(PatternAligner.matches(template, tokens("User logged in")));
+    assertFalse(PatternAligner.matches(template, tokens("User bob logged out")));
+    assertFalse(PatternAligner.matches(template, tokens("User bob logged in via sso now")));
+  }
+
+  @Test
+  public void testSimilarityDiscountsWildcardsAndGaps() {
+    assertEquals(1.0, similarity("GET /a 200", "GET /a 200"));
+    assertEquals(1.0, PatternAligner.similarity(List.of(), List.of()));
+
+    // A differing constant costs a whole token, a wildcard or a left out gap half of one
+    assertEquals(1 - 2 / 6.0, similarity("GET /a 200", "GET /b 200"));
+    assertEquals(1 - 1 / 6.0, similarity("GET *** 200", "GET /b 200"));
+    assertEquals(1 - 1 / 6.0, similarity("GET ***? 200", "GET 200"));
+    assertEquals(1 - 2 / 6.0, similarity("GET /a 200", "GET 200"));
+  }
+
+  @Test
+  public void testFoldedTemplateMatchesEverySequence() {
+    String[] vocabulary = {"GET", "POST", "/a", "/b", "200", "404", "ok"};
+    Random random = new Random(11);
+
+    for (int round = 0; round < 200; round++) {
+      List<List<String>> sequences = new ArrayList<>();
+      for (int i = 0; i < 1 + random.nextInt(6); i++) {
+        List<String> sequence = new ArrayList<>();
+        for (int t = 0; t < 1 + random.nextInt(6); t++) {
+          sequence.add(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        sequences.add(sequence);
+      }
+
+      List<String> template = sequences.getFirst();
+      for (List<String> sequence : sequences.subList(1, sequences.size())) {
+        template = PatternAligner.merge(template, sequence);
+      }
+
+      for (List<String> sequence : sequences) {
+        assertTrue(PatternAligner.matches(template, sequence), template + " vs " + sequence);
+      }
+    }
+  }
+}
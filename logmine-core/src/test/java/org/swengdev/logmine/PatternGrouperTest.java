@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+
+/** Tests for PatternGrouper. */
+public class PatternGrouperTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+
+  private LogPattern pattern(String template, int support) {
+    return new LogPattern(List.of(template.split(" ")), support, detector);
+  }
+
+  private static List<String> describe(List<LogPattern> patterns) {
+    return patterns.stream()
+        .map(pattern -> String.join(" ", pattern.getTokens()) + " x" + pattern.getSupportCount())
+        .toList();
+  }
+
+  @Test
+  public void testGeneralizedPatternAbsorbsVariant() {
+    List<LogPattern> patterns =
+        List.of(pattern("User *** logged in", 10), pattern("User alice logged in", 1));
+
+    // A wildcard is only half a difference, so the variant is close enough
+    assertEquals(
+        List.of("User *** logged in x11"),
+        describe(PatternGrouper.group(patterns, null, 0.8, true)));
+  }
+
+  @Test
+  public void testSupportKeepsFrequentPatternsApart() {
+    List<LogPattern> patterns =
+        List.of(
+            pattern("Disk full on data", 10),
+            pattern("Disk full on logs", 10),
+            pattern("Disk full on tmp", 1));
+
+    // Equally frequent patterns need more similarity, while the rare one still joins a group
+    assertEquals(
+        List.of("Disk full on *** x11", "Disk full on logs x10"),
+        describe(PatternGrouper.group(patterns, null, 0.7, true)));
+    List<LogPattern> unweighted = PatternGrouper.group(patterns, null, 0.7, false);
+    assertEquals(List.of("Disk full on *** x21"), describe(unweighted));
+  }
+
+  @Test
+  public void testPatternsOfOneSourceAreNotGrouped() {
+    List<LogPattern> patterns =
+        List.of(pattern("Cache miss", 5), pattern("Cache miss", 3), pattern("Cache miss", 2));
+
+    assertEquals(
+        List.of("Cache miss x8", "Cache miss x2"),
+        describe(PatternGrouper.group(patterns, new int[] {0, 1, 1}, 0.9, false)));
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
+
+/** Tests for PatternMatcher. */
+public class PatternMatcherTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+  private final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  private LogPattern pattern(String tokens) {
+    return new LogPattern(tokenizer.tokenize(tokens), 1, detector);
+  }
+
+  @Test
+  public void testEmptyMatcher() {
+    PatternMatcher matcher = new PatternMatcher();
+
+    assertNull(matcher.match(message("INFO started")));
+    assertEquals(0, matcher.size());
+  }
+
+  @Test
+  public void testReturnsFirstMatchInRankOrder() {
+    LogPattern general = pattern("GET *** ***");
+    LogPattern specific = pattern("GET /index ***");
+    PatternMatcher matcher = new PatternMatcher();
+
+    matcher.update(List.of(general, specific));
+    assertSame(general, matcher.match(message("GET /index 200")));
+
+    matcher.update(List.of(specific, general));
+    assertSame(specific, matcher.match(message("GET /index 200")));
+    assertSame(general, matcher.match(message("GET /other 200")));
+    assertNull(matcher.match(message("GET /index")));
+    assertNull(matcher.match(message("POST /index 200")));
+  }
+
+  @Test
+  public void testUpdateRemovesDroppedPatterns() {
+    LogPattern login = pattern("User *** logged in");
+    LogPattern logout = pattern("User *** logged out");
+    PatternMatcher matcher = new PatternMatcher();
+    matcher.update(List.of(login, logout));
+
+    matcher.update(List.of(logout));
+
+    assertNull(matcher.match(message("User alice logged in")));
+    assertSame(logout, matcher.match(message("User alice logged out")));
+    assertEquals(1, matcher.size());
+  }
+
+  @Test
+  public void testMatchesLinearScan() {
+    String[] vocabulary = {"GET", "POST", "/a", "/b", "200", "404", "***"};
+    Random random = new Random(5);
+    PatternMatcher matcher = new PatternMatcher();
+    List<LogPattern> patterns = new ArrayList<>();
+
+    for (int round = 0; round < 30; round++) {
+      // Add some patterns, drop some and shuffle the ranking, as re-extraction does
+      for (int i = 0; i < 10; i++) {
+        patterns.add(pattern(randomTokens(random, vocabulary)));
+      }
+      for (int i = 0; i < 3 && !patterns.isEmpty(); i++) {
+        patterns.remove(random.nextInt(patterns.size()));
+      }
+      Collections.shuffle(patterns, random);
+      matcher.update(patterns);
+
+      for (int i = 0; i < 50; i++) {
+        LogMessage message = message(randomTokens(random, vocabulary));
+        LogPattern expected = null;
+        for (LogPattern candidate : patterns) {
+          if (candidate.matches(message)) {
+            expected = candidate;
+            break;
+          }
+        }
+        assertSame(expected, matcher.match(message));
+      }
+    }
+  }
+
+  @Test
+  public void testAddAndRemoveMatchLinearScan() {
+    String[] vocabulary = {"GET", "POST", "/a", "/b", "200", "***", "***?"};
+    Random random = new Random(11);
+    PatternMatcher matcher = new PatternMatcher();
+    List<LogPattern> patterns = new ArrayList<>();
+    List<Long> ranks = new ArrayList<>();
+
+    for (int round = 0; round < 500; round++) {
+      if (patterns.isEmpty() || random.nextInt(3) > 0) {
+        long rank = random.nextLong(1_000_000);
+        if (ranks.contains(rank)) {
+          continue;
+        }
+        LogPattern pattern = pattern(randomTokens(random, vocabulary));
+        int position = 0;
+        while (position < ranks.size() && ranks.get(position) < rank) {
+          position++;
+        }
+        patterns.add(position, pattern);
+        ranks.add(position, rank);
+        matcher.add(pattern, rank);
+      } else {
+        int position = random.nextInt(patterns.size());
+        matcher.remove(patterns.remove(position), ranks.remove(position));
+      }
+      assertEquals(patterns.size(), matcher.size());
+
+      for (int i = 0; i < 10; i++) {
+        LogMessage message = message(randomTokens(random, vocabulary));
+        LogPattern expected = null;
+        for (LogPattern candidate : patterns) {
+          if (candidate.matches(message)) {
+            expected = candidate;
+            break;
+          }
+        }
+        assertSame(expected, matcher.match(message));
+      }
+    }
+  }
+
+  @Test
+  public void testFrozenMatcherIgnoresLaterUpdates() {
+    LogPattern login = pattern("User *** logged in");
+    LogPattern logout = pattern("User *** logged out");
+    PatternMatcher matcher = new PatternMatcher();
+    matcher.add(login, 1);
+    PatternMatcher frozen = matcher.freeze();
+    assertSame(frozen, matcher.freeze());
+
+    matcher.remove(login, 1);
+    matcher.add(logout, 2);
+
+    assertSame(login, frozen.match(message("User alice logged in")));
+    assertNull(frozen.match(message("User alice logged out")));
+    assertEquals(List.of(login), frozen.patterns());
+    assertNull(matcher.match(message("User alice logged in")));
+    assertSame(logout, matcher.match(message("User alice logged out")));
+    assertThrows(IllegalStateException.class, () -> frozen.add(logout, 3));
+  }
+
+  @Test
+  public void testFrozenMatchersMatchLinearScan() {
+    // Many tokens per position, including ones whose hash codes collide ("Aa" and "BB")
+    String[] words = {"Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa", "***"};
+    Random random = new Random(17);
+    PatternMatcher matcher = new PatternMatcher();
+    List<LogPattern> patterns = new ArrayList<>();
+    List<Long> ranks = new ArrayList<>();
+    List<PatternMatcher> frozen = new ArrayList<>();
+    List<List<LogPattern>> expected = new ArrayList<>();
+
+    for (int i = 0; i < 400; i++) {
+      String first = random.nextInt(4) == 0 ? words[random.nextInt(words.length)] : letters(i);
+      LogPattern pattern = pattern(first + " " + words[random.nextInt(words.length)]);
+      patterns.add(pattern);
+      ranks.add((long) i);
+      matcher.add(pattern, i);
+      if (i % 7 == 0) {
+        int dropped = random.nextInt(patterns.size());
+        matcher.remove(patterns.remove(dropped), ranks.remove(dropped));
+      }
+      if (i % 50 == 0) {
+        frozen.add(matcher.freeze());
+        expected.add(new ArrayList<>(patterns));
+      }
+    }
+
+    for (int f = 0; f < frozen.size(); f++) {
+      assertEquals(expected.get(f), frozen.get(f).patterns());
+      for (int i = 0; i < 200; i++) {
+        String first =
+            random.nextBoolean() ? words[random.nextInt(words.length - 1)] : letters(i * 2);
+        LogMessage message = message(first + " " + words[random.nextInt(words.length - 1)]);
+        LogPattern linear = null;
+        for (LogPattern candidate : expected.get(f)) {
+          if (candidate.matches(message)) {
+            linear = candidate;
+            break;
+          }
+        }
+        assertSame(linear, frozen.get(f).match(message));
+      }
+    }
+  }
+
+  private static String letters(int value) {
+    StringBuilder word = new StringBuilder("w");
+    do {
+      word.append((char) ('a' + value % 26));
+      value /= 26;
+    } while (value > 0);
+    return word.toString();
+  }
+
+  private static String randomTokens(Random random, String[] vocabulary) {
+    StringBuilder tokens = new StringBuilder();
+    int length = 1 + random.nextInt(4);
+    for (int i = 0; i < length; i++) {
+      tokens.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+    }
+    return tokens.toString().trim();
+  }
+
+  @Test
+  public void testGappedPatternsKeepRankOrder() {
+    LogPattern gapped = pattern("job ***? started");
+    LogPattern exact = pattern("job 7 started");
+    PatternMatcher matcher = new PatternMatcher();
+
+    matcher.update(List.of(exact, gapped));
+    assertSame(exact, matcher.match(message("job 7 started")));
+    assertSame(gapped, matcher.match(message("job 8 started")));
+    assertSame(gapped, matcher.match(message("job started")));
+
+    matcher.update(List.of(gapped, exact));
+    assertSame(gapped, matcher.match(message("job 7 started")));
+
+    matcher.update(List.of(exact));
+    assertNull(matcher.match(message("job started")));
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
+
+/** Tests for PatternRanking. */
+public class PatternRankingTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+  private final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+
+  private LogMessage message(String raw) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector);
+  }
+
+  private LogCluster cluster(String raw) {
+    return new LogCluster(message(raw), detector, false);
+  }
+
+  @Test
+  public void testRanksBySupportThenInsertionOrder() {
+    LogCluster first = cluster("job started");
+    LogCluster second = cluster("job stopped");
+    LogCluster third = cluster("job failed");
+    PatternRanking ranking = new PatternRanking();
+    ranking.refresh(first);
+    ranking.refresh(second);
+    ranking.refresh(third);
+
+    third.absorb(message("job failed"));
+    ranking.refresh(third);
+
+    List<LogPattern> patterns = ranking.patterns();
+    assertSame(third.generatePattern(), patterns.get(0));
+    assertSame(first.generatePattern(), patterns.get(1));
+    assertSame(second.generatePattern(), patterns.get(2));
+  }
+
+  @Test
+  public void testRefreshSkipsCleanClusters() {
+    LogCluster cluster = cluster("job started");
+    PatternRanking ranking = new PatternRanking();
+    ranking.refresh(cluster);
+    long version = ranking.version();
+    List<LogPattern> patterns = ranking.patterns();
+
+    ranking.refresh(cluster);
+    assertEquals(version, ranking.version());
+    assertSame(patterns, ranking.patterns());
+
+    cluster.absorb(message("job started"));
+    ranking.refresh(cluster);
+    assertNotEquals(version, ranking.version());
+    assertEquals(2, ranking.patterns().getFirst().getSupportCount());
+  }
+
+  @Test
+  public void testRemoveIfAndClear() {
+    LogCluster small = cluster("job started");
+    LogCluster large = cluster("job stopped");
+    large.absorb(message("job stopped"));
+    PatternRanking ranking = new PatternRanking();
+    ranking.refresh(small);
+    ranking.refresh(large);
+
+    ranking.removeIf(cluster -> cluster.size() < 2);
+    assertEquals(List.of(large.generatePattern()), ranking.patterns());
+
+    ranking.clear();
+    assertEquals(0, ranking.size());
+    assertEquals(List.of(), ranking.patterns());
+  }
+
+  @Test
+  public void testMatchesStableSortOfClusters() {
+    String[] words = {"alpha", "beta", "gamma", "delta", "epsilon"};
+    Random random = new Random(9);
+    List<LogCluster> clusters = new ArrayList<>();
+    PatternRanking ranking = new PatternRanking();
+
+    for (int i = 0; i < 500; i++) {
+      int template = random.nextInt(words.length * 4);
+      if (template >= clusters.size()) {
+        LogCluster cluster = cluster("event " + words[template % words.length] + " " + template);
+        clusters.add(cluster);
+        ranking.refresh(cluster);
+      } else {
+        LogCluster cluster = clusters.get(template);
+        cluster.absorb(message("event " + words[template % words.length] + " " + i));
+        ranking.refresh(cluster);
+      }
+
+      List<LogPattern> expected = new ArrayList<>();
+      for (LogCluster cluster : clusters) {
+        expected.add(cluster.generatePattern());
+      }
+      expected.sort((p1, p2) -> Integer.compare(p2.getSupportCount(), p1.getSupportCount()));
+      assertEquals(expected, ranking.patterns());
+    }
+  }
+
+  @Test
+  public void testMatcherFollowsRankingChanges() {
+    String[] words = {"alpha", "beta", "gamma"};
+    Random random = new Random(3);
+    List<LogCluster> clusters = new ArrayList<>();
+    PatternRanking ranking = new PatternRanking();
+
+    for (int i = 0; i < 300; i++) {
+      int template = random.nextInt(12);
+      if (template >= clusters.size()) {
+        LogCluster cluster = cluster("task " + words[template % words.length] + " " + template);
+        clusters.add(cluster);
+        ranking.refresh(cluster);
+      } else {
+        LogCluster cluster = clusters.get(template);
+        cluster.absorb(message("task " + words[template % words.length] + " " + i));
+        ranking.refresh(cluster);
+      }
+      if (i % 100 == 99) {
+        LogCluster dropped = clusters.remove(random.nextInt(clusters.size()));
+        ranking.remove(dropped);
+      }
+      if (random.nextInt(5) > 0) {
+        continue; // Let several changes pile up before the matcher catches up
+      }
+
+      PatternMatcher matcher = ranking.matcher();
+      assertEquals(ranking.size(), matcher.size());
+      for (String word : words) {
+        LogMessage probe = message("task " + word + " " + i);
+        LogPattern expected = null;
+        for (LogPattern pattern : ranking.patterns()) {
+          if (pattern.matches(probe)) {
+            expected = pattern;
+            break;
+          }
+        }
+        assertSame(expected, matcher.match(probe));
+      }
+    }
+  }
+
+  @Test
+  public void testOrdinalsAreCompactedAtLimit() {
+    LogCluster first = cluster("job started");
+    LogCluster second = cluster("job stopped");
+    LogCluster third = cluster("job failed");
+    PatternRanking ranking = new PatternRanking();
+    ranking.refresh(first, PatternRanking.MAX_ORDINAL - 1);
+    ranking.refresh(second, PatternRanking.MAX_ORDINAL);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ranking.refresh(third, PatternRanking.MAX_ORDINAL + 1));
+
+    // The next ordinal would not fit into a matcher rank, so the ordinals are renumbered first
+    ranking.refresh(third);
+    List<LogPattern> expected =
+        List.of(first.generatePattern(), second.generatePattern(), third.generatePattern());
+    assertEquals(expected, ranking.patterns());
+    assertEquals(expected, ranking.matcher().patterns());
+
+    // Explicit ordinals are renumbered together with clusters that are not ranked
+    LogCluster unranked = cluster("job retried");
+    Map<LogCluster, Long> ordinals = new IdentityHashMap<>();
+    ordinals.put(third, 7L);
+    ordinals.put(unranked, 5L);
+    ordinals.put(first, 9L);
+    ordinals.put(second, 1L);
+    assertEquals(4, ranking.compactOrdinals(ordinals));
+    assertEquals(0L, ordinals.get(second).longValue());
+    assertEquals(1L, ordinals.get(unranked).longValue());
+    assertEquals(2L, ordinals.get(third).longValue());
+    assertEquals(3L, ordinals.get(first).longValue());
+    expected = List.of(second.generatePattern(), third.generatePattern(), first.generatePattern());
+    assertEquals(expected, ranking.patterns());
+    assertEquals(expected, ranking.matcher().patterns());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for PatternSnapshot. */
+public class PatternSnapshotTest {
+
+  private static LogMineProcessor processor() {
+    return new LogMineProcessor(
+        LogMineConfig.builder().withSimilarityThreshold(0.5).withMinClusterSize(1).build());
+  }
+
+  @Test
+  public void testSnapshotIsUnaffectedByLaterUpdates() {
+    LogMineProcessor processor = processor();
+    processor.processLogIncremental("INFO User 1 logged in");
+    processor.processLogIncremental("INFO User 2 logged in");
+
+    PatternSnapshot snapshot = processor.snapshot();
+    List<LogPattern> patterns = snapshot.getPatterns();
+    assertEquals(1, patterns.size());
+    assertEquals(2, patterns.get(0).getSupportCount());
+
+    processor.processLogIncremental("ERROR Disk full on volume");
+    processor.processLogIncremental("INFO User 3 logged in");
+
+    assertSame(patterns, snapshot.getPatterns());
+    assertEquals(1, snapshot.getPatterns().size());
+    assertEquals(2, snapshot.getPatterns().get(0).getSupportCount());
+    assertNull(snapshot.matchPattern("ERROR Disk full on volume"));
+    assertNotNull(processor.snapshot().matchPattern("ERROR Disk full on volume"));
+  }
+
+  @Test
+  public void testVersionChangesOnlyWithPatterns() {
+    LogMineProcessor processor = processor();
+    processor.processLogIncremental("INFO User 1 logged in");
+
+    PatternSnapshot first = processor.snapshot();
+    assertEquals(first.getVersion(), processor.snapshot().getVersion());
+
+    processor.processLogIncremental("INFO User 2 logged in");
+    assertNotEquals(first.getVersion(), processor.snapshot().getVersion());
+  }
+
+  @Test
+  public void testMatchesLikeProcessor() {
+    LogMineProcessor processor = processor();
+    processor.processLogIncremental("INFO User 1 logged in");
+    processor.processLogIncremental("INFO User 2 logged in");
+    processor.processLogIncremental("ERROR Database timeout after 30 ms");
+
+    PatternSnapshot snapshot = processor.snapshot();
+    for (String log :
+        new String[] {
+          "INFO User 99 logged in", "ERROR Database timeout after 5 ms", "WARN Unknown event"
+        }) {
+      assertSame(processor.matchPattern(log), snapshot.matchPattern(log));
+    }
+  }
+
+  @Test
+  public void testPatternsAreUnmodifiable() {
+    LogMineProcessor processor = processor();
+    processor.processLogIncremental("INFO User 1 logged in");
+
+    PatternSnapshot snapshot = processor.snapshot();
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.getPatterns().clear());
+  }
+
+  @Test
+  public void testEmptySnapshot() {
+    PatternSnapshot snapshot = processor().snapshot();
+
+    assertTrue(snapshot.getPatterns().isEmpty());
+    assertNull(snapshot.matchPattern("INFO User 1 logged in"));
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+
+/** Tests for ShardedLogMine. */
+public class ShardedLogMineTest {
+
+  private static final String[] TEMPLATES = {
+    "INFO User %d logged in from gateway",
+    "ERROR Database timeout after %d ms",
+    "WARN Cache miss for key %d",
+    "INFO Request %d served from cache in fast path",
+  };
+
+  private static LogMineConfig config() {
+    return LogMineConfig.builder().withSimilarityThreshold(0.5).withMinClusterSize(1).build();
+  }
+
+  private static List<String> generateLogs(int count) {
+    List<String> logs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      logs.add(String.format(TEMPLATES[i % TEMPLATES.length], i));
+    }
+    return logs;
+  }
+
+  @Test
+  public void testInvalidShardCount() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ShardedLogMine(ProcessingMode.STREAMING, config(), 0, 1000));
+  }
+
+  @Test
+  public void testSameTemplateRoutesToSameShard() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 8, 1000);
+
+    int shard = logMine.shardFor("2024-01-15 10:00:01 INFO User 17 logged in");
+    assertEquals(shard, logMine.shardFor("2024-01-16 11:30:59 INFO User 42 logged in"));
+    assertEquals(shard, logMine.shardFor("2024-01-16   11:30:59 INFO User 42 logged\tin"));
+    assertEquals(
+        ShardedLogMine.routingKey("ERROR Database timeout"),
+        ShardedLogMine.routingKey("ERROR Database timeout"));
+  }
+
+  @Test
+  public void testRoutingSpreadsTemplates() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+
+    Set<Integer> used = new HashSet<>();
+    for (String template : TEMPLATES) {
+      used.add(logMine.shardFor(String.format(template, 1)));
+    }
+    assertTrue(used.size() > 1);
+  }
+
+  @Test
+  public void testMergedPatternsMatchSingleLogMine() {
+    List<String> logs = generateLogs(400);
+    ShardedLogMine sharded = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    LogMine single = new LogMine(ProcessingMode.STREAMING, new LogMineProcessor(config()), 1000);
+    for (String log : logs) {
+      sharded.addLog(log);
+      single.addLog(log);
+    }
+
+    List<LogPattern> expected = single.getCurrentPatterns();
+    List<LogPattern> actual = sharded.getCurrentPatterns();
+    assertEquals(expected.size(), actual.size());
+    Set<String> expectedPatterns = new HashSet<>();
+    for (LogPattern pattern : expected) {
+      expectedPatterns.add(pattern.getSignature() + "=" + pattern.getSupportCount());
+    }
+    Set<String> actualPatterns = new HashSet<>();
+    for (LogPattern pattern : actual) {
+      actualPatterns.add(pattern.getSignature() + "=" + pattern.getSupportCount());
+    }
+    assertEquals(expectedPatterns, actualPatterns);
+  }
+
+  @Test
+  public void testMergedPatternsAreSortedBySupport() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    for (int i = 0; i < 30; i++) {
+      logMine.addLog("INFO User " + i + " logged in from gateway");
+    }
+    for (int i = 0; i < 10; i++) {
+      logMine.addLog("ERROR Database timeout after " + i + " ms");
+    }
+
+    List<LogPattern> patterns = logMine.getCurrentPatterns();
+    int total = 0;
+    for (int i = 0; i < patterns.size(); i++) {
+      total += patterns.get(i).getSupportCount();
+      if (i > 0) {
+        assertTrue(patterns.get(i - 1).getSupportCount() >= patterns.get(i).getSupportCount());
+      }
+    }
+    assertEquals(40, total);
+  }
+
+  @Test
+  public void testMergePatternsCombinesIdenticalPatterns() {
+    StandardVariableDetector detector = new StandardVariableDetector();
+    LogPattern login = new LogPattern(List.of("User", "***", "logged", "in"), 3, detector);
+    LogPattern timeout = new LogPattern(List.of("Database", "timeout"), 5, detector);
+    LogPattern cache = new LogPattern(List.of("Cache", "miss"), 5, detector);
+    LogPattern loginAgain = new LogPattern(List.of("User", "***", "logged", "in"), 4, detector);
+
+    List<LogPattern> merged =
+        ShardedLogMine.mergePatterns(
+            List.of(List.of(login, timeout), List.of(cache, loginAgain)), 0.5);
+
+    assertEquals(3, merged.size());
+    assertEquals(List.of("User", "***", "logged", "in"), merged.get(0).getTokens());
+    assertEquals(7, merged.get(0).getSupportCount());
+    // Equal support keeps the order of the input lists
+    assertEquals(List.of("Database", "timeout"), merged.get(1).getTokens());
+    assertEquals(List.of("Cache", "miss"), merged.get(2).getTokens());
+  }
+
+  @Test
+  public void testMergePatternsReconcilesSimilarPatternsOfDifferentShards() {
+    StandardVariableDetector detector = new StandardVariableDetector();
+    LogPattern anyUser = new LogPattern(List.of("***", "logged", "in", "from", "web"), 6, detector);
+    LogPattern alice = new LogPattern(List.of("alice", "logged", "in", "from", "web"), 2, detector);
+    LogPattern bob = new LogPattern(List.of("bob", "logged", "in", "from", "web"), 1, detector);
+
+    List<LogPattern> merged =
+        ShardedLogMine.mergePatterns(List.of(List.of(anyUser), List.of(alice, bob)), 0.5);
+
+    // alice joins the pattern of the other shard; bob is not merged with its own shard's alice
+    assertEquals(2, merged.size());
+    assertEquals(List.of("***", "logged", "in", "from", "web"), merged.get(0).getTokens());
+    assertEquals(8, merged.get(0).getSupportCount());
+    assertEquals(List.of("bob", "logged", "in", "from", "web"), merged.get(1).getTokens());
+
+    // A single list comes back unchanged
+    assertEquals(
+        List.of(alice, bob), ShardedLogMine.mergePatterns(List.of(List.of(alice, bob)), 0.5));
+  }
+
+  @Test
+  public void testVariableLeadingTokenSpreadOverShards() {
+    String[] users = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+    List<String> logs = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      logs.add(users[i % users.length] + " logged in from host web");
+    }
+
+    LogMine single = new LogMine(ProcessingMode.STREAMING, new LogMineProcessor(config()), 1000);
+    single.addLogs(logs);
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 8, 1000);
+    logMine.addLogs(logs);
+
+    Set<Integer> routed = new HashSet<>();
+    for (String user : users) {
+      routed.add(logMine.shardFor(user + " logged in from host web"));
+    }
+    assertTrue(routed.size() > 1, "users should be routed to several shards");
+
+    List<LogPattern> expected = single.getCurrentPatterns();
+    List<LogPattern> patterns = logMine.getCurrentPatterns();
+    assertEquals(1, expected.size());
+    assertEquals(1, patterns.size());
+    assertEquals(expected.get(0).getTokens(), patterns.get(0).getTokens());
+    assertEquals(400, patterns.get(0).getSupportCount());
+
+    for (String user : users) {
+      // The merged pattern is returned, not the pattern of the shard the user routes to
+      assertSame(patterns.get(0), logMine.matchPattern(user + " logged in from host web"));
+    }
+    assertFalse(logMine.isAnomaly("mallory logged in from host web"));
+    assertEquals(1, logMine.getStats().getPatternCount());
+    assertEquals(1, logMine.getStats().getProcessingStats().getNumPatterns());
+  }
+
+  @Test
+  public void testMergedViewIsReusedUntilShardsChange() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    logMine.addLogs(generateLogs(100));
+
+    PatternSnapshot snapshot = logMine.getSnapshot();
+    assertSame(snapshot, logMine.getSnapshot());
+    assertSame(snapshot.getPatterns().get(0), logMine.getCurrentPatterns().get(0));
+    assertEquals(snapshot.getPatterns().size(), logMine.getStats().getPatternCount());
+
+    logMine.addLog("FATAL Kernel panic not syncing");
+    PatternSnapshot changed = logMine.getSnapshot();
+    assertNotEquals(snapshot.getVersion(), changed.getVersion());
+    assertEquals(TEMPLATES.length + 1, changed.getPatterns().size());
+    assertEquals(TEMPLATES.length + 1, logMine.getStats().getPatternCount());
+  }
+
+  @Test
+  public void testBatchModeExtractsAcrossShards() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.BATCH, config(), 3, 1000);
+    logMine.addLogs(generateLogs(200));
+
+    assertEquals(200, logMine.getStats().getTotalLogs());
+    List<LogPattern> patterns = logMine.extractPatterns();
+    assertEquals(TEMPLATES.length, patterns.size());
+    int total = 0;
+    for (LogPattern pattern : patterns) {
+      total += pattern.getSupportCount();
+    }
+    assertEquals(200, total);
+  }
+
+  @Test
+  public void testMatchAndAnomaly() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    assertFalse(logMine.isAnomaly("INFO User 1 logged in from gateway"));
+
+    logMine.addLogs(generateLogs(100));
+
+    assertNotNull(logMine.matchPattern("INFO User 999 logged in from gateway"));
+    assertFalse(logMine.isAnomaly("ERROR Database timeout after 999 ms"));
+    assertTrue(logMine.isAnomaly("FATAL Kernel panic not syncing"));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> producers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      producers.add(
+          executor.submit(
+              () -> {
+                for (String log : generateLogs(500)) {
+                  logMine.addLog(log);
+                }
+              }));
+    }
+    for (Future<?> producer : producers) {
+      producer.get();
+    }
+    executor.shutdown();
+
+    LogMine.Stats stats = logMine.getStats();
+    assertEquals(2000, stats.getTotalLogs());
+    assertEquals(2000, stats.getProcessingStats().getTotalMessages());
+    int total = 0;
+    for (LogPattern pattern : logMine.getCurrentPatterns()) {
+      total += pattern.getSupportCount();
+    }
+    assertEquals(2000, total);
+  }
+
+  @Test
+  public void testStatsAggregateShards() {
+    ShardedLogMine logMine = new ShardedLogMine(ProcessingMode.STREAMING, config(), 4, 1000);
+    logMine.addLogs(generateLogs(200));
+
+    LogMine.Stats stats = logMine.getStats();
+    LogMineProcessor.ProcessingStats processing = stats.getProcessingStats();
+    assertEquals(ProcessingMode.STREAMING, stats.getMode());
+    assertEquals(200, stats.getTotalLogs());
+    assertEquals(TEMPLATES.length, processing.getNumClusters());
+    assertEquals(200.0 / TEMPLATES.length, processing.getAvgClusterSize(), 1e-9);
+    assertEquals(4, logMine.getShardCount());
+
+    logMine.clear();
+    assertEquals(0, logMine.getStats().getTotalLogs());
+    assertTrue(logMine.getCurrentPatterns().isEmpty());
+  }
+}
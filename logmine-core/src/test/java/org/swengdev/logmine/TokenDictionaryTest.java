@@ -0,0 +1,250 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.swengdev.logmine.strategy.AlwaysVariableDetector;
+import org.swengdev.logmine.strategy.CustomVariableDetector;
+import org.swengdev.logmine.strategy.NeverVariableDetector;
+import org.swengdev.logmine.strategy.StandardVariableDetector;
+import org.swengdev.logmine.strategy.TokenSpans;
+import org.swengdev.logmine.strategy.VariableDetector;
+import org.swengdev.logmine.strategy.WhitespaceTokenizer;
+
+/** Tests for TokenDictionary. */
+public class TokenDictionaryTest {
+
+  private final StandardVariableDetector detector = new StandardVariableDetector();
+  private final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+
+  @Test
+  public void testSameTokenGetsSameId() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+
+    TokenDictionary.Encoding first = dictionary.encode(List.of("INFO", "User", "INFO"));
+    TokenDictionary.Encoding second = dictionary.encode(List.of("User", "INFO"));
+
+    assertEquals(first.ids()[0], first.ids()[2]);
+    assertEquals(first.ids()[0], second.ids()[1]);
+    assertEquals(first.ids()[1], second.ids()[0]);
+    assertNotEquals(first.ids()[0], first.ids()[1]);
+    assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void testVariableClasses() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+
+    TokenDictionary.Encoding encoding =
+        dictionary.encode(List.of("42", "7", "10.0.0.1", "192.168.1.1", "INFO"));
+
+    assertTrue(encoding.tokensMatch(0, encoding, 1));
+    assertTrue(encoding.tokensMatch(2, encoding, 3));
+    assertFalse(encoding.tokensMatch(0, encoding, 2));
+    assertFalse(encoding.tokensMatch(0, encoding, 4));
+    assertTrue(encoding.isVariable(0));
+    assertFalse(encoding.isVariable(4));
+  }
+
+  @Test
+  public void testPatternWildcards() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+
+    TokenDictionary.Encoding encoding = dictionary.encodePattern(List.of("GET", "***"));
+
+    assertEquals(TokenDictionary.WILDCARD, encoding.ids()[1]);
+    assertEquals(1, dictionary.size());
+  }
+
+  @Test
+  public void testEncodeSpansSharesTokens() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+    String first = "GET /index 200";
+    String second = "GET /login 200";
+    TokenSpans spans = new TokenSpans();
+    String[] firstTokens = new String[3];
+    String[] secondTokens = new String[3];
+
+    tokenizer.tokenizeSpans(first, spans);
+    TokenDictionary.Encoding encoded1 = dictionary.encode(first, spans, firstTokens);
+    tokenizer.tokenizeSpans(second, spans);
+    TokenDictionary.Encoding encoded2 = dictionary.encode(second, spans, secondTokens);
+
+    assertArrayEquals(dictionary.encode(List.of("GET", "/login", "200")).ids(), encoded2.ids());
+    assertEquals(encoded1.ids()[0], encoded2.ids()[0]);
+    assertNotEquals(encoded1.ids()[1], encoded2.ids()[1]);
+    assertEquals("/login", secondTokens[1]);
+    assertSame(firstTokens[0], secondTokens[0]);
+    // The status code is variable, so it is copied out of each message instead of interned
+    assertEquals(TokenDictionary.NOT_INTERNED, encoded2.ids()[2]);
+    assertEquals("200", secondTokens[2]);
+    assertEquals(3, dictionary.size());
+  }
+
+  @Test
+  public void testVariableTokensAreNotInterned() {
+    TokenDictionary dictionary = new TokenDictionary(detector, 4);
+    TokenDictionary.Encoding first = dictionary.encode(List.of("Request", "0", "served"));
+
+    for (int i = 1; i < 1000; i++) {
+      TokenDictionary.Encoding encoding =
+          dictionary.encode(List.of("Request", String.valueOf(i), "served"));
+      assertTrue(encoding.tokensMatch(1, first, 1));
+      assertFalse(encoding.sameToken(1, String.valueOf(i), first, 1, "0"));
+    }
+
+    // Only the constants are interned, so the values never started a new epoch
+    assertTrue(dictionary.isCurrent(first));
+    assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void testEncodingsOfOtherDictionariesAreNotComparable() {
+    TokenDictionary dictionary1 = new TokenDictionary(detector);
+    TokenDictionary dictionary2 = new TokenDictionary(detector);
+
+    // Both dictionaries are in their first epoch, and INFO and ERROR both get ID 0
+    TokenDictionary.Encoding encoded1 = dictionary1.encode(List.of("INFO"));
+    TokenDictionary.Encoding encoded2 = dictionary2.encode(List.of("ERROR"));
+
+    assertFalse(TokenDictionary.comparable(encoded1, encoded2));
+    assertTrue(TokenDictionary.comparable(encoded1, dictionary1.encode(List.of("ERROR"))));
+    assertFalse(dictionary2.isCurrent(encoded1));
+    LogMessage message1 = message("INFO ready", dictionary1);
+    assertEquals(1, message1.editDistance(message("ERROR ready", dictionary2)));
+  }
+
+  @Test
+  public void testCapacityStartsNewEpoch() {
+    TokenDictionary dictionary = new TokenDictionary(detector, 4);
+
+    TokenDictionary.Encoding first = dictionary.encode(List.of("a", "b", "c", "d"));
+    assertTrue(dictionary.isCurrent(first));
+
+    TokenDictionary.Encoding second = dictionary.encode(List.of("e", "f"));
+
+    assertFalse(dictionary.isCurrent(first));
+    assertTrue(dictionary.isCurrent(second));
+    assertNotEquals(first.epoch(), second.epoch());
+    assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void testClearStartsNewEpoch() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+    TokenDictionary.Encoding encoding = dictionary.encode(List.of("INFO"));
+
+    dictionary.clear();
+
+    assertFalse(dictionary.isCurrent(encoding));
+    assertEquals(0, dictionary.size());
+  }
+
+  @Test
+  public void testEncodedDistanceMatchesStringDistance() {
+    String[] vocabulary = {
+      "INFO", "User", "login", "42", "7", "3.14", "10.0.0.1", "192.168.0.1", "12:00:01",
+      "2024-01-15", "0xff", "d41d8cd98f00b204e9800998ecf8427e", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"
+    };
+    VariableDetector[] detectors = {
+      detector,
+      new NeverVariableDetector(),
+      new AlwaysVariableDetector(),
+      new CustomVariableDetector.Builder().addVariablePattern("^user\\d+$").build()
+    };
+    Random random = new Random(11);
+
+    for (VariableDetector variableDetector : detectors) {
+      // A tiny capacity forces frequent epoch changes and the string fallback
+      for (int capacity : new int[] {3, 8, TokenDictionary.DEFAULT_CAPACITY}) {
+        TokenDictionary dictionary = new TokenDictionary(variableDetector, capacity);
+        for (int round = 0; round < 300; round++) {
+          String raw1 = randomMessage(random, vocabulary);
+          String raw2 = randomMessage(random, vocabulary);
+          LogMessage plain1 = new LogMessage(raw1, tokenizer.tokenize(raw1), variableDetector);
+          LogMessage plain2 = new LogMessage(raw2, tokenizer.tokenize(raw2), variableDetector);
+          LogMessage encoded1 =
+              new LogMessage(raw1, tokenizer.tokenize(raw1), variableDetector, dictionary);
+          LogMessage encoded2 =
+              new LogMessage(raw2, tokenizer.tokenize(raw2), variableDetector, dictionary);
+
+          assertEquals(plain1.editDistance(plain2), encoded1.editDistance(encoded2));
+          for (int i = 0; i < plain1.getLength(); i++) {
+            assertEquals(plain1.isVariableToken(i), encoded1.isVariableToken(i));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEncodedPatternMatching() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+    LogPattern pattern = new LogPattern(List.of("GET", "***", "200"), 1, detector, dictionary);
+
+    assertTrue(pattern.matches(message("GET /index 200", dictionary)));
+    assertFalse(pattern.matches(message("GET /index 404", dictionary)));
+    assertFalse(pattern.matches(message("GET /index", dictionary)));
+
+    dictionary.clear();
+    assertTrue(pattern.matches(message("GET /other 200", dictionary)));
+    assertTrue(pattern.matches(message("GET /other 200", null)));
+  }
+
+  private LogMessage message(String raw, TokenDictionary dictionary) {
+    return new LogMessage(raw, tokenizer.tokenize(raw), detector, dictionary);
+  }
+
+  private static String randomMessage(Random random, String[] vocabulary) {
+    StringBuilder raw = new StringBuilder();
+    int length = 1 + random.nextInt(6);
+    for (int t = 0; t < length; t++) {
+      raw.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+    }
+    return raw.toString().trim();
+  }
+
+  @Test
+  public void testMatchTypesDecideClasses() {
+    TokenDictionary dictionary = new TokenDictionary(detector);
+    List<String> tokens = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      tokens.add("0x" + Integer.toHexString(i + 16)); // Hex values only match themselves
+    }
+    tokens.add("42");
+    tokens.add("7");
+
+    TokenDictionary.Encoding encoding = dictionary.encode(tokens);
+
+    // Typed tokens never use up the class table, so the numbers still share a class
+    assertTrue(encoding.tokensMatch(20, encoding, 21));
+    assertFalse(encoding.tokensMatch(0, encoding, 1));
+    assertTrue(encoding.isVariable(0));
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, encoding.matchTypes()[0]);
+    assertEquals(detector.matchType("42"), encoding.matchTypes()[20]);
+  }
+}
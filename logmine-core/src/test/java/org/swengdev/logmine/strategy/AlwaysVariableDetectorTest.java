@@ -16,6 +16,7 @@
 
 package org.swengdev.logmine.strategy;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
@@ -38,4 +39,10 @@ public class AlwaysVariableDetectorTest {
   public void testNullValue() {
     assertTrue(detector.isVariable(null));
   }
+
+  @Test
+  public void testEverythingSharesOneMatchType() {
+    assertTrue(detector.matchType("INFO") > 0);
+    assertEquals(detector.matchType("INFO"), detector.matchType("123"));
+  }
 }
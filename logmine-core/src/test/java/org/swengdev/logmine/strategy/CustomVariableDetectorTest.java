@@ -16,6 +16,7 @@
 
 package org.swengdev.logmine.strategy;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -75,4 +76,20 @@ public class CustomVariableDetectorTest {
 
     assertFalse(detector.isVariable(null));
   }
+
+  @Test
+  public void testMatchType() {
+    VariableDetector detector =
+        new CustomVariableDetector.Builder()
+            .addVariablePattern("\\d+")
+            .addVariablePattern("user\\w+")
+            .addConstantToken("404")
+            .build();
+
+    // Variables all match each other, constants only themselves
+    assertEquals(detector.matchType("42"), detector.matchType("userAlice"));
+    assertTrue(detector.matchType("42") > 0);
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("404"));
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("INFO"));
+  }
 }
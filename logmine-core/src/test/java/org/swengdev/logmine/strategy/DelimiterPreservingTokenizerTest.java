@@ -21,7 +21,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 /** Tests for DelimiterPreservingTokenizer. */
@@ -309,4 +311,73 @@ public class DelimiterPreservingTokenizerTest {
     assertTrue(tokens.contains("acción"));
     assertTrue(tokens.contains("iniciar"));
   }
+
+  @Test
+  public void testSpans() {
+    DelimiterPreservingTokenizer tokenizer = new DelimiterPreservingTokenizer();
+    String message = "user=tom [id:7]";
+    TokenSpans spans = new TokenSpans();
+
+    assertTrue(tokenizer.tokenizeSpans(message, spans));
+    assertEquals(8, spans.size());
+    assertEquals(4, spans.start(1));
+    assertEquals(1, spans.length(1));
+    assertEquals(tokenizer.tokenize(message), spans.tokens(message));
+  }
+
+  @Test
+  public void testWhitespaceDelimiterIsNotToken() {
+    DelimiterPreservingTokenizer tokenizer = new DelimiterPreservingTokenizer(" =");
+
+    assertEquals(List.of("a", "=", "b", "c"), tokenizer.tokenize("a= b  c"));
+  }
+
+  @Test
+  public void testNoDelimitersSplitsEveryCharacter() {
+    DelimiterPreservingTokenizer tokenizer = new DelimiterPreservingTokenizer("");
+
+    assertEquals(List.of("a", "b", "c"), tokenizer.tokenize("ab c"));
+  }
+
+  @Test
+  public void testAgreesWithRegularExpressions() {
+    String[] delimiterSets = {"=,:;[]{}()", "@#$", ".^$*+?|\\-", " \t=", "é", ""};
+    String alphabet = "ab1=,:;[]{}()@#$.^*+?|\\- \t\n\u000B\u00A0é";
+    Random random = new Random(3);
+    for (String delimiters : delimiterSets) {
+      DelimiterPreservingTokenizer tokenizer = new DelimiterPreservingTokenizer(delimiters);
+      for (int i = 0; i < 5_000; i++) {
+        StringBuilder message = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int j = 0; j < length; j++) {
+          message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        String text = message.toString();
+        assertEquals(tokenizeWithRegex(delimiters, text), tokenizer.tokenize(text), text);
+      }
+    }
+  }
+
+  /** The tokenizer as it was before spans. */
+  private static List<String> tokenizeWithRegex(String delimiters, String message) {
+    List<String> tokens = new ArrayList<>();
+    if (message.isEmpty()) {
+      return tokens;
+    }
+    StringBuilder pattern = new StringBuilder();
+    for (char delimiter : delimiters.toCharArray()) {
+      boolean special = ".^$*+?()[]{}|\\".indexOf(delimiter) >= 0;
+      String escaped = special ? "\\" + delimiter : String.valueOf(delimiter);
+      pattern.append("(?<=").append(escaped).append(")|(?=").append(escaped).append(")|");
+    }
+    if (pattern.length() > 0) {
+      pattern.setLength(pattern.length() - 1);
+    }
+    for (String part : message.split("(?<=\\s)|(?=\\s)|" + pattern)) {
+      if (!part.isEmpty() && !part.matches("\\s+")) {
+        tokens.add(part);
+      }
+    }
+    return tokens;
+  }
 }
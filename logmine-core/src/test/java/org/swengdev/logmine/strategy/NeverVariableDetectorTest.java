@@ -16,6 +16,7 @@
 
 package org.swengdev.logmine.strategy;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import org.junit.jupiter.api.Test;
@@ -34,4 +35,10 @@ public class NeverVariableDetectorTest {
     assertFalse(detector.isVariable(""));
     assertFalse(detector.isVariable(null));
   }
+
+  @Test
+  public void testTokensOnlyMatchThemselves() {
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("123"));
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("INFO"));
+  }
 }
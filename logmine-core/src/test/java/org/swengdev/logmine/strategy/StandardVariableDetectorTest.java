@@ -16,6 +16,7 @@
 
 package org.swengdev.logmine.strategy;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -353,4 +354,53 @@ public class StandardVariableDetectorTest {
     // Description is static, doesn't change based on configuration
     assertTrue(description.contains("Standard"));
   }
+
+  @Test
+  public void testLongDigitRunIsHashWhenNumbersAreDisabled() {
+    VariableDetector hashes = new StandardVariableDetector(false, false, false, false, true);
+    String digits = "12345678901234567890123456789012";
+
+    assertTrue(hashes.isVariable(digits));
+    assertFalse(hashes.isVariable(digits.substring(1)));
+    // Hashes never match each other, only numbers do
+    assertFalse(hashes.tokensMatch(digits, "98765432109876543210987654321098"));
+    assertTrue(detector.tokensMatch(digits, "98765432109876543210987654321098"));
+  }
+
+  @Test
+  public void testTokensMatchRequiresSameType() {
+    assertFalse(detector.tokensMatch("123", "12:34:56"));
+    assertFalse(detector.tokensMatch("10.0.0.1", "1.5"));
+    assertFalse(detector.tokensMatch("0x1a", "0x2b"));
+    assertFalse(
+        new StandardVariableDetector(true, false, true, true, true)
+            .tokensMatch("2024-01-15", "2023-12-25"));
+  }
+
+  @Test
+  public void testMatchTypesAgreeWithTokensMatch() {
+    String[] tokens = {
+      "INFO", "User", "42", "-7", "3.14", "12:00:01", "2024-01-15", "1,5", "10.0.0.1",
+      "192.168.1.1", "550e8400-e29b-41d4-a716-446655440000", "0xff", "0xab",
+      "d41d8cd98f00b204e9800998ecf8427e", "12345678901234567890123456789012"
+    };
+    VariableDetector[] detectors = {
+      detector,
+      new StandardVariableDetector(false, true, true, true, true),
+      new StandardVariableDetector(true, false, false, true, false)
+    };
+
+    for (VariableDetector variableDetector : detectors) {
+      for (String token1 : tokens) {
+        for (String token2 : tokens) {
+          int type1 = variableDetector.matchType(token1);
+          boolean byType =
+              token1.equals(token2) || (type1 > 0 && type1 == variableDetector.matchType(token2));
+          assertEquals(variableDetector.tokensMatch(token1, token2), byType, token1 + " " + token2);
+        }
+      }
+    }
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("INFO"));
+    assertEquals(VariableDetector.EXACT_MATCH_TYPE, detector.matchType("0xff"));
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for TokenSpans. */
+public class TokenSpansTest {
+
+  @Test
+  public void testAddAndRead() {
+    TokenSpans spans = new TokenSpans();
+    spans.add(0, 4);
+    spans.add(5, 8);
+
+    assertEquals(2, spans.size());
+    assertEquals(5, spans.start(1));
+    assertEquals(3, spans.length(1));
+    assertEquals(8, spans.end(1));
+    assertEquals("INFO", spans.token("INFO 200", 0));
+    assertEquals("200", spans.token(new StringBuilder("INFO 200"), 1));
+    assertEquals(List.of("INFO", "200"), spans.tokens("INFO 200"));
+  }
+
+  @Test
+  public void testGrowsAndClears() {
+    TokenSpans spans = new TokenSpans();
+    for (int i = 0; i < 100; i++) {
+      spans.add(i, i + 1);
+    }
+
+    assertEquals(100, spans.size());
+    assertEquals(99, spans.start(99));
+
+    spans.clear();
+    assertEquals(0, spans.size());
+    assertThrows(IndexOutOfBoundsException.class, () -> spans.start(0));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Zachary Huang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.swengdev.logmine.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/** Tests for TokenType. */
+public class TokenTypeTest {
+
+  // The regular expressions StandardVariableDetector used before the scanner
+  private static final Pattern NUMBER = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+  private static final Pattern TIMESTAMP =
+      Pattern.compile("^\\d{4}-\\d{2}-\\d{2}|\\d{2}:\\d{2}:\\d{2}|\\d+,\\d+$");
+  private static final Pattern IP = Pattern.compile("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$");
+  private static final Pattern UUID =
+      Pattern.compile(
+          "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+  private static final Pattern HEX = Pattern.compile("^0x[0-9a-fA-F]+$");
+  private static final Pattern HASH = Pattern.compile("^[0-9a-fA-F]{32,}$");
+
+  private static TokenType classifyWithRegex(String token) {
+    if (NUMBER.matcher(token).matches()) {
+      return TokenType.NUMBER;
+    } else if (TIMESTAMP.matcher(token).matches()) {
+      return TokenType.TIMESTAMP;
+    } else if (IP.matcher(token).matches()) {
+      return TokenType.IP;
+    } else if (UUID.matcher(token).matches()) {
+      return TokenType.UUID;
+    } else if (HEX.matcher(token).matches()) {
+      return TokenType.HEX;
+    } else if (HASH.matcher(token).matches()) {
+      return TokenType.HASH;
+    }
+    return TokenType.NONE;
+  }
+
+  @Test
+  public void testClassify() {
+    assertEquals(TokenType.NUMBER, TokenType.classify("42"));
+    assertEquals(TokenType.NUMBER, TokenType.classify("-3.14"));
+    assertEquals(TokenType.TIMESTAMP, TokenType.classify("2024-01-15"));
+    assertEquals(TokenType.TIMESTAMP, TokenType.classify("12:34:56"));
+    assertEquals(TokenType.TIMESTAMP, TokenType.classify("123,456"));
+    assertEquals(TokenType.IP, TokenType.classify("192.168.1.1"));
+    assertEquals(TokenType.UUID, TokenType.classify("550e8400-e29b-41d4-a716-446655440000"));
+    assertEquals(TokenType.HEX, TokenType.classify("0xDEADBEEF"));
+    assertEquals(TokenType.HASH, TokenType.classify("d41d8cd98f00b204e9800998ecf8427e"));
+    assertEquals(TokenType.NONE, TokenType.classify("user123"));
+    assertEquals(TokenType.NONE, TokenType.classify("2024-01-15T12:34:56"));
+    assertEquals(TokenType.NONE, TokenType.classify("1.2.3.4.5"));
+    assertEquals(TokenType.NONE, TokenType.classify("0x"));
+    assertEquals(TokenType.NONE, TokenType.classify(""));
+  }
+
+  @Test
+  public void testClassifyRegion() {
+    String line = "from 10.0.0.1 at 12:00:01";
+
+    assertEquals(TokenType.IP, TokenType.classify(line, 5, 13));
+    assertEquals(TokenType.TIMESTAMP, TokenType.classify(line, 17, line.length()));
+    assertEquals(TokenType.NONE, TokenType.classify(line, 0, 4));
+    assertEquals(TokenType.NONE, TokenType.classify(line, 5, 5));
+  }
+
+  @Test
+  public void testDigitRunIsNumberBeforeHash() {
+    assertEquals(TokenType.NUMBER, TokenType.classify("12345678901234567890123456789012"));
+  }
+
+  @Test
+  public void testAgreesWithRegularExpressions() {
+    // Characters that the shapes are built from, plus a few that none accepts
+    String alphabet = "0123456789012345678901234567890123456789abcdefABCDEF.-:,x g";
+    Random random = new Random(7);
+    for (int i = 0; i < 200_000; i++) {
+      StringBuilder token = new StringBuilder();
+      int length = random.nextInt(i % 10 == 0 ? 45 : 16);
+      for (int j = 0; j < length; j++) {
+        token.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      assertEquals(classifyWithRegex(token.toString()), TokenType.classify(token), token::toString);
+    }
+
+    String[] nearMisses = {
+      "-", "-1", "1.", ".1", "-1.", "1-2", "1,", ",1", "1,2,3", "2024-1-15", "20240-01-15",
+      "1:2:3", "12:34", "12:34:567", "1.2.3", "1234.1.1.1", "1.1.1.", "-1.1.1.1",
+      "550e8400-e29b-41d4-a716-44665544000", "550e8400-e29b-41d4-a716-4466554400001",
+      "550e8400e29b-41d4-a716-446655440000-", "0x0x1", "0X1", "00x1", "0xg",
+      "d41d8cd98f00b204e9800998ecf8427", "d41d8cd98f00b204e9800998ecf8427e0", "１２３"
+    };
+    for (String token : nearMisses) {
+      assertEquals(classifyWithRegex(token), TokenType.classify(token), token);
+    }
+  }
+}
@@ -17,8 +17,11 @@
 package org.swengdev.logmine.strategy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 /** Tests for WhitespaceTokenizer. */
@@ -76,4 +79,38 @@ public class WhitespaceTokenizerTest {
     assertEquals(3, tokens.size());
     assertEquals("Leading", tokens.get(0));
   }
+
+  @Test
+  public void testSpans() {
+    String message = " GET\t/index.html  200 ";
+    TokenSpans spans = new TokenSpans();
+
+    assertTrue(tokenizer.tokenizeSpans(message, spans));
+    assertEquals(3, spans.size());
+    assertEquals(1, spans.start(0));
+    assertEquals(4, spans.end(0));
+    assertEquals("/index.html", spans.token(message, 1));
+    assertEquals(tokenizer.tokenize(message), spans.tokens(message));
+  }
+
+  @Test
+  public void testAgreesWithSplit() {
+    String alphabet = "ab1 \t\n\u000B\f\r\u0001\u00A0\u2003é";
+    Random random = new Random(5);
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder message = new StringBuilder();
+      int length = random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String text = message.toString();
+
+      // The tokenizer as it was before spans
+      List<String> expected =
+          text.trim().isEmpty()
+              ? List.of()
+              : Arrays.stream(text.split("\\s+")).filter(token -> !token.isEmpty()).toList();
+      assertEquals(expected, tokenizer.tokenize(text), text);
+    }
+  }
 }